@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.benchmark;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mule.module.hubspot.HubSpotConnector;
+import org.mule.module.hubspot.model.OAuthCredentials;
+import org.mule.util.store.SimpleMemoryObjectStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Drives the processors of the connector, with all its client stack, against a {@link HubSpotApiSimulator}. Each operation is one request to the simulated API (plus the
+ * retries and token refreshes caused by the injected errors), so the throughput is the number of requests per second and the sample time gives the latency percentiles.
+ * <p>
+ * The operations that fail after exhausting the retries are counted and printed at the end of the trial instead of aborting it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(16)
+@Fork(1)
+public class ConnectorThroughputBenchmark {
+
+    static final private int CONTACTS = 10000;
+    static final private int USERS = 4;
+
+    /**
+     * Simulated latency of every response of the API, in milliseconds
+     */
+    @Param({ "0", "20" })
+    private long latencyMillis;
+
+    /**
+     * Fraction of the requests that fail, split evenly among 401, 429 and 503 responses
+     */
+    @Param({ "0", "0.01" })
+    private double errorRate;
+
+    /**
+     * If the requests in progress to the portal are limited by the adaptive concurrency limiter
+     */
+    @Param({ "false", "true" })
+    private boolean adaptiveConcurrency;
+
+    private HubSpotApiSimulator simulator;
+    private HubSpotConnector connector;
+
+    private final AtomicLong failures = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        simulator = new HubSpotApiSimulator(CONTACTS);
+        simulator.setLatency(latencyMillis / 2, latencyMillis * 3 / 2);
+        simulator.setUnauthorizedRate(errorRate / 3);
+        simulator.setTooManyRequestsRate(errorRate / 3);
+        simulator.setServerErrorRate(errorRate / 3);
+        simulator.setRetryAfterSeconds(0);
+        simulator.start();
+
+        connector = new HubSpotConnector();
+        connector.setObjectStore(new SimpleMemoryObjectStore<Serializable>());
+        connector.setApiUrl(simulator.getUrl());
+        connector.setMaxConnections(64);
+        connector.setMaxConnectionsPerRoute(64);
+        connector.setMaxRetries(3);
+        connector.setRetryBaseDelay(10L);
+        connector.setRetryMaxDelay(200L);
+        connector.setProactiveTokenRefresh(false);
+        connector.setAdaptiveConcurrency(adaptiveConcurrency);
+        connector.initialize();
+
+        for (int x = 0; x < USERS; x++) {
+            final OAuthCredentials credentials = new OAuthCredentials();
+            credentials.setUserId(user(x));
+            credentials.setAccessToken("simulated-access-token");
+            credentials.setRefreshToken("simulated-refresh-token");
+            credentials.setClientId("simulated-client");
+            credentials.setHubId("62515");
+            credentials.setOfflineScope(true);
+            connector.getCredentialsManager().setCredentias(credentials);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connector.dispose();
+        simulator.stop();
+        System.out.println(String.format("%nRequests: %d - Injected errors: %d - Token refreshes: %d - Failed operations: %d", simulator.getRequests(),
+                simulator.getInjectedErrors(), simulator.getRefreshes(), failures.get()));
+    }
+
+    @Benchmark
+    public Object getContactById() {
+        try {
+            return connector.getContactById(randomUser(), String.valueOf(randomVid()));
+        } catch (final Exception e) {
+            return failed(e);
+        }
+    }
+
+    @Benchmark
+    public Object getContactByEmail() {
+        try {
+            return connector.getContactByEmail(randomUser(), "contact" + randomVid() + "@example.com");
+        } catch (final Exception e) {
+            return failed(e);
+        }
+    }
+
+    @Benchmark
+    public Object getAllContactsPage() {
+        try {
+            return connector.getAllContacts(randomUser(), "100", String.valueOf(randomVid() - 1));
+        } catch (final Exception e) {
+            return failed(e);
+        }
+    }
+
+    @Benchmark
+    public Object getAllCustomProperties() {
+        try {
+            return connector.getAllCustomProperties(randomUser());
+        } catch (final Exception e) {
+            return failed(e);
+        }
+    }
+
+    @Benchmark
+    public Object getEmailSubscriptionStatus() {
+        try {
+            return connector.getEmailSubscriptionStatus(randomUser(), null, "contact" + randomVid() + "@example.com");
+        } catch (final Exception e) {
+            return failed(e);
+        }
+    }
+
+    private Object failed(final Exception e) {
+        failures.incrementAndGet();
+        return e;
+    }
+
+    static private String user(final int index) {
+        return "simulated-user-" + index;
+    }
+
+    static private String randomUser() {
+        return user(ThreadLocalRandom.current().nextInt(USERS));
+    }
+
+    static private long randomVid() {
+        return 1 + ThreadLocalRandom.current().nextInt(CONTACTS);
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.mule.module.hubspot.model.contact.Contact;
+import org.mule.module.hubspot.model.contact.ContactProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading a single contact, as returned by the "get contact" endpoints, and only its properties through {@link org.mule.module.hubspot.serialization.ContactJacksonDeserializer}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContactDeserializationBenchmark {
+
+    @Param({ "getContactByIdOutput.json", "getContactByIdOutput2.json" })
+    private String fixture;
+
+    private ObjectMapper mapper;
+    private String contactJson;
+    private String propertiesJson;
+
+    @Setup
+    public void setup() throws IOException {
+        mapper = ContactFixtures.newMapper();
+        contactJson = ContactFixtures.contact(fixture);
+        propertiesJson = mapper.writeValueAsString(mapper.readTree(contactJson).get("properties"));
+    }
+
+    @Benchmark
+    public Contact readContact() throws IOException {
+        return mapper.readValue(contactJson, Contact.class);
+    }
+
+    @Benchmark
+    public ContactProperties readContactProperties() throws IOException {
+        return mapper.readValue(propertiesJson, ContactProperties.class);
+    }
+}
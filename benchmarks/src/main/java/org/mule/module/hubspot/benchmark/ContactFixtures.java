@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.Version;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.module.SimpleModule;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.ObjectNode;
+import org.mule.module.hubspot.model.contact.ContactProperties;
+import org.mule.module.hubspot.serialization.ContactJacksonDeserializer;
+import org.mule.module.hubspot.serialization.ContactJacksonSerializer;
+
+/**
+ * Input of the benchmarks: the JSON fixtures of the unit tests of the connector and synthetic pages of contacts built from them
+ */
+final class ContactFixtures {
+
+    /**
+     * Value of the page size parameter that selects the fixture page instead of a synthetic one
+     */
+    static final String FIXTURE_PAGE = "fixture";
+
+    static final private String CONTACT_TEMPLATE = "contacts/getContactByIdOutput.json";
+    static final private String CONTACT_PAGE = "contacts/getAllContactsOutput.json";
+
+    private ContactFixtures() {
+    }
+
+    /**
+     * @return A mapper configured like the one of the connector, that can also bind a {@link ContactProperties} on its own, outside of a contact
+     */
+    static ObjectMapper newMapper() {
+        final ObjectMapper mapper = new ObjectMapper();
+        final SimpleModule module = new SimpleModule("hubspot-benchmarks", Version.unknownVersion());
+        module.addSerializer(ContactProperties.class, new ContactJacksonSerializer());
+        module.addDeserializer(ContactProperties.class, new ContactJacksonDeserializer());
+        mapper.registerModule(module);
+        return mapper;
+    }
+
+    /**
+     * @param name
+     *            The name of the fixture, in the contacts folder of the test resources of the connector
+     */
+    static String contact(final String name) throws IOException {
+        return resource("contacts/" + name);
+    }
+
+    /**
+     * @param pageSize
+     *            The number of contacts of the page, or {@link #FIXTURE_PAGE} for the page of the fixtures
+     * @return A page of contacts as returned by the "get all contacts" endpoint
+     */
+    static String contactPage(final String pageSize) throws IOException {
+        if (FIXTURE_PAGE.equals(pageSize)) {
+            return resource(CONTACT_PAGE);
+        }
+
+        final int size = Integer.parseInt(pageSize);
+        final ObjectMapper mapper = new ObjectMapper();
+        final String template = resource(CONTACT_TEMPLATE);
+
+        final ArrayNode contacts = mapper.createArrayNode();
+        for (int vid = 1; vid <= size; vid++) {
+            // Parsed again for every contact, so each one is a separate tree
+            final ObjectNode contact = (ObjectNode) mapper.readTree(template);
+            contact.put("vid", vid);
+            contact.put("canonical-vid", vid);
+            final JsonNode email = contact.get("properties").get("email");
+            if (email instanceof ObjectNode) {
+                ((ObjectNode) email).put("value", "contact" + vid + "@example.com");
+            }
+            contacts.add(contact);
+        }
+
+        final ObjectNode page = mapper.createObjectNode();
+        page.put("contacts", contacts);
+        page.put("has-more", true);
+        page.put("vid-offset", size);
+        return mapper.writeValueAsString(page);
+    }
+
+    static private String resource(final String path) throws IOException {
+        final InputStream input = ContactFixtures.class.getClassLoader().getResourceAsStream(path);
+        if (input == null) {
+            throw new IOException("Fixture not found in the classpath: " + path);
+        }
+        try {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toString("UTF-8");
+        } finally {
+            input.close();
+        }
+    }
+}
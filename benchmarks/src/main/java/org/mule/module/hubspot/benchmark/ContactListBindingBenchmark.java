@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.mule.module.hubspot.model.contact.ContactList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Binding whole pages of contacts, as returned by the "get all contacts" and "get recent contacts" endpoints. The synthetic pages repeat the contact of
+ * getContactByIdOutput.json, with its property history, so they are larger than the pages of the fixtures
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContactListBindingBenchmark {
+
+    @Param({ ContactFixtures.FIXTURE_PAGE, "100", "1000" })
+    private String pageSize;
+
+    private ObjectMapper mapper;
+    private String pageJson;
+    private ContactList page;
+
+    @Setup
+    public void setup() throws IOException {
+        mapper = ContactFixtures.newMapper();
+        pageJson = ContactFixtures.contactPage(pageSize);
+        page = mapper.readValue(pageJson, ContactList.class);
+    }
+
+    @Benchmark
+    public ContactList readPage() throws IOException {
+        return mapper.readValue(pageJson, ContactList.class);
+    }
+
+    @Benchmark
+    public String writePage() throws IOException {
+        return mapper.writeValueAsString(page);
+    }
+}
@@ -0,0 +1,710 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.mule.util.concurrent.DaemonThreadFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process simulator of the HubSpot API, so the whole client stack of the connector can be load tested without a portal.
+ * <p>
+ * It serves the contacts, lists, properties, email subscription and token refresh endpoints used by the connector from generated data: contacts with the vids 1 to the number
+ * of contacts, and the email contact{vid}@example.com. The writes are acknowledged but not stored, so every run sees the same data. Every response can be delayed by a random
+ * latency, and a fraction of the requests can fail with a 401 (expired token), a 429 (rate limited) or a 503. The token refresh never fails, so the injected 401 exercise the
+ * refresh of the connector.
+ */
+public class HubSpotApiSimulator {
+
+    static final private int LIST_COUNT = 20;
+    static final private int PROPERTY_COUNT = 200;
+    static final private String[] GROUPS = { "contactinformation", "emailinformation", "salesforceinformation", "socialmediainformation" };
+
+    static final private Pattern CONTACT_PROFILE = Pattern.compile("/contacts/v1/contact/(vid|email|utk)/([^/]+)/profile");
+    static final private Pattern CONTACT_BATCH = Pattern.compile("/contacts/v1/contact/(vids|emails|utks)/batch/?");
+    static final private Pattern CONTACT = Pattern.compile("/contacts/v1/contact/vid/(\\d+)");
+    static final private Pattern CONTACT_EMAIL = Pattern.compile("contact(\\d+)@example\\.com");
+    static final private Pattern CONTACT_USER_TOKEN = Pattern.compile("utk(\\d+)");
+    static final private Pattern LIST = Pattern.compile("/contacts/v1/lists/(\\d+)");
+    static final private Pattern LIST_CONTACTS = Pattern.compile("/contacts/v1/lists/(\\d+)/contacts/all");
+    static final private Pattern LIST_MEMBERSHIP = Pattern.compile("/contacts/v1/lists/(\\d+)/(add|remove)");
+    static final private Pattern PROPERTY = Pattern.compile("/contacts/v1/properties/([^/]+)");
+    static final private Pattern GROUP = Pattern.compile("/contacts/v1/groups/([^/]+)");
+    static final private Pattern SUBSCRIPTION = Pattern.compile("/email/v1/public/subscriptions/([^/]+)");
+
+    private final int contacts;
+    private final long portalId = 62515;
+    private final long createdAt = System.currentTimeMillis();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private long minLatencyMillis;
+    private long maxLatencyMillis;
+    private double unauthorizedRate;
+    private double tooManyRequestsRate;
+    private double serverErrorRate;
+    private int retryAfterSeconds = 1;
+    private int secondlyLimit;
+
+    // The requests of the current second, guarded by this
+    private long currentSecond;
+    private int requestsThisSecond;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    private final AtomicLong nextVid;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+
+    /**
+     * @param contacts
+     *            Number of contacts of the simulated portal
+     */
+    public HubSpotApiSimulator(final int contacts) {
+        this.contacts = contacts;
+        nextVid = new AtomicLong(contacts);
+    }
+
+    /**
+     * Starts serving on a free port of the loopback interface
+     */
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        executor = Executors.newCachedThreadPool(new DaemonThreadFactory("hubspot-simulator"));
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                HubSpotApiSimulator.this.handle(exchange);
+            }
+        });
+        server.start();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * @return The base URL of the simulated API, to be set as the apiUrl of the connector
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Delays every response a random time between the minimum and the maximum
+     */
+    public void setLatency(final long minMillis, final long maxMillis) {
+        minLatencyMillis = Math.max(minMillis, 0);
+        maxLatencyMillis = Math.max(maxMillis, minLatencyMillis);
+    }
+
+    /**
+     * @param rate
+     *            Fraction of the requests answered with a 401, as if the access token had expired
+     */
+    public void setUnauthorizedRate(final double rate) {
+        unauthorizedRate = rate;
+    }
+
+    /**
+     * @param rate
+     *            Fraction of the requests answered with a 429 and a Retry-After header
+     */
+    public void setTooManyRequestsRate(final double rate) {
+        tooManyRequestsRate = rate;
+    }
+
+    /**
+     * @param rate
+     *            Fraction of the requests answered with a 503
+     */
+    public void setServerErrorRate(final double rate) {
+        serverErrorRate = rate;
+    }
+
+    public void setRetryAfterSeconds(final int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @param secondlyLimit
+     *            Requests per second accepted before answering with 429, reported in the rate limit headers of every response like HubSpot does. Zero means no limit and
+     *            no headers
+     */
+    public void setSecondlyLimit(final int secondlyLimit) {
+        this.secondlyLimit = secondlyLimit;
+    }
+
+    public int getContacts() {
+        return contacts;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getInjectedErrors() {
+        return injectedErrors.get();
+    }
+
+    public long getRefreshes() {
+        return refreshes.get();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            delay();
+
+            final String path = exchange.getRequestURI().getPath();
+            final int remaining = secondlyLimit > 0 ? takeFromSecondlyLimit() : 0;
+            Response response = remaining < 0 ? error(429, "You have reached your secondly limit.") : injectError(path);
+            if (response == null) {
+                response = route(exchange.getRequestMethod(), path, parseQuery(exchange.getRequestURI().getRawQuery()), exchange.getRequestBody());
+            }
+            if (secondlyLimit > 0) {
+                response.headers.put("X-HubSpot-RateLimit-Secondly", String.valueOf(secondlyLimit));
+                response.headers.put("X-HubSpot-RateLimit-Secondly-Remaining", String.valueOf(Math.max(remaining, 0)));
+            }
+            send(exchange, response);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final Exception e) {
+            send(exchange, error(500, e.toString()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return The requests left in the current second after this one, negative if it is over the limit
+     */
+    private synchronized int takeFromSecondlyLimit() {
+        final long second = System.currentTimeMillis() / 1000;
+        if (second != currentSecond) {
+            currentSecond = second;
+            requestsThisSecond = 0;
+        }
+        requestsThisSecond++;
+        return secondlyLimit - requestsThisSecond;
+    }
+
+    private void delay() throws InterruptedException {
+        if (maxLatencyMillis > 0) {
+            Thread.sleep(minLatencyMillis + (maxLatencyMillis > minLatencyMillis ? ThreadLocalRandom.current().nextLong(maxLatencyMillis - minLatencyMillis + 1) : 0));
+        }
+    }
+
+    private Response injectError(final String path) {
+        if (path.startsWith("/auth/")) {
+            return null;
+        }
+        final double random = ThreadLocalRandom.current().nextDouble();
+        Response response = null;
+        if (random < unauthorizedRate) {
+            response = error(401, "This oauth-token is expired!");
+        } else if (random < unauthorizedRate + tooManyRequestsRate) {
+            response = error(429, "You have reached your secondly limit.");
+            response.headers.put("Retry-After", String.valueOf(retryAfterSeconds));
+        } else if (random < unauthorizedRate + tooManyRequestsRate + serverErrorRate) {
+            response = error(503, "Service unavailable");
+        }
+        if (response != null) {
+            injectedErrors.incrementAndGet();
+        }
+        return response;
+    }
+
+    private Response route(final String method, final String path, final Map<String, List<String>> query, final InputStream body) throws IOException {
+        final boolean get = "GET".equals(method);
+        Matcher matcher;
+
+        // Contacts
+        if (path.equals("/contacts/v1/lists/all/contacts/all") || path.equals("/contacts/v1/lists/recently_updated/contacts/recent")) {
+            return ok(contactPage(query, 1, contacts));
+        }
+        if ((matcher = CONTACT_PROFILE.matcher(path)).matches()) {
+            return get ? contactBy(matcher.group(1), matcher.group(2)) : noContent();
+        }
+        if ((matcher = CONTACT_BATCH.matcher(path)).matches()) {
+            return ok(contactBatch(matcher.group(1), query));
+        }
+        if ((matcher = CONTACT.matcher(path)).matches()) {
+            final Map<String, Object> deleted = new LinkedHashMap<String, Object>();
+            deleted.put("vid", Long.valueOf(matcher.group(1)));
+            deleted.put("deleted", true);
+            return ok(deleted);
+        }
+        if (path.equals("/contacts/v1/contact")) {
+            return createContact(readBody(body));
+        }
+        if (path.equals("/contacts/v1/contact/batch") || path.equals("/contacts/v1/contact/batch/")) {
+            return new Response(202, null);
+        }
+        if (path.equals("/contacts/v1/contacts/statistics")) {
+            final Map<String, Object> statistics = new LinkedHashMap<String, Object>();
+            statistics.put("contacts", contacts);
+            statistics.put("lastNewContactAt", createdAt);
+            return ok(statistics);
+        }
+        if (path.equals("/contacts/v1/search/query")) {
+            return ok(search(first(query, "q"), intParam(query, "count", 20)));
+        }
+
+        // Lists
+        if (path.equals("/contacts/v1/lists") || path.equals("/contacts/v1/lists/dynamic")) {
+            return get ? ok(listPage(query, path.endsWith("dynamic"))) : ok(list(LIST_COUNT + 1));
+        }
+        if ((matcher = LIST_CONTACTS.matcher(path)).matches()) {
+            return ok(contactPage(query, 1, contacts));
+        }
+        if ((matcher = LIST_MEMBERSHIP.matcher(path)).matches()) {
+            return ok(listMembership(readBody(body)));
+        }
+        if ((matcher = LIST.matcher(path)).matches()) {
+            final int listId = Integer.parseInt(matcher.group(1));
+            if (listId < 1 || listId > LIST_COUNT) {
+                return error(404, "list does not exist");
+            }
+            return get ? ok(list(listId)) : "DELETE".equals(method) ? noContent() : ok(list(listId));
+        }
+
+        // Properties
+        if (path.equals("/contacts/v1/properties")) {
+            return get ? ok(properties(null)) : ok(readBody(body));
+        }
+        if ((matcher = PROPERTY.matcher(path)).matches()) {
+            return get ? ok(property(0)) : "DELETE".equals(method) ? noContent() : ok(readBody(body));
+        }
+        if ((matcher = GROUP.matcher(path)).matches()) {
+            return get ? group(matcher.group(1)) : "DELETE".equals(method) ? noContent() : ok(readBody(body));
+        }
+
+        // Email subscriptions
+        if (path.equals("/email/v1/public/subscriptions")) {
+            return ok(subscriptionDefinitions());
+        }
+        if ((matcher = SUBSCRIPTION.matcher(path)).matches()) {
+            if (get) {
+                return ok(subscriptionStatus(matcher.group(1)));
+            }
+            return ok(Collections.singletonMap("status", "updated"));
+        }
+
+        // OAuth
+        if (path.equals("/auth/v1/refresh")) {
+            final long refresh = refreshes.incrementAndGet();
+            final Map<String, Object> token = new LinkedHashMap<String, Object>();
+            token.put("portal_id", String.valueOf(portalId));
+            token.put("expires_in", 28800);
+            token.put("refresh_token", "simulated-refresh-token-" + refresh);
+            token.put("access_token", "simulated-access-token-" + refresh);
+            return ok(token);
+        }
+
+        return error(404, "Unknown endpoint " + method + " " + path);
+    }
+
+    private Map<String, Object> contactPage(final Map<String, List<String>> query, final long firstVid, final long lastVid) {
+        final int count = Math.min(intParam(query, "count", 20), 100);
+        final long offset = Math.max(longParam(query, "vidOffset", firstVid - 1), firstVid - 1);
+
+        final List<Object> page = new ArrayList<Object>();
+        long vid = offset;
+        while (page.size() < count && vid < lastVid) {
+            page.add(contact(++vid, email(vid)));
+        }
+
+        final Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("contacts", page);
+        result.put("has-more", vid < lastVid);
+        result.put("vid-offset", vid);
+        result.put("time-offset", createdAt - vid);
+        return result;
+    }
+
+    private Response contactBy(final String type, final String key) {
+        final long vid = vidOf(type, key);
+        if (vid < 1) {
+            return error(404, "contact does not exist");
+        }
+        return ok(contact(vid, email(vid)));
+    }
+
+    private Map<String, Object> contactBatch(final String type, final Map<String, List<String>> query) {
+        final String param = "vids".equals(type) ? "vid" : "emails".equals(type) ? "email" : "utk";
+        final Map<String, Object> result = new LinkedHashMap<String, Object>();
+        final List<String> keys = query.get(param);
+        if (keys != null) {
+            for (final String key : keys) {
+                final long vid = vidOf(param, key);
+                if (vid > 0) {
+                    result.put(String.valueOf(vid), contact(vid, email(vid)));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The vid of the contact with the key, or zero if it does not exist
+     */
+    private long vidOf(final String type, final String key) {
+        long vid = 0;
+        try {
+            if ("vid".equals(type)) {
+                vid = Long.parseLong(key);
+            } else {
+                final Matcher matcher = ("email".equals(type) ? CONTACT_EMAIL : CONTACT_USER_TOKEN).matcher(key.toLowerCase());
+                if (matcher.matches()) {
+                    vid = Long.parseLong(matcher.group(1));
+                }
+            }
+        } catch (final NumberFormatException e) {
+            return 0;
+        }
+        return vid >= 1 && vid <= nextVid.get() ? vid : 0;
+    }
+
+    private Response createContact(final JsonNode body) {
+        String email = null;
+        final JsonNode properties = body != null ? body.get("properties") : null;
+        if (properties != null) {
+            for (final JsonNode property : properties) {
+                if (property.get("property") != null && "email".equals(property.get("property").getTextValue())) {
+                    email = property.get("value").getTextValue();
+                }
+            }
+        }
+        if (email != null && vidOf("email", email) > 0) {
+            return error(409, "Contact already exists");
+        }
+        final long vid = nextVid.incrementAndGet();
+        return ok(contact(vid, email != null ? email : email(vid)));
+    }
+
+    private Map<String, Object> contact(final long vid, final String email) {
+        final Map<String, Object> properties = new LinkedHashMap<String, Object>();
+        properties.put("email", value(email));
+        properties.put("firstname", value("First" + vid));
+        properties.put("lastname", value("Last" + vid));
+        properties.put("company", value("Company " + vid % 100));
+        properties.put("phone", value(String.valueOf(5550000 + vid)));
+        properties.put("city", value("City " + vid % 50));
+        properties.put("simulated_score", value(String.valueOf(vid % 100)));
+
+        final List<Object> identities = new ArrayList<Object>();
+        identities.add(identity("EMAIL", email));
+        identities.add(identity("LEAD_GUID", "guid-" + vid));
+        final Map<String, Object> profile = new LinkedHashMap<String, Object>();
+        profile.put("vid", vid);
+        profile.put("identities", identities);
+
+        final Map<String, Object> contact = new LinkedHashMap<String, Object>();
+        contact.put("addedAt", createdAt - vid);
+        contact.put("vid", vid);
+        contact.put("canonical-vid", vid);
+        contact.put("portal-id", portalId);
+        contact.put("profile-token", "utk" + vid);
+        contact.put("profile-url", "https://app.hubspot.com/contacts/" + portalId + "/contact/" + vid);
+        contact.put("properties", properties);
+        contact.put("form-submissions", Collections.emptyList());
+        contact.put("identity-profiles", Collections.singletonList(profile));
+        return contact;
+    }
+
+    static private String email(final long vid) {
+        return "contact" + vid + "@example.com";
+    }
+
+    static private Map<String, Object> value(final String value) {
+        return Collections.<String, Object> singletonMap("value", value);
+    }
+
+    private Map<String, Object> identity(final String type, final String value) {
+        final Map<String, Object> identity = new LinkedHashMap<String, Object>();
+        identity.put("type", type);
+        identity.put("value", value);
+        identity.put("timestamp", createdAt);
+        return identity;
+    }
+
+    private Map<String, Object> search(final String text, final int count) {
+        final List<Object> found = new ArrayList<Object>();
+        if (text != null) {
+            final String q = text.toLowerCase();
+            for (long vid = 1; vid <= contacts && found.size() < Math.min(count, 100); vid++) {
+                if (email(vid).startsWith(q)) {
+                    found.add(contact(vid, email(vid)));
+                }
+            }
+        }
+        final Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("query", text);
+        result.put("offset", found.size());
+        result.put("has-more", false);
+        result.put("contacts", found);
+        return result;
+    }
+
+    private Map<String, Object> listPage(final Map<String, List<String>> query, final boolean dynamicOnly) {
+        final int count = Math.min(intParam(query, "count", 20), 250);
+        final int offset = intParam(query, "offset", 0);
+
+        final List<Object> lists = new ArrayList<Object>();
+        int listId = offset;
+        while (lists.size() < count && listId < LIST_COUNT) {
+            listId++;
+            if (!dynamicOnly || listId % 2 == 0) {
+                lists.add(list(listId));
+            }
+        }
+
+        final Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("lists", lists);
+        result.put("has-more", listId < LIST_COUNT);
+        result.put("offset", listId);
+        return result;
+    }
+
+    private Map<String, Object> list(final int listId) {
+        final Map<String, Object> list = new LinkedHashMap<String, Object>();
+        list.put("portalId", String.valueOf(portalId));
+        list.put("listId", String.valueOf(listId));
+        list.put("internalListId", String.valueOf(100000 + listId));
+        list.put("createdAt", createdAt);
+        list.put("updatedAt", createdAt);
+        list.put("dynamic", listId % 2 == 0);
+        list.put("deleted", false);
+        list.put("name", "Simulated list " + listId);
+        list.put("internal", false);
+        return list;
+    }
+
+    private Map<String, Object> listMembership(final JsonNode body) {
+        final List<Long> updated = new ArrayList<Long>();
+        final List<Long> discarded = new ArrayList<Long>();
+        final JsonNode vids = body != null ? body.get("vids") : null;
+        if (vids != null) {
+            for (final JsonNode vid : vids) {
+                if (vidOf("vid", vid.asText()) > 0) {
+                    updated.add(vid.getLongValue());
+                } else {
+                    discarded.add(vid.getLongValue());
+                }
+            }
+        }
+        final Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("updated", updated);
+        result.put("discarded", discarded);
+        return result;
+    }
+
+    /**
+     * @param groupName
+     *            The group of the properties, or null for all of them
+     */
+    private List<Object> properties(final String groupName) {
+        final List<Object> properties = new ArrayList<Object>();
+        for (int x = 0; x < PROPERTY_COUNT; x++) {
+            if (groupName == null || groupName.equals(GROUPS[x % GROUPS.length])) {
+                properties.add(property(x));
+            }
+        }
+        return properties;
+    }
+
+    private Map<String, Object> property(final int index) {
+        final Map<String, Object> property = new LinkedHashMap<String, Object>();
+        property.put("name", "simulated_property_" + index);
+        property.put("label", "Simulated property " + index);
+        property.put("description", "Property generated by the simulator");
+        property.put("groupName", GROUPS[index % GROUPS.length]);
+        property.put("type", "string");
+        property.put("fieldType", "text");
+        property.put("formField", false);
+        property.put("displayOrder", index);
+        property.put("readOnlyValue", false);
+        property.put("readOnlyDefinition", false);
+        property.put("hidden", false);
+        property.put("mutableDefinitionNotDeletable", false);
+        property.put("favorited", false);
+        property.put("favoritedOrder", -1);
+        property.put("options", Collections.emptyList());
+        return property;
+    }
+
+    private Response group(final String name) {
+        for (int x = 0; x < GROUPS.length; x++) {
+            if (GROUPS[x].equals(name)) {
+                final Map<String, Object> group = new LinkedHashMap<String, Object>();
+                group.put("name", name);
+                group.put("displayName", "Simulated group " + x);
+                group.put("displayOrder", x);
+                group.put("portalId", portalId);
+                group.put("properties", properties(name));
+                return ok(group);
+            }
+        }
+        return error(404, "group does not exist");
+    }
+
+    private Map<String, Object> subscriptionDefinitions() {
+        final List<Object> definitions = new ArrayList<Object>();
+        for (long id = 1; id <= 3; id++) {
+            final Map<String, Object> definition = new LinkedHashMap<String, Object>();
+            definition.put("active", true);
+            definition.put("portalId", portalId);
+            definition.put("description", "Simulated subscription " + id);
+            definition.put("id", id);
+            definition.put("name", "Subscription " + id);
+            definitions.add(definition);
+        }
+        return Collections.<String, Object> singletonMap("subscriptionDefinitions", definitions);
+    }
+
+    private Map<String, Object> subscriptionStatus(final String email) {
+        final List<Object> statuses = new ArrayList<Object>();
+        for (long id = 1; id <= 3; id++) {
+            final Map<String, Object> status = new LinkedHashMap<String, Object>();
+            status.put("id", id);
+            status.put("subscribed", id != 3);
+            statuses.add(status);
+        }
+        final Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("subscribed", true);
+        result.put("markedAsSpam", false);
+        result.put("portalId", portalId);
+        result.put("bounced", false);
+        result.put("email", email);
+        result.put("subscriptionStatuses", statuses);
+        return result;
+    }
+
+    private JsonNode readBody(final InputStream body) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final byte[] chunk = new byte[8192];
+        int read;
+        while ((read = body.read(chunk)) != -1) {
+            buffer.write(chunk, 0, read);
+        }
+        return buffer.size() > 0 ? mapper.readTree(buffer.toString("UTF-8")) : null;
+    }
+
+    static private Map<String, List<String>> parseQuery(final String rawQuery) throws IOException {
+        final Map<String, List<String>> params = new LinkedHashMap<String, List<String>>();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (final String pair : rawQuery.split("&")) {
+            final int separator = pair.indexOf('=');
+            final String name = URLDecoder.decode(separator >= 0 ? pair.substring(0, separator) : pair, "UTF-8");
+            final String value = separator >= 0 ? URLDecoder.decode(pair.substring(separator + 1), "UTF-8") : "";
+            List<String> values = params.get(name);
+            if (values == null) {
+                values = new ArrayList<String>();
+                params.put(name, values);
+            }
+            values.add(value);
+        }
+        return params;
+    }
+
+    static private String first(final Map<String, List<String>> query, final String name) {
+        final List<String> values = query.get(name);
+        return values != null && !values.isEmpty() ? values.get(0) : null;
+    }
+
+    static private int intParam(final Map<String, List<String>> query, final String name, final int defaultValue) {
+        return (int) longParam(query, name, defaultValue);
+    }
+
+    static private long longParam(final Map<String, List<String>> query, final String name, final long defaultValue) {
+        final String value = first(query, name);
+        try {
+            return value != null && value.length() > 0 ? Long.parseLong(value) : defaultValue;
+        } catch (final NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private void send(final HttpExchange exchange, final Response response) throws IOException {
+        for (final Map.Entry<String, String> header : response.headers.entrySet()) {
+            exchange.getResponseHeaders().set(header.getKey(), header.getValue());
+        }
+        if (response.body == null) {
+            exchange.sendResponseHeaders(response.status, -1);
+            return;
+        }
+        final byte[] bytes = mapper.writeValueAsBytes(response.body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+        exchange.sendResponseHeaders(response.status, bytes.length);
+        final OutputStream output = exchange.getResponseBody();
+        output.write(bytes);
+        output.flush();
+    }
+
+    static private Response ok(final Object body) {
+        return new Response(200, body);
+    }
+
+    static private Response noContent() {
+        return new Response(204, null);
+    }
+
+    static private Response error(final int status, final String message) {
+        final Map<String, Object> body = new LinkedHashMap<String, Object>();
+        body.put("status", "error");
+        body.put("message", message);
+        return new Response(status, body);
+    }
+
+    static private class Response {
+
+        private final int status;
+        private final Object body;
+        private final Map<String, String> headers = new LinkedHashMap<String, String>();
+
+        Response(final int status, final Object body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
@@ -10,38 +10,76 @@
  */
 package org.mule.module.hubspot;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.annotation.PostConstruct;
+import javax.management.ObjectName;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mule.api.annotations.Configurable;
 import org.mule.api.annotations.Connector;
 import org.mule.api.annotations.Processor;
+import org.mule.api.annotations.lifecycle.Dispose;
 import org.mule.api.annotations.param.Default;
 import org.mule.api.annotations.param.Optional;
 import org.mule.api.annotations.param.OutboundHeaders;
 import org.mule.api.config.MuleProperties;
 import org.mule.api.store.ObjectStore;
+import org.mule.module.hubspot.cache.HubSpotContactCache;
+import org.mule.module.hubspot.cache.HubSpotPropertySchemaCache;
+import org.mule.module.hubspot.client.HubSpotAsyncClient;
 import org.mule.module.hubspot.client.HubSpotClient;
 import org.mule.module.hubspot.client.HubSpotClientUtils;
 import org.mule.module.hubspot.client.HubSpotClientsManager;
+import org.mule.module.hubspot.client.HubSpotContactBatchLookup;
+import org.mule.module.hubspot.client.HubSpotContactBatchUpserter;
+import org.mule.module.hubspot.client.HubSpotContactReadCollapser;
+import org.mule.module.hubspot.client.HubSpotHttpTransport;
+import org.mule.module.hubspot.client.HubSpotListMembershipUpdater;
+import org.mule.module.hubspot.client.impl.HubSpotThreadPoolClient;
 import org.mule.module.hubspot.client.impl.HubSpotClientImpl;
+import org.mule.module.hubspot.client.policy.HubSpotClientPolicies;
+import org.mule.module.hubspot.client.policy.HubSpotConcurrencyLimiter;
+import org.mule.module.hubspot.client.policy.HubSpotRateLimitBudget;
+import org.mule.module.hubspot.client.policy.HubSpotRateLimiter;
+import org.mule.module.hubspot.client.policy.HubSpotRetryPolicy;
 import org.mule.module.hubspot.credential.HubSpotCredentialsManager;
+import org.mule.module.hubspot.credential.HubSpotTokenRefreshScheduler;
 import org.mule.module.hubspot.exception.HubSpotConnectorAccessTokenExpiredException;
 import org.mule.module.hubspot.exception.HubSpotConnectorException;
 import org.mule.module.hubspot.exception.HubSpotConnectorNoAccessTokenException;
+import org.mule.module.hubspot.exception.HubSpotConnectorResponseException;
+import org.mule.module.hubspot.iterable.GetAllContactsCollection;
+import org.mule.module.hubspot.iterable.GetContactsByQueryCollection;
+import org.mule.module.hubspot.iterable.GetContactsInAListCollection;
+import org.mule.module.hubspot.iterable.GetContactsListsCollection;
+import org.mule.module.hubspot.iterable.GetContactsUpdatedAfterCollection;
+import org.mule.module.hubspot.iterable.GetDynamicContactListsCollection;
 import org.mule.module.hubspot.iterable.GetRecentContactsCollection;
+import org.mule.module.hubspot.iterable.PageRequestException;
+import org.mule.module.hubspot.metrics.HubSpotMetrics;
 import org.mule.module.hubspot.model.OAuthCredentials;
 import org.mule.module.hubspot.model.contact.Contact;
+import org.mule.module.hubspot.model.contact.ContactBatchItem;
+import org.mule.module.hubspot.model.contact.ContactBatchResult;
 import org.mule.module.hubspot.model.contact.ContactDeleted;
 import org.mule.module.hubspot.model.contact.ContactList;
+import org.mule.module.hubspot.model.contact.ContactLookupResult;
 import org.mule.module.hubspot.model.contact.ContactProperties;
 import org.mule.module.hubspot.model.contact.ContactQuery;
 import org.mule.module.hubspot.model.contact.ContactStatistics;
@@ -56,6 +94,8 @@ import org.mule.module.hubspot.model.list.HubSpotListAddContactToListResponse;
 import org.mule.module.hubspot.model.list.HubSpotListFilters;
 import org.mule.module.hubspot.model.list.HubSpotListLists;
 import org.mule.module.hubspot.model.list.HubSpotNewList;
+import org.mule.module.hubspot.model.ratelimit.RateLimitStatus;
+import org.mule.util.concurrent.DaemonThreadFactory;
 import org.springframework.core.annotation.Order;
 
 /**
@@ -77,6 +117,21 @@ public class HubSpotConnector {
     static final public String HUB_SPOT_URL_AUTH = "https://app.hubspot.com/auth/authenticate";
     static final public String API_VERSION = "v1";
 
+    // Maximum number of contacts that HubSpot accepts in a batch
+    static final private int CONTACTS_BATCH_MAX_SIZE = 100;
+    // Maximum number of chunks of a batch lookup in progress at the same time
+    static final private int CONTACTS_LOOKUP_PARALLELISM = 4;
+    // Threads that load again the stale entries of the caches, and the loads that can wait for one of them
+    static final private int CACHE_REFRESH_THREADS = 2;
+    static final private int CACHE_REFRESH_QUEUE_SIZE = 1000;
+    // Pages that can wait for a pagination thread. The pages beyond it are requested by the consumer when it gets to them
+    static final private int PAGINATION_QUEUE_SIZE = 1000;
+
+    // Maximum number of tenants with their own latency histogram. The rest share one
+    static final private int MAX_METRICS_TENANTS = 1000;
+
+    static final private String METRICS_JMX_DOMAIN = "org.mule.module.hubspot";
+
     static final private Pattern OFFLINE_SCOPE_PATTER = Pattern.compile("offline");
     static final private Log logger = LogFactory.getLog(HubSpotConnector.class);
 
@@ -142,10 +197,432 @@ public class HubSpotConnector {
     @Default(MuleProperties.DEFAULT_USER_OBJECT_STORE_NAME)
     private ObjectStore objectStore;
 
+    /**
+     * Maximum number of HTTP connections kept open against HubSpot. The connections are shared by all the users of this configuration.
+     */
+    @Configurable
+    @Optional
+    @Order(6)
+    @Default("200")
+    private Integer maxConnections;
+
+    /**
+     * Maximum number of HTTP connections kept open against the same host
+     */
+    @Configurable
+    @Optional
+    @Order(7)
+    @Default("50")
+    private Integer maxConnectionsPerRoute;
+
+    /**
+     * Time in milliseconds to wait for a connection to HubSpot to be established
+     */
+    @Configurable
+    @Optional
+    @Order(8)
+    @Default("30000")
+    private Integer connectionTimeout;
+
+    /**
+     * Time in milliseconds to wait for the response of HubSpot once the connection is established
+     */
+    @Configurable
+    @Optional
+    @Order(9)
+    @Default("60000")
+    private Integer readTimeout;
+
+    /**
+     * If true the JSON bodies of the requests are written straight to the connection (chunked), instead of being serialized to a String first
+     */
+    @Configurable
+    @Optional
+    @Order(10)
+    @Default("false")
+    private Boolean streamRequestBodies;
+
+    /**
+     * Number of pages that the paginated operations request in the background ahead of the one being consumed. Zero requests each page when it is needed
+     */
+    @Configurable
+    @Optional
+    @Order(11)
+    @Default("1")
+    private Integer paginationReadAhead;
+
+    /**
+     * Maximum number of requests per second to each portal. Zero disables the rate limiter
+     */
+    @Configurable
+    @Optional
+    @Order(12)
+    @Default("9")
+    private Double rateLimitPerSecond;
+
+    /**
+     * Number of requests to a portal that can be made at once after a period without requests
+     */
+    @Configurable
+    @Optional
+    @Order(13)
+    @Default("10")
+    private Integer rateLimitBurst;
+
+    /**
+     * Maximum number of requests to each portal in 24 hours. Zero means no daily limit
+     */
+    @Configurable
+    @Optional
+    @Order(14)
+    @Default("0")
+    private Long rateLimitPerDay;
+
+    /**
+     * Maximum time in milliseconds that a request waits when the rate limit is reached. Zero fails immediately
+     */
+    @Configurable
+    @Optional
+    @Order(15)
+    @Default("30000")
+    private Long rateLimitMaxWait;
+
+    /**
+     * Maximum number of times that an idempotent request is retried when HubSpot responds 429, 502, 503 or 504 or the connection fails. Zero disables the retries
+     */
+    @Configurable
+    @Optional
+    @Order(16)
+    @Default("3")
+    private Integer maxRetries;
+
+    /**
+     * Minimum time in milliseconds to wait before retrying a request
+     */
+    @Configurable
+    @Optional
+    @Order(17)
+    @Default("200")
+    private Long retryBaseDelay;
+
+    /**
+     * Maximum time in milliseconds to wait before retrying a request, unless HubSpot requests a longer one with the Retry-After header
+     */
+    @Configurable
+    @Optional
+    @Order(18)
+    @Default("20000")
+    private Long retryMaxDelay;
+
+    /**
+     * Maximum time in milliseconds since the first attempt of an operation after which it is not retried anymore
+     */
+    @Configurable
+    @Optional
+    @Order(19)
+    @Default("60000")
+    private Long retryMaxElapsed;
+
+    /**
+     * If true the access tokens of the users with offline scope are refreshed in the background shortly before they expire. Only the users that have made a request within
+     * the client idle timeout are kept refreshed
+     */
+    @Configurable
+    @Optional
+    @Order(20)
+    @Default("true")
+    private Boolean proactiveTokenRefresh;
+
+    /**
+     * Time in milliseconds before the expiration of an access token when it is refreshed in the background
+     */
+    @Configurable
+    @Optional
+    @Order(21)
+    @Default("300000")
+    private Long tokenRefreshMargin;
+
+    /**
+     * Maximum random time in milliseconds added to the margin of each background refresh, so the refreshes of many users are spread out
+     */
+    @Configurable
+    @Optional
+    @Order(22)
+    @Default("60000")
+    private Long tokenRefreshJitter;
+
+    /**
+     * Maximum number of users whose credentials are kept in memory in front of the Object Store. Zero disables the cache
+     */
+    @Configurable
+    @Optional
+    @Order(23)
+    @Default("10000")
+    private Integer credentialsCacheSize;
+
+    /**
+     * Time in milliseconds after which the cached credentials of a user are read again from the Object Store, so the changes made by other nodes of a cluster are seen. Zero
+     * means that they are never read again, which is only safe when the connector runs in a single node
+     */
+    @Configurable
+    @Optional
+    @Order(24)
+    @Default("60000")
+    private Long credentialsCacheTtl;
+
+    /**
+     * Maximum number of tenant clients kept in memory. When there are more the least recently used ones are evicted and created again when needed. It also bounds the portals whose
+     * throttling state is kept. Zero means no maximum
+     */
+    @Configurable
+    @Optional
+    @Order(25)
+    @Default("1000")
+    private Integer maxClients;
+
+    /**
+     * Time in milliseconds after which the client of a tenant that has not been used is evicted, and after which the idle pooled connections are closed. Zero means that the
+     * clients are never evicted for being idle, and the idle connections are only closed by the server. The throttling state of
+     * a portal is released after the same idle time
+     */
+    @Configurable
+    @Optional
+    @Order(26)
+    @Default("1800000")
+    private Long clientIdleTimeout;
+
+    /**
+     * Number of threads of the pool that sends the requests of the future-based client (see {@link #getAsyncClient()}). Each request holds one of them until HubSpot answers,
+     * so this is the maximum number of its requests in flight at the same time. The requests beyond this number wait in a queue of {@link #asyncQueueSize}, without blocking
+     * the threads that sent them
+     */
+    @Configurable
+    @Optional
+    @Order(27)
+    @Default("50")
+    private Integer asyncThreads;
+
+    /**
+     * If true, the calls to {@link #getContactById} and {@link #getContactByEmail} of the same user that arrive at the same time are merged into batch lookups, so fewer
+     * requests are sent to HubSpot
+     */
+    @Configurable
+    @Optional
+    @Order(28)
+    @Default("false")
+    private Boolean collapseContactReads;
+
+    /**
+     * Time in milliseconds that a batch of merged contact lookups waits for more lookups before it is sent
+     */
+    @Configurable
+    @Optional
+    @Order(29)
+    @Default("5")
+    private Long collapseWindow;
+
+    /**
+     * Number of merged contact lookups after which the batch is sent without waiting for the window to end. HubSpot accepts at most 100
+     */
+    @Configurable
+    @Optional
+    @Order(30)
+    @Default("100")
+    private Integer collapseMaxKeys;
+
+    /**
+     * Maximum number of contacts kept in memory by {@link #getContactById}, {@link #getContactByEmail} and {@link #getContactByUserToken}. Zero disables the cache.
+     * <p>
+     * The contacts are cached by portal and each caller gets its own copy, so it can modify it. Only the changes made through the processors of this connector remove the
+     * contacts from the cache; the changes made through {@link #getAsyncClient()} or outside the connector are seen once the time to live expires
+     */
+    @Configurable
+    @Optional
+    @Order(31)
+    @Default("0")
+    private Integer contactCacheSize;
+
+    /**
+     * Time in milliseconds after which a cached contact is loaded again from HubSpot
+     */
+    @Configurable
+    @Optional
+    @Order(32)
+    @Default("60000")
+    private Long contactCacheTtl;
+
+    /**
+     * Time in milliseconds after the time to live during which a cached contact is still returned while it is loaded again in the background. Zero disables it
+     */
+    @Configurable
+    @Optional
+    @Order(33)
+    @Default("0")
+    private Long contactCacheStaleWhileRevalidate;
+
+    /**
+     * Time in milliseconds during which the results of {@link #getAllCustomProperties} and {@link #getCustomPropertyGroup} are served from memory. Zero disables the cache
+     */
+    @Configurable
+    @Optional
+    @Order(34)
+    @Default("0")
+    private Long propertySchemaCacheTtl;
+
+    /**
+     * Time in milliseconds after the time to live during which the cached properties and groups are still returned while they are loaded again in the background. Zero
+     * disables it
+     */
+    @Configurable
+    @Optional
+    @Order(35)
+    @Default("300000")
+    private Long propertySchemaCacheStaleWhileRevalidate;
+
+    /**
+     * Maximum number of portals whose properties and groups are cached
+     */
+    @Configurable
+    @Optional
+    @Order(36)
+    @Default("1000")
+    private Integer propertySchemaCacheSize;
+
+    /**
+     * Base URL of the HubSpot API. Change it only to send the requests through a proxy or to a simulator of the API
+     */
+    @Configurable
+    @Optional
+    @Order(37)
+    @Default(HUB_SPOT_URL_API)
+    private String apiUrl;
+
+    /**
+     * If the latencies, status codes, bytes received, retries and token refreshes of the requests are recorded and published through JMX
+     */
+    @Configurable
+    @Optional
+    @Order(38)
+    @Default("true")
+    private Boolean metricsEnabled;
+
+    /**
+     * Name under which the metrics, and the counts of the token refreshes, clients and caches, are published through JMX, to tell apart the configurations of the same
+     * application. If empty a unique one is generated
+     */
+    @Configurable
+    @Optional
+    @Order(39)
+    private String metricsJmxName;
+
+    /**
+     * If the requests of a portal are slowed down as the remaining budget reported by the rate limit headers of HubSpot runs out, instead of waiting for the 429 responses
+     */
+    @Configurable
+    @Optional
+    @Order(40)
+    @Default("true")
+    private Boolean adaptiveThrottling;
+
+    /**
+     * Maximum time in milliseconds that the adaptive throttling delays a request
+     */
+    @Configurable
+    @Optional
+    @Order(41)
+    @Default("1000")
+    private Long adaptiveThrottlingMaxDelay;
+
+    /**
+     * If the requests in progress to each portal are limited, with a limit that grows while HubSpot answers fast and shrinks when its latency grows or it answers with 429 or
+     * 5xx, so the connector finds the best throughput by itself. It stacks with the rate limit of {@link #rateLimitPerSecond}: each request waits for the rate limit first, and
+     * then for a slot of the concurrency limit. Set {@link #rateLimitPerSecond} to 0 to be limited only by the concurrency
+     */
+    @Configurable
+    @Optional
+    @Order(42)
+    @Default("false")
+    private Boolean adaptiveConcurrency;
+
+    /**
+     * Concurrent requests allowed to a portal before its latency has been measured
+     */
+    @Configurable
+    @Optional
+    @Order(43)
+    @Default("10")
+    private Integer adaptiveConcurrencyInitialLimit;
+
+    /**
+     * Maximum concurrent requests to a portal that the adaptive limit can reach
+     */
+    @Configurable
+    @Optional
+    @Order(44)
+    @Default("100")
+    private Integer adaptiveConcurrencyMaxLimit;
+
+    /**
+     * Maximum time in milliseconds that a request waits when its portal is at its concurrency limit. Zero means that it is rejected immediately
+     */
+    @Configurable
+    @Optional
+    @Order(45)
+    @Default("30000")
+    private Long adaptiveConcurrencyMaxWait;
+
+    /**
+     * Maximum number of requests of the future-based client that wait for a thread of its pool (see {@link #asyncThreads}). When the queue is full the new requests are not queued, and
+     * their futures fail with a {@link org.mule.module.hubspot.exception.HubSpotConnectorRateLimitException}, so a caller that submits faster than HubSpot answers gets an
+     * error instead of filling the memory
+     */
+    @Configurable
+    @Optional
+    @Order(46)
+    @Default("1000")
+    private Integer asyncQueueSize;
+
+    /**
+     * Number of threads that request the pages read ahead by the paginated operations (see {@link #paginationReadAhead}), shared by all their iterators
+     */
+    @Configurable
+    @Optional
+    @Order(47)
+    @Default("10")
+    private Integer paginationThreads;
+
     private HubSpotCredentialsManager credentialsManager;
 
     private HubSpotClientsManager clientsManager;
 
+    private HubSpotHttpTransport transport;
+
+    private HubSpotClientPolicies policies = HubSpotClientPolicies.NONE;
+
+    private ExecutorService paginationExecutor;
+
+    private ExecutorService asyncExecutor;
+
+    private ExecutorService cacheRefreshExecutor;
+
+    private HubSpotAsyncClient asyncClient;
+
+    private HubSpotContactBatchUpserter contactBatchUpserter;
+
+    private HubSpotContactBatchLookup contactBatchLookup;
+
+    private HubSpotListMembershipUpdater listMembershipUpdater;
+
+    private HubSpotContactReadCollapser contactReadCollapser;
+
+    private HubSpotContactCache contactCache;
+
+    private HubSpotPropertySchemaCache propertySchemaCache;
+
+    private HubSpotMetrics metrics;
+
+    private final List<ObjectName> registeredMBeans = new ArrayList<ObjectName>();
+
     public HubSpotCredentialsManager getCredentialsManager() {
         return credentialsManager;
     }
@@ -162,10 +639,232 @@ public class HubSpotConnector {
         this.clientsManager = clientsManager;
     }
 
+    public HubSpotHttpTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * @return The throttling, retries and metrics applied to the requests of every client of this connector
+     */
+    public HubSpotClientPolicies getPolicies() {
+        return policies;
+    }
+
+    /**
+     * @return The client whose operations return futures, sharing the credentials, clients and HTTP connections of this connector. The requests are sent by a pool of
+     *         {@link #asyncThreads} threads with the blocking client, so the caller is not blocked but each request in flight holds a thread of the pool. It does not go
+     *         through the contact and property caches, so the changes made with it are not seen by the cached lookups of the processors until their time to live expires
+     */
+    public HubSpotAsyncClient getAsyncClient() {
+        return asyncClient;
+    }
+
+    /**
+     * @return The scheduler of the token refreshes, with its counts of early, late and failed refreshes, or null if the tokens are not refreshed proactively
+     */
+    public HubSpotTokenRefreshScheduler getTokenRefreshScheduler() {
+        return credentialsManager != null ? credentialsManager.getRefreshScheduler() : null;
+    }
+
+    /**
+     * @return The cache of contacts, with its hit and miss counts, or null if it is disabled
+     */
+    public HubSpotContactCache getContactCache() {
+        return contactCache;
+    }
+
+    /**
+     * @return The cache of contact properties and groups, with its hit and miss counts, or null if it is disabled
+     */
+    public HubSpotPropertySchemaCache getPropertySchemaCache() {
+        return propertySchemaCache;
+    }
+
+    /**
+     * @return The metrics of the requests sent by this connector, or null if they are disabled
+     */
+    public HubSpotMetrics getMetrics() {
+        return metrics;
+    }
+
+    private String getEffectiveApiUrl() {
+        return apiUrl != null ? apiUrl : HUB_SPOT_URL_API;
+    }
+
+    private int getPaginationReadAheadDepth() {
+        if (paginationReadAhead == null) {
+            return 1;
+        }
+        return paginationReadAhead > 0 ? paginationReadAhead : 0;
+    }
+
     @PostConstruct
     public void initialize() {
-        credentialsManager = new HubSpotCredentialsManager(objectStore);
-        clientsManager = new HubSpotClientsManager();
+        transport = new HubSpotHttpTransport(maxConnections, maxConnectionsPerRoute, connectionTimeout, readTimeout, streamRequestBodies);
+        // The parameters that are not set (e.g. when the connector is created by code) take the same value as their @Default
+        // There is at most one portal per client, so the state the policies keep for each portal is bounded and released like the clients
+        final int clients = maxClients != null ? maxClients : 1000;
+        final long idleTimeout = clientIdleTimeout != null ? clientIdleTimeout : 1800000;
+        final double perSecond = rateLimitPerSecond != null ? rateLimitPerSecond : 9;
+        HubSpotRateLimiter rateLimiter = null;
+        if (perSecond > 0) {
+            rateLimiter = new HubSpotRateLimiter(perSecond, rateLimitBurst != null ? rateLimitBurst : 10, rateLimitPerDay != null ? rateLimitPerDay : 0,
+                    rateLimitMaxWait != null ? rateLimitMaxWait : 30000, clients, idleTimeout);
+        }
+        final int retries = maxRetries != null ? maxRetries : 3;
+        HubSpotRetryPolicy retryPolicy = null;
+        if (retries > 0) {
+            retryPolicy = new HubSpotRetryPolicy(retries, retryBaseDelay != null ? retryBaseDelay : 200, retryMaxDelay != null ? retryMaxDelay : 20000,
+                    retryMaxElapsed != null ? retryMaxElapsed : 60000);
+        }
+        if (metricsEnabled == null || metricsEnabled) {
+            metrics = new HubSpotMetrics(MAX_METRICS_TENANTS);
+            registerMBean(metrics, "HubSpotMetrics");
+        }
+        HubSpotRateLimitBudget rateLimitBudget = null;
+        if (adaptiveThrottling == null || adaptiveThrottling) {
+            rateLimitBudget = new HubSpotRateLimitBudget(adaptiveThrottlingMaxDelay != null ? adaptiveThrottlingMaxDelay : 1000, clients, idleTimeout);
+            registerMBean(rateLimitBudget, "HubSpotRateLimitBudget");
+        }
+        HubSpotConcurrencyLimiter concurrencyLimiter = null;
+        if (adaptiveConcurrency != null && adaptiveConcurrency) {
+            concurrencyLimiter = new HubSpotConcurrencyLimiter(adaptiveConcurrencyInitialLimit != null ? adaptiveConcurrencyInitialLimit : 10, 1,
+                    adaptiveConcurrencyMaxLimit != null ? adaptiveConcurrencyMaxLimit : 100, adaptiveConcurrencyMaxWait != null ? adaptiveConcurrencyMaxWait : 30000, clients,
+                    idleTimeout);
+            registerMBean(concurrencyLimiter, "HubSpotConcurrencyLimiter");
+        }
+        policies = new HubSpotClientPolicies(rateLimiter, retryPolicy, metrics, rateLimitBudget, concurrencyLimiter);
+        credentialsManager = new HubSpotCredentialsManager(objectStore, credentialsCacheSize != null ? credentialsCacheSize : 10000,
+                credentialsCacheTtl != null ? credentialsCacheTtl : 60000);
+        clientsManager = new HubSpotClientsManager(transport, policies, getEffectiveApiUrl(), clients, idleTimeout);
+        registerMBean(clientsManager, "HubSpotClientsManager");
+        if (proactiveTokenRefresh == null || proactiveTokenRefresh) {
+            credentialsManager.setRefreshScheduler(new HubSpotTokenRefreshScheduler(new HubSpotTokenRefreshScheduler.TokenRefresher() {
+                @Override
+                public void refresh(final String userId, final String expiringAccessToken) throws Exception {
+                    final OAuthCredentials cred = credentialsManager.getCredentials(userId);
+                    clientsManager.getOrCreateClient(userId, cred).refreshToken(credentialsManager, userId, expiringAccessToken);
+                }
+            }, tokenRefreshMargin != null ? tokenRefreshMargin : 300000, tokenRefreshJitter != null ? tokenRefreshJitter : 60000, idleTimeout));
+            registerMBean(credentialsManager.getRefreshScheduler(), "HubSpotTokenRefreshScheduler");
+            // The users whose client is evicted are not kept refreshed until they are used again
+            clientsManager.setEvictionListener(new HubSpotClientsManager.EvictionListener() {
+                @Override
+                public void evicted(final String userId) {
+                    credentialsManager.cancelRefresh(userId);
+                }
+            });
+        }
+        final int pageThreads = paginationThreads != null && paginationThreads > 0 ? paginationThreads : 10;
+        paginationExecutor = new ThreadPoolExecutor(pageThreads, pageThreads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(PAGINATION_QUEUE_SIZE),
+                new DaemonThreadFactory("hubspot-pagination"));
+        final int threads = asyncThreads != null && asyncThreads > 0 ? asyncThreads : 50;
+        // Bounded, so the requests beyond the queue are rejected (see HubSpotThreadPoolClient) instead of waiting without limit
+        asyncExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(asyncQueueSize != null && asyncQueueSize > 0
+                ? asyncQueueSize : 1000), new DaemonThreadFactory("hubspot-async"));
+        asyncClient = new HubSpotThreadPoolClient(credentialsManager, clientsManager, asyncExecutor);
+        contactBatchUpserter = new HubSpotContactBatchUpserter(asyncClient);
+        contactBatchLookup = new HubSpotContactBatchLookup(asyncClient);
+        listMembershipUpdater = new HubSpotListMembershipUpdater(asyncClient);
+        if (collapseContactReads != null && collapseContactReads) {
+            contactReadCollapser = new HubSpotContactReadCollapser(asyncClient, collapseWindow != null ? collapseWindow : 5, collapseMaxKeys != null ? collapseMaxKeys : 100);
+            registerMBean(contactReadCollapser, "HubSpotContactReadCollapser");
+        }
+        // The background loads of the caches have their own threads: with collapseContactReads a load waits for a batch sent on the asyncExecutor, so running it there
+        // could take every thread that should send the batches. The loads beyond the queue are skipped, and the stale entry is loaded by the next caller after it expires
+        cacheRefreshExecutor = new ThreadPoolExecutor(CACHE_REFRESH_THREADS, CACHE_REFRESH_THREADS, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(
+                CACHE_REFRESH_QUEUE_SIZE), new DaemonThreadFactory("hubspot-cache-refresh"));
+        if (contactCacheSize != null && contactCacheSize > 0) {
+            contactCache = new HubSpotContactCache(contactCacheSize, contactCacheTtl != null ? contactCacheTtl : 60000,
+                    contactCacheStaleWhileRevalidate != null ? contactCacheStaleWhileRevalidate : 0, cacheRefreshExecutor);
+            registerMBean(contactCache, "HubSpotContactCache");
+        }
+        if (propertySchemaCacheTtl != null && propertySchemaCacheTtl > 0) {
+            propertySchemaCache = new HubSpotPropertySchemaCache(propertySchemaCacheSize != null && propertySchemaCacheSize > 0 ? propertySchemaCacheSize : 1000,
+                    propertySchemaCacheTtl, propertySchemaCacheStaleWhileRevalidate != null ? propertySchemaCacheStaleWhileRevalidate : 300000,
+                    cacheRefreshExecutor);
+            registerMBean(propertySchemaCache, "HubSpotPropertySchemaCache");
+        }
+    }
+
+    /**
+     * Publishes a bean through JMX. The connector works the same if it cannot be published
+     */
+    private void registerMBean(final Object bean, final String type) {
+        final String name = StringUtils.isNotEmpty(metricsJmxName) ? metricsJmxName : Integer.toHexString(System.identityHashCode(this));
+        try {
+            final ObjectName objectName = new ObjectName(METRICS_JMX_DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(bean, objectName);
+            registeredMBeans.add(objectName);
+        } catch (final Exception e) {
+            logger.warn(String.format("Cannot publish the %s of the connector through JMX as %s - %s", type, name, e.getMessage()));
+        }
+    }
+
+    private void unregisterMBeans() {
+        for (final ObjectName objectName : registeredMBeans) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (final Exception e) {
+                logger.warn(String.format("Cannot unpublish %s - %s", objectName, e.getMessage()));
+            }
+        }
+        registeredMBeans.clear();
+    }
+
+    /**
+     * Releases the HTTP connections shared by all the clients and stops the background page requests, the operations of the future-based client and token refreshes. They are created once
+     * when the connector is constructed, so they are released when it is disposed rather than when it is stopped, which would leave them closed after a restart
+     */
+    @Dispose
+    public void dispose() {
+        if (credentialsManager != null && credentialsManager.getRefreshScheduler() != null) {
+            credentialsManager.getRefreshScheduler().stop();
+            credentialsManager.setRefreshScheduler(null);
+        }
+        if (paginationExecutor != null) {
+            shutdownNow(paginationExecutor);
+            paginationExecutor = null;
+        }
+        if (contactCache != null) {
+            contactCache.clear();
+            contactCache = null;
+        }
+        if (propertySchemaCache != null) {
+            propertySchemaCache.clear();
+            propertySchemaCache = null;
+        }
+        if (cacheRefreshExecutor != null) {
+            shutdownNow(cacheRefreshExecutor);
+            cacheRefreshExecutor = null;
+        }
+        if (contactReadCollapser != null) {
+            contactReadCollapser.stop();
+            contactReadCollapser = null;
+        }
+        if (asyncExecutor != null) {
+            shutdownNow(asyncExecutor);
+            asyncExecutor = null;
+        }
+        if (transport != null) {
+            transport.close();
+            transport = null;
+        }
+        unregisterMBeans();
+        metrics = null;
+        policies = HubSpotClientPolicies.NONE;
+    }
+
+    /**
+     * Stops the executor and cancels the tasks that were waiting in its queue, so the threads waiting for their futures (e.g. of the future-based client) do not wait
+     * forever
+     */
+    static private void shutdownNow(final ExecutorService executor) {
+        for (final Runnable task : executor.shutdownNow()) {
+            if (task instanceof Future) {
+                ((Future<?>) task).cancel(false);
+            }
+        }
     }
 
     /**
@@ -199,8 +898,8 @@ public class HubSpotConnector {
             @Optional final String scope, @OutboundHeaders final Map<String, Object> headers) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException {
 
         // By default it tries to use the parameters passed to the authenticate,
-        final HubSpotClient client = new HubSpotClientImpl(HUB_SPOT_URL_API, HUB_SPOT_URL_AUTH, API_VERSION, clientId != null ? clientId : clientId, hubId != null ? hubId : hubId,
-                scope != null ? scope : scope, callbackUrl != null ? callbackUrl : callbackUrl);
+        final HubSpotClient client = new HubSpotClientImpl(transport, policies, getEffectiveApiUrl(), HUB_SPOT_URL_AUTH, API_VERSION, clientId != null ? clientId : clientId,
+                hubId != null ? hubId : hubId, scope != null ? scope : scope, callbackUrl != null ? callbackUrl : callbackUrl);
 
         // Save the client for the tenant
         clientsManager.addClient(userId, client);
@@ -208,8 +907,15 @@ public class HubSpotConnector {
         final Matcher offlineScopeMatcher = OFFLINE_SCOPE_PATTER.matcher(scope != null ? scope : scope);
         final Boolean offlineScope = offlineScopeMatcher.find() ? true : false;
 
-        // Save the clientId
-        final OAuthCredentials credentials = credentialsManager.hasUserAccessToken(userId) ? credentialsManager.getCredentials(userId) : new OAuthCredentials();
+        // Save the clientId. The cached credentials are shared with the other threads, so the tokens they have are kept in a new instance instead of changing them
+        final OAuthCredentials credentials = new OAuthCredentials();
+        if (credentialsManager.hasUserAccessToken(userId)) {
+            final OAuthCredentials current = credentialsManager.getCredentials(userId);
+            credentials.setAccessToken(current.getAccessToken());
+            credentials.setRefreshToken(current.getRefreshToken());
+            credentials.setExpiresAt(current.getExpiresAt());
+            credentials.setExpirationTime(current.getExpirationTime());
+        }
         credentials.setUserId(userId);
         credentials.setClientId(clientId != null ? clientId : clientId);
         credentials.setHubId(hubId != null ? hubId : hubId);
@@ -311,11 +1017,38 @@ public class HubSpotConnector {
             return client.getAllContacts(cred.getAccessToken(), userId, count, contactOffset);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             return client.getAllContacts(credentialsManager.getCredentials(userId).getAccessToken(), userId, count, contactOffset);
         }
     }
 
+    /**
+     * This operation masks {@link getAllContacts} with an Iterator that handles the pagination.
+     * <p>
+     * {@sample.xml ../../../doc/HubSpot-connector.xml.sample hubspot:get-all-contacts-paginated}
+     *
+     * @param userId
+     *            The UserID of the user in the HubSpot service that was obtained from the {@link authenticateResponse} process
+     * @param count
+     *            This parameter lets you specify the amount of contacts to return in your API call. The default for this parameter (if it isn't specified) is 20 contacts. The
+     *            maximum amount of contacts you can have returned to you via this parameter is 100.
+     * @return A Collection of {@link Contact} that is Iterable and handles pagination in the background
+     * @throws HubSpotConnectorException
+     *             If the required parameters were not specified or occurs another type of error this exception will be thrown
+     * @throws HubSpotConnectorNoAccessTokenException
+     *             If the user does not have an Access Token this exception will be thrown
+     * @throws HubSpotConnectorAccessTokenExpiredException
+     *             If the user has his token already expired this exception will be thrown
+     */
+    @Processor
+    public Collection<Contact> getAllContactsPaginated(final String userId, @Optional @Default("") final String count) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        final ContactList cl = getAllContacts(userId, count, null);
+
+        return new GetAllContactsCollection(this, cl, userId, count, paginationExecutor, getPaginationReadAheadDepth());
+    }
+
     /**
      * For a given portal, return all contacts that have been recently updated or created. A paginated list of contacts will be returned to you, with a maximum of 100 contacts per
      * page, as specified by the "count" parameter.
@@ -358,21 +1091,88 @@ public class HubSpotConnector {
             return client.getRecentContacts(cred.getAccessToken(), userId, count, timeOffset, contactOffset);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             return client.getRecentContacts(credentialsManager.getCredentials(userId).getAccessToken(), userId, count, timeOffset, contactOffset);
         }
     }
 
     /**
-     * This operation masks {@link getRecentContacts} with an Iterator that handles the pagination.
+     * This operation masks {@link getRecentContacts} with an Iterator that handles the pagination.
+     * <p>
+     * {@sample.xml ../../../doc/HubSpot-connector.xml.sample hubspot:get-recent-contacts-paginated}
+     *
+     * @param userId
+     *            The UserID of the user in the HubSpot service that was obtained from the {@link authenticateResponse} process
+     * @param count
+     *            This parameter lets you specify the amount of contacts to return in your API call. The default for this parameter (if it isn't specified) is 20 contacts. The
+     *            maximum amount of contacts you can have returned to you via this parameter is 100.
+     * @return A Collection of {@link Contact} that is Iterable and handles pagination in the background
+     * @throws HubSpotConnectorException
+     *             If the required parameters were not specified or occurs another type of error this exception will be thrown
+     * @throws HubSpotConnectorNoAccessTokenException
+     *             If the user does not have an Access Token this exception will be thrown
+     * @throws HubSpotConnectorAccessTokenExpiredException
+     *             If the user has his token already expired this exception will be thrown
+     */
+    @Processor
+    public Collection<Contact> getRecentContactsPaginated(final String userId, final String count) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+            HubSpotConnectorAccessTokenExpiredException {
+
+        final ContactList cl = getRecentContacts(userId, count, null, null);
+
+        return new GetRecentContactsCollection(this, cl, userId, count, paginationExecutor, getPaginationReadAheadDepth());
+    }
+
+    /**
+     * This operation masks {@link getRecentContacts} recursively filtering all the contacts that were updated after the waterMark
+     * <p>
+     * {@sample.xml ../../../doc/HubSpot-connector.xml.sample hubspot:get-all-contacts-updated-after}
+     *
+     * @param userId
+     *            The UserID of the user in the HubSpot service that was obtained from the {@link authenticateResponse} process
+     * @param count
+     *            This parameter lets you specify the amount of contacts to return in your API call. The default for this parameter (if it isn't specified) is 20 contacts. The
+     *            maximum amount of contacts you can have returned to you via this parameter is 100.
+     * @param waterMark
+     *            The waterMark used to filter the Contacts that were updated after that waterMark
+     * @return A Collection of {@link Contact} that is Iterable and handles pagination in the background
+     * @throws HubSpotConnectorException
+     *             If the required parameters were not specified or occurs another type of error this exception will be thrown
+     * @throws HubSpotConnectorNoAccessTokenException
+     *             If the user does not have an Access Token this exception will be thrown
+     * @throws HubSpotConnectorAccessTokenExpiredException
+     *             If the user has his token already expired this exception will be thrown
+     */
+    @Processor
+    public List<Contact> getAllContactsUpdatedAfter(final String userId, @Optional @Default("") final String count, final Long waterMark) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        final List<Contact> contacts = new LinkedList<Contact>();
+        try {
+            for (final Contact c : getAllContactsUpdatedAfterPaginated(userId, count, waterMark)) {
+                contacts.add(c);
+            }
+        } catch (final PageRequestException e) {
+            // The following pages fail with the same exceptions as the first one
+            e.rethrow();
+        }
+
+        return contacts;
+    }
+
+    /**
+     * This operation masks {@link getRecentContacts} with an Iterator that handles the pagination, and stops at the first contact that was not updated after the waterMark.
+     * Unlike {@link getAllContactsUpdatedAfter} the contacts are not accumulated in memory, so it can be used to catch up on any number of changed contacts.
      * <p>
-     * {@sample.xml ../../../doc/HubSpot-connector.xml.sample hubspot:get-recent-contacts-paginated}
+     * {@sample.xml ../../../doc/HubSpot-connector.xml.sample hubspot:get-all-contacts-updated-after-paginated}
      *
      * @param userId
      *            The UserID of the user in the HubSpot service that was obtained from the {@link authenticateResponse} process
      * @param count
      *            This parameter lets you specify the amount of contacts to return in your API call. The default for this parameter (if it isn't specified) is 20 contacts. The
      *            maximum amount of contacts you can have returned to you via this parameter is 100.
+     * @param waterMark
+     *            The waterMark used to filter the Contacts that were updated after that waterMark
      * @return A Collection of {@link Contact} that is Iterable and handles pagination in the background
      * @throws HubSpotConnectorException
      *             If the required parameters were not specified or occurs another type of error this exception will be thrown
@@ -382,27 +1182,32 @@ public class HubSpotConnector {
      *             If the user has his token already expired this exception will be thrown
      */
     @Processor
-    public Collection<Contact> getRecentContactsPaginated(final String userId, final String count) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
-            HubSpotConnectorAccessTokenExpiredException {
+    public Collection<Contact> getAllContactsUpdatedAfterPaginated(final String userId, @Optional @Default("") final String count, final Long waterMark)
+            throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        if (waterMark == null) {
+            throw new HubSpotConnectorException("The parameter waterMark cannot be null");
+        }
 
         final ContactList cl = getRecentContacts(userId, count, null, null);
 
-        return new GetRecentContactsCollection(this, cl, userId, count);
+        return GetContactsUpdatedAfterCollection.contacts(this, cl, userId, count, waterMark, paginationExecutor, getPaginationReadAheadDepth());
     }
 
     /**
-     * This operation masks {@link getRecentContacts} recursively filtering all the contacts that were updated after the waterMark
+     * Same as {@link getAllContactsUpdatedAfterPaginated}, but each element of the collection is the list of the contacts of one page that were updated after the waterMark.
+     * This allows processing the contacts in chunks (for example with a foreach per chunk) while the memory used stays constant.
      * <p>
-     * {@sample.xml ../../../doc/HubSpot-connector.xml.sample hubspot:get-all-contacts-updated-after}
+     * {@sample.xml ../../../doc/HubSpot-connector.xml.sample hubspot:get-all-contacts-updated-after-in-chunks}
      *
      * @param userId
      *            The UserID of the user in the HubSpot service that was obtained from the {@link authenticateResponse} process
      * @param count
-     *            This parameter lets you specify the amount of contacts to return in your API call. The default for this parameter (if it isn't specified) is 20 contacts. The
-     *            maximum amount of contacts you can have returned to you via this parameter is 100.
+     *            The amount of contacts of each page, and so the maximum size of each chunk. The default for this parameter (if it isn't specified) is 20 contacts. The maximum
+     *            is 100.
      * @param waterMark
      *            The waterMark used to filter the Contacts that were updated after that waterMark
-     * @return A Collection of {@link Contact} that is Iterable and handles pagination in the background
+     * @return A Collection of lists of {@link Contact} that is Iterable and handles pagination in the background
      * @throws HubSpotConnectorException
      *             If the required parameters were not specified or occurs another type of error this exception will be thrown
      * @throws HubSpotConnectorNoAccessTokenException
@@ -411,47 +1216,16 @@ public class HubSpotConnector {
      *             If the user has his token already expired this exception will be thrown
      */
     @Processor
-    public List<Contact> getAllContactsUpdatedAfter(final String userId, @Optional @Default("") final String count, final Long waterMark) throws HubSpotConnectorException,
-            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
-
-        final List<Contact> contacts = new LinkedList<Contact>();
-
-        boolean readNext = true;
-        String timeOffset = null, contactOffset = null;
-
-        while (readNext) {
-            readNext = false;
-            final ContactList cl = getRecentContacts(userId, count, timeOffset, contactOffset);
-
-            if (cl != null) {
-                final List<Contact> lc = cl.getContacts();
-
-                if (lc != null) {
-                    int x = 0;
-                    final int xMax = lc.size();
-
-                    Contact c;
-                    for (; x < xMax; x++) {
-                        c = lc.get(x);
-
-                        if (c.getAddedAt() <= waterMark) {
-                            break;
-                        }
-
-                        contacts.add(c);
-                    }
+    public Collection<List<Contact>> getAllContactsUpdatedAfterInChunks(final String userId, @Optional @Default("") final String count, final Long waterMark)
+            throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
 
-                    if (x >= xMax && cl.getHasMore()) {
-                        // We check for possible error in the API. If the hasMore it's true there should be a timeOffset and a vidOffset, but just to be sure we double check it
-                        timeOffset = cl.getTimeOffset() != null ? cl.getTimeOffset().toString() : null;
-                        contactOffset = cl.getVidOffset() != null ? cl.getVidOffset().toString() : null;
-                        readNext = timeOffset != null && contactOffset != null ? true : false;
-                    }
-                }
-            }
+        if (waterMark == null) {
+            throw new HubSpotConnectorException("The parameter waterMark cannot be null");
         }
 
-        return contacts;
+        final ContactList cl = getRecentContacts(userId, count, null, null);
+
+        return GetContactsUpdatedAfterCollection.chunks(this, cl, userId, count, waterMark, paginationExecutor, getPaginationReadAheadDepth());
     }
 
     /**
@@ -479,6 +1253,27 @@ public class HubSpotConnector {
     public Contact getContactById(final String userId, final String contactId) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
             HubSpotConnectorAccessTokenExpiredException {
 
+        if (contactCache != null) {
+            return contactCache.getById(getPortal(userId), contactId, new HubSpotContactCache.ContactLoader() {
+                @Override
+                public Contact load() throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+                    return fetchContactById(userId, contactId);
+                }
+            });
+        }
+        return fetchContactById(userId, contactId);
+    }
+
+    private Contact fetchContactById(final String userId, final String contactId) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+            HubSpotConnectorAccessTokenExpiredException {
+
+        if (contactReadCollapser != null) {
+            if (StringUtils.isEmpty(contactId)) {
+                throw new HubSpotConnectorException("The parameter contactId cannot be empty");
+            }
+            return contactReadCollapser.getContactById(userId, contactId);
+        }
+
         final OAuthCredentials cred = credentialsManager.getCredentials(userId);
         final HubSpotClient client = clientsManager.getOrCreateClient(userId, cred);
 
@@ -486,7 +1281,7 @@ public class HubSpotConnector {
             return client.getContactById(cred.getAccessToken(), userId, contactId);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             return client.getContactById(credentialsManager.getCredentials(userId).getAccessToken(), userId, contactId);
         }
     }
@@ -514,6 +1309,27 @@ public class HubSpotConnector {
     public Contact getContactByEmail(final String userId, final String contactEmail) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
             HubSpotConnectorAccessTokenExpiredException {
 
+        if (contactCache != null) {
+            return contactCache.getByEmail(getPortal(userId), contactEmail, new HubSpotContactCache.ContactLoader() {
+                @Override
+                public Contact load() throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+                    return fetchContactByEmail(userId, contactEmail);
+                }
+            });
+        }
+        return fetchContactByEmail(userId, contactEmail);
+    }
+
+    private Contact fetchContactByEmail(final String userId, final String contactEmail) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+            HubSpotConnectorAccessTokenExpiredException {
+
+        if (contactReadCollapser != null) {
+            if (StringUtils.isEmpty(contactEmail)) {
+                throw new HubSpotConnectorException("The parameter contactEmail cannot be empty");
+            }
+            return contactReadCollapser.getContactByEmail(userId, contactEmail);
+        }
+
         final OAuthCredentials cred = credentialsManager.getCredentials(userId);
         final HubSpotClient client = clientsManager.getOrCreateClient(userId, cred);
 
@@ -521,7 +1337,7 @@ public class HubSpotConnector {
             return client.getContactByEmail(cred.getAccessToken(), userId, contactEmail);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             return client.getContactByEmail(credentialsManager.getCredentials(userId).getAccessToken(), userId, contactEmail);
         }
     }
@@ -549,6 +1365,20 @@ public class HubSpotConnector {
     public Contact getContactByUserToken(final String userId, final String contactUserToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
             HubSpotConnectorAccessTokenExpiredException {
 
+        if (contactCache != null) {
+            return contactCache.getByUserToken(getPortal(userId), contactUserToken, new HubSpotContactCache.ContactLoader() {
+                @Override
+                public Contact load() throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+                    return fetchContactByUserToken(userId, contactUserToken);
+                }
+            });
+        }
+        return fetchContactByUserToken(userId, contactUserToken);
+    }
+
+    private Contact fetchContactByUserToken(final String userId, final String contactUserToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+            HubSpotConnectorAccessTokenExpiredException {
+
         final OAuthCredentials cred = credentialsManager.getCredentials(userId);
         final HubSpotClient client = clientsManager.getOrCreateClient(userId, cred);
 
@@ -556,11 +1386,103 @@ public class HubSpotConnector {
             return client.getContactByUserToken(cred.getAccessToken(), userId, contactUserToken);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             return client.getContactByUserToken(credentialsManager.getCredentials(userId).getAccessToken(), userId, contactUserToken);
         }
     }
 
+    /**
+     * For a given portal, return information about many contacts at once by their vids. The keys are looked up in chunks of 100 that are requested concurrently.
+     * <p>
+     * API link: <a href="http://developers.hubspot.com/docs/methods/contacts/get_batch_by_vid">http://developers.hubspot.com/docs/methods/contacts/get_batch_by_vid</a>
+     * <p>
+     * {@sample.xml ../../../doc/HubSpot-connector.xml.sample hubspot:get-contacts-by-ids}
+     *
+     * @param userId
+     *            The UserID of the user in the HubSpot service that was obtained from the {@link authenticateResponse} process
+     * @param contactIds
+     *            The unique IDs (vids) of the contacts that you're searching for
+     * @return A {@link ContactLookupResult} with the contacts found by vid, and the vids that were not found
+     * @throws HubSpotConnectorException
+     *             If the required parameters were not specified or occurs another type of error this exception will be thrown
+     * @throws HubSpotConnectorNoAccessTokenException
+     *             If the user does not have an Access Token this exception will be thrown
+     * @throws HubSpotConnectorAccessTokenExpiredException
+     *             If the user has his token already expired this exception will be thrown
+     */
+    @Processor
+    public ContactLookupResult getContactsByIds(final String userId, final List<String> contactIds) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+            HubSpotConnectorAccessTokenExpiredException {
+
+        return lookupContacts(userId, contactIds, HubSpotContactBatchLookup.Key.VID);
+    }
+
+    /**
+     * For a given portal, return information about many contacts at once by their emails. The keys are looked up in chunks of 100 that are requested concurrently.
+     * <p>
+     * API link: <a href="http://developers.hubspot.com/docs/methods/contacts/get_batch_by_email">http://developers.hubspot.com/docs/methods/contacts/get_batch_by_email</a>
+     * <p>
+     * {@sample.xml ../../../doc/HubSpot-connector.xml.sample hubspot:get-contacts-by-emails}
+     *
+     * @param userId
+     *            The UserID of the user in the HubSpot service that was obtained from the {@link authenticateResponse} process
+     * @param contactEmails
+     *            The emails of the contacts that you're searching for
+     * @return A {@link ContactLookupResult} with the contacts found by email, and the emails that were not found
+     * @throws HubSpotConnectorException
+     *             If the required parameters were not specified or occurs another type of error this exception will be thrown
+     * @throws HubSpotConnectorNoAccessTokenException
+     *             If the user does not have an Access Token this exception will be thrown
+     * @throws HubSpotConnectorAccessTokenExpiredException
+     *             If the user has his token already expired this exception will be thrown
+     */
+    @Processor
+    public ContactLookupResult getContactsByEmails(final String userId, final List<String> contactEmails) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+            HubSpotConnectorAccessTokenExpiredException {
+
+        return lookupContacts(userId, contactEmails, HubSpotContactBatchLookup.Key.EMAIL);
+    }
+
+    /**
+     * For a given portal, return information about many contacts at once by their user tokens. The keys are looked up in chunks of 100 that are requested concurrently.
+     * <p>
+     * API link: <a href="http://developers.hubspot.com/docs/methods/contacts/get_batch_by_utk">http://developers.hubspot.com/docs/methods/contacts/get_batch_by_utk</a>
+     * <p>
+     * {@sample.xml ../../../doc/HubSpot-connector.xml.sample hubspot:get-contacts-by-user-tokens}
+     *
+     * @param userId
+     *            The UserID of the user in the HubSpot service that was obtained from the {@link authenticateResponse} process
+     * @param contactUserTokens
+     *            The user tokens (HubSpot cookie) of the contacts that you're searching for
+     * @return A {@link ContactLookupResult} with the contacts found by user token, and the user tokens that were not found
+     * @throws HubSpotConnectorException
+     *             If the required parameters were not specified or occurs another type of error this exception will be thrown
+     * @throws HubSpotConnectorNoAccessTokenException
+     *             If the user does not have an Access Token this exception will be thrown
+     * @throws HubSpotConnectorAccessTokenExpiredException
+     *             If the user has his token already expired this exception will be thrown
+     */
+    @Processor
+    public ContactLookupResult getContactsByUserTokens(final String userId, final List<String> contactUserTokens) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        return lookupContacts(userId, contactUserTokens, HubSpotContactBatchLookup.Key.USER_TOKEN);
+    }
+
+    private ContactLookupResult lookupContacts(final String userId, final List<String> keys, final HubSpotContactBatchLookup.Key kind) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        if (keys == null || keys.isEmpty()) {
+            throw new HubSpotConnectorException("The list of contacts to look up cannot be empty");
+        }
+        // Fails once if the user does not have credentials, instead of once per chunk
+        credentialsManager.getCredentials(userId);
+
+        // The repeated keys are looked up once
+        final List<List<String>> chunks = HubSpotClientUtils.splitInChunks(new ArrayList<String>(new LinkedHashSet<String>(keys)), CONTACTS_BATCH_MAX_SIZE);
+        return contactBatchLookup.lookup(userId, chunks, kind, CONTACTS_LOOKUP_PARALLELISM);
+    }
+
     /**
      * For a given portal, return contacts and some data associated with those contacts by the contact's email address or name. Please note that you should expect this method to
      * only return a small subset of data about the contact. One piece of data that the method will return is the contact ID (vid) that you can then use to look up much more data
@@ -578,6 +1500,9 @@ public class HubSpotConnector {
      * @param count
      *            This parameter lets you specify the amount of contacts to return in your API call. The default for this parameter (if it isn't specified) is 20 contacts. The
      *            maximum amount of contacts you can have returned to you via this parameter is 100.
+     * @param offset
+     *            Used to page through the results. Every call to this endpoint will return an offset value. This value is used in the offset parameter of the next call to get
+     *            the next page of contacts.
      * @return A {@link ContactQuery} with the contacts
      * @throws HubSpotConnectorException
      *             If the required parameters were not specified or occurs another type of error this exception will be thrown
@@ -587,21 +1512,50 @@ public class HubSpotConnector {
      *             If the user has his token already expired this exception will be thrown
      */
     @Processor
-    public ContactQuery getContactsByQuery(final String userId, final String query, @Optional @Default("") final String count) throws HubSpotConnectorException,
-            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+    public ContactQuery getContactsByQuery(final String userId, final String query, @Optional @Default("") final String count, @Optional @Default("") final String offset)
+            throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
         // ITERABLE
         final OAuthCredentials cred = credentialsManager.getCredentials(userId);
         final HubSpotClient client = clientsManager.getOrCreateClient(userId, cred);
 
         try {
-            return client.getContactsByQuery(cred.getAccessToken(), userId, query, count);
+            return client.getContactsByQuery(cred.getAccessToken(), userId, query, count, offset);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
-            return client.getContactsByQuery(credentialsManager.getCredentials(userId).getAccessToken(), userId, query, count);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
+            return client.getContactsByQuery(credentialsManager.getCredentials(userId).getAccessToken(), userId, query, count, offset);
         }
     }
 
+    /**
+     * This operation masks {@link getContactsByQuery} with an Iterator that handles the pagination.
+     * <p>
+     * {@sample.xml ../../../doc/HubSpot-connector.xml.sample hubspot:get-contacts-by-query-paginated}
+     *
+     * @param userId
+     *            The UserID of the user in the HubSpot service that was obtained from the {@link authenticateResponse} process
+     * @param query
+     *            The search term for what you're searching for. You can use all of a word or just parts of a word as well.
+     * @param count
+     *            This parameter lets you specify the amount of contacts to return in your API call. The default for this parameter (if it isn't specified) is 20 contacts. The
+     *            maximum amount of contacts you can have returned to you via this parameter is 100.
+     * @return A Collection of {@link Contact} that is Iterable and handles pagination in the background
+     * @throws HubSpotConnectorException
+     *             If the required parameters were not specified or occurs another type of error this exception will be thrown
+     * @throws HubSpotConnectorNoAccessTokenException
+     *             If the user does not have an Access Token this exception will be thrown
+     * @throws HubSpotConnectorAccessTokenExpiredException
+     *             If the user has his token already expired this exception will be thrown
+     */
+    @Processor
+    public Collection<Contact> getContactsByQueryPaginated(final String userId, final String query, @Optional @Default("") final String count)
+            throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        final ContactQuery cq = getContactsByQuery(userId, query, count, null);
+
+        return new GetContactsByQueryCollection(this, cq, userId, query, count, paginationExecutor, getPaginationReadAheadDepth());
+    }
+
     /**
      * Archive an existing contact from a particular HubSpot portal. Archiving will not hard delete a contact from a portal, but will remove that contact from the HubSpot user
      * interface.
@@ -633,8 +1587,11 @@ public class HubSpotConnector {
             return client.deleteContact(cred.getAccessToken(), userId, contactId);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             return client.deleteContact(credentialsManager.getCredentials(userId).getAccessToken(), userId, contactId);
+        } finally {
+            // Also if it fails, since the contact may have been deleted anyway
+            invalidateCachedContact(userId, contactId, null);
         }
     }
 
@@ -677,13 +1634,25 @@ public class HubSpotConnector {
             client.updateContact(cred.getAccessToken(), userId, contactId, contactProperties);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             client.updateContact(credentialsManager.getCredentials(userId).getAccessToken(), userId, contactId, contactProperties);
+        } finally {
+            invalidateCachedContact(userId, contactId, contactProperties != null ? contactProperties.getEmail() : null);
         }
 
         return contactProperties;
     }
 
+    /**
+     * Removes from the cache a contact changed through this connector, so the next lookup gets the change
+     */
+    private void invalidateCachedContact(final String userId, final String contactId, final String email) {
+        if (contactCache != null) {
+            contactCache.invalidate(getPortal(userId), contactId);
+            contactCache.invalidateEmail(getPortal(userId), email);
+        }
+    }
+
     /**
      * Create a new contact in HubSpot with a simple HTTP POST to the Contacts API.
      * <p>
@@ -714,8 +1683,57 @@ public class HubSpotConnector {
             return client.createContact(cred.getAccessToken(), userId, contactProperties);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             return client.createContact(credentialsManager.getCredentials(userId).getAccessToken(), userId, contactProperties);
+        } finally {
+            invalidateCachedContact(userId, null, contactProperties != null ? contactProperties.getEmail() : null);
+        }
+    }
+
+    /**
+     * Creates or updates many contacts with the batch endpoint of the Contacts API. The contacts are split in chunks of at most 100 that are sent with a bounded number of
+     * requests in parallel (within the rate limit), and the result says which contacts were accepted and which ones failed and why.
+     * <p>
+     * API link: <a href="http://developers.hubspot.com/docs/methods/contacts/batch_create_or_update">http://developers.hubspot.com/docs/methods/contacts/batch_create_or_update</a>
+     * <p>
+     * {@sample.xml ../../../doc/HubSpot-connector.xml.sample hubspot:upsert-contacts-batch}
+     *
+     * @param userId
+     *            The UserID of the user in the HubSpot service that was obtained from the {@link authenticateResponse} process
+     * @param contacts
+     *            The contacts to create or update. Each one is identified by its vid or, if it does not have one, by its email
+     * @param chunkSize
+     *            The number of contacts sent in each request. HubSpot accepts at most 100
+     * @param parallelism
+     *            The maximum number of requests in progress at the same time
+     * @return A {@link ContactBatchResult} with the contacts created or updated and the ones that failed
+     * @throws HubSpotConnectorException
+     *             If the required parameters were not specified or occurs another type of error this exception will be thrown
+     * @throws HubSpotConnectorNoAccessTokenException
+     *             If the user does not have an Access Token this exception will be thrown
+     * @throws HubSpotConnectorAccessTokenExpiredException
+     *             If the user has his token already expired this exception will be thrown
+     */
+    @Processor
+    public ContactBatchResult upsertContactsBatch(final String userId, final List<ContactBatchItem> contacts, @Optional @Default("100") final Integer chunkSize,
+            @Optional @Default("4") final Integer parallelism) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+            HubSpotConnectorAccessTokenExpiredException {
+
+        if (contacts == null || contacts.isEmpty()) {
+            throw new HubSpotConnectorException("The parameter contacts cannot be empty");
+        }
+        // Fails once if the user does not have credentials, instead of once per chunk
+        credentialsManager.getCredentials(userId);
+
+        final int size = chunkSize != null && chunkSize > 0 ? Math.min(chunkSize, CONTACTS_BATCH_MAX_SIZE) : CONTACTS_BATCH_MAX_SIZE;
+        final List<List<ContactBatchItem>> chunks = HubSpotClientUtils.splitInChunks(contacts, size);
+
+        try {
+            return contactBatchUpserter.upsert(userId, chunks, parallelism != null ? parallelism : 4);
+        } finally {
+            for (final ContactBatchItem contact : contacts) {
+                invalidateCachedContact(userId, contact.getVid() != null ? contact.getVid().toString() : null, contact.getEmail());
+            }
         }
     }
 
@@ -747,11 +1765,39 @@ public class HubSpotConnector {
             return client.getContactStatistics(cred.getAccessToken(), userId);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             return client.getContactStatistics(credentialsManager.getCredentials(userId).getAccessToken(), userId);
         }
     }
 
+    /**
+     * Returns the request budget left to the portal of the user, as reported by the rate limit headers of the last HubSpot response, minus the requests sent since then. No
+     * request is sent to HubSpot.
+     * <p>
+     * {@sample.xml ../../../doc/HubSpot-connector.xml.sample hubspot:get-rate-limit-status}
+     *
+     * @param userId
+     *            The UserID of the user in the HubSpot service that was obtained from the {@link authenticateResponse} process
+     * @return A {@link RateLimitStatus} with the remaining budget per second and per day. Only the portal is set if it has not reported its limits yet, or if the adaptive
+     *         throttling is disabled
+     * @throws HubSpotConnectorNoAccessTokenException
+     *             If the user does not have an Access Token this exception will be thrown
+     */
+    @Processor
+    public RateLimitStatus getRateLimitStatus(final String userId) throws HubSpotConnectorNoAccessTokenException {
+        // Fails if the user does not have credentials
+        credentialsManager.getCredentials(userId);
+        final String portal = getPortal(userId);
+
+        final HubSpotRateLimitBudget budget = policies.getRateLimitBudget();
+        if (budget == null) {
+            final RateLimitStatus status = new RateLimitStatus();
+            status.setPortal(portal);
+            return status;
+        }
+        return budget.getStatus(portal);
+    }
+
     /**
      * For a given portal, return a set of contact lists that you specify with the count parameter. By default, we will only return up to 20 lists to you at a time.
      * <p>
@@ -787,11 +1833,37 @@ public class HubSpotConnector {
             return client.getContactsLists(cred.getAccessToken(), userId, count, offset);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             return client.getContactsLists(credentialsManager.getCredentials(userId).getAccessToken(), userId, count, offset);
         }
     }
 
+    /**
+     * This operation masks {@link getContactsLists} with an Iterator that handles the pagination.
+     * <p>
+     * {@sample.xml ../../../doc/HubSpot-connector.xml.sample hubspot:get-contacts-lists-paginated}
+     *
+     * @param userId
+     *            The UserID of the user in the HubSpot service that was obtained from the {@link authenticateResponse} process
+     * @param count
+     *            An integer that represents the number of lists that you want returned in each page. By default, this call will return 20 lists per page.
+     * @return A Collection of {@link HubSpotList} that is Iterable and handles pagination in the background
+     * @throws HubSpotConnectorException
+     *             If the required parameters were not specified or occurs another type of error this exception will be thrown
+     * @throws HubSpotConnectorNoAccessTokenException
+     *             If the user does not have an Access Token this exception will be thrown
+     * @throws HubSpotConnectorAccessTokenExpiredException
+     *             If the user has his token already expired this exception will be thrown
+     */
+    @Processor
+    public Collection<HubSpotList> getContactsListsPaginated(final String userId, @Optional @Default("") final String count) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        final HubSpotListLists hsll = getContactsLists(userId, count, null);
+
+        return new GetContactsListsCollection(this, hsll, userId, count, paginationExecutor, getPaginationReadAheadDepth());
+    }
+
     /**
      * For a given portal, return a contact list by its unique ID.
      * <p>
@@ -822,7 +1894,7 @@ public class HubSpotConnector {
             return client.getContactListById(cred.getAccessToken(), userId, listId);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             return client.getContactListById(credentialsManager.getCredentials(userId).getAccessToken(), userId, listId);
         }
     }
@@ -867,11 +1939,37 @@ public class HubSpotConnector {
             return client.getDynamicContactLists(cred.getAccessToken(), userId, count, offset);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             return client.getDynamicContactLists(credentialsManager.getCredentials(userId).getAccessToken(), userId, count, offset);
         }
     }
 
+    /**
+     * This operation masks {@link getDynamicContactLists} with an Iterator that handles the pagination.
+     * <p>
+     * {@sample.xml ../../../doc/HubSpot-connector.xml.sample hubspot:get-dynamic-contact-lists-paginated}
+     *
+     * @param userId
+     *            The UserID of the user in the HubSpot service that was obtained from the {@link authenticateResponse} process
+     * @param count
+     *            An integer that represents the number of lists that you want returned in each page. By default, this call will return 20 lists per page.
+     * @return A Collection of {@link HubSpotList} that is Iterable and handles pagination in the background
+     * @throws HubSpotConnectorException
+     *             If the required parameters were not specified or occurs another type of error this exception will be thrown
+     * @throws HubSpotConnectorNoAccessTokenException
+     *             If the user does not have an Access Token this exception will be thrown
+     * @throws HubSpotConnectorAccessTokenExpiredException
+     *             If the user has his token already expired this exception will be thrown
+     */
+    @Processor
+    public Collection<HubSpotList> getDynamicContactListsPaginated(final String userId, @Optional @Default("") final String count) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        final HubSpotListLists hsll = getDynamicContactLists(userId, count, null);
+
+        return new GetDynamicContactListsCollection(this, hsll, userId, count, paginationExecutor, getPaginationReadAheadDepth());
+    }
+
     /**
      *
      * For a given portal and a given list, identified by its unique ID, return a list of contacts that are in that list.
@@ -903,19 +2001,51 @@ public class HubSpotConnector {
      *             If the user has his token already expired this exception will be thrown
      */
     @Processor
-    public ContactList getContactsInAList(final String userId, final String listId, @Optional @Default("") final String count, @Optional @Default("") final String property,
-            @Optional @Default("") final String offset) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
-        // ITERABLE
-        final OAuthCredentials cred = credentialsManager.getCredentials(userId);
-        final HubSpotClient client = clientsManager.getOrCreateClient(userId, cred);
+    public ContactList getContactsInAList(final String userId, final String listId, @Optional @Default("") final String count, @Optional @Default("") final String property,
+            @Optional @Default("") final String offset) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+        // ITERABLE
+        final OAuthCredentials cred = credentialsManager.getCredentials(userId);
+        final HubSpotClient client = clientsManager.getOrCreateClient(userId, cred);
+
+        try {
+            return client.getContactsInAList(cred.getAccessToken(), userId, listId, count, property, offset);
+        } catch (final HubSpotConnectorAccessTokenExpiredException e) {
+            // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
+            return client.getContactsInAList(credentialsManager.getCredentials(userId).getAccessToken(), userId, listId, count, property, offset);
+        }
+    }
+
+    /**
+     * This operation masks {@link getContactsInAList} with an Iterator that handles the pagination.
+     * <p>
+     * {@sample.xml ../../../doc/HubSpot-connector.xml.sample hubspot:get-contacts-in-a-list-paginated}
+     *
+     * @param userId
+     *            The UserID of the user in the HubSpot service that was obtained from the {@link authenticateResponse} process
+     * @param listId
+     *            Unique identifier for the list that you're looking for.
+     * @param count
+     *            This parameter lets you specify the amount of contacts to return in your API call. The default for this parameter (if it isn't specified) is 20 contacts. The
+     *            maximum amount of contacts you can have returned to you via this parameter is 100.
+     * @param property
+     *            If you include the "property" parameter, then the properties in the "contact" object in the returned data will only include the property or properties that you
+     *            request.
+     * @return A Collection of {@link Contact} that is Iterable and handles pagination in the background
+     * @throws HubSpotConnectorException
+     *             If the required parameters were not specified or occurs another type of error this exception will be thrown
+     * @throws HubSpotConnectorNoAccessTokenException
+     *             If the user does not have an Access Token this exception will be thrown
+     * @throws HubSpotConnectorAccessTokenExpiredException
+     *             If the user has his token already expired this exception will be thrown
+     */
+    @Processor
+    public Collection<Contact> getContactsInAListPaginated(final String userId, final String listId, @Optional @Default("") final String count,
+            @Optional @Default("") final String property) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
 
-        try {
-            return client.getContactsInAList(cred.getAccessToken(), userId, listId, count, property, offset);
-        } catch (final HubSpotConnectorAccessTokenExpiredException e) {
-            // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
-            return client.getContactsInAList(credentialsManager.getCredentials(userId).getAccessToken(), userId, listId, count, property, offset);
-        }
+        final ContactList cl = getContactsInAList(userId, listId, count, property, null);
+
+        return new GetContactsInAListCollection(this, cl, userId, listId, count, property, paginationExecutor, getPaginationReadAheadDepth());
     }
 
     /**
@@ -949,7 +2079,7 @@ public class HubSpotConnector {
             return client.getEmailSubscriptions(cred.getAccessToken(), userId, hubId != null ? hubId : cred.getHubId());
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             return client.getEmailSubscriptions(credentialsManager.getCredentials(userId).getAccessToken(), userId, hubId != null ? hubId : cred.getHubId());
         }
     }
@@ -987,7 +2117,7 @@ public class HubSpotConnector {
             return client.getEmailSubscriptionStatus(cred.getAccessToken(), userId, hubId != null ? hubId : cred.getHubId(), email);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             return client.getEmailSubscriptionStatus(credentialsManager.getCredentials(userId).getAccessToken(), userId, hubId != null ? hubId : cred.getHubId(), email);
         }
     }
@@ -1029,7 +2159,7 @@ public class HubSpotConnector {
             return client.updateEmailSubscriptionStatus(cred.getAccessToken(), userId, hubId != null ? hubId : cred.getHubId(), email, statuses);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             return client.updateEmailSubscriptionStatus(credentialsManager.getCredentials(userId).getAccessToken(), userId, hubId != null ? hubId : cred.getHubId(), email,
                     statuses);
         }
@@ -1069,7 +2199,7 @@ public class HubSpotConnector {
             return client.updateEmailSubscriptionStatusUnsubscribeFromAll(cred.getAccessToken(), userId, hubId != null ? hubId : cred.getHubId(), email);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             return client.updateEmailSubscriptionStatusUnsubscribeFromAll(credentialsManager.getCredentials(userId).getAccessToken(), userId,
                     hubId != null ? hubId : cred.getHubId(), email);
         }
@@ -1097,6 +2227,20 @@ public class HubSpotConnector {
     public List<CustomContactProperty> getAllCustomProperties(final String userId) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
             HubSpotConnectorAccessTokenExpiredException {
 
+        if (propertySchemaCache != null) {
+            return propertySchemaCache.getAllCustomProperties(getPortal(userId), new HubSpotPropertySchemaCache.SchemaLoader<List<CustomContactProperty>>() {
+                @Override
+                public List<CustomContactProperty> load() throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+                    return fetchAllCustomProperties(userId);
+                }
+            });
+        }
+        return fetchAllCustomProperties(userId);
+    }
+
+    private List<CustomContactProperty> fetchAllCustomProperties(final String userId) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+            HubSpotConnectorAccessTokenExpiredException {
+
         final OAuthCredentials cred = credentialsManager.getCredentials(userId);
         final HubSpotClient client = clientsManager.getOrCreateClient(userId, cred);
 
@@ -1104,7 +2248,7 @@ public class HubSpotConnector {
             return client.getAllCustomProperties(cred.getAccessToken(), userId);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             return client.getAllCustomProperties(credentialsManager.getCredentials(userId).getAccessToken(), userId);
         }
     }
@@ -1145,8 +2289,10 @@ public class HubSpotConnector {
             return client.createCustomProperty(cred.getAccessToken(), userId, contactProperty);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             return client.createCustomProperty(credentialsManager.getCredentials(userId).getAccessToken(), userId, contactProperty);
+        } finally {
+            invalidatePropertySchema(userId);
         }
     }
 
@@ -1187,8 +2333,10 @@ public class HubSpotConnector {
             return client.updateCustomProperty(cred.getAccessToken(), userId, propertyName, contactProperty);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             return client.updateCustomProperty(credentialsManager.getCredentials(userId).getAccessToken(), userId, propertyName, contactProperty);
+        } finally {
+            invalidatePropertySchema(userId);
         }
     }
 
@@ -1223,8 +2371,32 @@ public class HubSpotConnector {
             client.deleteCustomProperty(cred.getAccessToken(), userId, contactPropertyName);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             client.deleteCustomProperty(credentialsManager.getCredentials(userId).getAccessToken(), userId, contactPropertyName);
+        } finally {
+            invalidatePropertySchema(userId);
+        }
+    }
+
+    /**
+     * Discards the cached properties and groups of a portal changed through this connector, so the next lookup gets the change
+     */
+    private void invalidatePropertySchema(final String userId) {
+        if (propertySchemaCache != null) {
+            propertySchemaCache.invalidate(getPortal(userId));
+        }
+    }
+
+    /**
+     * @return The key of the portal of the user, shared by all its users: its hubId, or the userId if it is not known. The same key that the clients use for the limits of
+     *         the portal
+     */
+    private String getPortal(final String userId) {
+        try {
+            final String hubId = credentialsManager.getCredentialsHubId(userId);
+            return StringUtils.isEmpty(hubId) ? userId : hubId;
+        } catch (final HubSpotConnectorNoAccessTokenException e) {
+            return userId;
         }
     }
 
@@ -1257,6 +2429,20 @@ public class HubSpotConnector {
     public CustomContactPropertyGroup getCustomPropertyGroup(final String userId, final String groupName) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
             HubSpotConnectorAccessTokenExpiredException {
 
+        if (propertySchemaCache != null && groupName != null) {
+            return propertySchemaCache.getCustomPropertyGroup(getPortal(userId), groupName, new HubSpotPropertySchemaCache.SchemaLoader<CustomContactPropertyGroup>() {
+                @Override
+                public CustomContactPropertyGroup load() throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+                    return fetchCustomPropertyGroup(userId, groupName);
+                }
+            });
+        }
+        return fetchCustomPropertyGroup(userId, groupName);
+    }
+
+    private CustomContactPropertyGroup fetchCustomPropertyGroup(final String userId, final String groupName) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
         final OAuthCredentials cred = credentialsManager.getCredentials(userId);
         final HubSpotClient client = clientsManager.getOrCreateClient(userId, cred);
 
@@ -1264,7 +2450,7 @@ public class HubSpotConnector {
             return client.getCustomPropertyGroup(cred.getAccessToken(), userId, groupName);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             return client.getCustomPropertyGroup(credentialsManager.getCredentials(userId).getAccessToken(), userId, groupName);
         }
     }
@@ -1305,8 +2491,10 @@ public class HubSpotConnector {
             return client.createCustomPropertyGroup(cred.getAccessToken(), userId, customContactPropertyGroup);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             return client.createCustomPropertyGroup(credentialsManager.getCredentials(userId).getAccessToken(), userId, customContactPropertyGroup);
+        } finally {
+            invalidatePropertySchema(userId);
         }
     }
 
@@ -1348,8 +2536,10 @@ public class HubSpotConnector {
             return client.updateCustomPropertyGroup(cred.getAccessToken(), userId, groupName, customContactPropertyGroup);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             return client.updateCustomPropertyGroup(credentialsManager.getCredentials(userId).getAccessToken(), userId, groupName, customContactPropertyGroup);
+        } finally {
+            invalidatePropertySchema(userId);
         }
     }
 
@@ -1389,8 +2579,10 @@ public class HubSpotConnector {
             client.deleteCustomPropertyGroup(cred.getAccessToken(), userId, groupName);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             client.deleteCustomPropertyGroup(credentialsManager.getCredentials(userId).getAccessToken(), userId, groupName);
+        } finally {
+            invalidatePropertySchema(userId);
         }
     }
 
@@ -1428,11 +2620,101 @@ public class HubSpotConnector {
             return client.addExistingContactInAList(cred.getAccessToken(), userId, listId, contactId);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             return client.addExistingContactInAList(credentialsManager.getCredentials(userId).getAccessToken(), userId, listId, contactId);
         }
     }
 
+    /**
+     * Add to a static contact list many contacts at once. The repeated contact IDs are sent once, and the rest are split in chunks that are sent with a bounded number of
+     * requests in parallel.
+     * <p>
+     * Please note that you cannot manually change (via this API call) the contacts of dynamic lists - they can only be updated by the contacts app.
+     * <p>
+     * API link: <a href="http://developers.hubspot.com/docs/methods/lists/add_contact_to_list">http://developers.hubspot.com/docs/methods/lists/add_contact_to_list</a>
+     * <p>
+     * {@sample.xml ../../../doc/HubSpot-connector.xml.sample hubspot:add-contacts-to-list}
+     *
+     * @param userId
+     *            The UserID of the user in the HubSpot service that was obtained from the {@link authenticateResponse} process
+     * @param listId
+     *            The ID of the static list
+     * @param contactIds
+     *            The contact IDs (vids) of the contacts
+     * @param chunkSize
+     *            The number of contacts sent in each request. HubSpot accepts at most 500
+     * @param parallelism
+     *            The maximum number of requests in progress at the same time
+     * @return A {@link HubSpotListAddContactToListResponse} with all the contact IDs that were added ("updated") and the ones that were not ("discarded"),
+     *         for example because they already were in the list
+     * @throws HubSpotConnectorException
+     *             If the required parameters were not specified or occurs another type of error this exception will be thrown
+     * @throws HubSpotConnectorNoAccessTokenException
+     *             If the user does not have an Access Token this exception will be thrown
+     * @throws HubSpotConnectorAccessTokenExpiredException
+     *             If the user has his token already expired this exception will be thrown
+     */
+    @Processor
+    public HubSpotListAddContactToListResponse addContactsToList(final String userId, final String listId, final List<String> contactIds,
+            @Optional @Default("500") final Integer chunkSize, @Optional @Default("4") final Integer parallelism) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        return updateListMembership(userId, listId, contactIds, chunkSize, parallelism, true);
+    }
+
+    /**
+     * Remove from a static contact list many contacts at once. The repeated contact IDs are sent once, and the rest are split in chunks that are sent with a bounded number of
+     * requests in parallel.
+     * <p>
+     * Please note that you cannot manually change (via this API call) the contacts of dynamic lists - they can only be updated by the contacts app.
+     * <p>
+     * API link: <a href="http://developers.hubspot.com/docs/methods/lists/remove_contact_from_list">http://developers.hubspot.com/docs/methods/lists/remove_contact_from_list</a>
+     * <p>
+     * {@sample.xml ../../../doc/HubSpot-connector.xml.sample hubspot:remove-contacts-from-list}
+     *
+     * @param userId
+     *            The UserID of the user in the HubSpot service that was obtained from the {@link authenticateResponse} process
+     * @param listId
+     *            The ID of the static list
+     * @param contactIds
+     *            The contact IDs (vids) of the contacts
+     * @param chunkSize
+     *            The number of contacts sent in each request. HubSpot accepts at most 500
+     * @param parallelism
+     *            The maximum number of requests in progress at the same time
+     * @return A {@link HubSpotListAddContactToListResponse} with all the contact IDs that were removed ("updated") and the ones that were not ("discarded"),
+     *         for example because they were not in the list
+     * @throws HubSpotConnectorException
+     *             If the required parameters were not specified or occurs another type of error this exception will be thrown
+     * @throws HubSpotConnectorNoAccessTokenException
+     *             If the user does not have an Access Token this exception will be thrown
+     * @throws HubSpotConnectorAccessTokenExpiredException
+     *             If the user has his token already expired this exception will be thrown
+     */
+    @Processor
+    public HubSpotListAddContactToListResponse removeContactsFromList(final String userId, final String listId, final List<String> contactIds,
+            @Optional @Default("500") final Integer chunkSize, @Optional @Default("4") final Integer parallelism) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        return updateListMembership(userId, listId, contactIds, chunkSize, parallelism, false);
+    }
+
+    private HubSpotListAddContactToListResponse updateListMembership(final String userId, final String listId, final List<String> contactIds, final Integer chunkSize,
+            final Integer parallelism, final boolean add) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        if (StringUtils.isEmpty(listId)) {
+            throw new HubSpotConnectorException("The parameter listId cannot be empty");
+        }
+        if (contactIds == null || contactIds.isEmpty()) {
+            throw new HubSpotConnectorException("The parameter contactIds cannot be empty");
+        }
+        // Fails once if the user does not have credentials, instead of once per chunk
+        credentialsManager.getCredentials(userId);
+
+        return listMembershipUpdater.update(userId, listId, contactIds, chunkSize != null ? chunkSize : HubSpotListMembershipUpdater.MAX_CHUNK_SIZE,
+                parallelism != null ? parallelism : 4, add);
+    }
+
     /**
      * Create a new list in a given HubSpot portal to populate with contacts.
      * <p>
@@ -1465,7 +2747,7 @@ public class HubSpotConnector {
             return client.createContactList(cred.getAccessToken(), userId, list, filters);
         } catch (final HubSpotConnectorAccessTokenExpiredException e) {
             // If the operation throws a HubSpotConnectorAccessTokenExpiredException, try to refresh the access token using the refresh token
-            client.refreshToken(credentialsManager, userId);
+            client.refreshToken(credentialsManager, userId, cred.getAccessToken());
             return client.createContactList(credentialsManager.getCredentials(userId).getAccessToken(), userId, list, filters);
         }
     }
@@ -1511,4 +2793,340 @@ public class HubSpotConnector {
     public void setObjectStore(final ObjectStore objectStore) {
         this.objectStore = objectStore;
     }
+
+    public Integer getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(final Integer maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public Integer getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(final Integer maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public Integer getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    public void setConnectionTimeout(final Integer connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    public Integer getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(final Integer readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public Boolean getStreamRequestBodies() {
+        return streamRequestBodies;
+    }
+
+    public void setStreamRequestBodies(final Boolean streamRequestBodies) {
+        this.streamRequestBodies = streamRequestBodies;
+    }
+
+    public Integer getPaginationReadAhead() {
+        return paginationReadAhead;
+    }
+
+    public void setPaginationReadAhead(final Integer paginationReadAhead) {
+        this.paginationReadAhead = paginationReadAhead;
+    }
+
+    public Integer getPaginationThreads() {
+        return paginationThreads;
+    }
+
+    public void setPaginationThreads(final Integer paginationThreads) {
+        this.paginationThreads = paginationThreads;
+    }
+
+    public Double getRateLimitPerSecond() {
+        return rateLimitPerSecond;
+    }
+
+    public void setRateLimitPerSecond(final Double rateLimitPerSecond) {
+        this.rateLimitPerSecond = rateLimitPerSecond;
+    }
+
+    public Integer getRateLimitBurst() {
+        return rateLimitBurst;
+    }
+
+    public void setRateLimitBurst(final Integer rateLimitBurst) {
+        this.rateLimitBurst = rateLimitBurst;
+    }
+
+    public Long getRateLimitPerDay() {
+        return rateLimitPerDay;
+    }
+
+    public void setRateLimitPerDay(final Long rateLimitPerDay) {
+        this.rateLimitPerDay = rateLimitPerDay;
+    }
+
+    public Long getRateLimitMaxWait() {
+        return rateLimitMaxWait;
+    }
+
+    public void setRateLimitMaxWait(final Long rateLimitMaxWait) {
+        this.rateLimitMaxWait = rateLimitMaxWait;
+    }
+
+    public Integer getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(final Integer maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public Long getRetryBaseDelay() {
+        return retryBaseDelay;
+    }
+
+    public void setRetryBaseDelay(final Long retryBaseDelay) {
+        this.retryBaseDelay = retryBaseDelay;
+    }
+
+    public Long getRetryMaxDelay() {
+        return retryMaxDelay;
+    }
+
+    public void setRetryMaxDelay(final Long retryMaxDelay) {
+        this.retryMaxDelay = retryMaxDelay;
+    }
+
+    public Long getRetryMaxElapsed() {
+        return retryMaxElapsed;
+    }
+
+    public void setRetryMaxElapsed(final Long retryMaxElapsed) {
+        this.retryMaxElapsed = retryMaxElapsed;
+    }
+
+    public Boolean getProactiveTokenRefresh() {
+        return proactiveTokenRefresh;
+    }
+
+    public void setProactiveTokenRefresh(final Boolean proactiveTokenRefresh) {
+        this.proactiveTokenRefresh = proactiveTokenRefresh;
+    }
+
+    public Long getTokenRefreshMargin() {
+        return tokenRefreshMargin;
+    }
+
+    public void setTokenRefreshMargin(final Long tokenRefreshMargin) {
+        this.tokenRefreshMargin = tokenRefreshMargin;
+    }
+
+    public Long getTokenRefreshJitter() {
+        return tokenRefreshJitter;
+    }
+
+    public void setTokenRefreshJitter(final Long tokenRefreshJitter) {
+        this.tokenRefreshJitter = tokenRefreshJitter;
+    }
+
+    public Integer getCredentialsCacheSize() {
+        return credentialsCacheSize;
+    }
+
+    public void setCredentialsCacheSize(final Integer credentialsCacheSize) {
+        this.credentialsCacheSize = credentialsCacheSize;
+    }
+
+    public Long getCredentialsCacheTtl() {
+        return credentialsCacheTtl;
+    }
+
+    public void setCredentialsCacheTtl(final Long credentialsCacheTtl) {
+        this.credentialsCacheTtl = credentialsCacheTtl;
+    }
+
+    public Integer getMaxClients() {
+        return maxClients;
+    }
+
+    public void setMaxClients(final Integer maxClients) {
+        this.maxClients = maxClients;
+    }
+
+    public Long getClientIdleTimeout() {
+        return clientIdleTimeout;
+    }
+
+    public void setClientIdleTimeout(final Long clientIdleTimeout) {
+        this.clientIdleTimeout = clientIdleTimeout;
+    }
+
+    public Integer getAsyncThreads() {
+        return asyncThreads;
+    }
+
+    public void setAsyncThreads(final Integer asyncThreads) {
+        this.asyncThreads = asyncThreads;
+    }
+
+    public Integer getAsyncQueueSize() {
+        return asyncQueueSize;
+    }
+
+    public void setAsyncQueueSize(final Integer asyncQueueSize) {
+        this.asyncQueueSize = asyncQueueSize;
+    }
+
+    public Boolean getCollapseContactReads() {
+        return collapseContactReads;
+    }
+
+    public void setCollapseContactReads(final Boolean collapseContactReads) {
+        this.collapseContactReads = collapseContactReads;
+    }
+
+    public Long getCollapseWindow() {
+        return collapseWindow;
+    }
+
+    public void setCollapseWindow(final Long collapseWindow) {
+        this.collapseWindow = collapseWindow;
+    }
+
+    public Integer getCollapseMaxKeys() {
+        return collapseMaxKeys;
+    }
+
+    public void setCollapseMaxKeys(final Integer collapseMaxKeys) {
+        this.collapseMaxKeys = collapseMaxKeys;
+    }
+
+    public Integer getContactCacheSize() {
+        return contactCacheSize;
+    }
+
+    public void setContactCacheSize(final Integer contactCacheSize) {
+        this.contactCacheSize = contactCacheSize;
+    }
+
+    public Long getContactCacheTtl() {
+        return contactCacheTtl;
+    }
+
+    public void setContactCacheTtl(final Long contactCacheTtl) {
+        this.contactCacheTtl = contactCacheTtl;
+    }
+
+    public Long getContactCacheStaleWhileRevalidate() {
+        return contactCacheStaleWhileRevalidate;
+    }
+
+    public void setContactCacheStaleWhileRevalidate(final Long contactCacheStaleWhileRevalidate) {
+        this.contactCacheStaleWhileRevalidate = contactCacheStaleWhileRevalidate;
+    }
+
+    public Long getPropertySchemaCacheTtl() {
+        return propertySchemaCacheTtl;
+    }
+
+    public void setPropertySchemaCacheTtl(final Long propertySchemaCacheTtl) {
+        this.propertySchemaCacheTtl = propertySchemaCacheTtl;
+    }
+
+    public Long getPropertySchemaCacheStaleWhileRevalidate() {
+        return propertySchemaCacheStaleWhileRevalidate;
+    }
+
+    public void setPropertySchemaCacheStaleWhileRevalidate(final Long propertySchemaCacheStaleWhileRevalidate) {
+        this.propertySchemaCacheStaleWhileRevalidate = propertySchemaCacheStaleWhileRevalidate;
+    }
+
+    public Integer getPropertySchemaCacheSize() {
+        return propertySchemaCacheSize;
+    }
+
+    public void setPropertySchemaCacheSize(final Integer propertySchemaCacheSize) {
+        this.propertySchemaCacheSize = propertySchemaCacheSize;
+    }
+
+    public String getApiUrl() {
+        return apiUrl;
+    }
+
+    public void setApiUrl(final String apiUrl) {
+        this.apiUrl = apiUrl;
+    }
+
+    public Boolean getMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public void setMetricsEnabled(final Boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    public String getMetricsJmxName() {
+        return metricsJmxName;
+    }
+
+    public void setMetricsJmxName(final String metricsJmxName) {
+        this.metricsJmxName = metricsJmxName;
+    }
+
+    public Boolean getAdaptiveThrottling() {
+        return adaptiveThrottling;
+    }
+
+    public void setAdaptiveThrottling(final Boolean adaptiveThrottling) {
+        this.adaptiveThrottling = adaptiveThrottling;
+    }
+
+    public Long getAdaptiveThrottlingMaxDelay() {
+        return adaptiveThrottlingMaxDelay;
+    }
+
+    public void setAdaptiveThrottlingMaxDelay(final Long adaptiveThrottlingMaxDelay) {
+        this.adaptiveThrottlingMaxDelay = adaptiveThrottlingMaxDelay;
+    }
+
+    public Boolean getAdaptiveConcurrency() {
+        return adaptiveConcurrency;
+    }
+
+    public void setAdaptiveConcurrency(final Boolean adaptiveConcurrency) {
+        this.adaptiveConcurrency = adaptiveConcurrency;
+    }
+
+    public Integer getAdaptiveConcurrencyInitialLimit() {
+        return adaptiveConcurrencyInitialLimit;
+    }
+
+    public void setAdaptiveConcurrencyInitialLimit(final Integer adaptiveConcurrencyInitialLimit) {
+        this.adaptiveConcurrencyInitialLimit = adaptiveConcurrencyInitialLimit;
+    }
+
+    public Integer getAdaptiveConcurrencyMaxLimit() {
+        return adaptiveConcurrencyMaxLimit;
+    }
+
+    public void setAdaptiveConcurrencyMaxLimit(final Integer adaptiveConcurrencyMaxLimit) {
+        this.adaptiveConcurrencyMaxLimit = adaptiveConcurrencyMaxLimit;
+    }
+
+    public Long getAdaptiveConcurrencyMaxWait() {
+        return adaptiveConcurrencyMaxWait;
+    }
+
+    public void setAdaptiveConcurrencyMaxWait(final Long adaptiveConcurrencyMaxWait) {
+        this.adaptiveConcurrencyMaxWait = adaptiveConcurrencyMaxWait;
+    }
 }
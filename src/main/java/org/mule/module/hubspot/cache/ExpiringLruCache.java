@@ -0,0 +1,249 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.cache;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-memory cache whose entries expire after a time to live.
+ * <p>
+ * The keys are spread among several segments, each one an access ordered map guarded by its own lock, so threads working with different keys rarely contend. When a segment
+ * is full its least recently used entry is evicted. Each segment holds at least {@link #MIN_SEGMENT_SIZE} entries, so a small cache is a single segment whose least recently
+ * used entry is always the one evicted.
+ */
+public class ExpiringLruCache<K, V> {
+
+    static final private int MAX_SEGMENTS = 16;
+    static final private int MIN_SEGMENT_SIZE = 64;
+
+    private final Segment<K, V>[] segments;
+    private final long ttlNanos;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxSize
+     *            Maximum number of entries. It must be greater than zero
+     * @param ttlMillis
+     *            Time since an entry is stored after which it expires. Zero or less means that the entries never expire
+     */
+    @SuppressWarnings("unchecked")
+    public ExpiringLruCache(final int maxSize, final long ttlMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be greater than zero");
+        }
+
+        final int segmentCount = Math.max(1, Math.min(MAX_SEGMENTS, maxSize / MIN_SEGMENT_SIZE));
+        segments = new Segment[segmentCount];
+        for (int x = 0; x < segmentCount; x++) {
+            // The remainder is spread so the total capacity is exactly maxSize
+            segments[x] = new Segment<K, V>(this, maxSize / segmentCount + (x < maxSize % segmentCount ? 1 : 0));
+        }
+
+        ttlNanos = ttlMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(ttlMillis) : 0;
+    }
+
+    /**
+     * @return The value of the key, or null if it is not cached or it has expired
+     */
+    public V get(final K key) {
+        final V value = segmentFor(key).get(key, nanoTime());
+        if (value != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return value;
+    }
+
+    public void put(final K key, final V value) {
+        if (value == null) {
+            remove(key);
+            return;
+        }
+        segmentFor(key).put(key, value, ttlNanos > 0 ? nanoTime() + ttlNanos : 0);
+    }
+
+    /**
+     * Stores the value unless the key already has one that has not expired
+     *
+     * @return The value that the key already had, or null if the given one was stored
+     */
+    public V putIfAbsent(final K key, final V value) {
+        return segmentFor(key).putIfAbsent(key, value, nanoTime(), ttlNanos);
+    }
+
+    public void remove(final K key) {
+        segmentFor(key).remove(key);
+    }
+
+    /**
+     * Removes the key only if its value is the given one
+     *
+     * @return True if it was removed
+     */
+    public boolean remove(final K key, final V value) {
+        return segmentFor(key).remove(key, value);
+    }
+
+    /**
+     * @return A copy of the entries that have not expired, which does not change their order of use
+     */
+    public Map<K, V> snapshot() {
+        final Map<K, V> snapshot = new HashMap<K, V>();
+        final long now = nanoTime();
+        for (final Segment<K, V> segment : segments) {
+            segment.copyTo(snapshot, now);
+        }
+        return snapshot;
+    }
+
+    public void clear() {
+        for (final Segment<K, V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * @return The number of entries, including the expired ones that have not been removed yet
+     */
+    public int size() {
+        int size = 0;
+        for (final Segment<K, V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Called when the least recently used entry of a segment is evicted to make room for another one, holding the lock of the segment. It does nothing by default
+     */
+    protected void evicted(final K key, final V value) {
+    }
+
+    /**
+     * @return The current time in nanoseconds with which the entries expire. Overridden by the tests to control their age
+     */
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private Segment<K, V> segmentFor(final K key) {
+        int h = key.hashCode();
+        // Spreads the bits of the hash, so keys with similar hashes do not end in the same segment
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return segments[(h & 0x7fffffff) % segments.length];
+    }
+
+    static private class CacheEntry<V> {
+
+        private final V value;
+        private final long expiresAt;
+
+        CacheEntry(final V value, final long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    static private class Segment<K, V> {
+
+        private final LinkedHashMap<K, CacheEntry<V>> map;
+
+        Segment(final ExpiringLruCache<K, V> cache, final int maxSize) {
+            map = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<K, CacheEntry<V>> eldest) {
+                    if (size() > maxSize) {
+                        cache.evictions.incrementAndGet();
+                        cache.evicted(eldest.getKey(), eldest.getValue().value);
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized V get(final K key, final long now) {
+            final CacheEntry<V> entry = map.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt != 0 && now - entry.expiresAt >= 0) {
+                map.remove(key);
+                return null;
+            }
+            return entry.value;
+        }
+
+        synchronized void put(final K key, final V value, final long expiresAt) {
+            map.put(key, new CacheEntry<V>(value, expiresAt));
+        }
+
+        synchronized V putIfAbsent(final K key, final V value, final long now, final long ttlNanos) {
+            final V current = get(key, now);
+            if (current != null) {
+                return current;
+            }
+            map.put(key, new CacheEntry<V>(value, ttlNanos > 0 ? now + ttlNanos : 0));
+            return null;
+        }
+
+        synchronized void remove(final K key) {
+            map.remove(key);
+        }
+
+        synchronized boolean remove(final K key, final V value) {
+            final CacheEntry<V> entry = map.get(key);
+            if (entry != null && entry.value == value) {
+                map.remove(key);
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void copyTo(final Map<K, V> snapshot, final long now) {
+            // Iterating does not change the access order, unlike get
+            for (final Map.Entry<K, CacheEntry<V>> entry : map.entrySet()) {
+                if (entry.getValue().expiresAt == 0 || now - entry.getValue().expiresAt < 0) {
+                    snapshot.put(entry.getKey(), entry.getValue().value);
+                }
+            }
+        }
+
+        synchronized void clear() {
+            map.clear();
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+    }
+}
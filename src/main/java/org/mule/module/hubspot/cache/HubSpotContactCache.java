@@ -0,0 +1,319 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.cache;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mule.module.hubspot.client.HubSpotClientUtils;
+import org.mule.module.hubspot.exception.HubSpotConnectorAccessTokenExpiredException;
+import org.mule.module.hubspot.exception.HubSpotConnectorException;
+import org.mule.module.hubspot.exception.HubSpotConnectorNoAccessTokenException;
+import org.mule.module.hubspot.model.contact.Contact;
+import org.mule.module.hubspot.serialization.ContactCopier;
+
+/**
+ * Read-through cache of contacts, by portal and vid, with secondary keys by email and user token that point to the vid. The users of a portal share its contacts, so a
+ * change made by any of them removes the contact for all of them.
+ * <p>
+ * A contact is fresh during the time to live after it is loaded. After that, and during the stale window, it is still returned but it is loaded again in the background (stale
+ * while revalidate); after the stale window it is loaded again by the caller. The contacts changed through this connector are removed from the cache, so the next lookup gets
+ * the change; the changes made elsewhere are seen once the time to live expires.
+ * <p>
+ * Every invalidation bumps a generation of the portal. A load only caches its contact if no invalidation of the portal happened while it was in progress, so a contact read
+ * before a write cannot be cached after the write has removed it.
+ * <p>
+ * The cache keeps its own copy of each contact and returns a new copy on every hit, so a flow that changes the contact it gets (e.g. to update it) does not change what the
+ * other flows get.
+ */
+public class HubSpotContactCache implements HubSpotContactCacheMXBean {
+
+    static final private Log logger = LogFactory.getLog(HubSpotContactCache.class);
+
+    /**
+     * Gets a contact from HubSpot when it is not in the cache
+     */
+    public interface ContactLoader {
+
+        Contact load() throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException;
+    }
+
+    private final ExpiringLruCache<String, CachedContact> contacts;
+    // The secondary keys map to the primary key of the contact
+    private final ExpiringLruCache<String, String> secondaryKeys;
+
+    // Generations of the invalidations, by a hash of the portal. Several portals can share one, which only means that some loads are not cached
+    static final private int GENERATIONS = 64;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATIONS);
+
+    private final long ttlNanos;
+    private final ExecutorService refreshExecutor;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param maxSize
+     *            Maximum number of contacts cached
+     * @param ttlMillis
+     *            Time after which a cached contact is loaded again
+     * @param staleMillis
+     *            Time after the time to live during which the cached contact is returned while it is loaded again in the background. Zero disables it
+     * @param refreshExecutor
+     *            Executor of the background loads. It must not be the executor that sends the requests of the loaders: a background load waits for its requests, so it would
+     *            hold the threads that should send them
+     */
+    public HubSpotContactCache(final int maxSize, final long ttlMillis, final long staleMillis, final ExecutorService refreshExecutor) {
+        final long ttl = Math.max(ttlMillis, 1);
+        final long hardTtl = ttl + Math.max(staleMillis, 0);
+        contacts = newCache(maxSize, hardTtl);
+        // An email and a user token per contact usually
+        secondaryKeys = newCache(maxSize * 2, hardTtl);
+        ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttl);
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    /**
+     * @return A cache whose entries expire with the clock of this one
+     */
+    private <V> ExpiringLruCache<String, V> newCache(final int maxSize, final long ttlMillis) {
+        return new ExpiringLruCache<String, V>(maxSize, ttlMillis) {
+            @Override
+            protected long nanoTime() {
+                return HubSpotContactCache.this.nanoTime();
+            }
+        };
+    }
+
+    /**
+     * @param portal
+     *            The hubId of the portal, shared by all its users, or the userId if it is not known
+     */
+    public Contact getById(final String portal, final String vid, final ContactLoader loader) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+            HubSpotConnectorAccessTokenExpiredException {
+        return get(portal, primaryKey(portal, vid), null, loader);
+    }
+
+    public Contact getByEmail(final String portal, final String email, final ContactLoader loader) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+            HubSpotConnectorAccessTokenExpiredException {
+        final String emailKey = emailKey(portal, email);
+        return get(portal, secondaryKeys.get(emailKey), emailKey, loader);
+    }
+
+    public Contact getByUserToken(final String portal, final String userToken, final ContactLoader loader) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+        final String userTokenKey = userTokenKey(portal, userToken);
+        return get(portal, secondaryKeys.get(userTokenKey), userTokenKey, loader);
+    }
+
+    /**
+     * @param key
+     *            The primary key of the contact, or null if it is not known
+     * @param secondaryKey
+     *            The key by which the contact is looked up, if it is not the vid
+     */
+    private Contact get(final String portal, final String key, final String secondaryKey, final ContactLoader loader) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        final CachedContact cached = key != null ? contacts.get(key) : null;
+        if (cached != null) {
+            if (nanoTime() - cached.loadedAt < ttlNanos) {
+                hits.incrementAndGet();
+                return ContactCopier.copy(cached.contact);
+            }
+            if (refreshExecutor != null) {
+                staleHits.incrementAndGet();
+                refreshInBackground(portal, key, secondaryKey, cached, loader);
+                return ContactCopier.copy(cached.contact);
+            }
+        }
+
+        misses.incrementAndGet();
+        final long generation = generation(portal);
+        final Contact contact = loader.load();
+        put(portal, contact, secondaryKey, generation);
+        return contact;
+    }
+
+    private void refreshInBackground(final String portal, final String key, final String secondaryKey, final CachedContact cached, final ContactLoader loader) {
+        // Only one background load per cached contact
+        if (!cached.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        final long generation = generation(portal);
+        try {
+            refreshExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        put(portal, loader.load(), secondaryKey, generation);
+                    } catch (final Exception e) {
+                        // The stale contact is kept, and the next stale hit loads it again
+                        if (logger.isDebugEnabled()) {
+                            logger.debug(String.format("Cannot refresh the cached contact %s - %s", key, e.getMessage()));
+                        }
+                    } finally {
+                        // The put skips the contact if the portal had an invalidation meanwhile, which keeps the stale one cached
+                        cached.refreshing.set(false);
+                    }
+                }
+            });
+        } catch (final RuntimeException e) {
+            // The executor is stopped
+            cached.refreshing.set(false);
+        }
+    }
+
+    /**
+     * Caches a contact, with its email and the secondary key by which it was looked up
+     */
+    public void put(final String portal, final Contact contact, final String secondaryKey) {
+        put(portal, contact, secondaryKey, generation(portal));
+    }
+
+    /**
+     * Caches a contact loaded when the generation of the portal was the given one. Nothing is cached if the portal has had an invalidation since then
+     */
+    private void put(final String portal, final Contact contact, final String secondaryKey, final long generation) {
+        if (contact == null || contact.getVid() == null || generation(portal) != generation) {
+            return;
+        }
+        final String key = primaryKey(portal, contact.getVid());
+        // The caller keeps the contact it passed, so a copy is cached
+        contacts.put(key, new CachedContact(ContactCopier.copy(contact), nanoTime()));
+        if (secondaryKey != null) {
+            secondaryKeys.put(secondaryKey, key);
+        }
+        if (contact.getContactProperties() != null && contact.getContactProperties().getEmail() != null) {
+            secondaryKeys.put(emailKey(portal, contact.getContactProperties().getEmail()), key);
+        }
+
+        // An invalidation that ran between the check and the put may have removed the contact before it was stored
+        if (generation(portal) != generation) {
+            contacts.remove(key);
+        }
+    }
+
+    private long generation(final String portal) {
+        return generations.get(generationIndex(portal));
+    }
+
+    /**
+     * Bumped before removing the contact, so a load in progress either sees the new generation or has stored its contact before it is removed
+     */
+    private void bumpGeneration(final String portal) {
+        generations.incrementAndGet(generationIndex(portal));
+    }
+
+    /**
+     * @return The current time in nanoseconds with which the age of the contacts is measured. Overridden by the tests to control it
+     */
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    static private int generationIndex(final String portal) {
+        return portal != null ? (portal.hashCode() & 0x7fffffff) % GENERATIONS : 0;
+    }
+
+    /**
+     * Removes a contact changed or deleted through this connector
+     */
+    public void invalidate(final String portal, final String vid) {
+        if (vid != null) {
+            invalidations.incrementAndGet();
+            bumpGeneration(portal);
+            contacts.remove(primaryKey(portal, vid));
+        }
+    }
+
+    /**
+     * Removes the contact with the email, if it is cached. Its vid may not be known, so its secondary key is removed
+     */
+    public void invalidateEmail(final String portal, final String email) {
+        if (email != null) {
+            invalidations.incrementAndGet();
+            bumpGeneration(portal);
+            final String key = secondaryKeys.get(emailKey(portal, email));
+            secondaryKeys.remove(emailKey(portal, email));
+            if (key != null) {
+                contacts.remove(key);
+            }
+        }
+    }
+
+    public void clear() {
+        contacts.clear();
+        secondaryKeys.clear();
+    }
+
+    static private String primaryKey(final String portal, final String vid) {
+        return portal + ":vid:" + vid;
+    }
+
+    static private String emailKey(final String portal, final String email) {
+        return portal + ":email:" + HubSpotClientUtils.emailKey(email);
+    }
+
+    static private String userTokenKey(final String portal, final String userToken) {
+        return portal + ":utk:" + userToken;
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getStaleHits() {
+        return staleHits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    @Override
+    public long getEvictions() {
+        return contacts.getEvictions();
+    }
+
+    public int size() {
+        return contacts.size();
+    }
+
+    @Override
+    public int getContacts() {
+        return size();
+    }
+
+    static private class CachedContact {
+
+        private final Contact contact;
+        private final long loadedAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        CachedContact(final Contact contact, final long loadedAt) {
+            this.contact = contact;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.cache;
+
+/**
+ * Management interface of {@link HubSpotContactCache}, published through JMX
+ */
+public interface HubSpotContactCacheMXBean {
+
+    /**
+     * @return The lookups answered with a fresh contact
+     */
+    long getHits();
+
+    /**
+     * @return The lookups answered with a stale contact while it was loaded again in the background
+     */
+    long getStaleHits();
+
+    /**
+     * @return The lookups that had to load the contact
+     */
+    long getMisses();
+
+    long getInvalidations();
+
+    long getEvictions();
+
+    /**
+     * @return The number of contacts cached
+     */
+    int getContacts();
+}
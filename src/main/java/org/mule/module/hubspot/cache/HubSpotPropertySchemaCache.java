@@ -0,0 +1,259 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.cache;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
+import org.mule.module.hubspot.exception.HubSpotConnectorAccessTokenExpiredException;
+import org.mule.module.hubspot.exception.HubSpotConnectorException;
+import org.mule.module.hubspot.exception.HubSpotConnectorNoAccessTokenException;
+import org.mule.module.hubspot.model.contactproperty.CustomContactProperty;
+import org.mule.module.hubspot.model.contactproperty.CustomContactPropertyGroup;
+
+/**
+ * Read-through cache of the contact properties and property groups defined in each portal.
+ * <p>
+ * The definitions are fresh during the time to live after they are loaded. After that, and during the stale window, they are still returned but they are loaded again in the
+ * background; after the stale window they are loaded again by the caller. Creating, updating or deleting a property or a group through this connector discards all the cached
+ * definitions of the portal, since a group includes its properties; the changes made elsewhere are seen once the time to live expires.
+ * <p>
+ * The definitions are kept as JSON and bound again on every hit, so a flow that changes the definitions it gets does not change what the other flows get.
+ */
+public class HubSpotPropertySchemaCache implements HubSpotPropertySchemaCacheMXBean {
+
+    static final private Log logger = LogFactory.getLog(HubSpotPropertySchemaCache.class);
+
+    static final private String ALL_PROPERTIES = "all";
+
+    static final private ObjectMapper jacksonMapper = new ObjectMapper();
+    static final private TypeReference<List<CustomContactProperty>> PROPERTIES_TYPE = new TypeReference<List<CustomContactProperty>>() {
+    };
+    static final private TypeReference<CustomContactPropertyGroup> GROUP_TYPE = new TypeReference<CustomContactPropertyGroup>() {
+    };
+
+    /**
+     * Gets a definition from HubSpot when it is not in the cache
+     */
+    public interface SchemaLoader<T> {
+
+        T load() throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException;
+    }
+
+    // The definitions of each portal, by portal key (the hubId, or the userId if it is not known). Invalidating a portal removes its entry, so a load that finishes afterwards stores into a detached one
+    private final ExpiringLruCache<String, PortalSchema> portals;
+
+    private final long ttlNanos;
+    private final long hardTtlNanos;
+    private final ExecutorService refreshExecutor;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param maxPortals
+     *            Maximum number of portals whose definitions are cached
+     * @param ttlMillis
+     *            Time after which the cached definitions are loaded again
+     * @param staleMillis
+     *            Time after the time to live during which the cached definitions are returned while they are loaded again in the background. Zero disables it
+     * @param refreshExecutor
+     *            Executor of the background loads. It must not be the executor that sends the requests of the loaders: a background load waits for its requests, so it would
+     *            hold the threads that should send them
+     */
+    public HubSpotPropertySchemaCache(final int maxPortals, final long ttlMillis, final long staleMillis, final ExecutorService refreshExecutor) {
+        final long ttl = Math.max(ttlMillis, 1);
+        portals = new ExpiringLruCache<String, PortalSchema>(maxPortals, 0);
+        ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttl);
+        hardTtlNanos = TimeUnit.MILLISECONDS.toNanos(ttl + Math.max(staleMillis, 0));
+        this.refreshExecutor = staleMillis > 0 ? refreshExecutor : null;
+    }
+
+    /**
+     * @param portal
+     *            The hubId of the portal, shared by all its users, or the userId if it is not known
+     */
+    public List<CustomContactProperty> getAllCustomProperties(final String portal, final SchemaLoader<List<CustomContactProperty>> loader) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+        return get(portal, portalFor(portal).properties, "properties", ALL_PROPERTIES, PROPERTIES_TYPE, loader);
+    }
+
+    /**
+     * @param portal
+     *            The hubId of the portal, shared by all its users, or the userId if it is not known
+     */
+    public CustomContactPropertyGroup getCustomPropertyGroup(final String portal, final String groupName, final SchemaLoader<CustomContactPropertyGroup> loader)
+            throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+        return get(portal, portalFor(portal).groups, "group " + groupName, groupName, GROUP_TYPE, loader);
+    }
+
+    private <T> T get(final String portal, final ConcurrentMap<String, CachedValue> values, final String description, final String key, final TypeReference<T> type,
+            final SchemaLoader<T> loader) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        final CachedValue cached = values.get(key);
+        if (cached != null) {
+            final long age = nanoTime() - cached.loadedAt;
+            if (age < ttlNanos) {
+                hits.incrementAndGet();
+                return bind(cached, type);
+            }
+            if (refreshExecutor != null && age < hardTtlNanos) {
+                staleHits.incrementAndGet();
+                refreshInBackground(portal + " " + description, values, key, cached, loader);
+                return bind(cached, type);
+            }
+        }
+
+        misses.incrementAndGet();
+        final T value = loader.load();
+        if (value != null) {
+            values.put(key, new CachedValue(serialize(value), nanoTime()));
+        }
+        return value;
+    }
+
+    static private byte[] serialize(final Object value) throws HubSpotConnectorException {
+        try {
+            return jacksonMapper.writeValueAsBytes(value);
+        } catch (final IOException e) {
+            throw new HubSpotConnectorException("Cannot generate the Json of the cached definitions", e);
+        }
+    }
+
+    static private <T> T bind(final CachedValue cached, final TypeReference<T> type) throws HubSpotConnectorException {
+        try {
+            return jacksonMapper.<T> readValue(cached.json, type);
+        } catch (final IOException e) {
+            throw new HubSpotConnectorException("Cannot read the Json of the cached definitions", e);
+        }
+    }
+
+    private <T> void refreshInBackground(final String description, final ConcurrentMap<String, CachedValue> values, final String key, final CachedValue cached,
+            final SchemaLoader<T> loader) {
+        // Only one background load per cached value
+        if (!cached.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final T value = loader.load();
+                        if (value != null) {
+                            // Not stored if the value was replaced or removed meanwhile
+                            values.replace(key, cached, new CachedValue(serialize(value), nanoTime()));
+                        }
+                    } catch (final Exception e) {
+                        // The stale value is kept until it expires; the next lookup after that loads it again
+                        if (logger.isDebugEnabled()) {
+                            logger.debug(String.format("Cannot refresh the cached %s - %s", description, e.getMessage()));
+                        }
+                        cached.refreshing.set(false);
+                    }
+                }
+            });
+        } catch (final RuntimeException e) {
+            // The executor is stopped
+            cached.refreshing.set(false);
+        }
+    }
+
+    /**
+     * @return The current time in nanoseconds with which the age of the definitions is measured. Overridden by the tests to control it
+     */
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    private PortalSchema portalFor(final String portal) {
+        PortalSchema schema = portals.get(portal);
+        if (schema == null) {
+            // Two threads may create it at the same time; the last one stored wins and the loads of the other are only lost from the cache
+            schema = new PortalSchema();
+            portals.put(portal, schema);
+        }
+        return schema;
+    }
+
+    /**
+     * Discards the cached definitions of a portal, after a property or a group is changed through this connector
+     */
+    public void invalidate(final String portal) {
+        invalidations.incrementAndGet();
+        portals.remove(portal);
+    }
+
+    public void clear() {
+        portals.clear();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getStaleHits() {
+        return staleHits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    /**
+     * @return The number of portals with cached definitions
+     */
+    public int size() {
+        return portals.size();
+    }
+
+    @Override
+    public int getPortals() {
+        return size();
+    }
+
+    static private class PortalSchema {
+
+        // A single entry, so it is refreshed in the same way as the groups
+        private final ConcurrentMap<String, CachedValue> properties = new ConcurrentHashMap<String, CachedValue>();
+        private final ConcurrentMap<String, CachedValue> groups = new ConcurrentHashMap<String, CachedValue>();
+    }
+
+    static private class CachedValue {
+
+        // The JSON of the definitions, bound again on every hit
+        private final byte[] json;
+        private final long loadedAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        CachedValue(final byte[] json, final long loadedAt) {
+            this.json = json;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
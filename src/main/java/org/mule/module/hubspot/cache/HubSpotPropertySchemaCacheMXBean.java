@@ -0,0 +1,36 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.cache;
+
+/**
+ * Management interface of {@link HubSpotPropertySchemaCache}, published through JMX
+ */
+public interface HubSpotPropertySchemaCacheMXBean {
+
+    /**
+     * @return The lookups answered with fresh definitions
+     */
+    long getHits();
+
+    /**
+     * @return The lookups answered with stale definitions while they were loaded again in the background
+     */
+    long getStaleHits();
+
+    /**
+     * @return The lookups that had to load the definitions
+     */
+    long getMisses();
+
+    long getInvalidations();
+
+    /**
+     * @return The number of portals with cached definitions
+     */
+    int getPortals();
+}
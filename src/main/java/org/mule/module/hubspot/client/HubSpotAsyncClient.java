@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.client;
+
+import java.util.List;
+
+import org.mule.module.hubspot.model.contact.Contact;
+import org.mule.module.hubspot.model.contact.ContactBatchItem;
+import org.mule.module.hubspot.model.contact.ContactBatchResponse;
+import org.mule.module.hubspot.model.contact.ContactDeleted;
+import org.mule.module.hubspot.model.contact.ContactList;
+import org.mule.module.hubspot.model.contact.ContactProperties;
+import org.mule.module.hubspot.model.contact.ContactQuery;
+import org.mule.module.hubspot.model.contact.ContactStatistics;
+import org.mule.module.hubspot.model.contactproperty.CustomContactProperty;
+import org.mule.module.hubspot.model.contactproperty.CustomContactPropertyGroup;
+import org.mule.module.hubspot.model.email.EmailSubscription;
+import org.mule.module.hubspot.model.email.EmailSubscriptionStatus;
+import org.mule.module.hubspot.model.email.EmailSubscriptionStatusResult;
+import org.mule.module.hubspot.model.email.EmailSubscriptionStatusStatuses;
+import org.mule.module.hubspot.model.list.HubSpotList;
+import org.mule.module.hubspot.model.list.HubSpotListAddContactToListResponse;
+import org.mule.module.hubspot.model.list.HubSpotListFilters;
+import org.mule.module.hubspot.model.list.HubSpotListLists;
+import org.mule.module.hubspot.model.list.HubSpotNewList;
+
+/**
+ * Future-based companion of {@link HubSpotClient}. Each operation returns immediately and the caller collects the result from the {@link HubSpotFuture} whenever it
+ * needs it, so it does not keep its own thread busy during the HTTP round trip. This is not non-blocking I/O: the request is sent by a thread of a bounded pool of the
+ * connector (see {@link org.mule.module.hubspot.client.impl.HubSpotThreadPoolClient}), which is held until HubSpot answers.
+ * <p>
+ * The operations receive the userId instead of the access token: the credentials are looked up when the request is sent and, if the token has expired, it is refreshed and
+ * the request repeated before the future completes.
+ */
+public interface HubSpotAsyncClient {
+
+    public HubSpotFuture<ContactList> getAllContacts(String userId, String count, String contactOffset);
+
+    public HubSpotFuture<ContactList> getRecentContacts(String userId, String count, String timeOffset, String contactOffset);
+
+    public HubSpotFuture<Contact> getContactById(String userId, String contactId);
+
+    public HubSpotFuture<Contact> getContactByEmail(String userId, String contactEmail);
+
+    public HubSpotFuture<Contact> getContactByUserToken(String userId, String contactUserToken);
+
+    public HubSpotFuture<ContactBatchResponse> getContactsByIds(String userId, List<String> contactIds);
+
+    public HubSpotFuture<ContactBatchResponse> getContactsByEmails(String userId, List<String> contactEmails);
+
+    public HubSpotFuture<ContactBatchResponse> getContactsByUserTokens(String userId, List<String> contactUserTokens);
+
+    public HubSpotFuture<ContactQuery> getContactsByQuery(String userId, String query, String count, String offset);
+
+    public HubSpotFuture<ContactDeleted> deleteContact(String userId, String contactId);
+
+    public HubSpotFuture<Void> updateContact(String userId, String contactId, ContactProperties contactProperties);
+
+    public HubSpotFuture<Contact> createContact(String userId, ContactProperties contactProperties);
+
+    public HubSpotFuture<Void> updateContactsBatch(String userId, List<ContactBatchItem> contacts);
+
+    public HubSpotFuture<ContactStatistics> getContactStatistics(String userId);
+
+    public HubSpotFuture<HubSpotListLists> getContactsLists(String userId, String count, String offset);
+
+    public HubSpotFuture<HubSpotList> getContactListById(String userId, String listId);
+
+    public HubSpotFuture<HubSpotListLists> getDynamicContactLists(String userId, String count, String offset);
+
+    public HubSpotFuture<ContactList> getContactsInAList(String userId, String listId, String count, String property, String offset);
+
+    public HubSpotFuture<HubSpotListAddContactToListResponse> addExistingContactInAList(String userId, String listId, String contactId);
+
+    public HubSpotFuture<HubSpotListAddContactToListResponse> addContactsToList(String userId, String listId, List<Integer> contactIds);
+
+    public HubSpotFuture<HubSpotListAddContactToListResponse> removeContactsFromList(String userId, String listId, List<Integer> contactIds);
+
+    public HubSpotFuture<HubSpotList> createContactList(String userId, HubSpotNewList list, List<HubSpotListFilters> filters);
+
+    public HubSpotFuture<EmailSubscription> getEmailSubscriptions(String userId, String hubId);
+
+    public HubSpotFuture<EmailSubscriptionStatus> getEmailSubscriptionStatus(String userId, String hubId, String email);
+
+    public HubSpotFuture<EmailSubscriptionStatusResult> updateEmailSubscriptionStatus(String userId, String hubId, String email, List<EmailSubscriptionStatusStatuses> statuses);
+
+    public HubSpotFuture<EmailSubscriptionStatusResult> updateEmailSubscriptionStatusUnsubscribeFromAll(String userId, String hubId, String email);
+
+    public HubSpotFuture<List<CustomContactProperty>> getAllCustomProperties(String userId);
+
+    public HubSpotFuture<CustomContactProperty> createCustomProperty(String userId, CustomContactProperty contactProperty);
+
+    public HubSpotFuture<CustomContactProperty> updateCustomProperty(String userId, String propertyName, CustomContactProperty contactProperty);
+
+    public HubSpotFuture<Void> deleteCustomProperty(String userId, String contactPropertyName);
+
+    public HubSpotFuture<CustomContactPropertyGroup> getCustomPropertyGroup(String userId, String groupName);
+
+    public HubSpotFuture<CustomContactPropertyGroup> createCustomPropertyGroup(String userId, CustomContactPropertyGroup customContactPropertyGroup);
+
+    public HubSpotFuture<CustomContactPropertyGroup> updateCustomPropertyGroup(String userId, String groupName, CustomContactPropertyGroup customContactPropertyGroup);
+
+    public HubSpotFuture<Void> deleteCustomPropertyGroup(String userId, String groupName);
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.client;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.mule.module.hubspot.exception.HubSpotConnectorAccessTokenExpiredException;
+import org.mule.module.hubspot.exception.HubSpotConnectorException;
+import org.mule.module.hubspot.exception.HubSpotConnectorNoAccessTokenException;
+
+/**
+ * Sends the chunks of a bulk operation with the {@link HubSpotAsyncClient}, keeping at most the given number of them in progress at the same time, so a big operation does
+ * not fill the queue of the future-based client and get its chunks rejected without being sent. The chunks are collected in the order they were sent; if collecting one
+ * fails the chunks in progress are cancelled and the failure is thrown.
+ */
+public class HubSpotChunkedExecution {
+
+    /**
+     * Sends a chunk and collects its result
+     */
+    public interface ChunkTask<C, R> {
+
+        HubSpotFuture<R> send(C chunk);
+
+        /**
+         * Waits for the result of a chunk sent by {@link #send(Object)} and records it
+         */
+        void collect(C chunk, HubSpotFuture<R> future) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException;
+    }
+
+    private HubSpotChunkedExecution() {
+    }
+
+    /**
+     * @param maxInProgress
+     *            The maximum number of chunks sent at the same time. If it is less than one, one is used
+     * @throws HubSpotConnectorException
+     *             If a chunk fails
+     * @throws HubSpotConnectorNoAccessTokenException
+     *             If the user does not have an Access Token
+     * @throws HubSpotConnectorAccessTokenExpiredException
+     *             If the token expired and it could not be refreshed
+     */
+    static public <C, R> void execute(final List<C> chunks, final int maxInProgress, final ChunkTask<C, R> task) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        final int window = Math.max(maxInProgress, 1);
+        final LinkedList<HubSpotFuture<R>> inProgress = new LinkedList<HubSpotFuture<R>>();
+        int next = 0;
+        int collected = 0;
+        boolean completed = false;
+        try {
+            while (collected < chunks.size()) {
+                while (next < chunks.size() && inProgress.size() < window) {
+                    inProgress.add(task.send(chunks.get(next++)));
+                }
+                task.collect(chunks.get(collected++), inProgress.removeFirst());
+            }
+            completed = true;
+        } finally {
+            // If a chunk failed the rest are not needed anymore
+            if (!completed) {
+                for (final HubSpotFuture<R> future : inProgress) {
+                    future.cancel(true);
+                }
+            }
+        }
+    }
+}
@@ -15,6 +15,8 @@ import org.mule.module.hubspot.exception.HubSpotConnectorAccessTokenExpiredExcep
 import org.mule.module.hubspot.exception.HubSpotConnectorException;
 import org.mule.module.hubspot.exception.HubSpotConnectorNoAccessTokenException;
 import org.mule.module.hubspot.model.contact.Contact;
+import org.mule.module.hubspot.model.contact.ContactBatchItem;
+import org.mule.module.hubspot.model.contact.ContactBatchResponse;
 import org.mule.module.hubspot.model.contact.ContactDeleted;
 import org.mule.module.hubspot.model.contact.ContactList;
 import org.mule.module.hubspot.model.contact.ContactProperties;
@@ -51,8 +53,17 @@ public interface HubSpotClient {
     public Contact getContactByUserToken(String accessToken, String userId, String contactUserToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
             HubSpotConnectorAccessTokenExpiredException;
 
-    public ContactQuery getContactsByQuery(String accessToken, String userId, String query, String count) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
-            HubSpotConnectorAccessTokenExpiredException;
+    public ContactBatchResponse getContactsByIds(String accessToken, String userId, List<String> contactIds) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException;
+
+    public ContactBatchResponse getContactsByEmails(String accessToken, String userId, List<String> contactEmails) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException;
+
+    public ContactBatchResponse getContactsByUserTokens(String accessToken, String userId, List<String> contactUserTokens) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException;
+
+    public ContactQuery getContactsByQuery(String accessToken, String userId, String query, String count, String offset) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException;
 
     public ContactDeleted deleteContact(String accessToken, String userId, String contactId) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
             HubSpotConnectorAccessTokenExpiredException;
@@ -63,6 +74,9 @@ public interface HubSpotClient {
     public Contact createContact(String accessToken, String userId, ContactProperties contactProperties) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
             HubSpotConnectorAccessTokenExpiredException;
 
+    public void updateContactsBatch(String accessToken, String userId, List<ContactBatchItem> contacts) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException;
+
     public ContactStatistics getContactStatistics(String accessToken, String userId) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
             HubSpotConnectorAccessTokenExpiredException;
 
@@ -81,6 +95,12 @@ public interface HubSpotClient {
     public HubSpotListAddContactToListResponse addExistingContactInAList(String accessToken, String userId, String listId, String contactId) throws HubSpotConnectorException,
             HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException;
 
+    public HubSpotListAddContactToListResponse addContactsToList(String accessToken, String userId, String listId, List<Integer> contactIds)
+            throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException;
+
+    public HubSpotListAddContactToListResponse removeContactsFromList(String accessToken, String userId, String listId, List<Integer> contactIds)
+            throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException;
+
     public HubSpotList createContactList(String accessToken, String userId, HubSpotNewList list, List<HubSpotListFilters> filters) throws HubSpotConnectorException,
             HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException;
 
@@ -122,4 +142,13 @@ public interface HubSpotClient {
 
     public void refreshToken(HubSpotCredentialsManager objectStoreCredentials, String userId) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
             HubSpotConnectorAccessTokenExpiredException;
+
+    /**
+     * Refreshes the access token, unless another thread has already replaced the expired one. Concurrent refreshes for the same user are collapsed into one
+     * 
+     * @param expiredAccessToken
+     *            The access token that HubSpot rejected
+     */
+    public void refreshToken(HubSpotCredentialsManager objectStoreCredentials, String userId, String expiredAccessToken) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException;
 }
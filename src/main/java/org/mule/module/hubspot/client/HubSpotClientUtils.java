@@ -7,29 +7,49 @@
  */
 package org.mule.module.hubspot.client;
 
-import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.codehaus.jackson.JsonEncoding;
 import org.codehaus.jackson.JsonGenerationException;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.JsonParseException;
 import org.codehaus.jackson.map.JsonMappingException;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.mule.module.hubspot.client.policy.HubSpotRateLimitBudget;
 import org.mule.module.hubspot.exception.HubSpotConnectorAccessTokenExpiredException;
 import org.mule.module.hubspot.exception.HubSpotConnectorException;
 import org.mule.module.hubspot.exception.HubSpotConnectorNoAccessTokenException;
+import org.mule.module.hubspot.exception.HubSpotConnectorResponseException;
+import org.mule.module.hubspot.metrics.HubSpotMetrics;
 import org.mule.module.hubspot.model.HubSpotWebResourceMethods;
 import org.mule.module.hubspot.model.OAuthCredentials;
+import org.mule.module.hubspot.model.contact.Contact;
+import org.mule.module.hubspot.model.contact.ContactIdentity;
+import org.mule.module.hubspot.model.contact.ContactIdentityProfiles;
+import org.mule.module.hubspot.model.contact.ContactLookupResult;
+import org.mule.module.hubspot.model.token.RefreshTokenResponse;
 
+import com.sun.jersey.api.client.ClientHandlerException;
 import com.sun.jersey.api.client.ClientResponse;
-import com.sun.jersey.api.client.UniformInterfaceException;
 import com.sun.jersey.api.client.WebResource;
 
 public class HubSpotClientUtils {
@@ -50,24 +70,116 @@ public class HubSpotClientUtils {
         }
     }
 
+    static public <T> T transformJsonToObject(final String json, final Class<T> type) throws HubSpotConnectorException {
+        try {
+            return jacksonMapper.readValue(json, type);
+        } catch (final JsonParseException e) {
+            throw new HubSpotConnectorException("ERROR - Error Parsing the JSON", e);
+        } catch (final JsonMappingException e) {
+            throw new HubSpotConnectorException("ERROR - Error Mapping the JSON", e);
+        } catch (final IOException e) {
+            throw new HubSpotConnectorException(e);
+        }
+    }
+
+    /**
+     * Wraps the object in an entity that is serialized by Jackson straight to the request output stream when the request is sent, so the JSON is never built as a String
+     */
+    static public StreamingOutput transformObjectToJsonEntity(final Object o) {
+        return new StreamingOutput() {
+            @Override
+            public void write(final OutputStream output) throws IOException {
+                // The generator is not closed, the output stream belongs to the HTTP client
+                final JsonGenerator jgen = jacksonMapper.getJsonFactory().createJsonGenerator(output, JsonEncoding.UTF8);
+                jacksonMapper.writeValue(jgen, o);
+                jgen.flush();
+            }
+        };
+    }
+
+    /**
+     * Splits the list in consecutive chunks of at most the size given, to send them in separate requests
+     */
+    static public <T> List<List<T>> splitInChunks(final List<T> list, final int chunkSize) {
+        final int size = Math.max(chunkSize, 1);
+        final List<List<T>> chunks = new ArrayList<List<T>>((list.size() + size - 1) / size);
+        for (int from = 0; from < list.size(); from += size) {
+            chunks.add(new ArrayList<T>(list.subList(from, Math.min(from + size, list.size()))));
+        }
+        return chunks;
+    }
+
+    /**
+     * @return The contacts by each of their emails, in lower case (see {@link #emailKey(String)}). The batch lookup by email returns the contacts by vid, so this is how they
+     *         are matched to the emails
+     */
+    static public Map<String, Contact> indexContactsByEmail(final Map<String, Contact> contacts) {
+        final Map<String, Contact> byEmail = new HashMap<String, Contact>();
+        for (final Contact contact : contacts.values()) {
+            if (contact.getContactProperties() != null && contact.getContactProperties().getEmail() != null) {
+                byEmail.put(emailKey(contact.getContactProperties().getEmail()), contact);
+            }
+            if (contact.getIdentityProfiles() != null) {
+                for (final ContactIdentityProfiles profile : contact.getIdentityProfiles()) {
+                    if (profile.getIdentities() == null) {
+                        continue;
+                    }
+                    for (final ContactIdentity identity : profile.getIdentities()) {
+                        if ("EMAIL".equals(identity.getType()) && identity.getValue() != null) {
+                            byEmail.put(emailKey(identity.getValue()), contact);
+                        }
+                    }
+                }
+            }
+        }
+        return byEmail;
+    }
+
+    /**
+     * @return The email in lower case, to match it regardless of the case in which it was written. The case is folded with the English rules, so it does not depend on the
+     *         default locale (in Turkish "I" is not the upper case of "i")
+     */
+    static public String emailKey(final String email) {
+        return email.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Adds each key to the result, with the contact found for it or as missing
+     *
+     * @param found
+     *            The contacts found, by key. If the keys are emails, by email in lower case (see {@link #indexContactsByEmail(Map)})
+     * @param byEmail
+     *            If the keys are emails, that are matched regardless of their case
+     */
+    static public void addLookedUpContacts(final List<String> keys, final Map<String, Contact> found, final boolean byEmail, final ContactLookupResult result) {
+        for (final String key : keys) {
+            final Contact contact = found.get(byEmail ? emailKey(key) : key);
+            if (contact != null) {
+                result.getContacts().put(key, contact);
+            } else {
+                result.getMissing().add(key);
+            }
+        }
+    }
+
     static public String webResourceGet(final WebResource wr, final String userId, final HubSpotWebResourceMethods method) throws HubSpotConnectorAccessTokenExpiredException,
             HubSpotConnectorException {
         return webResourceGet(String.class, wr, userId, method);
     }
 
-    static public String webResourceGet(final WebResource wr, final String userId, final HubSpotWebResourceMethods method, final String requestBody)
+    static public String webResourceGet(final WebResource wr, final String userId, final HubSpotWebResourceMethods method, final Object requestBody)
             throws HubSpotConnectorAccessTokenExpiredException, HubSpotConnectorException {
         return webResourceGet(String.class, wr, userId, method, requestBody);
     }
 
     /**
-     * Method used to eliminate boilerplate handling exceptions when calling get(String.class) from a WebResource
+     * Method used to eliminate boilerplate handling exceptions when calling a WebResource
      * 
      * @param wr
      *            The WebResource to call get
      * @param userId
      *            The userId from the session used
-     * @return The response of the service in String format
+     * @return The response of the service mapped to the type. If the type is String the raw body is returned
      * @throws HubSpotConnectorAccessTokenExpiredException
      *             If the service responded with a 401 means that the session has expired
      * @throws HubSpotConnectorException
@@ -78,34 +190,53 @@ public class HubSpotClientUtils {
         return webResourceGet(type, wr, userId, method, null);
     }
 
-    @SuppressWarnings("unchecked")
-    static public <T> T webResourceGet(final Class<T> type, final WebResource wr, final String userId, final HubSpotWebResourceMethods method, final String requestBody)
+    static public <T> T webResourceGet(final Class<T> type, final WebResource wr, final String userId, final HubSpotWebResourceMethods method, final Object requestBody)
             throws HubSpotConnectorAccessTokenExpiredException, HubSpotConnectorException {
-        try {
-            final String res = webResourceCallByEnumType(wr, method, requestBody);
+        return webResourceGet(type, wr, userId, method, requestBody, null, null);
+    }
 
-            if (type.equals(String.class)) {
-                return (T) res;
-            } else {
-                final InputStream is = new ByteArrayInputStream(res.getBytes());
-                return jacksonMapper.readValue(is, type);
+    /**
+     * @param metrics
+     *            Where the latency, status code and size of the response are recorded, or null if they are not recorded
+     * @param budget
+     *            The rate limit budget of the portal, updated with the rate limit headers of the response, or null if they are ignored
+     */
+    @SuppressWarnings("unchecked")
+    static public <T> T webResourceGet(final Class<T> type, final WebResource wr, final String userId, final HubSpotWebResourceMethods method, final Object requestBody,
+            final HubSpotMetrics metrics, final HubSpotRateLimitBudget.PortalBudget budget) throws HubSpotConnectorAccessTokenExpiredException, HubSpotConnectorException {
+        final long start = metrics != null ? System.nanoTime() : 0;
+        ClientResponse response = null;
+        CountingInputStream body = null;
+        try {
+            response = webResourceCallByEnumType(wr, method, requestBody);
+            final int statusCode = response.getStatus();
+            if (metrics != null && response.getEntityInputStream() != null) {
+                // The chunked responses have no Content-Length, so the body is counted while it is read
+                body = new CountingInputStream(response.getEntityInputStream());
+                response.setEntityInputStream(body);
             }
-        } catch (final UniformInterfaceException e) {
-            final ClientResponse cl = e.getResponse();
-            final int statusCode = cl.getStatus();
-            String message = "";
-            try {
-                message = cl.getEntity(String.class);
-            } catch (final Throwable ex) {
+
+            if (budget != null) {
+                budget.update(response.getHeaders(), statusCode);
             }
 
-            // The code 204 is returned as a successful operation with no response, but as the expected parameter is a String.class it throws a UniformInterfaceException.
+            // The code 204 is returned as a successful operation with no response
             if (statusCode == 204) {
                 return null;
             } else if (statusCode == 401) {
-                throw new HubSpotConnectorAccessTokenExpiredException("The access token for the userId " + userId + "has expired", e);
+                throw new HubSpotConnectorAccessTokenExpiredException("The access token for the userId " + userId + "has expired");
+            } else if (statusCode >= 300) {
+                final String errorMessage = getErrorMessage(response);
+                throw new HubSpotConnectorResponseException(String.format("ERROR - statusCode: %d - message: %s", statusCode, errorMessage), statusCode,
+                        getRetryAfterMillis(response), errorMessage);
+            }
+
+            if (type.equals(String.class)) {
+                return (T) response.getEntity(String.class);
             } else {
-                throw new HubSpotConnectorException(String.format("ERROR - statusCode: %d - message: %s", statusCode, message), e);
+                // Jackson reads straight from the connection, so the body is never buffered in memory as a String
+                final InputStream is = response.getEntityInputStream();
+                return jacksonMapper.readValue(is, type);
             }
         } catch (final JsonParseException e) {
             throw new HubSpotConnectorException("ERROR - Error Parsing the JSON", e);
@@ -113,22 +244,113 @@ public class HubSpotClientUtils {
             throw new HubSpotConnectorException("ERROR - Error Mapping the JSON", e);
         } catch (final IOException e) {
             throw new HubSpotConnectorException(e);
+        } catch (final ClientHandlerException e) {
+            throw new HubSpotConnectorException(e);
+        } finally {
+            if (metrics != null) {
+                metrics.recordRequest(System.nanoTime() - start, response != null ? response.getStatus() : 0, body != null ? body.getCount() : -1);
+            }
+            // Returns the connection to the pool
+            if (response != null) {
+                response.close();
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes read from the body of a response
+     */
+    static private class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            // A reset would count the same bytes twice
+            return false;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
+    static private String getErrorMessage(final ClientResponse response) {
+        try {
+            return response.getEntity(String.class);
+        } catch (final Throwable ex) {
+            return "";
         }
     }
 
-    static private String webResourceCallByEnumType(final WebResource wr, final HubSpotWebResourceMethods method, final String requestBody) {
+    /**
+     * @return The milliseconds to wait requested by the Retry-After header, that can be either a number of seconds or an HTTP date. Null if it is missing or invalid
+     */
+    static public Long getRetryAfterMillis(final ClientResponse response) {
+        final String retryAfter = response.getHeaders() != null ? response.getHeaders().getFirst("Retry-After") : null;
+        if (StringUtils.isBlank(retryAfter)) {
+            return null;
+        }
+
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (final NumberFormatException e) {
+            // Not a number of seconds, it must be a date
+        }
+
+        try {
+            // SimpleDateFormat is not thread safe, so an instance is created every time. This only happens on error responses
+            final SimpleDateFormat httpDate = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            httpDate.setTimeZone(TimeZone.getTimeZone("GMT"));
+            return Math.max(0, httpDate.parse(retryAfter.trim()).getTime() - System.currentTimeMillis());
+        } catch (final ParseException e) {
+            logger.debug("Invalid Retry-After header: " + retryAfter);
+            return null;
+        }
+    }
+
+    static private ClientResponse webResourceCallByEnumType(final WebResource wr, final HubSpotWebResourceMethods method, final Object requestBody) {
         if (HubSpotWebResourceMethods.GET.equals(method)) {
-            return wr.type(MediaType.APPLICATION_JSON_TYPE).get(String.class);
+            return wr.type(MediaType.APPLICATION_JSON_TYPE).get(ClientResponse.class);
         } else if (HubSpotWebResourceMethods.POST.equals(method)) {
-            return wr.type(MediaType.APPLICATION_JSON_TYPE).post(String.class, requestBody);
+            return wr.type(MediaType.APPLICATION_JSON_TYPE).post(ClientResponse.class, requestBody);
         } else if (HubSpotWebResourceMethods.PUT.equals(method)) {
-            return wr.type(MediaType.APPLICATION_JSON_TYPE).put(String.class, requestBody);
+            return wr.type(MediaType.APPLICATION_JSON_TYPE).put(ClientResponse.class, requestBody);
         } else if (HubSpotWebResourceMethods.DELETE.equals(method)) {
-            return wr.type(MediaType.APPLICATION_JSON_TYPE).delete(String.class);
+            return wr.type(MediaType.APPLICATION_JSON_TYPE).delete(ClientResponse.class);
         } else if (HubSpotWebResourceMethods.REFRESH.equals(method)) {
-            return wr.type(MediaType.APPLICATION_FORM_URLENCODED_TYPE).post(String.class, requestBody);
+            return wr.type(MediaType.APPLICATION_FORM_URLENCODED_TYPE).post(ClientResponse.class, requestBody);
         } else {
-            return null;
+            throw new IllegalArgumentException("Unsupported method: " + method);
         }
     }
 
@@ -138,6 +360,38 @@ public class HubSpotClientUtils {
     static final private Pattern PATTERN_USERID = Pattern.compile("userid=([^&]+)&?");
     static final private Pattern PATTERN_ERROR = Pattern.compile("error=([^&]+)&?");
 
+    /**
+     * @param expiresIn
+     *            The seconds until the access token expires
+     * @return The time when the access token expires, or null if the expires_in is not a number
+     */
+    static public Long getExpirationTime(final String expiresIn) {
+        try {
+            return System.currentTimeMillis() + Long.parseLong(expiresIn) * 1000;
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return New credentials of the same user with the tokens of the refresh response. If the response does not say when the new token expires its expiration is left
+     *         unknown, so it is not refreshed ahead of time but when a request is rejected, instead of taking the expiration of the old token
+     */
+    static public OAuthCredentials refreshedCredentials(final OAuthCredentials credentials, final RefreshTokenResponse response) {
+        final OAuthCredentials refreshed = new OAuthCredentials();
+        refreshed.setUserId(credentials.getUserId());
+        refreshed.setClientId(credentials.getClientId());
+        refreshed.setHubId(credentials.getHubId());
+        refreshed.setOfflineScope(credentials.getOfflineScope());
+        refreshed.setRefreshToken(response.getRefreshToken());
+        refreshed.setAccessToken(response.getAccessToken());
+        if (response.getExpiresIn() != null) {
+            refreshed.setExpiresAt(response.getExpiresIn().toString());
+            refreshed.setExpirationTime(getExpirationTime(response.getExpiresIn().toString()));
+        }
+        return refreshed;
+    }
+
     static public OAuthCredentials authenticateResponse(final String inputRequest) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException {
 
         if (StringUtils.isEmpty(inputRequest)) {
@@ -171,6 +425,7 @@ public class HubSpotClientUtils {
         m = PATTERN_EXPIRES_AT.matcher(inputRequest);
         if (m.find()) {
             oACreds.setExpiresAt(m.group(1));
+            oACreds.setExpirationTime(getExpirationTime(m.group(1)));
         }
 
         m = PATTERN_REFRESH_TOKEN.matcher(inputRequest);
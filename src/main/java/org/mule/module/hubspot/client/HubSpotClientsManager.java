@@ -7,34 +7,129 @@
  */
 package org.mule.module.hubspot.client;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.mule.module.hubspot.HubSpotConnector;
+import org.mule.module.hubspot.cache.ExpiringLruCache;
 import org.mule.module.hubspot.client.impl.HubSpotClientImpl;
+import org.mule.module.hubspot.client.policy.HubSpotClientPolicies;
 import org.mule.module.hubspot.model.OAuthCredentials;
 
 /**
  * Class that will hold all the clients of each tenant
+ * <p>
+ * It is safe to use from several threads, and the client of a tenant is created only once even if its first requests arrive at the same time. The clients that have not been
+ * used for longer than the idle timeout are evicted, and if there are more clients than the maximum the least recently used ones are evicted (the clients are kept in an
+ * {@link ExpiringLruCache}, so with many clients the least recently used of a segment is evicted when the segment is full). An evicted client is created again
+ * from the stored credentials the next time it is needed; the clients do not own any connection (they use the shared {@link HubSpotHttpTransport}), so evicting them just
+ * releases their memory. The same sweep closes the pooled connections of the transport that have been idle for longer than the idle timeout.
  */
-public class HubSpotClientsManager {
+public class HubSpotClientsManager implements HubSpotClientsManagerMXBean {
 
-    private final Map<String, HubSpotClient> clients;
+    static final private Log logger = LogFactory.getLog(HubSpotClientsManager.class);
 
-    public HubSpotClientsManager() {
-        clients = new HashMap<String, HubSpotClient>();
+    /**
+     * Is told about the clients evicted for being idle or because there were too many. When there are too many it is called while the registry is locked, so it must be quick
+     * and must not use this manager
+     */
+    public interface EvictionListener {
+
+        void evicted(String userId);
+    }
+
+    private final ExpiringLruCache<String, ClientHolder> clients;
+    private final HubSpotHttpTransport transport;
+    private final HubSpotClientPolicies policies;
+    private final String urlAPI;
+    private final long idleTimeoutNanos;
+
+    private volatile EvictionListener evictionListener;
+
+    private final AtomicLong lastSweep;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public HubSpotClientsManager(final HubSpotHttpTransport transport) {
+        this(transport, 0, 0);
+    }
+
+    /**
+     * Creates clients of the HubSpot API
+     * 
+     * @see #HubSpotClientsManager(HubSpotHttpTransport, String, int, long)
+     */
+    public HubSpotClientsManager(final HubSpotHttpTransport transport, final int maxClients, final long idleTimeoutMillis) {
+        this(transport, HubSpotConnector.HUB_SPOT_URL_API, maxClients, idleTimeoutMillis);
+    }
+
+    /**
+     * @param urlAPI
+     *            Base URL of the API used by the clients
+     * @param maxClients
+     *            Maximum number of clients kept. Zero or less means no maximum
+     * @param idleTimeoutMillis
+     *            Time without being used after which a client is evicted. Zero or less means that the clients are never evicted for being idle
+     */
+    public HubSpotClientsManager(final HubSpotHttpTransport transport, final String urlAPI, final int maxClients, final long idleTimeoutMillis) {
+        this(transport, HubSpotClientPolicies.NONE, urlAPI, maxClients, idleTimeoutMillis);
+    }
+
+    /**
+     * @param policies
+     *            The throttling, retries and metrics applied to the requests of every client
+     * @see #HubSpotClientsManager(HubSpotHttpTransport, String, int, long)
+     */
+    public HubSpotClientsManager(final HubSpotHttpTransport transport, final HubSpotClientPolicies policies, final String urlAPI, final int maxClients,
+            final long idleTimeoutMillis) {
+        this.transport = transport;
+        this.policies = policies;
+        this.urlAPI = urlAPI;
+        this.idleTimeoutNanos = idleTimeoutMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis) : 0;
+        // The clients do not expire by the time since they were created, only for being idle (see evictIdleClients)
+        clients = new ExpiringLruCache<String, ClientHolder>(maxClients > 0 ? maxClients : Integer.MAX_VALUE, 0) {
+            @Override
+            protected void evicted(final String userid, final ClientHolder holder) {
+                HubSpotClientsManager.this.evicted(userid);
+            }
+        };
+        lastSweep = new AtomicLong(nanoTime());
+    }
+
+    public void setEvictionListener(final EvictionListener evictionListener) {
+        this.evictionListener = evictionListener;
     }
 
     public void addClient(final String userid, final HubSpotClient client) {
-        clients.put(userid, client);
+        final ClientHolder holder = new ClientHolder(nanoTime());
+        holder.client = client;
+        clients.put(userid, holder);
     }
 
     public HubSpotClient getClient(final String userid) {
-        return clients.get(userid);
+        final ClientHolder holder = clients.get(userid);
+        if (holder == null) {
+            return null;
+        }
+        holder.lastAccess = nanoTime();
+        return holder.client;
     }
 
     public boolean hasClient(final String userid) {
-        return clients.containsKey(userid) && clients.get(userid) != null;
+        final ClientHolder holder = clients.get(userid);
+        return holder != null && holder.client != null;
+    }
+
+    /**
+     * Removes the client of a tenant
+     */
+    public void removeClient(final String userid) {
+        clients.remove(userid);
     }
 
     /*
@@ -42,14 +137,124 @@ public class HubSpotClientsManager {
      * exists and the client don't.
      */
     public HubSpotClient getOrCreateClient(final String userid, final OAuthCredentials credentials) {
-        if (hasClient(userid)) {
-            return getClient(userid);
+        final long now = nanoTime();
+
+        ClientHolder holder = clients.get(userid);
+        if (holder == null) {
+            final ClientHolder newHolder = new ClientHolder(now);
+            // If there are too many clients, storing it evicts the least recently used one
+            holder = clients.putIfAbsent(userid, newHolder);
+            if (holder == null) {
+                holder = newHolder;
+            }
+        }
+        holder.lastAccess = now;
+
+        HubSpotClient client = holder.client;
+        if (client != null) {
+            hits.incrementAndGet();
         } else {
-            final HubSpotClient client = new HubSpotClientImpl(HubSpotConnector.HUB_SPOT_URL_API, HubSpotConnector.HUB_SPOT_URL_AUTH, HubSpotConnector.API_VERSION,
-                    credentials.getClientId(), null, null, null);
+            // The threads that arrive while the client is being created wait for it instead of creating another one
+            synchronized (holder) {
+                client = holder.client;
+                if (client == null) {
+                    client = new HubSpotClientImpl(transport, policies, urlAPI, HubSpotConnector.HUB_SPOT_URL_AUTH, HubSpotConnector.API_VERSION,
+                            credentials.getClientId(), credentials.getHubId(), null, null);
+                    holder.client = client;
+                    misses.incrementAndGet();
+                } else {
+                    hits.incrementAndGet();
+                }
+            }
+        }
+
+        sweepIfNeeded(now);
+        return client;
+    }
+
+    /**
+     * Evicts the clients that have been idle for longer than the idle timeout
+     */
+    public void evictIdleClients() {
+        if (idleTimeoutNanos <= 0) {
+            return;
+        }
+        final long now = nanoTime();
+        for (final Map.Entry<String, ClientHolder> entry : clients.snapshot().entrySet()) {
+            if (now - entry.getValue().lastAccess > idleTimeoutNanos && clients.remove(entry.getKey(), entry.getValue())) {
+                evicted(entry.getKey());
+                if (logger.isDebugEnabled()) {
+                    logger.debug(String.format("Client of %s evicted after being idle", entry.getKey()));
+                }
+            }
+        }
+    }
+
+    /**
+     * The idle clients and connections are looked for while serving the requests, at most once every idle timeout, so no thread is needed
+     */
+    private void sweepIfNeeded(final long now) {
+        if (idleTimeoutNanos <= 0) {
+            return;
+        }
+        final long last = lastSweep.get();
+        if (now - last > idleTimeoutNanos && lastSweep.compareAndSet(last, now)) {
+            evictIdleClients();
+            if (transport != null) {
+                transport.closeIdleConnections(TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos));
+            }
+        }
+    }
+
+    /**
+     * @return The current time in nanoseconds with which the idle time of the clients is measured. Overridden by the tests to control it
+     */
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    private void evicted(final String userid) {
+        evictions.incrementAndGet();
+        final EvictionListener listener = evictionListener;
+        if (listener != null) {
+            listener.evicted(userid);
+        }
+    }
+
+    /**
+     * @return The number of clients kept
+     */
+    public int size() {
+        return clients.size();
+    }
+
+    @Override
+    public int getClients() {
+        return size();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    static private class ClientHolder {
+
+        private volatile HubSpotClient client;
+        private volatile long lastAccess;
 
-            addClient(userid, client);
-            return client;
+        ClientHolder(final long lastAccess) {
+            this.lastAccess = lastAccess;
         }
     }
 }
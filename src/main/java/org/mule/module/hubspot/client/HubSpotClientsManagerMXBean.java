@@ -0,0 +1,34 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.client;
+
+/**
+ * Management interface of {@link HubSpotClientsManager}, published through JMX
+ */
+public interface HubSpotClientsManagerMXBean {
+
+    /**
+     * @return The number of clients kept
+     */
+    int getClients();
+
+    /**
+     * @return The number of requests of a client that was already created
+     */
+    long getHits();
+
+    /**
+     * @return The number of clients created
+     */
+    long getMisses();
+
+    /**
+     * @return The number of clients evicted, for being idle or because there were too many
+     */
+    long getEvictions();
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.client;
+
+import java.util.List;
+import java.util.Map;
+
+import org.mule.module.hubspot.exception.HubSpotConnectorAccessTokenExpiredException;
+import org.mule.module.hubspot.exception.HubSpotConnectorException;
+import org.mule.module.hubspot.exception.HubSpotConnectorNoAccessTokenException;
+import org.mule.module.hubspot.model.contact.Contact;
+import org.mule.module.hubspot.model.contact.ContactBatchResponse;
+import org.mule.module.hubspot.model.contact.ContactLookupResult;
+
+/**
+ * Looks up many contacts with the batch endpoints, sending the chunks concurrently with the {@link HubSpotAsyncClient}. At most the given number of chunks are in progress
+ * at the same time, so a big lookup does not fill the queue of the future-based client and get its chunks rejected. If a chunk fails the whole lookup fails, and the chunks
+ * in progress are cancelled.
+ */
+public class HubSpotContactBatchLookup {
+
+    /**
+     * The kind of key used to look up the contacts
+     */
+    public enum Key {
+        VID, EMAIL, USER_TOKEN
+    }
+
+    private final HubSpotAsyncClient asyncClient;
+
+    public HubSpotContactBatchLookup(final HubSpotAsyncClient asyncClient) {
+        this.asyncClient = asyncClient;
+    }
+
+    /**
+     * @param chunks
+     *            The keys to look up, in chunks that HubSpot accepts in a request
+     * @param maxInProgress
+     *            The maximum number of chunks sent at the same time. If it is less than one, one is used
+     * @return The contacts found, by the keys as they were given, and the keys not found
+     * @throws HubSpotConnectorException
+     *             If a chunk fails
+     * @throws HubSpotConnectorNoAccessTokenException
+     *             If the user does not have an Access Token
+     * @throws HubSpotConnectorAccessTokenExpiredException
+     *             If the token expired and it could not be refreshed
+     */
+    public ContactLookupResult lookup(final String userId, final List<List<String>> chunks, final Key kind, final int maxInProgress) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        final ContactLookupResult result = new ContactLookupResult();
+        HubSpotChunkedExecution.execute(chunks, maxInProgress, new HubSpotChunkedExecution.ChunkTask<List<String>, ContactBatchResponse>() {
+            @Override
+            public HubSpotFuture<ContactBatchResponse> send(final List<String> chunk) {
+                return HubSpotContactBatchLookup.this.send(userId, chunk, kind);
+            }
+
+            @Override
+            public void collect(final List<String> chunk, final HubSpotFuture<ContactBatchResponse> future) throws HubSpotConnectorException,
+                    HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+                final ContactBatchResponse response = future.getResult();
+                // The contacts looked up by email are returned by vid
+                final Map<String, Contact> found = kind == Key.EMAIL ? HubSpotClientUtils.indexContactsByEmail(response) : response;
+                HubSpotClientUtils.addLookedUpContacts(chunk, found, kind == Key.EMAIL, result);
+            }
+        });
+        return result;
+    }
+
+    private HubSpotFuture<ContactBatchResponse> send(final String userId, final List<String> chunk, final Key kind) {
+        if (kind == Key.VID) {
+            return asyncClient.getContactsByIds(userId, chunk);
+        } else if (kind == Key.EMAIL) {
+            return asyncClient.getContactsByEmails(userId, chunk);
+        } else {
+            return asyncClient.getContactsByUserTokens(userId, chunk);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.mule.module.hubspot.exception.HubSpotConnectorAccessTokenExpiredException;
+import org.mule.module.hubspot.exception.HubSpotConnectorException;
+import org.mule.module.hubspot.exception.HubSpotConnectorNoAccessTokenException;
+import org.mule.module.hubspot.exception.HubSpotConnectorResponseException;
+import org.mule.module.hubspot.model.contact.ContactBatchErrorResponse;
+import org.mule.module.hubspot.model.contact.ContactBatchItem;
+import org.mule.module.hubspot.model.contact.ContactBatchResult;
+
+/**
+ * Creates or updates many contacts with the batch endpoint, sending the chunks concurrently with the {@link HubSpotAsyncClient}. At most the given number of chunks are in
+ * progress at the same time, so a big import does not fill the queue of the future-based client and get its chunks rejected without being sent.
+ * <p>
+ * HubSpot rejects the whole chunk if any contact is invalid, so the contacts it reports as rejected are recorded as failed and the rest of the chunk is sent again. Each
+ * time there are fewer, so it ends. If a chunk fails because the user does not have a valid token the whole operation fails, and the chunks not collected yet are cancelled.
+ */
+public class HubSpotContactBatchUpserter {
+
+    private final HubSpotAsyncClient asyncClient;
+
+    public HubSpotContactBatchUpserter(final HubSpotAsyncClient asyncClient) {
+        this.asyncClient = asyncClient;
+    }
+
+    /**
+     * @param maxInProgress
+     *            The maximum number of chunks sent at the same time. If it is less than one, one is used
+     * @return The contacts created or updated and the ones that failed
+     * @throws HubSpotConnectorException
+     *             Not thrown by the chunks, whose errors are recorded as failed contacts
+     * @throws HubSpotConnectorNoAccessTokenException
+     *             If the user does not have an Access Token
+     * @throws HubSpotConnectorAccessTokenExpiredException
+     *             If the token expired and it could not be refreshed
+     */
+    public ContactBatchResult upsert(final String userId, final List<List<ContactBatchItem>> chunks, final int maxInProgress) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        final ContactBatchResult result = new ContactBatchResult();
+        HubSpotChunkedExecution.execute(chunks, maxInProgress, new HubSpotChunkedExecution.ChunkTask<List<ContactBatchItem>, Void>() {
+            @Override
+            public HubSpotFuture<Void> send(final List<ContactBatchItem> chunk) {
+                return asyncClient.updateContactsBatch(userId, chunk);
+            }
+
+            @Override
+            public void collect(final List<ContactBatchItem> chunk, final HubSpotFuture<Void> future) throws HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                HubSpotContactBatchUpserter.this.collect(userId, chunk, future, result);
+            }
+        });
+        return result;
+    }
+
+    private void collect(final String userId, final List<ContactBatchItem> chunk, final HubSpotFuture<Void> future, final ContactBatchResult result)
+            throws HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+        try {
+            future.getResult();
+            result.addSucceeded(chunk);
+        } catch (final HubSpotConnectorResponseException e) {
+            final Map<Integer, String> rejected = getRejectedContacts(chunk, e);
+            final List<ContactBatchItem> remaining = new ArrayList<ContactBatchItem>(chunk.size());
+            for (int x = 0; x < chunk.size(); x++) {
+                if (rejected.isEmpty()) {
+                    result.addFailed(chunk.get(x), e.getMessage());
+                } else if (rejected.containsKey(x)) {
+                    result.addFailed(chunk.get(x), rejected.get(x));
+                } else {
+                    remaining.add(chunk.get(x));
+                }
+            }
+            if (!remaining.isEmpty()) {
+                collect(userId, remaining, asyncClient.updateContactsBatch(userId, remaining), result);
+            }
+        } catch (final HubSpotConnectorException e) {
+            for (final ContactBatchItem contact : chunk) {
+                result.addFailed(contact, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return The message of each contact rejected, by its position in the chunk. Empty if the error does not say which contacts were rejected
+     */
+    static public Map<Integer, String> getRejectedContacts(final List<ContactBatchItem> chunk, final HubSpotConnectorResponseException e) {
+        final Map<Integer, String> rejected = new HashMap<Integer, String>();
+        if (e.getStatusCode() != 400 || StringUtils.isBlank(e.getResponseBody())) {
+            return rejected;
+        }
+
+        final ContactBatchErrorResponse error;
+        try {
+            error = HubSpotClientUtils.transformJsonToObject(e.getResponseBody(), ContactBatchErrorResponse.class);
+        } catch (final HubSpotConnectorException ex) {
+            return rejected;
+        }
+        if (error == null) {
+            return rejected;
+        }
+
+        if (error.getFailureMessages() != null) {
+            for (final ContactBatchErrorResponse.FailureMessage failure : error.getFailureMessages()) {
+                if (failure.getIndex() != null && failure.getIndex() >= 0 && failure.getIndex() < chunk.size()) {
+                    final Object message = failure.getError() != null ? failure.getError().get("message") : null;
+                    rejected.put(failure.getIndex(), message != null ? message.toString() : error.getMessage());
+                }
+            }
+        }
+        if (error.getInvalidEmails() != null) {
+            for (int x = 0; x < chunk.size(); x++) {
+                if (chunk.get(x).getEmail() != null && error.getInvalidEmails().contains(chunk.get(x).getEmail()) && !rejected.containsKey(x)) {
+                    rejected.put(x, "Invalid email " + chunk.get(x).getEmail());
+                }
+            }
+        }
+        return rejected;
+    }
+}
@@ -0,0 +1,265 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.client;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.StringUtils;
+import org.mule.module.hubspot.exception.HubSpotConnectorAccessTokenExpiredException;
+import org.mule.module.hubspot.exception.HubSpotConnectorException;
+import org.mule.module.hubspot.exception.HubSpotConnectorNoAccessTokenException;
+import org.mule.module.hubspot.exception.HubSpotConnectorResponseException;
+import org.mule.module.hubspot.model.contact.Contact;
+import org.mule.module.hubspot.model.contact.ContactBatchResponse;
+import org.mule.module.hubspot.serialization.ContactCopier;
+import org.mule.util.concurrent.DaemonThreadFactory;
+
+/**
+ * Merges the lookups of single contacts that arrive at the same time into batch lookups.
+ * <p>
+ * The first lookup of a user opens a batch that is sent when the window ends or when it has the maximum number of keys, whatever happens first. The lookups that arrive in
+ * the meantime join the batch, and each caller waits for the batch response and takes its contact from it. The batches are sent with the {@link HubSpotAsyncClient}, so the
+ * timer thread never waits for HubSpot. The lookups by id and by email are batched separately.
+ * <p>
+ * A key that HubSpot would reject, which would fail the whole batch, fails only its own lookup without joining one. The callers that look up the same contact in the same
+ * batch each get their own copy, so the changes that a flow makes to its contact are not seen by the others.
+ */
+public class HubSpotContactReadCollapser implements HubSpotContactReadCollapserMXBean {
+
+    private final HubSpotAsyncClient asyncClient;
+    private final long windowMillis;
+    private final int maxKeys;
+    private final ScheduledExecutorService scheduler;
+
+    // The batches that are still accepting keys, by kind of key and userId
+    private final ConcurrentMap<String, Batch> pending = new ConcurrentHashMap<String, Batch>();
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    /**
+     * @param windowMillis
+     *            How long a batch waits for more keys after the first one
+     * @param maxKeys
+     *            Number of keys after which a batch is sent without waiting for the window to end. HubSpot accepts at most 100
+     */
+    public HubSpotContactReadCollapser(final HubSpotAsyncClient asyncClient, final long windowMillis, final int maxKeys) {
+        this.asyncClient = asyncClient;
+        this.windowMillis = Math.max(windowMillis, 0);
+        this.maxKeys = Math.max(1, Math.min(maxKeys, 100));
+        scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("hubspot-read-collapser"));
+    }
+
+    /**
+     * Same as {@link HubSpotClient#getContactById(String, String, String)}, but the lookup is sent in a batch with the other lookups of the user
+     */
+    public Contact getContactById(final String userId, final String contactId) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+            HubSpotConnectorAccessTokenExpiredException {
+        return lookup(userId, contactId, false);
+    }
+
+    /**
+     * Same as {@link HubSpotClient#getContactByEmail(String, String, String)}, but the lookup is sent in a batch with the other lookups of the user
+     */
+    public Contact getContactByEmail(final String userId, final String contactEmail) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+            HubSpotConnectorAccessTokenExpiredException {
+        return lookup(userId, contactEmail, true);
+    }
+
+    private Contact lookup(final String userId, final String key, final boolean byEmail) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+            HubSpotConnectorAccessTokenExpiredException {
+
+        if (StringUtils.isBlank(key) || !byEmail && !StringUtils.isNumeric(key)) {
+            throw new HubSpotConnectorException(String.format("The contact %s %s is not valid", byEmail ? "email" : "id", key));
+        }
+
+        lookups.incrementAndGet();
+        final Batch batch = join(userId, key, byEmail);
+
+        try {
+            batch.sent.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HubSpotConnectorException("Interrupted while waiting for the batch lookup of contacts", e);
+        }
+        if (batch.failure != null) {
+            throw batch.failure;
+        }
+
+        final Map<String, Contact> contacts = batch.getContacts();
+        final Contact contact = contacts.get(byEmail ? HubSpotClientUtils.emailKey(key) : key);
+        if (contact == null) {
+            // The same error that the lookup of a single contact gets
+            throw new HubSpotConnectorResponseException(String.format("ERROR - statusCode: %d - message: %s", 404, "contact does not exist"), 404, null);
+        }
+        return ContactCopier.copy(contact);
+    }
+
+    /**
+     * Adds the key to the open batch of the user, or opens a new one
+     */
+    private Batch join(final String userId, final String key, final boolean byEmail) {
+        final String batchKey = (byEmail ? "email:" : "vid:") + userId;
+
+        while (true) {
+            Batch batch = pending.get(batchKey);
+            boolean opened = false;
+            if (batch == null) {
+                final Batch newBatch = new Batch(batchKey, userId, byEmail);
+                batch = pending.putIfAbsent(batchKey, newBatch);
+                if (batch == null) {
+                    batch = newBatch;
+                    opened = true;
+                }
+            }
+
+            final boolean full;
+            synchronized (batch) {
+                if (batch.closed) {
+                    // It was sent between getting it and locking it
+                    continue;
+                }
+                batch.keys.add(key);
+                full = batch.keys.size() >= maxKeys;
+                if (full) {
+                    close(batch);
+                }
+            }
+
+            if (full) {
+                send(batch);
+            } else if (opened) {
+                schedule(batch);
+            }
+            return batch;
+        }
+    }
+
+    private void schedule(final Batch batch) {
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (batch) {
+                        if (batch.closed) {
+                            return;
+                        }
+                        close(batch);
+                    }
+                    send(batch);
+                }
+            }, windowMillis, TimeUnit.MILLISECONDS);
+        } catch (final RuntimeException e) {
+            // The collapser is stopped
+            synchronized (batch) {
+                if (batch.closed) {
+                    return;
+                }
+                close(batch);
+            }
+            fail(batch, new HubSpotConnectorException("The contact lookups are not accepted because the connector is stopped", e));
+        }
+    }
+
+    /**
+     * Must be called holding the lock of the batch. Whoever closes the batch must send it
+     */
+    private void close(final Batch batch) {
+        batch.closed = true;
+        pending.remove(batch.batchKey, batch);
+    }
+
+    private void send(final Batch batch) {
+        batches.incrementAndGet();
+        try {
+            final ArrayList<String> keys = new ArrayList<String>(batch.keys);
+            batch.response = batch.byEmail ? asyncClient.getContactsByEmails(batch.userId, keys) : asyncClient.getContactsByIds(batch.userId, keys);
+        } catch (final RuntimeException e) {
+            batch.failure = new HubSpotConnectorException("The batch lookup of contacts cannot be sent", e);
+        } finally {
+            batch.sent.countDown();
+        }
+    }
+
+    private void fail(final Batch batch, final HubSpotConnectorException failure) {
+        batch.failure = failure;
+        batch.sent.countDown();
+    }
+
+    /**
+     * Stops the timer. The lookups waiting in open batches fail
+     */
+    public void stop() {
+        scheduler.shutdownNow();
+        for (final Batch batch : pending.values()) {
+            synchronized (batch) {
+                if (batch.closed) {
+                    continue;
+                }
+                close(batch);
+            }
+            fail(batch, new HubSpotConnectorException("The connector was stopped before the batch lookup of contacts was sent"));
+        }
+    }
+
+    @Override
+    public long getLookups() {
+        return lookups.get();
+    }
+
+    @Override
+    public long getBatches() {
+        return batches.get();
+    }
+
+    static private class Batch {
+
+        private final String batchKey;
+        private final String userId;
+        private final boolean byEmail;
+
+        // Guarded by the lock of the batch until it is closed; never modified after that
+        private final Set<String> keys = new LinkedHashSet<String>();
+        private boolean closed;
+
+        // Set before the latch is released
+        private final CountDownLatch sent = new CountDownLatch(1);
+        private volatile HubSpotFuture<ContactBatchResponse> response;
+        private volatile HubSpotConnectorException failure;
+
+        // Built from the response by the first caller that needs it. If several build it at the same time the result is the same
+        private volatile Map<String, Contact> contacts;
+
+        Batch(final String batchKey, final String userId, final boolean byEmail) {
+            this.batchKey = batchKey;
+            this.userId = userId;
+            this.byEmail = byEmail;
+        }
+
+        // Not synchronized, so waiting for the response never holds the lock that join takes
+        Map<String, Contact> getContacts() throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+            Map<String, Contact> result = contacts;
+            if (result == null) {
+                final ContactBatchResponse found = response.getResult();
+                result = byEmail ? HubSpotClientUtils.indexContactsByEmail(found) : found;
+                contacts = result;
+            }
+            return result;
+        }
+    }
+}
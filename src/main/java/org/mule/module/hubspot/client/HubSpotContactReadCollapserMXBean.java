@@ -0,0 +1,24 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.client;
+
+/**
+ * Management interface of {@link HubSpotContactReadCollapser}, published through JMX
+ */
+public interface HubSpotContactReadCollapserMXBean {
+
+    /**
+     * @return The number of single lookups received
+     */
+    long getLookups();
+
+    /**
+     * @return The number of batch lookups sent to HubSpot
+     */
+    long getBatches();
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.client;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.mule.module.hubspot.exception.HubSpotConnectorAccessTokenExpiredException;
+import org.mule.module.hubspot.exception.HubSpotConnectorException;
+import org.mule.module.hubspot.exception.HubSpotConnectorNoAccessTokenException;
+
+/**
+ * Result of an operation of the {@link HubSpotAsyncClient}. Besides the methods of {@link java.util.concurrent.Future}, {@link #getResult()} waits for the result and throws the
+ * same exceptions that the blocking {@link HubSpotClient} would have thrown.
+ */
+public class HubSpotFuture<T> extends FutureTask<T> {
+
+    public HubSpotFuture(final Callable<T> callable) {
+        super(callable);
+    }
+
+    /**
+     * Waits for the operation to finish and returns its result
+     *
+     * @throws HubSpotConnectorException
+     *             If the operation failed or was cancelled, or the thread is interrupted while waiting
+     * @throws HubSpotConnectorNoAccessTokenException
+     *             If the user does not have an Access Token
+     * @throws HubSpotConnectorAccessTokenExpiredException
+     *             If the token expired and it could not be refreshed
+     */
+    public T getResult() throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+        try {
+            return get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HubSpotConnectorException("Interrupted while waiting for the response of HubSpot", e);
+        } catch (final CancellationException e) {
+            throw new HubSpotConnectorException("The request to HubSpot was cancelled", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof HubSpotConnectorException) {
+                throw (HubSpotConnectorException) cause;
+            } else if (cause instanceof HubSpotConnectorNoAccessTokenException) {
+                throw (HubSpotConnectorNoAccessTokenException) cause;
+            } else if (cause instanceof HubSpotConnectorAccessTokenExpiredException) {
+                throw (HubSpotConnectorAccessTokenExpiredException) cause;
+            }
+            throw new HubSpotConnectorException(cause);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.client;
+
+import java.net.ProxySelector;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.client.HttpClient;
+import org.apache.http.impl.client.AbstractHttpClient;
+import org.apache.http.impl.conn.ProxySelectorRoutePlanner;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.client.apache4.ApacheHttpClient4;
+import com.sun.jersey.client.apache4.config.ApacheHttpClient4Config;
+import com.sun.jersey.client.apache4.config.DefaultApacheHttpClient4Config;
+
+/**
+ * HTTP transport shared by all the tenant clients of a connector instance. Instead of each {@link HubSpotClient} creating its own Jersey client, all of them issue their
+ * requests through this one, which is backed by a bounded pool of keep-alive connections. The proxy of each request is chosen by the default {@link ProxySelector} of the JVM,
+ * so the proxy system properties (http.proxyHost, https.proxyHost, http.nonProxyHosts...) are honored like with a plain Jersey client.
+ * <p>
+ * The throttling, retries and metrics applied to the requests are not part of the transport, see
+ * {@link org.mule.module.hubspot.client.policy.HubSpotClientPolicies}.
+ */
+public class HubSpotHttpTransport {
+
+    static final private Log logger = LogFactory.getLog(HubSpotHttpTransport.class);
+
+    static final public int DEFAULT_MAX_CONNECTIONS = 200;
+    static final public int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 50;
+    static final public int DEFAULT_CONNECTION_TIMEOUT = 30000;
+    static final public int DEFAULT_READ_TIMEOUT = 60000;
+
+    private final ThreadSafeClientConnManager connectionManager;
+    private final Client jerseyClient;
+    private final boolean streamRequestBodies;
+
+    /**
+     * @param maxConnections
+     *            Maximum number of connections kept in the pool. If null {@link #DEFAULT_MAX_CONNECTIONS} is used
+     * @param maxConnectionsPerRoute
+     *            Maximum number of connections to the same host. If null {@link #DEFAULT_MAX_CONNECTIONS_PER_ROUTE} is used
+     * @param connectionTimeout
+     *            Milliseconds to wait for a connection to be established. If null {@link #DEFAULT_CONNECTION_TIMEOUT} is used
+     * @param readTimeout
+     *            Milliseconds to wait for data once the connection is established. If null {@link #DEFAULT_READ_TIMEOUT} is used
+     * @param streamRequestBodies
+     *            If true the JSON request bodies are serialized straight to the connection using chunked transfer encoding, instead of being built as a String first
+     */
+    public HubSpotHttpTransport(final Integer maxConnections, final Integer maxConnectionsPerRoute, final Integer connectionTimeout, final Integer readTimeout,
+            final Boolean streamRequestBodies) {
+        final int maxTotal = maxConnections != null && maxConnections > 0 ? maxConnections : DEFAULT_MAX_CONNECTIONS;
+        final int maxPerRoute = maxConnectionsPerRoute != null && maxConnectionsPerRoute > 0 ? maxConnectionsPerRoute : DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+
+        connectionManager = new ThreadSafeClientConnManager();
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(Math.min(maxPerRoute, maxTotal));
+
+        final ApacheHttpClient4Config config = new DefaultApacheHttpClient4Config();
+        config.getProperties().put(ApacheHttpClient4Config.PROPERTY_CONNECTION_MANAGER, connectionManager);
+        config.getProperties().put(ClientConfig.PROPERTY_CONNECT_TIMEOUT, connectionTimeout != null ? connectionTimeout : DEFAULT_CONNECTION_TIMEOUT);
+        config.getProperties().put(ClientConfig.PROPERTY_READ_TIMEOUT, readTimeout != null ? readTimeout : DEFAULT_READ_TIMEOUT);
+
+        this.streamRequestBodies = streamRequestBodies != null && streamRequestBodies;
+        if (this.streamRequestBodies) {
+            // Without a chunk size the Apache handler buffers the whole entity to compute the Content-Length. Zero means the default chunk size
+            config.getProperties().put(ClientConfig.PROPERTY_CHUNKED_ENCODING_SIZE, 0);
+        }
+
+        final ApacheHttpClient4 apacheClient = ApacheHttpClient4.create(config);
+        // Without a route planner the Apache client connects directly, ignoring the proxy configured for the JVM
+        final HttpClient httpClient = apacheClient.getClientHandler().getHttpClient();
+        if (httpClient instanceof AbstractHttpClient) {
+            ((AbstractHttpClient) httpClient).setRoutePlanner(new ProxySelectorRoutePlanner(connectionManager.getSchemeRegistry(), ProxySelector.getDefault()));
+        }
+        jerseyClient = apacheClient;
+
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("HTTP transport created. Max connections: %d - Max connections per route: %d", maxTotal, maxPerRoute));
+        }
+    }
+
+    /**
+     * @return The Jersey client that must be used to create every WebResource of the connector
+     */
+    public Client getJerseyClient() {
+        return jerseyClient;
+    }
+
+    /**
+     * @return True if the JSON request bodies must be written straight to the connection instead of being serialized to a String first
+     */
+    public boolean isStreamRequestBodies() {
+        return streamRequestBodies;
+    }
+
+    /**
+     * Closes the pooled connections that have not been used for the given time
+     *
+     * @param idleTime
+     *            The time in milliseconds
+     */
+    public void closeIdleConnections(final long idleTime) {
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(idleTime, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Releases all the pooled connections. The transport cannot be used after this call.
+     */
+    public void close() {
+        try {
+            jerseyClient.destroy();
+        } finally {
+            connectionManager.shutdown();
+        }
+
+        logger.debug("HTTP transport closed");
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.client;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.mule.module.hubspot.exception.HubSpotConnectorAccessTokenExpiredException;
+import org.mule.module.hubspot.exception.HubSpotConnectorException;
+import org.mule.module.hubspot.exception.HubSpotConnectorNoAccessTokenException;
+import org.mule.module.hubspot.model.list.HubSpotListAddContactToListResponse;
+
+/**
+ * Adds many contacts to a static list, or removes them from it, sending the vids in chunks with the {@link HubSpotAsyncClient}. The repeated vids are sent once, and at
+ * most the given number of chunks are in progress at the same time. If a chunk fails the whole operation fails, and the chunks in progress are cancelled.
+ */
+public class HubSpotListMembershipUpdater {
+
+    /**
+     * Maximum number of contacts that HubSpot accepts in a request to add them to a list or remove them from it
+     */
+    static final public int MAX_CHUNK_SIZE = 500;
+
+    private final HubSpotAsyncClient asyncClient;
+
+    public HubSpotListMembershipUpdater(final HubSpotAsyncClient asyncClient) {
+        this.asyncClient = asyncClient;
+    }
+
+    /**
+     * @param contactIds
+     *            The vids of the contacts
+     * @param chunkSize
+     *            The number of contacts sent in each request. If it is not positive or greater than {@link #MAX_CHUNK_SIZE}, {@link #MAX_CHUNK_SIZE} is used
+     * @param maxInProgress
+     *            The maximum number of chunks sent at the same time. If it is less than one, one is used
+     * @param add
+     *            True to add the contacts to the list, false to remove them from it
+     * @return All the vids that were added or removed ("updated") and the ones that were not ("discarded")
+     * @throws HubSpotConnectorException
+     *             If a contact ID is not a number or a chunk fails
+     * @throws HubSpotConnectorNoAccessTokenException
+     *             If the user does not have an Access Token
+     * @throws HubSpotConnectorAccessTokenExpiredException
+     *             If the token expired and it could not be refreshed
+     */
+    public HubSpotListAddContactToListResponse update(final String userId, final String listId, final List<String> contactIds, final int chunkSize,
+            final int maxInProgress, final boolean add) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        // The repeated contacts are sent once
+        final Set<Integer> vids = new LinkedHashSet<Integer>();
+        for (final String contactId : contactIds) {
+            try {
+                vids.add(Integer.valueOf(contactId));
+            } catch (final NumberFormatException e) {
+                throw new HubSpotConnectorException("The contact ID " + contactId + " must be a number", e);
+            }
+        }
+
+        final int size = chunkSize > 0 ? Math.min(chunkSize, MAX_CHUNK_SIZE) : MAX_CHUNK_SIZE;
+        final List<List<Integer>> chunks = HubSpotClientUtils.splitInChunks(new ArrayList<Integer>(vids), size);
+
+        final HubSpotListAddContactToListResponse result = new HubSpotListAddContactToListResponse();
+        result.setUpdated(new ArrayList<Integer>());
+        result.setDiscarded(new ArrayList<Integer>());
+
+        HubSpotChunkedExecution.execute(chunks, maxInProgress, new HubSpotChunkedExecution.ChunkTask<List<Integer>, HubSpotListAddContactToListResponse>() {
+            @Override
+            public HubSpotFuture<HubSpotListAddContactToListResponse> send(final List<Integer> chunk) {
+                return add ? asyncClient.addContactsToList(userId, listId, chunk) : asyncClient.removeContactsFromList(userId, listId, chunk);
+            }
+
+            @Override
+            public void collect(final List<Integer> chunk, final HubSpotFuture<HubSpotListAddContactToListResponse> future) throws HubSpotConnectorException,
+                    HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+                final HubSpotListAddContactToListResponse response = future.getResult();
+                if (response != null) {
+                    if (response.getUpdated() != null) {
+                        result.getUpdated().addAll(response.getUpdated());
+                    }
+                    if (response.getDiscarded() != null) {
+                        result.getDiscarded().addAll(response.getDiscarded());
+                    }
+                }
+            }
+        });
+        return result;
+    }
+}
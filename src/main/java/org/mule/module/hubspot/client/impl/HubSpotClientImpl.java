@@ -12,6 +12,7 @@ import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.ws.rs.core.UriBuilder;
 
@@ -20,13 +21,22 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mule.module.hubspot.client.HubSpotClient;
 import org.mule.module.hubspot.client.HubSpotClientUtils;
+import org.mule.module.hubspot.client.HubSpotHttpTransport;
+import org.mule.module.hubspot.client.policy.HubSpotClientPolicies;
+import org.mule.module.hubspot.client.policy.HubSpotConcurrencyLimiter;
+import org.mule.module.hubspot.client.policy.HubSpotRateLimitBudget;
+import org.mule.module.hubspot.client.policy.HubSpotRateLimiter;
+import org.mule.module.hubspot.client.policy.HubSpotRetryPolicy;
 import org.mule.module.hubspot.credential.HubSpotCredentialsManager;
 import org.mule.module.hubspot.exception.HubSpotConnectorAccessTokenExpiredException;
 import org.mule.module.hubspot.exception.HubSpotConnectorException;
 import org.mule.module.hubspot.exception.HubSpotConnectorNoAccessTokenException;
+import org.mule.module.hubspot.metrics.HubSpotMetrics;
 import org.mule.module.hubspot.model.HubSpotWebResourceMethods;
 import org.mule.module.hubspot.model.OAuthCredentials;
 import org.mule.module.hubspot.model.contact.Contact;
+import org.mule.module.hubspot.model.contact.ContactBatchItem;
+import org.mule.module.hubspot.model.contact.ContactBatchResponse;
 import org.mule.module.hubspot.model.contact.ContactDeleted;
 import org.mule.module.hubspot.model.contact.ContactList;
 import org.mule.module.hubspot.model.contact.ContactProperties;
@@ -68,9 +78,21 @@ public class HubSpotClientImpl implements HubSpotClient {
     private final String callbackUrl;
 
     private final Client jerseyClient;
-
-    public HubSpotClientImpl(final String urlAPI, final String urlAuth, final String APIVersion, final String clientId, final String hubId, final String scope,
-            final String callbackUrl) {
+    private final boolean streamRequestBodies;
+    private final HubSpotRateLimiter rateLimiter;
+    private final HubSpotRetryPolicy retryPolicy;
+    private final HubSpotMetrics metrics;
+    private final HubSpotRateLimitBudget rateLimitBudget;
+    private final HubSpotConcurrencyLimiter concurrencyLimiter;
+
+    /**
+     * @param transport
+     *            The transport shared by all the clients of the connector
+     * @param policies
+     *            The throttling, retries and metrics applied to every request, shared by all the clients of the connector. If null none is applied
+     */
+    public HubSpotClientImpl(final HubSpotHttpTransport transport, final HubSpotClientPolicies policies, final String urlAPI, final String urlAuth,
+            final String APIVersion, final String clientId, final String hubId, final String scope, final String callbackUrl) {
         this.urlAPI = StringUtils.isEmpty(urlAPI) ? "http://hubapi.com" : urlAPI;
         this.urlAuth = StringUtils.isEmpty(urlAuth) ? "https://app.hubspot.com/auth/authenticate" : urlAuth;
         this.APIVersion = StringUtils.isEmpty(APIVersion) ? "v1" : APIVersion;
@@ -79,7 +101,125 @@ public class HubSpotClientImpl implements HubSpotClient {
         this.scope = scope;
         this.callbackUrl = callbackUrl;
 
-        jerseyClient = new Client();
+        // The Jersey client (and its connection pool) is shared by all the tenants
+        jerseyClient = transport.getJerseyClient();
+        streamRequestBodies = transport.isStreamRequestBodies();
+        final HubSpotClientPolicies shared = policies != null ? policies : HubSpotClientPolicies.NONE;
+        rateLimiter = shared.getRateLimiter();
+        retryPolicy = shared.getRetryPolicy();
+        metrics = shared.getMetrics();
+        rateLimitBudget = shared.getRateLimitBudget();
+        concurrencyLimiter = shared.getConcurrencyLimiter();
+    }
+
+    private String execute(final String operation, final WebResource wr, final String userId, final HubSpotWebResourceMethods method)
+            throws HubSpotConnectorAccessTokenExpiredException, HubSpotConnectorException {
+        return execute(operation, String.class, wr, userId, method, null);
+    }
+
+    private String execute(final String operation, final WebResource wr, final String userId, final HubSpotWebResourceMethods method, final Object requestBody)
+            throws HubSpotConnectorAccessTokenExpiredException, HubSpotConnectorException {
+        return execute(operation, String.class, wr, userId, method, requestBody);
+    }
+
+    private <T> T execute(final String operation, final Class<T> type, final WebResource wr, final String userId, final HubSpotWebResourceMethods method)
+            throws HubSpotConnectorAccessTokenExpiredException, HubSpotConnectorException {
+        return execute(operation, type, wr, userId, method, null);
+    }
+
+    private <T> T execute(final String operation, final Class<T> type, final WebResource wr, final String userId, final HubSpotWebResourceMethods method,
+            final Object requestBody) throws HubSpotConnectorAccessTokenExpiredException, HubSpotConnectorException {
+        // POST requests (and the token refresh) are not retried unless the caller knows that they are idempotent
+        final boolean idempotent = HubSpotWebResourceMethods.GET.equals(method) || HubSpotWebResourceMethods.PUT.equals(method)
+                || HubSpotWebResourceMethods.DELETE.equals(method);
+        return execute(operation, type, wr, userId, method, requestBody, idempotent);
+    }
+
+    /**
+     * Every request of the client goes through here, so the policies shared by the connector are applied around {@link HubSpotClientUtils#webResourceGet}
+     *
+     * @param operation
+     *            The name of the operation, under which its latency is recorded
+     * @param idempotent
+     *            If the request can be repeated without side effects, so it can be retried if it fails with a transient error
+     */
+    private <T> T execute(final String operation, final Class<T> type, final WebResource wr, final String userId, final HubSpotWebResourceMethods method,
+            final Object requestBody, final boolean idempotent) throws HubSpotConnectorAccessTokenExpiredException, HubSpotConnectorException {
+        final HubSpotRetryPolicy.Attempts attempts = retryPolicy != null ? retryPolicy.newAttempts() : null;
+        final HubSpotRateLimitBudget.PortalBudget budget = rateLimitBudget != null ? rateLimitBudget.getPortal(getPortal(userId)) : null;
+        final HubSpotConcurrencyLimiter.PortalLimit concurrency = concurrencyLimiter != null ? concurrencyLimiter.getPortal(getPortal(userId)) : null;
+        final long start = metrics != null ? System.nanoTime() : 0;
+
+        try {
+            while (true) {
+                if (rateLimiter != null) {
+                    rateLimiter.acquire(getPortal(userId));
+                }
+                if (budget != null) {
+                    budget.acquire();
+                }
+
+                try {
+                    return send(type, wr, userId, method, requestBody, budget, concurrency);
+                } catch (final HubSpotConnectorException e) {
+                    final long delay = attempts != null ? attempts.nextDelay(idempotent, e) : -1;
+                    if (delay < 0) {
+                        throw e;
+                    }
+                    if (metrics != null) {
+                        metrics.recordRetry();
+                    }
+
+                    logger.warn(String.format("Retrying %s %s in %d ms (retry %d) - %s", method, wr.getURI().getPath(), delay, attempts.getRetries(), e.getMessage()));
+                    try {
+                        Thread.sleep(delay);
+                    } catch (final InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw e;
+                    }
+                }
+            }
+        } finally {
+            if (metrics != null) {
+                metrics.recordOperation(operation, getPortal(userId), System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Sends one attempt of a request, holding a slot of the concurrency limit of the portal while it is in progress, but not while it waits to be retried
+     */
+    private <T> T send(final Class<T> type, final WebResource wr, final String userId, final HubSpotWebResourceMethods method, final Object requestBody,
+            final HubSpotRateLimitBudget.PortalBudget budget, final HubSpotConcurrencyLimiter.PortalLimit concurrency) throws HubSpotConnectorAccessTokenExpiredException,
+            HubSpotConnectorException {
+        if (concurrency == null) {
+            return HubSpotClientUtils.webResourceGet(type, wr, userId, method, requestBody, metrics, budget);
+        }
+
+        final long start = concurrency.acquire();
+        boolean overloaded = false;
+        try {
+            return HubSpotClientUtils.webResourceGet(type, wr, userId, method, requestBody, metrics, budget);
+        } catch (final HubSpotConnectorException e) {
+            overloaded = HubSpotConcurrencyLimiter.isOverload(e);
+            throw e;
+        } finally {
+            concurrency.release(start, overloaded);
+        }
+    }
+
+    /**
+     * @return The key of the limits of the portal. If the client does not know its hubId each user is treated as a different portal
+     */
+    private String getPortal(final String userId) {
+        return StringUtils.isEmpty(hubId) ? userId : hubId;
+    }
+
+    /**
+     * @return The body of a JSON request. Depending on the transport it is either the JSON String or an entity that is serialized straight to the connection
+     */
+    private Object toJsonEntity(final Object o) throws HubSpotConnectorException {
+        return streamRequestBodies ? HubSpotClientUtils.transformObjectToJsonEntity(o) : HubSpotClientUtils.transformObjectToJson(o);
     }
 
     private WebResource getWebResource(final URI uri, final String accessToken) throws HubSpotConnectorNoAccessTokenException {
@@ -101,7 +241,9 @@ public class HubSpotClientImpl implements HubSpotClient {
         headers.put("Location", authUrl);
         headers.put("http.status", "302");
 
-        logger.debug("Ready for authentication. Redirecting (302) to: " + authUrl);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Ready for authentication. Redirecting (302) to: " + authUrl);
+        }
 
         return authUrl;
     }
@@ -120,8 +262,10 @@ public class HubSpotClientImpl implements HubSpotClient {
             wr = wr.queryParam("vidOffset", contactOffset);
         }
 
-        logger.debug("Requesting allContacts to: " + wr.toString());
-        final ContactList cl = HubSpotClientUtils.webResourceGet(ContactList.class, wr, userId, HubSpotWebResourceMethods.GET);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting allContacts to: " + wr.toString());
+        }
+        final ContactList cl = execute("getAllContacts", ContactList.class, wr, userId, HubSpotWebResourceMethods.GET);
 
         return cl;
     }
@@ -143,8 +287,10 @@ public class HubSpotClientImpl implements HubSpotClient {
             wr = wr.queryParam("vidOffset", contactOffset);
         }
 
-        logger.debug("Requesting recentContacts to:" + wr.toString());
-        return HubSpotClientUtils.webResourceGet(ContactList.class, wr, userId, HubSpotWebResourceMethods.GET);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting recentContacts to:" + wr.toString());
+        }
+        return execute("getRecentContacts", ContactList.class, wr, userId, HubSpotWebResourceMethods.GET);
     }
 
     @Override
@@ -159,9 +305,11 @@ public class HubSpotClientImpl implements HubSpotClient {
 
         final WebResource wr = getWebResource(uri, accessToken);
 
-        logger.debug("Requesting contactById to:" + wr.toString());
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting contactById to:" + wr.toString());
+        }
 
-        return HubSpotClientUtils.webResourceGet(Contact.class, wr, userId, HubSpotWebResourceMethods.GET);
+        return execute("getContactById", Contact.class, wr, userId, HubSpotWebResourceMethods.GET);
     }
 
     @Override
@@ -176,9 +324,11 @@ public class HubSpotClientImpl implements HubSpotClient {
 
         final WebResource wr = getWebResource(uri, accessToken);
 
-        logger.debug("Requesting contactByEmail to:" + wr.toString());
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting contactByEmail to:" + wr.toString());
+        }
 
-        return HubSpotClientUtils.webResourceGet(Contact.class, wr, userId, HubSpotWebResourceMethods.GET);
+        return execute("getContactByEmail", Contact.class, wr, userId, HubSpotWebResourceMethods.GET);
     }
 
     @Override
@@ -193,14 +343,70 @@ public class HubSpotClientImpl implements HubSpotClient {
 
         final WebResource wr = getWebResource(uri, accessToken);
 
-        logger.debug("Requesting contactByUserToken to: " + wr.toString());
-        return HubSpotClientUtils.webResourceGet(Contact.class, wr, userId, HubSpotWebResourceMethods.GET);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting contactByUserToken to: " + wr.toString());
+        }
+        return execute("getContactByUserToken", Contact.class, wr, userId, HubSpotWebResourceMethods.GET);
     }
 
     @Override
-    public ContactQuery getContactsByQuery(final String accessToken, final String userId, final String query, final String count) throws HubSpotConnectorException,
+    public ContactBatchResponse getContactsByIds(final String accessToken, final String userId, final List<String> contactIds) throws HubSpotConnectorException,
             HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
 
+        return getContactsBatch(accessToken, userId, "vids", "vid", contactIds);
+    }
+
+    @Override
+    public ContactBatchResponse getContactsByEmails(final String accessToken, final String userId, final List<String> contactEmails) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        return getContactsBatch(accessToken, userId, "emails", "email", contactEmails);
+    }
+
+    @Override
+    public ContactBatchResponse getContactsByUserTokens(final String accessToken, final String userId, final List<String> contactUserTokens) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        return getContactsBatch(accessToken, userId, "utks", "utk", contactUserTokens);
+    }
+
+    /**
+     * Looks up several contacts in one request with one of the batch endpoints of the Contacts API
+     *
+     * @param path
+     *            The kind of key of the endpoint: vids, emails or utks
+     * @param param
+     *            The query parameter that is repeated for each key
+     */
+    private ContactBatchResponse getContactsBatch(final String accessToken, final String userId, final String path, final String param, final List<String> keys)
+            throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        if (keys == null || keys.isEmpty()) {
+            throw new HubSpotConnectorException("The list of contacts to look up cannot be empty");
+        }
+
+        final URI uri = UriBuilder.fromPath(urlAPI).path("/contacts/{apiversion}/contact/{path}/batch/").build(APIVersion, path);
+
+        WebResource wr = getWebResource(uri, accessToken);
+        for (final String key : keys) {
+            if (StringUtils.isEmpty(key)) {
+                throw new HubSpotConnectorException("The contacts to look up cannot have empty keys");
+            }
+            wr = wr.queryParam(param, key);
+        }
+
+        final String operation = "vids".equals(path) ? "getContactsByIds" : "emails".equals(path) ? "getContactsByEmails" : "getContactsByUserTokens";
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting contactsBatch to: " + wr.toString());
+        }
+        final ContactBatchResponse response = execute(operation, ContactBatchResponse.class, wr, userId, HubSpotWebResourceMethods.GET);
+        return response != null ? response : new ContactBatchResponse();
+    }
+
+    @Override
+    public ContactQuery getContactsByQuery(final String accessToken, final String userId, final String query, final String count, final String offset)
+            throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
         if (StringUtils.isEmpty(query)) {
             throw new HubSpotConnectorException("The parameter query cannot be empty");
         }
@@ -212,9 +418,14 @@ public class HubSpotClientImpl implements HubSpotClient {
         if (count != null) {
             wr = wr.queryParam("count", count);
         }
+        if (offset != null) {
+            wr = wr.queryParam("offset", offset);
+        }
 
-        logger.debug("Requesting contactsByQuery to: " + wr.toString());
-        return HubSpotClientUtils.webResourceGet(ContactQuery.class, wr, userId, HubSpotWebResourceMethods.GET);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting contactsByQuery to: " + wr.toString());
+        }
+        return execute("getContactsByQuery", ContactQuery.class, wr, userId, HubSpotWebResourceMethods.GET);
     }
 
     @Override
@@ -229,8 +440,10 @@ public class HubSpotClientImpl implements HubSpotClient {
 
         final WebResource wr = getWebResource(uri, accessToken);
 
-        logger.debug("Requesting deleteContact to: " + wr.toString());
-        return HubSpotClientUtils.webResourceGet(ContactDeleted.class, wr, userId, HubSpotWebResourceMethods.DELETE);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting deleteContact to: " + wr.toString());
+        }
+        return execute("deleteContact", ContactDeleted.class, wr, userId, HubSpotWebResourceMethods.DELETE);
     }
 
     @Override
@@ -247,14 +460,17 @@ public class HubSpotClientImpl implements HubSpotClient {
         final Contact contact = new Contact();
         contact.setContactProperties(contactProperties);
 
-        final String contactJson = HubSpotClientUtils.transformObjectToJson(contact);
+        final Object contactJson = toJsonEntity(contact);
 
         final URI uri = UriBuilder.fromPath(urlAPI).path("/contacts/{apiversion}/contact/vid/{contactid}/profile").build(APIVersion, contactId);
 
         final WebResource wr = getWebResource(uri, accessToken);
 
-        logger.debug("Requesting updateContact to: " + wr.toString());
-        HubSpotClientUtils.webResourceGet(wr, userId, HubSpotWebResourceMethods.POST, contactJson);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting updateContact to: " + wr.toString());
+        }
+        // Setting the same values again has no side effects, so it can be retried
+        execute("updateContact", String.class, wr, userId, HubSpotWebResourceMethods.POST, contactJson, true);
     }
 
     @Override
@@ -271,14 +487,42 @@ public class HubSpotClientImpl implements HubSpotClient {
         final Contact contact = new Contact();
         contact.setContactProperties(contactProperties);
 
-        final String contactJson = HubSpotClientUtils.transformObjectToJson(contact);
+        final Object contactJson = toJsonEntity(contact);
 
         final URI uri = UriBuilder.fromPath(urlAPI).path("/contacts/{apiversion}/contact").build(APIVersion);
 
         final WebResource wr = getWebResource(uri, accessToken);
 
-        logger.debug("Requesting createContact to: " + wr.toString());
-        return HubSpotClientUtils.webResourceGet(Contact.class, wr, userId, HubSpotWebResourceMethods.POST, contactJson);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting createContact to: " + wr.toString());
+        }
+        return execute("createContact", Contact.class, wr, userId, HubSpotWebResourceMethods.POST, contactJson);
+    }
+
+    @Override
+    public void updateContactsBatch(final String accessToken, final String userId, final List<ContactBatchItem> contacts) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        if (contacts == null || contacts.isEmpty()) {
+            throw new HubSpotConnectorException("The parameter contacts cannot be empty");
+        }
+        for (final ContactBatchItem contact : contacts) {
+            if (contact.getVid() == null && StringUtils.isEmpty(contact.getEmail())) {
+                throw new HubSpotConnectorException("Each contact of the batch must have a vid or an email");
+            }
+        }
+
+        final Object contactsJson = toJsonEntity(contacts);
+
+        final URI uri = UriBuilder.fromPath(urlAPI).path("/contacts/{apiversion}/contact/batch/").build(APIVersion);
+
+        final WebResource wr = getWebResource(uri, accessToken);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting updateContactsBatch to: " + wr.toString());
+        }
+        // The contacts are created or updated with the same values, so it can be retried
+        execute("updateContactsBatch", String.class, wr, userId, HubSpotWebResourceMethods.POST, contactsJson, true);
     }
 
     @Override
@@ -289,8 +533,10 @@ public class HubSpotClientImpl implements HubSpotClient {
 
         final WebResource wr = getWebResource(uri, accessToken);
 
-        logger.debug("Requesting contactStatistics to: " + wr.toString());
-        return HubSpotClientUtils.webResourceGet(ContactStatistics.class, wr, userId, HubSpotWebResourceMethods.GET);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting contactStatistics to: " + wr.toString());
+        }
+        return execute("getContactStatistics", ContactStatistics.class, wr, userId, HubSpotWebResourceMethods.GET);
     }
 
     @Override
@@ -307,8 +553,10 @@ public class HubSpotClientImpl implements HubSpotClient {
             wr = wr.queryParam("offset", offset);
         }
 
-        logger.debug("Requesting contactsLists to: " + wr.toString());
-        return HubSpotClientUtils.webResourceGet(HubSpotListLists.class, wr, userId, HubSpotWebResourceMethods.GET);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting contactsLists to: " + wr.toString());
+        }
+        return execute("getContactsLists", HubSpotListLists.class, wr, userId, HubSpotWebResourceMethods.GET);
     }
 
     @Override
@@ -323,8 +571,10 @@ public class HubSpotClientImpl implements HubSpotClient {
 
         final WebResource wr = getWebResource(uri, accessToken);
 
-        logger.debug("Requesting contactListById to: " + wr.toString());
-        return HubSpotClientUtils.webResourceGet(HubSpotList.class, wr, userId, HubSpotWebResourceMethods.GET);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting contactListById to: " + wr.toString());
+        }
+        return execute("getContactListById", HubSpotList.class, wr, userId, HubSpotWebResourceMethods.GET);
     }
 
     @Override
@@ -341,8 +591,10 @@ public class HubSpotClientImpl implements HubSpotClient {
             wr = wr.queryParam("offset", offset);
         }
 
-        logger.debug("Requesting dynamicContactLists to: " + wr.toString());
-        return HubSpotClientUtils.webResourceGet(HubSpotListLists.class, wr, userId, HubSpotWebResourceMethods.GET);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting dynamicContactLists to: " + wr.toString());
+        }
+        return execute("getDynamicContactLists", HubSpotListLists.class, wr, userId, HubSpotWebResourceMethods.GET);
     }
 
     @Override
@@ -366,8 +618,10 @@ public class HubSpotClientImpl implements HubSpotClient {
             wr = wr.queryParam("vidOffset", offset);
         }
 
-        logger.debug("Requesting getContactsInAList to: " + wr.toString());
-        return HubSpotClientUtils.webResourceGet(ContactList.class, wr, userId, HubSpotWebResourceMethods.GET);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting getContactsInAList to: " + wr.toString());
+        }
+        return execute("getContactsInAList", ContactList.class, wr, userId, HubSpotWebResourceMethods.GET);
     }
 
     @Override
@@ -384,8 +638,10 @@ public class HubSpotClientImpl implements HubSpotClient {
 
         wr.queryParam("portalId", hubId);
 
-        logger.debug("Requesting getEmailSubscriptions to: " + wr.toString());
-        return HubSpotClientUtils.webResourceGet(EmailSubscription.class, wr, userId, HubSpotWebResourceMethods.GET);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting getEmailSubscriptions to: " + wr.toString());
+        }
+        return execute("getEmailSubscriptions", EmailSubscription.class, wr, userId, HubSpotWebResourceMethods.GET);
     }
 
     @Override
@@ -406,8 +662,10 @@ public class HubSpotClientImpl implements HubSpotClient {
 
         wr.queryParam("portalId", hubId);
 
-        logger.debug("Requesting getEmailSubscriptionStatus to: " + wr.toString());
-        return HubSpotClientUtils.webResourceGet(EmailSubscriptionStatus.class, wr, userId, HubSpotWebResourceMethods.GET);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting getEmailSubscriptionStatus to: " + wr.toString());
+        }
+        return execute("getEmailSubscriptionStatus", EmailSubscriptionStatus.class, wr, userId, HubSpotWebResourceMethods.GET);
     }
 
     @Override
@@ -436,10 +694,13 @@ public class HubSpotClientImpl implements HubSpotClient {
         final EmailSubscriptionStatus ess = new EmailSubscriptionStatus();
         ess.setSubscriptionStatuses(statuses);
 
-        final String json = HubSpotClientUtils.transformObjectToJson(ess);
+        final Object json = toJsonEntity(ess);
 
-        logger.debug("Requesting getEmailSubscriptionStatus to: " + wr.toString());
-        return HubSpotClientUtils.webResourceGet(EmailSubscriptionStatusResult.class, wr, userId, HubSpotWebResourceMethods.POST, json);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting getEmailSubscriptionStatus to: " + wr.toString());
+        }
+        // Setting the same values again has no side effects, so it can be retried
+        return execute("updateEmailSubscriptionStatus", EmailSubscriptionStatusResult.class, wr, userId, HubSpotWebResourceMethods.POST, json, true);
     }
 
     @Override
@@ -463,10 +724,12 @@ public class HubSpotClientImpl implements HubSpotClient {
         final EmailSubscriptionStatusUnsuscribeFromAll essufa = new EmailSubscriptionStatusUnsuscribeFromAll();
         essufa.setUnsubscribeFromAll(true);
 
-        final String json = HubSpotClientUtils.transformObjectToJson(essufa);
+        final Object json = toJsonEntity(essufa);
 
-        logger.debug("Requesting updateEmailSubscriptionStatusUnsubscribeFromAll to: " + wr.toString());
-        return HubSpotClientUtils.webResourceGet(EmailSubscriptionStatusResult.class, wr, userId, HubSpotWebResourceMethods.PUT, json);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting updateEmailSubscriptionStatusUnsubscribeFromAll to: " + wr.toString());
+        }
+        return execute("updateEmailSubscriptionStatusUnsubscribeFromAll", EmailSubscriptionStatusResult.class, wr, userId, HubSpotWebResourceMethods.PUT, json);
     }
 
     @Override
@@ -477,8 +740,10 @@ public class HubSpotClientImpl implements HubSpotClient {
 
         final WebResource wr = getWebResource(uri, accessToken);
 
-        logger.debug("Requesting getAllProperties to: " + wr.toString());
-        final CustomContactProperty[] cpl = HubSpotClientUtils.webResourceGet(CustomContactProperty[].class, wr, userId, HubSpotWebResourceMethods.GET);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting getAllProperties to: " + wr.toString());
+        }
+        final CustomContactProperty[] cpl = execute("getAllCustomProperties", CustomContactProperty[].class, wr, userId, HubSpotWebResourceMethods.GET);
 
         return cpl != null ? Arrays.asList(cpl) : null;
     }
@@ -499,10 +764,12 @@ public class HubSpotClientImpl implements HubSpotClient {
 
         final WebResource wr = getWebResource(uri, accessToken);
 
-        final String json = HubSpotClientUtils.transformObjectToJson(contactProperty);
+        final Object json = toJsonEntity(contactProperty);
 
-        logger.debug("Requesting createCustomProperty to: " + wr.toString());
-        return HubSpotClientUtils.webResourceGet(CustomContactProperty.class, wr, userId, HubSpotWebResourceMethods.PUT, json);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting createCustomProperty to: " + wr.toString());
+        }
+        return execute("createCustomProperty", CustomContactProperty.class, wr, userId, HubSpotWebResourceMethods.PUT, json);
     }
 
     @Override
@@ -521,10 +788,13 @@ public class HubSpotClientImpl implements HubSpotClient {
 
         final WebResource wr = getWebResource(uri, accessToken);
 
-        final String json = HubSpotClientUtils.transformObjectToJson(contactProperty);
+        final Object json = toJsonEntity(contactProperty);
 
-        logger.debug("Requesting updateCustomProperty to: " + wr.toString());
-        return HubSpotClientUtils.webResourceGet(CustomContactProperty.class, wr, userId, HubSpotWebResourceMethods.POST, json);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting updateCustomProperty to: " + wr.toString());
+        }
+        // Setting the same values again has no side effects, so it can be retried
+        return execute("updateCustomProperty", CustomContactProperty.class, wr, userId, HubSpotWebResourceMethods.POST, json, true);
     }
 
     @Override
@@ -539,8 +809,10 @@ public class HubSpotClientImpl implements HubSpotClient {
 
         final WebResource wr = getWebResource(uri, accessToken);
 
-        logger.debug("Requesting deleteCustomProperty to: " + wr.toString());
-        HubSpotClientUtils.webResourceGet(wr, userId, HubSpotWebResourceMethods.DELETE);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting deleteCustomProperty to: " + wr.toString());
+        }
+        execute("deleteCustomProperty", wr, userId, HubSpotWebResourceMethods.DELETE);
 
     }
 
@@ -556,8 +828,10 @@ public class HubSpotClientImpl implements HubSpotClient {
 
         final WebResource wr = getWebResource(uri, accessToken);
 
-        logger.debug("Requesting getCustomPropertyGroup to: " + wr.toString());
-        return HubSpotClientUtils.webResourceGet(CustomContactPropertyGroup.class, wr, userId, HubSpotWebResourceMethods.GET);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting getCustomPropertyGroup to: " + wr.toString());
+        }
+        return execute("getCustomPropertyGroup", CustomContactPropertyGroup.class, wr, userId, HubSpotWebResourceMethods.GET);
     }
 
     @Override
@@ -576,10 +850,12 @@ public class HubSpotClientImpl implements HubSpotClient {
 
         final WebResource wr = getWebResource(uri, accessToken);
 
-        final String json = HubSpotClientUtils.transformObjectToJson(customContactPropertyGroup);
+        final Object json = toJsonEntity(customContactPropertyGroup);
 
-        logger.debug("Requesting createCustomPropertyGroup to: " + wr.toString());
-        return HubSpotClientUtils.webResourceGet(CustomContactPropertyGroup.class, wr, userId, HubSpotWebResourceMethods.PUT, json);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting createCustomPropertyGroup to: " + wr.toString());
+        }
+        return execute("createCustomPropertyGroup", CustomContactPropertyGroup.class, wr, userId, HubSpotWebResourceMethods.PUT, json);
     }
 
     @Override
@@ -599,10 +875,13 @@ public class HubSpotClientImpl implements HubSpotClient {
 
         final WebResource wr = getWebResource(uri, accessToken);
 
-        final String json = HubSpotClientUtils.transformObjectToJson(customContactPropertyGroup);
+        final Object json = toJsonEntity(customContactPropertyGroup);
 
-        logger.debug("Requesting createCustomPropertyGroup to: " + wr.toString());
-        return HubSpotClientUtils.webResourceGet(CustomContactPropertyGroup.class, wr, userId, HubSpotWebResourceMethods.POST, json);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting createCustomPropertyGroup to: " + wr.toString());
+        }
+        // Setting the same values again has no side effects, so it can be retried
+        return execute("updateCustomPropertyGroup", CustomContactPropertyGroup.class, wr, userId, HubSpotWebResourceMethods.POST, json, true);
 
     }
 
@@ -625,18 +904,70 @@ public class HubSpotClientImpl implements HubSpotClient {
             throw new HubSpotConnectorException("The parameter contactId must be a number", e);
         }
 
-        final URI uri = UriBuilder.fromPath(urlAPI).path("/contacts/{apiversion}/lists/{listid}/add").build(APIVersion, listId);
+        final List<Integer> vids = new LinkedList<Integer>();
+        vids.add(num);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting addExistingContactInAList to list: " + listId);
+        }
+        return updateListMembership(accessToken, userId, listId, "add", vids);
+    }
+
+    @Override
+    public HubSpotListAddContactToListResponse addContactsToList(final String accessToken, final String userId, final String listId, final List<Integer> contactIds)
+            throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        if (StringUtils.isEmpty(listId)) {
+            throw new HubSpotConnectorException("The parameter listId cannot be empty");
+        }
+        if (contactIds == null || contactIds.isEmpty()) {
+            throw new HubSpotConnectorException("The parameter contactIds cannot be empty");
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting addContactsToList to list: " + listId);
+        }
+        return updateListMembership(accessToken, userId, listId, "add", contactIds);
+    }
+
+    @Override
+    public HubSpotListAddContactToListResponse removeContactsFromList(final String accessToken, final String userId, final String listId, final List<Integer> contactIds)
+            throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        if (StringUtils.isEmpty(listId)) {
+            throw new HubSpotConnectorException("The parameter listId cannot be empty");
+        }
+        if (contactIds == null || contactIds.isEmpty()) {
+            throw new HubSpotConnectorException("The parameter contactIds cannot be empty");
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting removeContactsFromList to list: " + listId);
+        }
+        return updateListMembership(accessToken, userId, listId, "remove", contactIds);
+    }
+
+    /**
+     * Adds contacts to a static list, or removes them from it
+     *
+     * @param action
+     *            add or remove
+     */
+    private HubSpotListAddContactToListResponse updateListMembership(final String accessToken, final String userId, final String listId, final String action,
+            final List<Integer> contactIds) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        final URI uri = UriBuilder.fromPath(urlAPI).path("/contacts/{apiversion}/lists/{listid}/{action}").build(APIVersion, listId, action);
 
         final WebResource wr = getWebResource(uri, accessToken);
 
         final HubSpotListAddContactToList hslactl = new HubSpotListAddContactToList();
-        hslactl.setVids(new LinkedList<Integer>());
-        hslactl.getVids().add(num);
+        hslactl.setVids(contactIds);
 
-        final String json = HubSpotClientUtils.transformObjectToJson(hslactl);
+        final Object json = toJsonEntity(hslactl);
 
-        logger.debug("Requesting addExistingContactInAList to: " + wr.toString());
-        return HubSpotClientUtils.webResourceGet(HubSpotListAddContactToListResponse.class, wr, userId, HubSpotWebResourceMethods.POST, json);
+        // Adding a contact that is already in the list, or removing one that is not, has no side effects, so it can be retried
+        final String operation = "add".equals(action) ? "addContactsToList" : "removeContactsFromList";
+        return execute(operation, HubSpotListAddContactToListResponse.class, wr, userId, HubSpotWebResourceMethods.POST, json, true);
     }
 
     @Override
@@ -691,10 +1022,12 @@ public class HubSpotClientImpl implements HubSpotClient {
 
         final WebResource wr = getWebResource(uri, accessToken);
 
-        final String json = HubSpotClientUtils.transformObjectToJson(hbl);
+        final Object json = toJsonEntity(hbl);
 
-        logger.debug("Requesting createContactList to: " + wr.toString());
-        return HubSpotClientUtils.webResourceGet(HubSpotList.class, wr, userId, HubSpotWebResourceMethods.POST, json);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting createContactList to: " + wr.toString());
+        }
+        return execute("createContactList", HubSpotList.class, wr, userId, HubSpotWebResourceMethods.POST, json);
     }
 
     @Override
@@ -709,15 +1042,33 @@ public class HubSpotClientImpl implements HubSpotClient {
 
         final WebResource wr = getWebResource(uri, accessToken);
 
-        logger.debug("Requesting deleteCustomPropertyGroup to: " + wr.toString());
-        HubSpotClientUtils.webResourceGet(wr, userId, HubSpotWebResourceMethods.DELETE);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting deleteCustomPropertyGroup to: " + wr.toString());
+        }
+        execute("deleteCustomPropertyGroup", wr, userId, HubSpotWebResourceMethods.DELETE);
     }
 
     @Override
-    public synchronized void refreshToken(final HubSpotCredentialsManager objectStoreCredentials, final String userId) throws HubSpotConnectorException,
+    public void refreshToken(final HubSpotCredentialsManager objectStoreCredentials, final String userId) throws HubSpotConnectorException,
             HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+        refreshToken(objectStoreCredentials, userId, null);
+    }
 
-        // The credentials must be obtained and saved inside the synchronized method
+    @Override
+    public void refreshToken(final HubSpotCredentialsManager objectStoreCredentials, final String userId, final String expiredAccessToken)
+            throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+        objectStoreCredentials.refreshCredentials(userId, expiredAccessToken, new Callable<OAuthCredentials>() {
+            @Override
+            public OAuthCredentials call() throws Exception {
+                return doRefreshToken(objectStoreCredentials, userId);
+            }
+        });
+    }
+
+    private OAuthCredentials doRefreshToken(final HubSpotCredentialsManager objectStoreCredentials, final String userId) throws HubSpotConnectorException,
+            HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        // Only one refresh per user runs at a time (see HubSpotCredentialsManager.refreshCredentials), so the credentials can be read and saved here
         final OAuthCredentials credentials = objectStoreCredentials.getCredentials(userId);
 
         if (credentials == null) {
@@ -743,20 +1094,29 @@ public class HubSpotClientImpl implements HubSpotClient {
 
         final String reqBody = rtreq.toString();
 
-        logger.debug(String.format("Requesting refreshToken to: %s - User: %s", wr.toString(), userId));
-        final RefreshTokenResponse rtres = HubSpotClientUtils.webResourceGet(RefreshTokenResponse.class, wr, userId, HubSpotWebResourceMethods.REFRESH, reqBody);
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Requesting refreshToken to: %s - User: %s", wr.toString(), userId));
+        }
+        final RefreshTokenResponse rtres = execute("refreshToken", RefreshTokenResponse.class, wr, userId, HubSpotWebResourceMethods.REFRESH, reqBody);
 
         if (rtres == null || StringUtils.isEmpty(rtres.getRefreshToken()) || StringUtils.isEmpty(rtres.getAccessToken())) {
             throw new HubSpotConnectorAccessTokenExpiredException("Trying to refresh access token but the service don't respond with the required data");
         }
 
-        // Establish the credentials with the new Access Token and Refresh Token
-        credentials.setRefreshToken(rtres.getRefreshToken());
-        credentials.setAccessToken(rtres.getAccessToken());
+        // New credentials with the new Access Token and Refresh Token. The stored ones are shared with the threads that are reading them, so they are never changed
+        final OAuthCredentials refreshed = HubSpotClientUtils.refreshedCredentials(credentials, rtres);
 
         // Save the credentials (the OS in CloudHub is a proxy, so it must be saved)
-        objectStoreCredentials.setCredentias(credentials);
+        objectStoreCredentials.setCredentias(refreshed);
+
+        if (metrics != null) {
+            metrics.recordTokenRefresh();
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Refresh successfull for %s - Previous token was: %s - New token is: %s", userId, previousToken, rtres.getAccessToken()));
+        }
 
-        logger.debug(String.format("Refresh successfull for %s - Previous token was: %s - New token is: %s", userId, previousToken, rtres.getAccessToken()));
+        return refreshed;
     }
 }
\ No newline at end of file
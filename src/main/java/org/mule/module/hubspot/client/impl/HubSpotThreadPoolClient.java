@@ -0,0 +1,483 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.client.impl;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.mule.module.hubspot.client.HubSpotAsyncClient;
+import org.mule.module.hubspot.client.HubSpotClient;
+import org.mule.module.hubspot.client.HubSpotClientsManager;
+import org.mule.module.hubspot.client.HubSpotFuture;
+import org.mule.module.hubspot.credential.HubSpotCredentialsManager;
+import org.mule.module.hubspot.exception.HubSpotConnectorAccessTokenExpiredException;
+import org.mule.module.hubspot.exception.HubSpotConnectorException;
+import org.mule.module.hubspot.exception.HubSpotConnectorNoAccessTokenException;
+import org.mule.module.hubspot.exception.HubSpotConnectorRateLimitException;
+import org.mule.module.hubspot.model.OAuthCredentials;
+import org.mule.module.hubspot.model.contact.Contact;
+import org.mule.module.hubspot.model.contact.ContactBatchItem;
+import org.mule.module.hubspot.model.contact.ContactBatchResponse;
+import org.mule.module.hubspot.model.contact.ContactDeleted;
+import org.mule.module.hubspot.model.contact.ContactList;
+import org.mule.module.hubspot.model.contact.ContactProperties;
+import org.mule.module.hubspot.model.contact.ContactQuery;
+import org.mule.module.hubspot.model.contact.ContactStatistics;
+import org.mule.module.hubspot.model.contactproperty.CustomContactProperty;
+import org.mule.module.hubspot.model.contactproperty.CustomContactPropertyGroup;
+import org.mule.module.hubspot.model.email.EmailSubscription;
+import org.mule.module.hubspot.model.email.EmailSubscriptionStatus;
+import org.mule.module.hubspot.model.email.EmailSubscriptionStatusResult;
+import org.mule.module.hubspot.model.email.EmailSubscriptionStatusStatuses;
+import org.mule.module.hubspot.model.list.HubSpotList;
+import org.mule.module.hubspot.model.list.HubSpotListAddContactToListResponse;
+import org.mule.module.hubspot.model.list.HubSpotListFilters;
+import org.mule.module.hubspot.model.list.HubSpotListLists;
+import org.mule.module.hubspot.model.list.HubSpotNewList;
+
+/**
+ * Runs the operations of the blocking tenant clients on a bounded thread pool owned by the connector. Each task gets the credentials of the user and its client, sends the
+ * request and, if HubSpot rejects the token, refreshes it (see {@link HubSpotClient#refreshToken(HubSpotCredentialsManager, String, String)}) and sends the request again, as
+ * the processors of the connector do.
+ * <p>
+ * Each request in flight holds a thread of the pool for its whole round trip, so the pool size is the maximum number of them; the rest wait in the queue of the pool, and
+ * are rejected when it is full.
+ */
+public class HubSpotThreadPoolClient implements HubSpotAsyncClient {
+
+    /**
+     * An operation of the blocking client
+     */
+    private interface Call<T> {
+
+        T call(HubSpotClient client, String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException;
+    }
+
+    private final HubSpotCredentialsManager credentialsManager;
+    private final HubSpotClientsManager clientsManager;
+    private final ExecutorService executor;
+
+    public HubSpotThreadPoolClient(final HubSpotCredentialsManager credentialsManager, final HubSpotClientsManager clientsManager, final ExecutorService executor) {
+        this.credentialsManager = credentialsManager;
+        this.clientsManager = clientsManager;
+        this.executor = executor;
+    }
+
+    private <T> HubSpotFuture<T> submit(final String userId, final Call<T> call) {
+        final HubSpotFuture<T> future = new HubSpotFuture<T>(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                final OAuthCredentials cred = credentialsManager.getCredentials(userId);
+                final HubSpotClient client = clientsManager.getOrCreateClient(userId, cred);
+
+                try {
+                    return call.call(client, cred.getAccessToken());
+                } catch (final HubSpotConnectorAccessTokenExpiredException e) {
+                    client.refreshToken(credentialsManager, userId, cred.getAccessToken());
+                    return call.call(client, credentialsManager.getCredentials(userId).getAccessToken());
+                }
+            }
+        });
+        try {
+            executor.execute(future);
+        } catch (final RejectedExecutionException e) {
+            // The queue of the executor is full: the request fails instead of waiting, like the ones that would exceed the rate limit
+            final HubSpotFuture<T> rejected = new HubSpotFuture<T>(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    throw new HubSpotConnectorRateLimitException("Too many requests waiting for a thread to be sent to HubSpot");
+                }
+            });
+            rejected.run();
+            return rejected;
+        }
+        return future;
+    }
+
+    @Override
+    public HubSpotFuture<ContactList> getAllContacts(final String userId, final String count, final String contactOffset) {
+        return submit(userId, new Call<ContactList>() {
+            @Override
+            public ContactList call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.getAllContacts(accessToken, userId, count, contactOffset);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<ContactList> getRecentContacts(final String userId, final String count, final String timeOffset, final String contactOffset) {
+        return submit(userId, new Call<ContactList>() {
+            @Override
+            public ContactList call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.getRecentContacts(accessToken, userId, count, timeOffset, contactOffset);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<Contact> getContactById(final String userId, final String contactId) {
+        return submit(userId, new Call<Contact>() {
+            @Override
+            public Contact call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.getContactById(accessToken, userId, contactId);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<Contact> getContactByEmail(final String userId, final String contactEmail) {
+        return submit(userId, new Call<Contact>() {
+            @Override
+            public Contact call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.getContactByEmail(accessToken, userId, contactEmail);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<Contact> getContactByUserToken(final String userId, final String contactUserToken) {
+        return submit(userId, new Call<Contact>() {
+            @Override
+            public Contact call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.getContactByUserToken(accessToken, userId, contactUserToken);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<ContactBatchResponse> getContactsByIds(final String userId, final List<String> contactIds) {
+        return submit(userId, new Call<ContactBatchResponse>() {
+            @Override
+            public ContactBatchResponse call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.getContactsByIds(accessToken, userId, contactIds);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<ContactBatchResponse> getContactsByEmails(final String userId, final List<String> contactEmails) {
+        return submit(userId, new Call<ContactBatchResponse>() {
+            @Override
+            public ContactBatchResponse call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.getContactsByEmails(accessToken, userId, contactEmails);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<ContactBatchResponse> getContactsByUserTokens(final String userId, final List<String> contactUserTokens) {
+        return submit(userId, new Call<ContactBatchResponse>() {
+            @Override
+            public ContactBatchResponse call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.getContactsByUserTokens(accessToken, userId, contactUserTokens);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<ContactQuery> getContactsByQuery(final String userId, final String query, final String count, final String offset) {
+        return submit(userId, new Call<ContactQuery>() {
+            @Override
+            public ContactQuery call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.getContactsByQuery(accessToken, userId, query, count, offset);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<ContactDeleted> deleteContact(final String userId, final String contactId) {
+        return submit(userId, new Call<ContactDeleted>() {
+            @Override
+            public ContactDeleted call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.deleteContact(accessToken, userId, contactId);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<Void> updateContact(final String userId, final String contactId, final ContactProperties contactProperties) {
+        return submit(userId, new Call<Void>() {
+            @Override
+            public Void call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                client.updateContact(accessToken, userId, contactId, contactProperties);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<Contact> createContact(final String userId, final ContactProperties contactProperties) {
+        return submit(userId, new Call<Contact>() {
+            @Override
+            public Contact call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.createContact(accessToken, userId, contactProperties);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<Void> updateContactsBatch(final String userId, final List<ContactBatchItem> contacts) {
+        return submit(userId, new Call<Void>() {
+            @Override
+            public Void call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                client.updateContactsBatch(accessToken, userId, contacts);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<ContactStatistics> getContactStatistics(final String userId) {
+        return submit(userId, new Call<ContactStatistics>() {
+            @Override
+            public ContactStatistics call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.getContactStatistics(accessToken, userId);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<HubSpotListLists> getContactsLists(final String userId, final String count, final String offset) {
+        return submit(userId, new Call<HubSpotListLists>() {
+            @Override
+            public HubSpotListLists call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.getContactsLists(accessToken, userId, count, offset);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<HubSpotList> getContactListById(final String userId, final String listId) {
+        return submit(userId, new Call<HubSpotList>() {
+            @Override
+            public HubSpotList call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.getContactListById(accessToken, userId, listId);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<HubSpotListLists> getDynamicContactLists(final String userId, final String count, final String offset) {
+        return submit(userId, new Call<HubSpotListLists>() {
+            @Override
+            public HubSpotListLists call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.getDynamicContactLists(accessToken, userId, count, offset);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<ContactList> getContactsInAList(final String userId, final String listId, final String count, final String property, final String offset) {
+        return submit(userId, new Call<ContactList>() {
+            @Override
+            public ContactList call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.getContactsInAList(accessToken, userId, listId, count, property, offset);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<HubSpotListAddContactToListResponse> addExistingContactInAList(final String userId, final String listId, final String contactId) {
+        return submit(userId, new Call<HubSpotListAddContactToListResponse>() {
+            @Override
+            public HubSpotListAddContactToListResponse call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException,
+                    HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+                return client.addExistingContactInAList(accessToken, userId, listId, contactId);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<HubSpotListAddContactToListResponse> addContactsToList(final String userId, final String listId, final List<Integer> contactIds) {
+        return submit(userId, new Call<HubSpotListAddContactToListResponse>() {
+            @Override
+            public HubSpotListAddContactToListResponse call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException,
+                    HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+                return client.addContactsToList(accessToken, userId, listId, contactIds);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<HubSpotListAddContactToListResponse> removeContactsFromList(final String userId, final String listId, final List<Integer> contactIds) {
+        return submit(userId, new Call<HubSpotListAddContactToListResponse>() {
+            @Override
+            public HubSpotListAddContactToListResponse call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException,
+                    HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+                return client.removeContactsFromList(accessToken, userId, listId, contactIds);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<HubSpotList> createContactList(final String userId, final HubSpotNewList list, final List<HubSpotListFilters> filters) {
+        return submit(userId, new Call<HubSpotList>() {
+            @Override
+            public HubSpotList call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.createContactList(accessToken, userId, list, filters);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<EmailSubscription> getEmailSubscriptions(final String userId, final String hubId) {
+        return submit(userId, new Call<EmailSubscription>() {
+            @Override
+            public EmailSubscription call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.getEmailSubscriptions(accessToken, userId, hubId);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<EmailSubscriptionStatus> getEmailSubscriptionStatus(final String userId, final String hubId, final String email) {
+        return submit(userId, new Call<EmailSubscriptionStatus>() {
+            @Override
+            public EmailSubscriptionStatus call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.getEmailSubscriptionStatus(accessToken, userId, hubId, email);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<EmailSubscriptionStatusResult> updateEmailSubscriptionStatus(final String userId, final String hubId, final String email,
+            final List<EmailSubscriptionStatusStatuses> statuses) {
+        return submit(userId, new Call<EmailSubscriptionStatusResult>() {
+            @Override
+            public EmailSubscriptionStatusResult call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException,
+                    HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+                return client.updateEmailSubscriptionStatus(accessToken, userId, hubId, email, statuses);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<EmailSubscriptionStatusResult> updateEmailSubscriptionStatusUnsubscribeFromAll(final String userId, final String hubId, final String email) {
+        return submit(userId, new Call<EmailSubscriptionStatusResult>() {
+            @Override
+            public EmailSubscriptionStatusResult call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException,
+                    HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+                return client.updateEmailSubscriptionStatusUnsubscribeFromAll(accessToken, userId, hubId, email);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<List<CustomContactProperty>> getAllCustomProperties(final String userId) {
+        return submit(userId, new Call<List<CustomContactProperty>>() {
+            @Override
+            public List<CustomContactProperty> call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.getAllCustomProperties(accessToken, userId);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<CustomContactProperty> createCustomProperty(final String userId, final CustomContactProperty contactProperty) {
+        return submit(userId, new Call<CustomContactProperty>() {
+            @Override
+            public CustomContactProperty call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.createCustomProperty(accessToken, userId, contactProperty);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<CustomContactProperty> updateCustomProperty(final String userId, final String propertyName, final CustomContactProperty contactProperty) {
+        return submit(userId, new Call<CustomContactProperty>() {
+            @Override
+            public CustomContactProperty call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.updateCustomProperty(accessToken, userId, propertyName, contactProperty);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<Void> deleteCustomProperty(final String userId, final String contactPropertyName) {
+        return submit(userId, new Call<Void>() {
+            @Override
+            public Void call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                client.deleteCustomProperty(accessToken, userId, contactPropertyName);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<CustomContactPropertyGroup> getCustomPropertyGroup(final String userId, final String groupName) {
+        return submit(userId, new Call<CustomContactPropertyGroup>() {
+            @Override
+            public CustomContactPropertyGroup call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.getCustomPropertyGroup(accessToken, userId, groupName);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<CustomContactPropertyGroup> createCustomPropertyGroup(final String userId, final CustomContactPropertyGroup customContactPropertyGroup) {
+        return submit(userId, new Call<CustomContactPropertyGroup>() {
+            @Override
+            public CustomContactPropertyGroup call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.createCustomPropertyGroup(accessToken, userId, customContactPropertyGroup);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<CustomContactPropertyGroup> updateCustomPropertyGroup(final String userId, final String groupName,
+            final CustomContactPropertyGroup customContactPropertyGroup) {
+        return submit(userId, new Call<CustomContactPropertyGroup>() {
+            @Override
+            public CustomContactPropertyGroup call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                return client.updateCustomPropertyGroup(accessToken, userId, groupName, customContactPropertyGroup);
+            }
+        });
+    }
+
+    @Override
+    public HubSpotFuture<Void> deleteCustomPropertyGroup(final String userId, final String groupName) {
+        return submit(userId, new Call<Void>() {
+            @Override
+            public Void call(final HubSpotClient client, final String accessToken) throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException,
+                    HubSpotConnectorAccessTokenExpiredException {
+                client.deleteCustomPropertyGroup(accessToken, userId, groupName);
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.client.policy;
+
+import org.mule.module.hubspot.metrics.HubSpotMetrics;
+
+/**
+ * The policies applied around every request of the clients of a connector instance: throttling, retries and metrics. They are shared by all the tenant clients, and any of
+ * them can be null if it is disabled. It is immutable, so a client created at any time sees the same policies as the others.
+ */
+public class HubSpotClientPolicies {
+
+    /**
+     * No throttling, no retries and no metrics
+     */
+    static final public HubSpotClientPolicies NONE = new HubSpotClientPolicies(null, null, null, null, null);
+
+    private final HubSpotRateLimiter rateLimiter;
+    private final HubSpotRetryPolicy retryPolicy;
+    private final HubSpotMetrics metrics;
+    private final HubSpotRateLimitBudget rateLimitBudget;
+    private final HubSpotConcurrencyLimiter concurrencyLimiter;
+
+    /**
+     * @param rateLimiter
+     *            The limiter applied to every request, or null if the requests are not throttled
+     * @param retryPolicy
+     *            The policy used to retry the requests that fail with a transient error, or null if they are not retried
+     * @param metrics
+     *            Where every request is recorded, or null if the requests are not recorded
+     * @param rateLimitBudget
+     *            The rate limit budget reported by HubSpot for each portal, that slows down the requests as it runs out, or null if it is ignored
+     * @param concurrencyLimiter
+     *            The adaptive limit of the requests in progress to each portal, or null if they are not limited
+     */
+    public HubSpotClientPolicies(final HubSpotRateLimiter rateLimiter, final HubSpotRetryPolicy retryPolicy, final HubSpotMetrics metrics,
+            final HubSpotRateLimitBudget rateLimitBudget, final HubSpotConcurrencyLimiter concurrencyLimiter) {
+        this.rateLimiter = rateLimiter;
+        this.retryPolicy = retryPolicy;
+        this.metrics = metrics;
+        this.rateLimitBudget = rateLimitBudget;
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    public HubSpotRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public HubSpotRetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public HubSpotMetrics getMetrics() {
+        return metrics;
+    }
+
+    public HubSpotRateLimitBudget getRateLimitBudget() {
+        return rateLimitBudget;
+    }
+
+    public HubSpotConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+}
@@ -0,0 +1,261 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.client.policy;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mule.module.hubspot.exception.HubSpotConnectorException;
+import org.mule.module.hubspot.exception.HubSpotConnectorRateLimitException;
+import org.mule.module.hubspot.exception.HubSpotConnectorResponseException;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+
+/**
+ * Limits the requests in progress to each portal (hubId), with a limit that adapts to how HubSpot responds (AIMD).
+ * <p>
+ * While the latency stays close to the lowest one measured and the limit is being used, it grows by about one request per round trip. When the latency grows beyond a
+ * tolerance, which means that the requests are being queued somewhere, it is reduced a little; when HubSpot answers with 429 or 5xx, or the connection fails, it is halved. It
+ * is reduced at most once per round trip, so the responses of the requests already in flight do not punish the same congestion again.
+ * <p>
+ * The requests over the limit wait for a free slot; if none is free within the maximum wait a {@link HubSpotConnectorRateLimitException} is thrown. The
+ * future-based client sends its operations through the same clients, so both kinds of callers share the limit of the portal.
+ * <p>
+ * The limit of a portal is released once it has been idle for a while without requests in flight, so the next request starts again from the initial limit.
+ */
+public class HubSpotConcurrencyLimiter implements HubSpotConcurrencyLimiterMXBean {
+
+    // Weight of each new sample in the smoothed round trip time
+    static final private double RTT_SMOOTHING = 0.1;
+    // How much slower than the lowest round trip time the smoothed one can be before it is taken as a sign of queueing
+    static final private double LATENCY_TOLERANCE = 2.0;
+    static final private double LATENCY_BACKOFF = 0.9;
+    static final private double OVERLOAD_BACKOFF = 0.5;
+    // The lowest round trip time is forgotten after this many samples, so it follows the lasting changes of the service
+    static final private int MIN_RTT_SAMPLES = 1000;
+
+    static final private int DEFAULT_MAX_PORTALS = 10000;
+    static final private long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long maxWaitNanos;
+
+    private final PortalStates<PortalLimit> portals;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param initialLimit
+     *            Concurrent requests allowed to a portal before its latency has been measured
+     * @param minLimit
+     *            The limit never goes below this. If it is less than one, one is used
+     * @param maxLimit
+     *            The limit never goes above this
+     * @param maxWaitMillis
+     *            Maximum time that a request waits for a slot. Zero means fail fast
+     */
+    public HubSpotConcurrencyLimiter(final int initialLimit, final int minLimit, final int maxLimit, final long maxWaitMillis) {
+        this(initialLimit, minLimit, maxLimit, maxWaitMillis, DEFAULT_MAX_PORTALS, DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param maxPortals
+     *            Maximum number of portals whose limit is kept. Zero or less means no limit
+     * @param idleTimeoutMillis
+     *            Time without requests after which the limit of a portal with none in flight is released. Zero or less means never
+     * @see #HubSpotConcurrencyLimiter(int, int, int, long)
+     */
+    public HubSpotConcurrencyLimiter(final int initialLimit, final int minLimit, final int maxLimit, final long maxWaitMillis, final int maxPortals,
+            final long idleTimeoutMillis) {
+        this.minLimit = Math.max(minLimit, 1);
+        this.maxLimit = Math.max(maxLimit, this.minLimit);
+        this.initialLimit = Math.min(Math.max(initialLimit, this.minLimit), this.maxLimit);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(maxWaitMillis, 0));
+        portals = new PortalStates<PortalLimit>(maxPortals, idleTimeoutMillis) {
+            @Override
+            PortalLimit create(final String portal) {
+                return new PortalLimit(portal);
+            }
+
+            @Override
+            boolean isReleasable(final PortalLimit limit, final long now) {
+                // The requests in flight give their slot back to the limit they took it from, so it would not be seen by the next ones
+                return limit.getInFlight() == 0;
+            }
+
+            @Override
+            long nanoTime() {
+                return HubSpotConcurrencyLimiter.this.nanoTime();
+            }
+        };
+    }
+
+    /**
+     * @param portal
+     *            The hubId of the portal, or any other key that identifies the limits to apply
+     * @return The limit of the portal, created if it is the first request
+     */
+    public PortalLimit getPortal(final String portal) {
+        return portals.get(portal);
+    }
+
+    /**
+     * @return The number of portals whose limit is kept
+     */
+    public int size() {
+        return portals.size();
+    }
+
+    /**
+     * @return True if the error means that HubSpot, or the way to it, is overloaded
+     */
+    static public boolean isOverload(final HubSpotConnectorException e) {
+        if (e instanceof HubSpotConnectorResponseException) {
+            final int statusCode = ((HubSpotConnectorResponseException) e).getStatusCode();
+            return statusCode == 429 || statusCode >= 500;
+        }
+        return e.getCause() instanceof ClientHandlerException;
+    }
+
+    /**
+     * @return The current time in nanoseconds with which the round trips and the idle time of the portals are measured. Overridden by the tests to control them
+     */
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public Map<String, Integer> getLimits() {
+        final Map<String, Integer> limits = new TreeMap<String, Integer>();
+        for (final PortalLimit limit : portals.values()) {
+            limits.put(limit.portal, limit.getLimit());
+        }
+        return limits;
+    }
+
+    @Override
+    public Map<String, Integer> getInFlight() {
+        final Map<String, Integer> inFlight = new TreeMap<String, Integer>();
+        for (final PortalLimit limit : portals.values()) {
+            inFlight.put(limit.portal, limit.getInFlight());
+        }
+        return inFlight;
+    }
+
+    @Override
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * The limit of a portal. Each request takes a slot with {@link #acquire()} and gives it back with {@link #release(long, boolean)}, which measures it
+     */
+    public class PortalLimit {
+
+        private final String portal;
+
+        // Guarded by this
+        private double limit = initialLimit;
+        private int inFlight;
+        private double smoothedRtt;
+        private long minRtt;
+        private int samples;
+        private long lastDecrease;
+
+        PortalLimit(final String portal) {
+            this.portal = portal;
+        }
+
+        /**
+         * Takes a slot, waiting for it if the portal is at its limit
+         *
+         * @return The time the slot was taken, to be passed to {@link #release(long, boolean)}
+         * @throws HubSpotConnectorRateLimitException
+         *             If no slot is free within the maximum wait
+         * @throws HubSpotConnectorException
+         *             If the thread is interrupted while waiting
+         */
+        public synchronized long acquire() throws HubSpotConnectorException {
+            if (inFlight >= (int) limit) {
+                final long deadline = System.nanoTime() + maxWaitNanos;
+                try {
+                    while (inFlight >= (int) limit) {
+                        final long waitNanos = deadline - System.nanoTime();
+                        if (waitNanos <= 0) {
+                            rejected.incrementAndGet();
+                            throw new HubSpotConnectorRateLimitException(String.format("The portal %s has reached its limit of %d concurrent requests", portal, (int) limit));
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new HubSpotConnectorException("Interrupted while waiting for a concurrent request slot of the portal " + portal, e);
+                }
+            }
+            inFlight++;
+            return nanoTime();
+        }
+
+        /**
+         * Gives back a slot and adapts the limit to how the request went
+         *
+         * @param start
+         *            The time returned by {@link #acquire()}
+         * @param overloaded
+         *            If the request failed because HubSpot is overloaded. The other failures, like a 404, are measured like the successful requests
+         */
+        public synchronized void release(final long start, final boolean overloaded) {
+            final long now = nanoTime();
+            final int usedSlots = inFlight;
+            inFlight--;
+
+            if (overloaded) {
+                decrease(now, OVERLOAD_BACKOFF);
+            } else {
+                final long rtt = now - start;
+                smoothedRtt = smoothedRtt == 0 ? rtt : smoothedRtt + (rtt - smoothedRtt) * RTT_SMOOTHING;
+                if (minRtt == 0 || rtt < minRtt) {
+                    minRtt = rtt;
+                }
+                if (++samples >= MIN_RTT_SAMPLES) {
+                    minRtt = (long) smoothedRtt;
+                    samples = 0;
+                }
+
+                if (smoothedRtt > minRtt * LATENCY_TOLERANCE) {
+                    decrease(now, LATENCY_BACKOFF);
+                } else if (usedSlots * 2 >= (int) limit) {
+                    // Only grows while the limit is being used, otherwise an idle portal would get an unbounded one
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+            }
+
+            notifyAll();
+        }
+
+        private void decrease(final long now, final double backoff) {
+            if (lastDecrease != 0 && now - lastDecrease < smoothedRtt) {
+                return;
+            }
+            lastDecrease = now;
+            limit = Math.max(minLimit, limit * backoff);
+        }
+
+        public synchronized int getLimit() {
+            return (int) limit;
+        }
+
+        public synchronized int getInFlight() {
+            return inFlight;
+        }
+    }
+}
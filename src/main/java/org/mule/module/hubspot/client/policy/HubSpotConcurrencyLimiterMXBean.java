@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.client.policy;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link HubSpotConcurrencyLimiter}, published through JMX
+ */
+public interface HubSpotConcurrencyLimiterMXBean {
+
+    /**
+     * @return The current limit of concurrent requests of every portal, by portal
+     */
+    Map<String, Integer> getLimits();
+
+    /**
+     * @return The requests in progress of every portal, by portal
+     */
+    Map<String, Integer> getInFlight();
+
+    /**
+     * @return The number of requests rejected because they could not get a slot within the maximum wait
+     */
+    long getRejected();
+}
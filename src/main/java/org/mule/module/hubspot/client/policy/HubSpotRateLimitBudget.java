@@ -0,0 +1,343 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.client.policy;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mule.module.hubspot.exception.HubSpotConnectorException;
+import org.mule.module.hubspot.model.ratelimit.RateLimitStatus;
+
+/**
+ * The remaining request budget of each portal, as reported by the rate limit headers of the HubSpot responses, used to slow down the requests before the budget runs out.
+ * <p>
+ * Each request is counted against the last reported budget of its portal, so the threads see the requests sent by each other until the next response reports the real figure.
+ * While more than a threshold of the budget is left the requests are not delayed. Below it they are spread over the rest of the window, with a delay that grows smoothly as
+ * the budget shrinks, instead of being sent until HubSpot answers with 429. No delay is longer than the maximum, so the server keeps the last word.
+ * <p>
+ * The budget of an idle portal is released, since the next response reports it again.
+ */
+public class HubSpotRateLimitBudget implements HubSpotRateLimitBudgetMXBean {
+
+    static final private Log logger = LogFactory.getLog(HubSpotRateLimitBudget.class);
+
+    static final public String HEADER_SECONDLY_LIMIT = "X-HubSpot-RateLimit-Secondly";
+    static final public String HEADER_SECONDLY_REMAINING = "X-HubSpot-RateLimit-Secondly-Remaining";
+    static final public String HEADER_DAILY_LIMIT = "X-HubSpot-RateLimit-Daily";
+    static final public String HEADER_DAILY_REMAINING = "X-HubSpot-RateLimit-Daily-Remaining";
+    // Sent instead of the secondly ones by the APIs whose short window is not a second
+    static final public String HEADER_INTERVAL_LIMIT = "X-HubSpot-RateLimit-Max";
+    static final public String HEADER_INTERVAL_REMAINING = "X-HubSpot-RateLimit-Remaining";
+    static final public String HEADER_INTERVAL_MILLIS = "X-HubSpot-RateLimit-Interval-Milliseconds";
+
+    static final public double DEFAULT_SECONDLY_THRESHOLD = 0.5;
+    static final public double DEFAULT_DAILY_THRESHOLD = 0.1;
+
+    static final private long ONE_SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    static final private int DEFAULT_MAX_PORTALS = 10000;
+    static final private long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private final double secondlyThreshold;
+    private final double dailyThreshold;
+    private final long maxDelayNanos;
+
+    private final PortalStates<PortalBudget> portals;
+
+    private final AtomicLong throttledRequests = new AtomicLong();
+    private final AtomicLong throttleNanos = new AtomicLong();
+
+    /**
+     * @param maxDelayMillis
+     *            Maximum time that a request is delayed
+     */
+    public HubSpotRateLimitBudget(final long maxDelayMillis) {
+        this(maxDelayMillis, DEFAULT_MAX_PORTALS, DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param maxDelayMillis
+     *            Maximum time that a request is delayed
+     * @param maxPortals
+     *            Maximum number of portals whose budget is kept. Zero or less means no limit
+     * @param idleTimeoutMillis
+     *            Time without requests after which the budget of a portal is released. Zero or less means never
+     */
+    public HubSpotRateLimitBudget(final long maxDelayMillis, final int maxPortals, final long idleTimeoutMillis) {
+        this(DEFAULT_SECONDLY_THRESHOLD, DEFAULT_DAILY_THRESHOLD, maxDelayMillis, maxPortals, idleTimeoutMillis);
+    }
+
+    /**
+     * @param secondlyThreshold
+     *            Fraction of the short window budget below which the requests are delayed
+     * @param dailyThreshold
+     *            Fraction of the daily budget below which the requests are delayed
+     * @param maxDelayMillis
+     *            Maximum time that a request is delayed
+     */
+    public HubSpotRateLimitBudget(final double secondlyThreshold, final double dailyThreshold, final long maxDelayMillis) {
+        this(secondlyThreshold, dailyThreshold, maxDelayMillis, DEFAULT_MAX_PORTALS, DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param maxPortals
+     *            Maximum number of portals whose budget is kept. Zero or less means no limit
+     * @param idleTimeoutMillis
+     *            Time without requests after which the budget of a portal is released. Zero or less means never
+     * @see #HubSpotRateLimitBudget(double, double, long)
+     */
+    public HubSpotRateLimitBudget(final double secondlyThreshold, final double dailyThreshold, final long maxDelayMillis, final int maxPortals,
+            final long idleTimeoutMillis) {
+        this.secondlyThreshold = secondlyThreshold;
+        this.dailyThreshold = dailyThreshold;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(maxDelayMillis, 0));
+        portals = new PortalStates<PortalBudget>(maxPortals, idleTimeoutMillis) {
+            @Override
+            PortalBudget create(final String portal) {
+                return new PortalBudget(portal);
+            }
+
+            @Override
+            long nanoTime() {
+                return HubSpotRateLimitBudget.this.nanoTime();
+            }
+        };
+    }
+
+    /**
+     * @param portal
+     *            The hubId of the portal, or any other key that identifies the limits to apply
+     * @return The budget of the portal, created if it is the first request
+     */
+    public PortalBudget getPortal(final String portal) {
+        return portals.get(portal);
+    }
+
+    /**
+     * @return The budget of the portal, with only the portal set if it has not reported its rate limits yet
+     */
+    public RateLimitStatus getStatus(final String portal) {
+        final PortalBudget budget = portals.peek(portal);
+        if (budget == null) {
+            final RateLimitStatus status = new RateLimitStatus();
+            status.setPortal(portal);
+            return status;
+        }
+        return budget.getStatus();
+    }
+
+    @Override
+    public Map<String, RateLimitStatus> getStatuses() {
+        final Map<String, RateLimitStatus> statuses = new TreeMap<String, RateLimitStatus>();
+        for (final PortalBudget budget : portals.values()) {
+            if (budget.updatedAt > 0) {
+                statuses.put(budget.portal, budget.getStatus());
+            }
+        }
+        return statuses;
+    }
+
+    /**
+     * @return The number of portals whose budget is kept
+     */
+    public int size() {
+        return portals.size();
+    }
+
+    /**
+     * @return The current time in nanoseconds with which the windows and the idle time of the portals are measured. Overridden by the tests to control them
+     */
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public long getThrottledRequests() {
+        return throttledRequests.get();
+    }
+
+    @Override
+    public long getThrottleTime() {
+        return TimeUnit.NANOSECONDS.toMillis(throttleNanos.get());
+    }
+
+    /**
+     * @return The delay that spreads the remaining requests over the rest of the window: none while the remaining fraction is above the threshold, growing as it shrinks, and
+     *         the whole window once the budget is spent
+     */
+    static long pace(final long remaining, final long limit, final long windowLeftNanos, final double threshold) {
+        final double thresholdRequests = limit * threshold;
+        if (remaining >= thresholdRequests) {
+            return 0;
+        }
+        if (remaining <= 0) {
+            return windowLeftNanos;
+        }
+        final double pressure = 1 - remaining / thresholdRequests;
+        return (long) (pressure * windowLeftNanos / remaining);
+    }
+
+    static private long header(final MultivaluedMap<String, String> headers, final String name) {
+        final String value = headers.getFirst(name);
+        if (StringUtils.isBlank(value)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (final NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * The budget of a portal. Its fields are updated without locks, so a reader may see the figures of two consecutive responses mixed, which is harmless
+     */
+    public class PortalBudget {
+
+        private final String portal;
+
+        private volatile long secondlyLimit;
+        private volatile long windowNanos = ONE_SECOND_NANOS;
+        // nanoTime() of the last response that reported the short window budget
+        private volatile long windowStart;
+        private final AtomicLong secondlyRemaining = new AtomicLong();
+
+        private volatile long dailyLimit;
+        private final AtomicLong dailyRemaining = new AtomicLong();
+
+        // System.currentTimeMillis() of the last response with rate limit headers, 0 if none yet
+        private volatile long updatedAt;
+
+        PortalBudget(final String portal) {
+            this.portal = portal;
+        }
+
+        /**
+         * Counts a request against the budget and waits for the delay that keeps the portal within it
+         *
+         * @throws HubSpotConnectorException
+         *             If the thread is interrupted while waiting
+         */
+        public void acquire() throws HubSpotConnectorException {
+            if (updatedAt == 0) {
+                return;
+            }
+
+            final long now = nanoTime();
+            long delay = 0;
+            if (secondlyLimit > 0) {
+                final long windowLeft = windowNanos - (now - windowStart);
+                final long remaining = secondlyRemaining.getAndDecrement();
+                if (windowLeft > 0) {
+                    delay = pace(remaining, secondlyLimit, windowLeft, secondlyThreshold);
+                }
+            }
+            if (dailyLimit > 0) {
+                // The daily window ends at midnight in the time zone of the portal, which is unknown, so the delay grows up to the maximum as the budget shrinks
+                delay = Math.max(delay, pace(dailyRemaining.getAndDecrement(), dailyLimit, maxDelayNanos, dailyThreshold));
+            }
+            delay = Math.min(delay, maxDelayNanos);
+
+            if (delay > 0) {
+                throttledRequests.incrementAndGet();
+                throttleNanos.addAndGet(delay);
+                if (logger.isDebugEnabled()) {
+                    logger.debug(String.format("Delaying %d ms the request to the portal %s to stay within its rate limit", TimeUnit.NANOSECONDS.toMillis(delay), portal));
+                }
+                try {
+                    TimeUnit.NANOSECONDS.sleep(delay);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new HubSpotConnectorException("Interrupted while waiting for the rate limit budget of the portal " + portal, e);
+                }
+            }
+        }
+
+        /**
+         * Takes the budget reported by the rate limit headers of a response. A 429 without headers is taken as the short window budget being spent
+         */
+        public void update(final MultivaluedMap<String, String> headers, final int statusCode) {
+            final long now = nanoTime();
+            boolean updated = false;
+
+            if (headers != null) {
+                long limit = header(headers, HEADER_SECONDLY_LIMIT);
+                long remaining = header(headers, HEADER_SECONDLY_REMAINING);
+                long window = ONE_SECOND_NANOS;
+                if (limit <= 0 || remaining < 0) {
+                    limit = header(headers, HEADER_INTERVAL_LIMIT);
+                    remaining = header(headers, HEADER_INTERVAL_REMAINING);
+                    final long intervalMillis = header(headers, HEADER_INTERVAL_MILLIS);
+                    window = intervalMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(intervalMillis) : ONE_SECOND_NANOS;
+                }
+                if (limit > 0 && remaining >= 0) {
+                    secondlyLimit = limit;
+                    windowNanos = window;
+                    secondlyRemaining.set(remaining);
+                    windowStart = now;
+                    updated = true;
+                }
+
+                final long daily = header(headers, HEADER_DAILY_LIMIT);
+                final long dailyLeft = header(headers, HEADER_DAILY_REMAINING);
+                if (daily > 0 && dailyLeft >= 0) {
+                    dailyLimit = daily;
+                    dailyRemaining.set(dailyLeft);
+                    updated = true;
+                }
+            }
+
+            if (!updated && statusCode == 429 && secondlyLimit > 0) {
+                secondlyRemaining.set(0);
+                windowStart = now;
+                updated = true;
+            }
+
+            if (updated) {
+                updatedAt = System.currentTimeMillis();
+            }
+        }
+
+        public RateLimitStatus getStatus() {
+            final RateLimitStatus status = new RateLimitStatus();
+            status.setPortal(portal);
+            if (updatedAt == 0) {
+                return status;
+            }
+            status.setUpdatedAt(updatedAt);
+
+            final long now = nanoTime();
+            long delay = 0;
+            if (secondlyLimit > 0) {
+                final long windowLeft = windowNanos - (now - windowStart);
+                // Once the window is over the budget is whole again, until a response says otherwise
+                final long remaining = windowLeft > 0 ? Math.max(secondlyRemaining.get(), 0) : secondlyLimit;
+                status.setSecondlyLimit(secondlyLimit);
+                status.setSecondlyRemaining(remaining);
+                if (windowLeft > 0) {
+                    delay = pace(remaining, secondlyLimit, windowLeft, secondlyThreshold);
+                }
+            }
+            if (dailyLimit > 0) {
+                final long remaining = Math.max(dailyRemaining.get(), 0);
+                status.setDailyLimit(dailyLimit);
+                status.setDailyRemaining(remaining);
+                delay = Math.max(delay, pace(remaining, dailyLimit, maxDelayNanos, dailyThreshold));
+            }
+            status.setThrottleDelay(TimeUnit.NANOSECONDS.toMillis(Math.min(delay, maxDelayNanos)));
+            return status;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.client.policy;
+
+import java.util.Map;
+
+import org.mule.module.hubspot.model.ratelimit.RateLimitStatus;
+
+/**
+ * Management interface of {@link HubSpotRateLimitBudget}, published through JMX
+ */
+public interface HubSpotRateLimitBudgetMXBean {
+
+    /**
+     * @return The budget of every portal that has reported its rate limits, by portal
+     */
+    Map<String, RateLimitStatus> getStatuses();
+
+    /**
+     * @return The number of requests delayed to stretch the budget of their portal
+     */
+    long getThrottledRequests();
+
+    /**
+     * @return The total time in milliseconds that the requests have been delayed
+     */
+    long getThrottleTime();
+}
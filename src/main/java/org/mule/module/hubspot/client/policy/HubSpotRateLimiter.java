@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.client.policy;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mule.module.hubspot.exception.HubSpotConnectorException;
+import org.mule.module.hubspot.exception.HubSpotConnectorRateLimitException;
+
+/**
+ * Token bucket rate limiter, with one bucket per portal (hubId), shared by all the threads of the connector.
+ * <p>
+ * Each portal has a bucket refilled at the configured requests per second, with room for a burst, and optionally a second bucket for the daily limit. Each request takes a
+ * token from both. If there are no tokens the caller reserves the next one and waits for it, so the callers are served in order; if the wait would be longer than the maximum
+ * wait (zero means fail fast) a {@link HubSpotConnectorRateLimitException} is thrown without taking any token.
+ * <p>
+ * The buckets of a portal are released once it has been idle long enough for them to be full again, so releasing them loses nothing.
+ */
+public class HubSpotRateLimiter {
+
+    static final private Log logger = LogFactory.getLog(HubSpotRateLimiter.class);
+
+    static final private long NANOS_PER_DAY = TimeUnit.DAYS.toNanos(1);
+
+    static final private int DEFAULT_MAX_PORTALS = 10000;
+    static final private long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private final double requestsPerSecond;
+    private final int burst;
+    private final long dailyLimit;
+    private final long maxWaitNanos;
+
+    private final PortalStates<PortalBuckets> portals;
+
+    /**
+     * @param requestsPerSecond
+     *            Rate at which the tokens of each portal are refilled. Must be greater than zero
+     * @param burst
+     *            Maximum number of tokens that a portal can accumulate. If it is less than one, one is used
+     * @param dailyLimit
+     *            Maximum number of requests per portal in 24 hours. Zero or less means no daily limit
+     * @param maxWaitMillis
+     *            Maximum time that a caller waits for a token. Zero means fail fast
+     */
+    public HubSpotRateLimiter(final double requestsPerSecond, final int burst, final long dailyLimit, final long maxWaitMillis) {
+        this(requestsPerSecond, burst, dailyLimit, maxWaitMillis, DEFAULT_MAX_PORTALS, DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param maxPortals
+     *            Maximum number of portals whose buckets are kept. Zero or less means no limit
+     * @param idleTimeoutMillis
+     *            Time without requests after which the buckets of a portal are released, if they are full. Zero or less means never
+     * @see #HubSpotRateLimiter(double, int, long, long)
+     */
+    public HubSpotRateLimiter(final double requestsPerSecond, final int burst, final long dailyLimit, final long maxWaitMillis, final int maxPortals,
+            final long idleTimeoutMillis) {
+        if (requestsPerSecond <= 0) {
+            throw new IllegalArgumentException("requestsPerSecond must be greater than zero");
+        }
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = Math.max(burst, 1);
+        this.dailyLimit = dailyLimit;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(maxWaitMillis, 0));
+        portals = new PortalStates<PortalBuckets>(maxPortals, idleTimeoutMillis) {
+            @Override
+            PortalBuckets create(final String portal) {
+                return newBuckets();
+            }
+
+            @Override
+            boolean isReleasable(final PortalBuckets buckets, final long now) {
+                return buckets.isFull(now);
+            }
+
+            @Override
+            long nanoTime() {
+                return HubSpotRateLimiter.this.nanoTime();
+            }
+        };
+    }
+
+    /**
+     * Takes a token of the portal, waiting for it if needed
+     *
+     * @param portal
+     *            The hubId of the portal, or any other key that identifies the limits to apply
+     * @throws HubSpotConnectorRateLimitException
+     *             If the token is not available within the maximum wait
+     * @throws HubSpotConnectorException
+     *             If the thread is interrupted while waiting
+     */
+    public void acquire(final String portal) throws HubSpotConnectorException {
+        final long waitNanos = portals.get(portal).reserve(nanoTime(), maxWaitNanos);
+
+        if (waitNanos < 0) {
+            throw new HubSpotConnectorRateLimitException(String.format("The request rate limit of the portal %s has been reached", portal));
+        }
+
+        if (waitNanos > 0) {
+            if (logger.isDebugEnabled()) {
+                logger.debug(String.format("Waiting %d ms for the rate limit of the portal %s", TimeUnit.NANOSECONDS.toMillis(waitNanos), portal));
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new HubSpotConnectorException("Interrupted while waiting for the rate limit of the portal " + portal, e);
+            }
+        }
+    }
+
+    private PortalBuckets newBuckets() {
+        final long now = nanoTime();
+        final TokenBucket daily = dailyLimit > 0 ? new TokenBucket(dailyLimit, dailyLimit / (double) NANOS_PER_DAY, now) : null;
+        return new PortalBuckets(new TokenBucket(burst, requestsPerSecond / TimeUnit.SECONDS.toNanos(1), now), daily);
+    }
+
+    /**
+     * @return The number of portals whose buckets are kept
+     */
+    public int size() {
+        return portals.size();
+    }
+
+    /**
+     * @return The current time in nanoseconds with which the tokens are refilled. Overridden by the tests to control it
+     */
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    static private class PortalBuckets {
+
+        private final TokenBucket rate;
+        private final TokenBucket daily;
+
+        PortalBuckets(final TokenBucket rate, final TokenBucket daily) {
+            this.rate = rate;
+            this.daily = daily;
+        }
+
+        /**
+         * @return The nanoseconds to wait for the reserved token, or -1 if the wait would be longer than the maximum (in which case nothing is reserved)
+         */
+        synchronized long reserve(final long now, final long maxWaitNanos) {
+            final long rateWait = rate.waitFor(now);
+            final long dailyWait = daily != null ? daily.waitFor(now) : 0;
+            final long wait = Math.max(rateWait, dailyWait);
+
+            if (wait > maxWaitNanos) {
+                return -1;
+            }
+
+            rate.take();
+            if (daily != null) {
+                daily.take();
+            }
+            return wait;
+        }
+
+        synchronized boolean isFull(final long now) {
+            return rate.isFull(now) && (daily == null || daily.isFull(now));
+        }
+    }
+
+    /**
+     * Not thread safe, guarded by the {@link PortalBuckets} that holds it. The tokens can be negative, which means that they are reserved by callers that are waiting
+     */
+    static private class TokenBucket {
+
+        private final double capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(final double capacity, final double tokensPerNano, final long now) {
+            this.capacity = capacity;
+            this.tokensPerNano = tokensPerNano;
+            this.tokens = capacity;
+            this.lastRefill = now;
+        }
+
+        long waitFor(final long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+
+            return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+        }
+
+        void take() {
+            tokens -= 1;
+        }
+
+        boolean isFull(final long now) {
+            return tokens + (now - lastRefill) * tokensPerNano >= capacity;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.client.policy;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.mule.module.hubspot.exception.HubSpotConnectorException;
+import org.mule.module.hubspot.exception.HubSpotConnectorResponseException;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+
+/**
+ * Decides if a failed request must be retried and how long to wait before doing it.
+ * <p>
+ * Only idempotent requests are retried, when HubSpot responds 429, 502, 503 or 504 or the connection fails. The delays grow exponentially with decorrelated jitter (each delay
+ * is random between the base delay and three times the previous one, capped to the maximum delay), but the Retry-After of the response is always honored. Each operation has a
+ * budget of retries and of total time; once it is spent the last error is thrown.
+ */
+public class HubSpotRetryPolicy {
+
+    static final private Random random = new Random();
+
+    private final int maxRetries;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final long maxElapsedMillis;
+
+    /**
+     * @param maxRetries
+     *            Maximum number of retries of each operation
+     * @param baseDelayMillis
+     *            Minimum delay before a retry
+     * @param maxDelayMillis
+     *            Maximum delay before a retry, unless the Retry-After of the response is longer
+     * @param maxElapsedMillis
+     *            Maximum time since the first attempt of an operation after which it is not retried anymore
+     */
+    public HubSpotRetryPolicy(final int maxRetries, final long baseDelayMillis, final long maxDelayMillis, final long maxElapsedMillis) {
+        this.maxRetries = Math.max(maxRetries, 0);
+        this.baseDelayMillis = Math.max(baseDelayMillis, 1);
+        this.maxDelayMillis = Math.max(maxDelayMillis, this.baseDelayMillis);
+        this.maxElapsedMillis = maxElapsedMillis;
+    }
+
+    /**
+     * @return The state of the retries of a new operation
+     */
+    public Attempts newAttempts() {
+        return new Attempts();
+    }
+
+    /**
+     * @return True if the error is transient, so the request can succeed if it is repeated
+     */
+    public boolean isRetryable(final HubSpotConnectorException e) {
+        if (e instanceof HubSpotConnectorResponseException) {
+            final int statusCode = ((HubSpotConnectorResponseException) e).getStatusCode();
+            return statusCode == 429 || statusCode == 502 || statusCode == 503 || statusCode == 504;
+        }
+        return e.getCause() instanceof ClientHandlerException;
+    }
+
+    /**
+     * Retries of one operation. Not thread safe, each operation has its own
+     */
+    public class Attempts {
+
+        private final long start = System.nanoTime();
+        private int retries;
+        private long previousDelay = baseDelayMillis;
+
+        /**
+         * @param idempotent
+         *            If the request can be repeated without side effects
+         * @param e
+         *            The error of the last attempt
+         * @return The milliseconds to wait before retrying, or -1 if the request must not be retried
+         */
+        public long nextDelay(final boolean idempotent, final HubSpotConnectorException e) {
+            if (!idempotent || retries >= maxRetries || !isRetryable(e)) {
+                return -1;
+            }
+
+            final long upper = Math.min(maxDelayMillis, previousDelay * 3);
+            long delay = upper > baseDelayMillis ? baseDelayMillis + (long) (random.nextDouble() * (upper - baseDelayMillis)) : baseDelayMillis;
+            previousDelay = delay;
+
+            if (e instanceof HubSpotConnectorResponseException) {
+                final Long retryAfter = ((HubSpotConnectorResponseException) e).getRetryAfterMillis();
+                if (retryAfter != null) {
+                    delay = Math.max(delay, retryAfter);
+                }
+            }
+
+            final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (elapsed + delay > maxElapsedMillis) {
+                return -1;
+            }
+
+            retries++;
+            return delay;
+        }
+
+        public int getRetries() {
+            return retries;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.client.policy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mule.module.hubspot.cache.ExpiringLruCache;
+
+/**
+ * The state that a policy keeps for each portal.
+ * <p>
+ * The portal of a user whose hubId is unknown is the user itself, so there can be as many portals as users. The states are held in a bounded LRU cache and the ones idle for
+ * longer than the idle timeout are released, like the clients of the {@link org.mule.module.hubspot.client.HubSpotClientsManager}. The idle portals are looked for while
+ * serving the requests, at most once every idle timeout, so no thread is needed.
+ */
+abstract class PortalStates<V> {
+
+    private final ExpiringLruCache<String, Holder<V>> states;
+    private final long idleTimeoutNanos;
+    private final AtomicLong lastSweep = new AtomicLong();
+
+    /**
+     * @param maxPortals
+     *            Maximum number of portals kept; the least recently used one is released to make room. Zero or less means no limit
+     * @param idleTimeoutMillis
+     *            Time without requests after which the state of a portal is released. Zero or less means never
+     */
+    PortalStates(final int maxPortals, final long idleTimeoutMillis) {
+        // The states do not expire by the time since they were created, only for being idle (see evictIdle)
+        states = new ExpiringLruCache<String, Holder<V>>(maxPortals > 0 ? maxPortals : Integer.MAX_VALUE, 0);
+        idleTimeoutNanos = idleTimeoutMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis) : 0;
+    }
+
+    /**
+     * @return The state of the portal, created if it is the first request
+     */
+    V get(final String portal) {
+        final String key = portal != null ? portal : "";
+        final long now = nanoTime();
+
+        Holder<V> holder = states.get(key);
+        if (holder == null) {
+            final Holder<V> newHolder = new Holder<V>(create(key));
+            holder = states.putIfAbsent(key, newHolder);
+            if (holder == null) {
+                holder = newHolder;
+            }
+        }
+        holder.lastAccess = now;
+
+        sweepIfNeeded(now);
+        return holder.state;
+    }
+
+    /**
+     * @return The state of the portal, or null if it has none
+     */
+    V peek(final String portal) {
+        final Holder<V> holder = states.get(portal != null ? portal : "");
+        return holder != null ? holder.state : null;
+    }
+
+    Collection<V> values() {
+        final List<V> values = new ArrayList<V>();
+        for (final Holder<V> holder : states.snapshot().values()) {
+            values.add(holder.state);
+        }
+        return values;
+    }
+
+    int size() {
+        return states.size();
+    }
+
+    /**
+     * Releases the states of the portals that have been idle for longer than the idle timeout and that can be released
+     */
+    void evictIdle() {
+        if (idleTimeoutNanos <= 0) {
+            return;
+        }
+        final long now = nanoTime();
+        for (final Map.Entry<String, Holder<V>> entry : states.snapshot().entrySet()) {
+            final Holder<V> holder = entry.getValue();
+            if (now - holder.lastAccess > idleTimeoutNanos && isReleasable(holder.state, now)) {
+                states.remove(entry.getKey(), holder);
+            }
+        }
+    }
+
+    private void sweepIfNeeded(final long now) {
+        if (idleTimeoutNanos <= 0) {
+            return;
+        }
+        final long last = lastSweep.get();
+        if (now - last > idleTimeoutNanos && lastSweep.compareAndSet(last, now)) {
+            evictIdle();
+        }
+    }
+
+    abstract V create(String portal);
+
+    /**
+     * @return False if releasing the state of an idle portal would lose something that matters, e.g. requests still in flight. True by default
+     */
+    boolean isReleasable(final V state, final long now) {
+        return true;
+    }
+
+    /**
+     * @return The current time in nanoseconds with which the idle time is measured, the one of the policy
+     */
+    abstract long nanoTime();
+
+    static private class Holder<V> {
+
+        private final V state;
+        private volatile long lastAccess;
+
+        Holder(final V state) {
+            this.state = state;
+        }
+    }
+}
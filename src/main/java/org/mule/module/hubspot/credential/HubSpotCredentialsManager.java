@@ -7,25 +7,75 @@
  */
 package org.mule.module.hubspot.credential;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
 import org.apache.commons.lang.StringUtils;
 import org.mule.api.store.ObjectAlreadyExistsException;
 import org.mule.api.store.ObjectStore;
 import org.mule.api.store.ObjectStoreException;
+import org.mule.module.hubspot.cache.ExpiringLruCache;
+import org.mule.module.hubspot.exception.HubSpotConnectorAccessTokenExpiredException;
 import org.mule.module.hubspot.exception.HubSpotConnectorException;
 import org.mule.module.hubspot.exception.HubSpotConnectorNoAccessTokenException;
 import org.mule.module.hubspot.model.OAuthCredentials;
 
 /**
  * Class that handles the credentials of the users logged in through the HubSpot connector
+ * <p>
+ * The credentials are kept in a bounded in-memory cache in front of the Object Store, so looking them up is usually a local map read. Stored credentials are written to both
+ * (write-through). In clustered deployments another node can replace the credentials in the Object Store, so the cached ones are read again from it once their time to live
+ * expires, and always before refreshing a rejected token.
  */
 public class HubSpotCredentialsManager {
 
     @SuppressWarnings("rawtypes")
     private final ObjectStore credentialsMap;
 
+    // Null if the cache is disabled
+    private final ExpiringLruCache<String, OAuthCredentials> cache;
+
+    // The refreshes in progress, by userId
+    private final ConcurrentMap<String, FutureTask<OAuthCredentials>> refreshes = new ConcurrentHashMap<String, FutureTask<OAuthCredentials>>();
+
+    private volatile HubSpotTokenRefreshScheduler refreshScheduler;
+
     @SuppressWarnings("rawtypes")
     public HubSpotCredentialsManager(final ObjectStore objStore) {
+        this(objStore, 0, 0);
+    }
+
+    /**
+     * @param cacheSize
+     *            Maximum number of users whose credentials are cached. Zero or less disables the cache
+     * @param cacheTtlMillis
+     *            Time after which the cached credentials of a user are read again from the Object Store. Zero or less means that they are never read again
+     */
+    @SuppressWarnings("rawtypes")
+    public HubSpotCredentialsManager(final ObjectStore objStore, final int cacheSize, final long cacheTtlMillis) {
         credentialsMap = objStore;
+        cache = cacheSize > 0 ? new ExpiringLruCache<String, OAuthCredentials>(cacheSize, cacheTtlMillis) {
+            @Override
+            protected void evicted(final String userId, final OAuthCredentials credentials) {
+                // The users evicted for not being used are not kept refreshed
+                cancelRefresh(userId);
+            }
+
+            @Override
+            protected long nanoTime() {
+                return HubSpotCredentialsManager.this.nanoTime();
+            }
+        } : null;
+    }
+
+    /**
+     * @return The current time in nanoseconds with which the cached credentials expire. Overridden by the tests to control their age
+     */
+    protected long nanoTime() {
+        return System.nanoTime();
     }
 
     /**
@@ -38,14 +88,44 @@ public class HubSpotCredentialsManager {
      *             If the user does not have credentials, throw this exception
      */
     public OAuthCredentials getCredentials(final String userId) throws HubSpotConnectorNoAccessTokenException {
+        if (cache != null) {
+            final OAuthCredentials cached = cache.get(userId);
+            if (cached != null) {
+                // Records that the user is active, so its token is kept refreshed
+                if (refreshScheduler != null) {
+                    refreshScheduler.schedule(cached);
+                }
+                return cached;
+            }
+        }
+        return loadCredentials(userId);
+    }
+
+    /**
+     * Reads the credentials of the user from the Object Store, bypassing the cache, and caches them
+     */
+    private OAuthCredentials loadCredentials(final String userId) throws HubSpotConnectorNoAccessTokenException {
         OAuthCredentials oACreds;
 
         try {
             oACreds = (OAuthCredentials) credentialsMap.retrieve(userId);
         } catch (final ObjectStoreException e) {
+            if (cache != null) {
+                cache.remove(userId);
+            }
+            cancelRefresh(userId);
             throw new HubSpotConnectorNoAccessTokenException("The user with id " + userId + " does not have credentials");
         }
 
+        if (cache != null) {
+            cache.put(userId, oACreds);
+        }
+
+        // The credentials may have been stored by a previous execution, so the refresh is scheduled the first time they are used
+        if (refreshScheduler != null) {
+            refreshScheduler.schedule(oACreds);
+        }
+
         return oACreds;
     }
 
@@ -84,6 +164,96 @@ public class HubSpotCredentialsManager {
         } catch (final ObjectStoreException e) {
             throw new HubSpotConnectorException("Error trying to store credential", e);
         }
+
+        if (cache != null) {
+            cache.put(credentials.getUserId(), credentials);
+        }
+
+        if (refreshScheduler != null) {
+            refreshScheduler.schedule(credentials);
+        }
+    }
+
+    /**
+     * @param refreshScheduler
+     *            The scheduler that refreshes the tokens before they expire. Every credential stored or retrieved is scheduled on it
+     */
+    public void setRefreshScheduler(final HubSpotTokenRefreshScheduler refreshScheduler) {
+        this.refreshScheduler = refreshScheduler;
+    }
+
+    public HubSpotTokenRefreshScheduler getRefreshScheduler() {
+        return refreshScheduler;
+    }
+
+    /**
+     * Cancels the refresh of the token of a user that is not used anymore. It is scheduled again the next time that its credentials are read
+     */
+    public void cancelRefresh(final String userId) {
+        final HubSpotTokenRefreshScheduler scheduler = refreshScheduler;
+        if (scheduler != null) {
+            scheduler.cancel(userId);
+        }
+    }
+
+    /**
+     * Refreshes the credentials of a user, making sure that only one refresh per user is in progress at any time. The first caller runs the refresher; the callers that arrive
+     * while it is running wait for it and get the same credentials. Refreshes of different users never block each other.
+     * 
+     * @param userId
+     *            The ID of the user
+     * @param expiredAccessToken
+     *            The access token that was rejected. If the stored one is already different, another thread has refreshed it and the stored credentials are returned without
+     *            refreshing again. If null the credentials are always refreshed
+     * @param refresher
+     *            Obtains the new credentials from HubSpot and stores them
+     * @return The refreshed credentials
+     */
+    public OAuthCredentials refreshCredentials(final String userId, final String expiredAccessToken, final Callable<OAuthCredentials> refresher)
+            throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+
+        FutureTask<OAuthCredentials> refresh = new FutureTask<OAuthCredentials>(new Callable<OAuthCredentials>() {
+            @Override
+            public OAuthCredentials call() throws Exception {
+                // Checked once this thread owns the refresh, so a refresh that has just finished is not repeated. The Object Store is read because the token may have been
+                // refreshed by another node of the cluster
+                if (expiredAccessToken != null) {
+                    final OAuthCredentials current = loadCredentials(userId);
+                    if (current != null && current.getAccessToken() != null && !expiredAccessToken.equals(current.getAccessToken())) {
+                        return current;
+                    }
+                }
+                return refresher.call();
+            }
+        });
+
+        final FutureTask<OAuthCredentials> inProgress = refreshes.putIfAbsent(userId, refresh);
+        if (inProgress == null) {
+            try {
+                refresh.run();
+            } finally {
+                refreshes.remove(userId, refresh);
+            }
+        } else {
+            refresh = inProgress;
+        }
+
+        try {
+            return refresh.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HubSpotConnectorException("Interrupted while waiting for the refresh of the access token of the user " + userId, e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof HubSpotConnectorException) {
+                throw (HubSpotConnectorException) cause;
+            } else if (cause instanceof HubSpotConnectorNoAccessTokenException) {
+                throw (HubSpotConnectorNoAccessTokenException) cause;
+            } else if (cause instanceof HubSpotConnectorAccessTokenExpiredException) {
+                throw (HubSpotConnectorAccessTokenExpiredException) cause;
+            }
+            throw new HubSpotConnectorException(cause);
+        }
     }
 
     /**
@@ -116,13 +286,17 @@ public class HubSpotCredentialsManager {
      */
     public boolean hasUserAccessToken(final String userId) {
         try {
-            if (credentialsMap.contains(userId) && StringUtils.isNotEmpty(((OAuthCredentials) credentialsMap.retrieve(userId)).getAccessToken())) {
-                return true;
-            } else {
-                return false;
-            }
-        } catch (final ObjectStoreException e) {
+            final OAuthCredentials credentials = getCredentials(userId);
+            return credentials != null && StringUtils.isNotEmpty(credentials.getAccessToken());
+        } catch (final HubSpotConnectorNoAccessTokenException e) {
             return false;
         }
     }
+
+    /**
+     * @return The cache of the credentials, or null if it is disabled
+     */
+    public ExpiringLruCache<String, OAuthCredentials> getCache() {
+        return cache;
+    }
 }
@@ -0,0 +1,302 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.credential;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mule.module.hubspot.model.OAuthCredentials;
+import org.mule.util.concurrent.DaemonThreadFactory;
+
+/**
+ * Refreshes the access tokens of the users with offline scope shortly before they expire, so the flows almost never get a 401 and have to refresh on their own thread.
+ * <p>
+ * The refresh of each user is scheduled a margin before the expiration time of the token, minus a random jitter so the refreshes of the users authenticated at the same time
+ * are spread out. When the refreshed credentials are stored the next refresh is scheduled.
+ * <p>
+ * While a token is being refreshed, or after its refresh has been given up, scheduling the same credentials again (e.g. because they are read from the Object Store) does
+ * nothing. A failed refresh is retried with exponential backoff until the token expires; from then on it is refreshed when a request fails with 401.
+ * <p>
+ * Scheduling the same credentials again also records that the user is active. The tokens of the users that have not been active for longer than the idle timeout are not
+ * refreshed, and their entries are removed, so only the users in use are kept refreshed. They are scheduled again the next time their credentials are used.
+ */
+public class HubSpotTokenRefreshScheduler implements HubSpotTokenRefreshSchedulerMXBean {
+
+    static final private Log logger = LogFactory.getLog(HubSpotTokenRefreshScheduler.class);
+
+    static final private Random random = new Random();
+
+    static final private long RETRY_BASE_DELAY_MILLIS = 1000;
+    static final private long RETRY_MAX_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Refreshes the token of a user
+     */
+    public interface TokenRefresher {
+
+        /**
+         * @param expiringAccessToken
+         *            The access token that is about to expire. If it was already replaced nothing must be done
+         */
+        void refresh(String userId, String expiringAccessToken) throws Exception;
+    }
+
+    private final TokenRefresher refresher;
+    private final long marginMillis;
+    private final long jitterMillis;
+    private final long idleTimeoutMillis;
+    private final ScheduledExecutorService executor;
+
+    private final ConcurrentMap<String, ScheduledRefresh> scheduled = new ConcurrentHashMap<String, ScheduledRefresh>();
+
+    private final AtomicLong earlyRefreshes = new AtomicLong();
+    private final AtomicLong lateRefreshes = new AtomicLong();
+    private final AtomicLong failedRefreshes = new AtomicLong();
+
+    /**
+     * @param marginMillis
+     *            How long before the expiration the token is refreshed
+     * @param jitterMillis
+     *            Maximum random time subtracted from the time of each refresh
+     */
+    public HubSpotTokenRefreshScheduler(final TokenRefresher refresher, final long marginMillis, final long jitterMillis) {
+        this(refresher, marginMillis, jitterMillis, 0);
+    }
+
+    /**
+     * @param marginMillis
+     *            How long before the expiration the token is refreshed
+     * @param jitterMillis
+     *            Maximum random time subtracted from the time of each refresh
+     * @param idleTimeoutMillis
+     *            Time without using the credentials of a user after which its token is not refreshed anymore. Zero or less means that the tokens are always refreshed
+     */
+    public HubSpotTokenRefreshScheduler(final TokenRefresher refresher, final long marginMillis, final long jitterMillis, final long idleTimeoutMillis) {
+        this(refresher, marginMillis, jitterMillis, idleTimeoutMillis, Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("hubspot-token-refresh")));
+    }
+
+    /**
+     * @param executor
+     *            Runs the refreshes and the removal of the idle users. It is shut down when the scheduler is stopped
+     * @see #HubSpotTokenRefreshScheduler(TokenRefresher, long, long, long)
+     */
+    public HubSpotTokenRefreshScheduler(final TokenRefresher refresher, final long marginMillis, final long jitterMillis, final long idleTimeoutMillis,
+            final ScheduledExecutorService executor) {
+        this.refresher = refresher;
+        this.marginMillis = Math.max(marginMillis, 0);
+        this.jitterMillis = Math.max(jitterMillis, 0);
+        this.idleTimeoutMillis = Math.max(idleTimeoutMillis, 0);
+        this.executor = executor;
+
+        if (this.idleTimeoutMillis > 0) {
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    removeIdleUsers();
+                }
+            }, this.idleTimeoutMillis, this.idleTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Schedules the refresh of the token of the credentials. Nothing is done if the user does not have offline scope, the expiration is unknown, or the refresh of this same
+     * token is already scheduled, in which case the user is recorded as active
+     */
+    public void schedule(final OAuthCredentials credentials) {
+        if (credentials == null || credentials.getUserId() == null || !Boolean.TRUE.equals(credentials.getOfflineScope()) || credentials.getExpirationTime() == null) {
+            return;
+        }
+
+        final String userId = credentials.getUserId();
+        final String accessToken = credentials.getAccessToken();
+        final long expirationTime = credentials.getExpirationTime();
+        final long now = currentTimeMillis();
+
+        while (true) {
+            final ScheduledRefresh current = scheduled.get(userId);
+            if (current != null && current.expirationTime == expirationTime) {
+                // The same token is already scheduled, being refreshed, or given up. The refresher itself reads the credentials while the token is being refreshed, so
+                // that is not an activity of the user
+                if (!current.started) {
+                    current.lastUsed = now;
+                }
+                return;
+            }
+
+            // The credentials stored by a refresh keep the last activity of the user
+            final ScheduledRefresh refresh = new ScheduledRefresh(expirationTime, 0, current != null && current.started ? current.lastUsed : now);
+            if (current == null ? scheduled.putIfAbsent(userId, refresh) != null : !scheduled.replace(userId, current, refresh)) {
+                // Another thread scheduled the same user at the same time
+                continue;
+            }
+            if (current != null && current.future != null) {
+                current.future.cancel(false);
+            }
+
+            final long jitter = jitterMillis > 0 ? (long) (random.nextDouble() * jitterMillis) : 0;
+            final long delay = Math.max(0, expirationTime - marginMillis - jitter - now);
+            if (submit(userId, accessToken, refresh, delay) && logger.isDebugEnabled()) {
+                logger.debug(String.format("Refresh of the token of %s scheduled in %d s", userId, TimeUnit.MILLISECONDS.toSeconds(delay)));
+            }
+            return;
+        }
+    }
+
+    /**
+     * @return False if the scheduler is stopped
+     */
+    private boolean submit(final String userId, final String accessToken, final ScheduledRefresh refresh, final long delay) {
+        try {
+            refresh.future = executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    refresh(userId, accessToken, refresh);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (final RuntimeException e) {
+            scheduled.remove(userId, refresh);
+            return false;
+        }
+    }
+
+    /**
+     * Cancels the scheduled refresh of a user
+     */
+    public void cancel(final String userId) {
+        final ScheduledRefresh refresh = scheduled.remove(userId);
+        if (refresh != null && refresh.future != null) {
+            refresh.future.cancel(false);
+        }
+    }
+
+    /**
+     * Removes the users that have not been active for longer than the idle timeout, cancelling their refreshes
+     */
+    private void removeIdleUsers() {
+        final long now = currentTimeMillis();
+        for (final Map.Entry<String, ScheduledRefresh> entry : scheduled.entrySet()) {
+            final ScheduledRefresh refresh = entry.getValue();
+            if (isIdle(refresh, now) && scheduled.remove(entry.getKey(), refresh) && refresh.future != null) {
+                refresh.future.cancel(false);
+            }
+        }
+    }
+
+    private boolean isIdle(final ScheduledRefresh refresh, final long now) {
+        return idleTimeoutMillis > 0 && now - refresh.lastUsed > idleTimeoutMillis;
+    }
+
+    /**
+     * @return The current time in milliseconds, compared with the expiration time of the tokens. Overridden by the tests to control it
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    public void stop() {
+        executor.shutdownNow();
+        scheduled.clear();
+    }
+
+    private void refresh(final String userId, final String accessToken, final ScheduledRefresh refresh) {
+        // If it is not there it was replaced by the refresh of newer credentials. It stays there while the token is refreshed, so reading the same credentials again does not
+        // schedule another refresh; storing the refreshed ones, which expire later, replaces it
+        if (scheduled.get(userId) != refresh) {
+            return;
+        }
+        if (isIdle(refresh, currentTimeMillis())) {
+            // Refreshed again when the user comes back
+            scheduled.remove(userId, refresh);
+            if (logger.isDebugEnabled()) {
+                logger.debug(String.format("Refresh of the token of %s skipped, the user is idle", userId));
+            }
+            return;
+        }
+        refresh.started = true;
+
+        try {
+            refresher.refresh(userId, accessToken);
+
+            if (currentTimeMillis() < refresh.expirationTime) {
+                earlyRefreshes.incrementAndGet();
+            } else {
+                lateRefreshes.incrementAndGet();
+            }
+        } catch (final Exception e) {
+            failedRefreshes.incrementAndGet();
+
+            final int failures = refresh.failures + 1;
+            final long delay = Math.min(RETRY_BASE_DELAY_MILLIS << Math.min(failures - 1, 20), RETRY_MAX_DELAY_MILLIS);
+            if (currentTimeMillis() + delay >= refresh.expirationTime) {
+                // Kept without a task, so the same credentials are not scheduled again
+                logger.warn(String.format("Cannot refresh the token of %s before it expires. It will be refreshed when a request fails - %s", userId, e.getMessage()));
+                return;
+            }
+
+            logger.warn(String.format("Cannot refresh the token of %s, retrying in %d s - %s", userId, TimeUnit.MILLISECONDS.toSeconds(delay), e.getMessage()));
+            final ScheduledRefresh retry = new ScheduledRefresh(refresh.expirationTime, failures, refresh.lastUsed);
+            if (scheduled.replace(userId, refresh, retry)) {
+                submit(userId, accessToken, retry, delay);
+            }
+        }
+    }
+
+    @Override
+    public long getEarlyRefreshes() {
+        return earlyRefreshes.get();
+    }
+
+    @Override
+    public long getLateRefreshes() {
+        return lateRefreshes.get();
+    }
+
+    @Override
+    public long getFailedRefreshes() {
+        return failedRefreshes.get();
+    }
+
+    @Override
+    public int getScheduledRefreshes() {
+        int count = 0;
+        for (final ScheduledRefresh refresh : scheduled.values()) {
+            if (!refresh.started) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static private class ScheduledRefresh {
+
+        private final long expirationTime;
+        // The refreshes of this token that have failed
+        private final int failures;
+        private volatile ScheduledFuture<?> future;
+        // Once it runs it is only kept to recognize the credentials that it refreshes
+        private volatile boolean started;
+        // The last time that the credentials of the user were used
+        private volatile long lastUsed;
+
+        ScheduledRefresh(final long expirationTime, final int failures, final long lastUsed) {
+            this.expirationTime = expirationTime;
+            this.failures = failures;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.credential;
+
+/**
+ * Management interface of {@link HubSpotTokenRefreshScheduler}, published through JMX
+ */
+public interface HubSpotTokenRefreshSchedulerMXBean {
+
+    /**
+     * @return The number of tokens refreshed before they expired
+     */
+    long getEarlyRefreshes();
+
+    /**
+     * @return The number of tokens refreshed by the scheduler after they had already expired
+     */
+    long getLateRefreshes();
+
+    /**
+     * @return The number of scheduled refreshes that failed
+     */
+    long getFailedRefreshes();
+
+    /**
+     * @return The number of users with a refresh scheduled
+     */
+    int getScheduledRefreshes();
+}
@@ -0,0 +1,20 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.exception;
+
+/**
+ * Thrown when a request cannot be made without exceeding the request rate configured for the portal
+ */
+public class HubSpotConnectorRateLimitException extends HubSpotConnectorException {
+
+    private static final long serialVersionUID = 1L;
+
+    public HubSpotConnectorRateLimitException(final String message) {
+        super(message);
+    }
+}
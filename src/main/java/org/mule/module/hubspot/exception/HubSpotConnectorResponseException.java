@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.exception;
+
+/**
+ * Thrown when HubSpot responds with an error status code. It keeps the status code and the Retry-After of the response, so the caller can decide whether to retry
+ */
+public class HubSpotConnectorResponseException extends HubSpotConnectorException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final Long retryAfterMillis;
+    private final String responseBody;
+
+    /**
+     * @param retryAfterMillis
+     *            The time to wait before retrying, as requested by the Retry-After header, or null if the response did not have it
+     */
+    public HubSpotConnectorResponseException(final String message, final int statusCode, final Long retryAfterMillis) {
+        this(message, statusCode, retryAfterMillis, null);
+    }
+
+    /**
+     * @param responseBody
+     *            The body of the error response, so the details that HubSpot sends about the error can be read
+     */
+    public HubSpotConnectorResponseException(final String message, final int statusCode, final Long retryAfterMillis, final String responseBody) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryAfterMillis = retryAfterMillis;
+        this.responseBody = responseBody;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public Long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    public String getResponseBody() {
+        return responseBody;
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.iterable;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+
+import org.mule.module.hubspot.HubSpotConnector;
+import org.mule.module.hubspot.model.contact.Contact;
+import org.mule.module.hubspot.model.contact.ContactList;
+
+/**
+ * Streams the contacts of {@link HubSpotConnector#getAllContacts}, paging with the vid-offset of each page
+ */
+public class GetAllContactsCollection extends HubSpotPaginatedCollection<Contact, ContactList> {
+
+    private final HubSpotConnector connector;
+    private final String userId;
+    private final String count;
+
+    public GetAllContactsCollection(final HubSpotConnector connector, final ContactList firstPage, final String userId, final String count,
+            final ExecutorService executor, final int readAheadDepth) {
+        super(firstPage, executor, readAheadDepth);
+        this.connector = connector;
+        this.userId = userId;
+        this.count = count;
+    }
+
+    @Override
+    protected boolean hasNextPage(final ContactList page) {
+        return Boolean.TRUE.equals(page.getHasMore()) && page.getVidOffset() != null;
+    }
+
+    @Override
+    protected ContactList requestNextPage(final ContactList page) throws Exception {
+        return connector.getAllContacts(userId, count, page.getVidOffset().toString());
+    }
+
+    @Override
+    protected Iterator<Contact> pageIterator(final ContactList page) {
+        return page.getContacts() != null ? page.getContacts().iterator() : Collections.<Contact>emptyList().iterator();
+    }
+}
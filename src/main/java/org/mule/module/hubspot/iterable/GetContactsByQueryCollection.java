@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.iterable;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+
+import org.mule.module.hubspot.HubSpotConnector;
+import org.mule.module.hubspot.model.contact.Contact;
+import org.mule.module.hubspot.model.contact.ContactQuery;
+
+/**
+ * Streams the contacts of {@link HubSpotConnector#getContactsByQuery}, paging with the offset of each page
+ */
+public class GetContactsByQueryCollection extends HubSpotPaginatedCollection<Contact, ContactQuery> {
+
+    private final HubSpotConnector connector;
+    private final String userId;
+    private final String query;
+    private final String count;
+
+    public GetContactsByQueryCollection(final HubSpotConnector connector, final ContactQuery firstPage, final String userId, final String query, final String count,
+            final ExecutorService executor, final int readAheadDepth) {
+        super(firstPage, executor, readAheadDepth);
+        this.connector = connector;
+        this.userId = userId;
+        this.query = query;
+        this.count = count;
+    }
+
+    @Override
+    protected boolean hasNextPage(final ContactQuery page) {
+        return Boolean.TRUE.equals(page.getHasMore()) && page.getOffset() != null;
+    }
+
+    @Override
+    protected ContactQuery requestNextPage(final ContactQuery page) throws Exception {
+        return connector.getContactsByQuery(userId, query, count, page.getOffset().toString());
+    }
+
+    @Override
+    protected Iterator<Contact> pageIterator(final ContactQuery page) {
+        return page.getContacts() != null ? page.getContacts().iterator() : Collections.<Contact>emptyList().iterator();
+    }
+}
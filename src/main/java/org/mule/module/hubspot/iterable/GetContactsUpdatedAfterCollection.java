@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.iterable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import org.mule.module.hubspot.HubSpotConnector;
+import org.mule.module.hubspot.model.contact.Contact;
+import org.mule.module.hubspot.model.contact.ContactList;
+
+/**
+ * Streams the recent contacts that were updated after a waterMark. The pages are requested while they are consumed and the pagination stops at the first contact that is not
+ * newer than the waterMark, so only one page (plus the ones read ahead) is kept in memory no matter how many contacts changed.
+ * <p>
+ * In chunked mode each element of the collection is the list of contacts of one page, instead of a single contact.
+ */
+public class GetContactsUpdatedAfterCollection<T> extends HubSpotPaginatedCollection<T, ContactList> {
+
+    private final HubSpotConnector connector;
+    private final String userId;
+    private final String count;
+    private final long waterMark;
+    private final boolean chunked;
+
+    private GetContactsUpdatedAfterCollection(final HubSpotConnector connector, final ContactList firstPage, final String userId, final String count, final long waterMark,
+            final boolean chunked, final ExecutorService executor, final int readAheadDepth) {
+        super(firstPage, executor, readAheadDepth);
+        this.connector = connector;
+        this.userId = userId;
+        this.count = count;
+        this.waterMark = waterMark;
+        this.chunked = chunked;
+    }
+
+    /**
+     * @return A collection of the contacts updated after the waterMark
+     */
+    static public GetContactsUpdatedAfterCollection<Contact> contacts(final HubSpotConnector connector, final ContactList firstPage, final String userId, final String count,
+            final long waterMark, final ExecutorService executor, final int readAheadDepth) {
+        return new GetContactsUpdatedAfterCollection<Contact>(connector, firstPage, userId, count, waterMark, false, executor, readAheadDepth);
+    }
+
+    /**
+     * @return A collection where each element is the list of the contacts of one page that were updated after the waterMark
+     */
+    static public GetContactsUpdatedAfterCollection<List<Contact>> chunks(final HubSpotConnector connector, final ContactList firstPage, final String userId,
+            final String count, final long waterMark, final ExecutorService executor, final int readAheadDepth) {
+        return new GetContactsUpdatedAfterCollection<List<Contact>>(connector, firstPage, userId, count, waterMark, true, executor, readAheadDepth);
+    }
+
+    @Override
+    protected boolean hasNextPage(final ContactList page) {
+        // We check for possible error in the API. If the hasMore it's true there should be a timeOffset and a vidOffset, but just to be sure we double check it
+        if (page == null || !Boolean.TRUE.equals(page.getHasMore()) || page.getTimeOffset() == null || page.getVidOffset() == null) {
+            return false;
+        }
+
+        final List<Contact> lc = page.getContacts();
+        return lc != null && newerThanWaterMark(lc) == lc.size();
+    }
+
+    @Override
+    protected ContactList requestNextPage(final ContactList page) throws Exception {
+        return connector.getRecentContacts(userId, count, page.getTimeOffset().toString(), page.getVidOffset().toString());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected Iterator<T> pageIterator(final ContactList page) {
+        final List<Contact> lc = page != null && page.getContacts() != null ? page.getContacts() : Collections.<Contact>emptyList();
+        final List<Contact> newer = lc.subList(0, newerThanWaterMark(lc));
+
+        if (chunked) {
+            if (newer.isEmpty()) {
+                return Collections.<T>emptyList().iterator();
+            }
+            // A copy, so the chunk does not keep the whole page referenced
+            return (Iterator<T>) Collections.singletonList(new ArrayList<Contact>(newer)).iterator();
+        }
+
+        return (Iterator<T>) newer.iterator();
+    }
+
+    /**
+     * @return The number of contacts at the beginning of the list that were updated after the waterMark
+     */
+    private int newerThanWaterMark(final List<Contact> lc) {
+        int x = 0;
+        final int xMax = lc.size();
+        for (; x < xMax; x++) {
+            final Long addedAt = lc.get(x).getAddedAt();
+            if (addedAt == null || addedAt <= waterMark) {
+                break;
+            }
+        }
+        return x;
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.iterable;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+
+import org.mule.module.hubspot.HubSpotConnector;
+import org.mule.module.hubspot.model.list.HubSpotList;
+import org.mule.module.hubspot.model.list.HubSpotListLists;
+
+/**
+ * Streams the lists of {@link HubSpotConnector#getDynamicContactLists}, paging with the offset of each page
+ */
+public class GetDynamicContactListsCollection extends HubSpotPaginatedCollection<HubSpotList, HubSpotListLists> {
+
+    private final HubSpotConnector connector;
+    private final String userId;
+    private final String count;
+
+    public GetDynamicContactListsCollection(final HubSpotConnector connector, final HubSpotListLists firstPage, final String userId, final String count,
+            final ExecutorService executor, final int readAheadDepth) {
+        super(firstPage, executor, readAheadDepth);
+        this.connector = connector;
+        this.userId = userId;
+        this.count = count;
+    }
+
+    @Override
+    protected boolean hasNextPage(final HubSpotListLists page) {
+        return Boolean.TRUE.equals(page.getHasMore()) && page.getOffset() != null;
+    }
+
+    @Override
+    protected HubSpotListLists requestNextPage(final HubSpotListLists page) throws Exception {
+        return connector.getDynamicContactLists(userId, count, page.getOffset().toString());
+    }
+
+    @Override
+    protected Iterator<HubSpotList> pageIterator(final HubSpotListLists page) {
+        return page.getLists() != null ? page.getLists().iterator() : Collections.<HubSpotList>emptyList().iterator();
+    }
+}
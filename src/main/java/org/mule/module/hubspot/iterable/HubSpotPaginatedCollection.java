@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.iterable;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+
+import org.mule.modules.utils.pagination.PaginatedCollection;
+
+/**
+ * Base of the collections that stream the result of a paginated operation one page at a time. The subclasses only need to know how the offsets of their endpoint work; the
+ * following pages are requested through the connector (so the tokens are refreshed transparently in the middle of an iteration) and read ahead with a {@link PageReadAhead}.
+ * If the request of a following page fails, the iterator throws a {@link PageRequestException} with the error.
+ * <p>
+ * The iterators are {@link Closeable}. They cancel the pages read ahead when the last page is reached or a request fails; a consumer that stops before the end should close
+ * the iterator, so the pages that it is not going to read are not requested.
+ */
+public abstract class HubSpotPaginatedCollection<T, P> extends PaginatedCollection<T, P> {
+
+    private final P firstPage;
+    private final ExecutorService executor;
+    private final int readAheadDepth;
+
+    /**
+     * @param firstPage
+     *            The first page, already requested
+     * @param executor
+     *            The executor where the following pages are requested while the current one is consumed
+     * @param readAheadDepth
+     *            The maximum number of pages requested ahead of the consumer. If it is zero the pages are requested when they are needed
+     */
+    protected HubSpotPaginatedCollection(final P firstPage, final ExecutorService executor, final int readAheadDepth) {
+        super();
+        this.firstPage = firstPage;
+        this.executor = executor;
+        this.readAheadDepth = readAheadDepth;
+    }
+
+    /**
+     * Requests the page that follows the given one
+     */
+    protected abstract P requestNextPage(P page) throws Exception;
+
+    /**
+     * The size is not known, so the contacts are looked for. A first page with contacts answers it without requesting any other
+     */
+    @Override
+    public boolean isEmpty() {
+        if (pageIterator(firstPage).hasNext()) {
+            return false;
+        }
+        final PageIterator iterator = new PageIterator();
+        try {
+            return !iterator.hasNext();
+        } finally {
+            iterator.close();
+        }
+    }
+
+    @Override
+    public int size() {
+        return -1;
+    }
+
+    /**
+     * Every iterator starts from the first page and reads ahead its own pages, so iterating the collection twice (or from two threads) does not mix the pages
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new PageIterator();
+    }
+
+    @Override
+    protected P firstPage() {
+        return firstPage;
+    }
+
+    @Override
+    protected P nextPage(final P page) {
+        try {
+            return requestNextPage(page);
+        } catch (final Throwable e) {
+            throw new PageRequestException(e);
+        }
+    }
+
+    private class PageIterator implements Iterator<T>, Closeable {
+
+        private final PageReadAhead<P> readAhead;
+        private P page;
+        private Iterator<T> current;
+
+        PageIterator() {
+            page = firstPage();
+            current = pageIterator(page);
+            readAhead = new PageReadAhead<P>(executor, readAheadDepth, page, new PageReadAhead.PageSource<P>() {
+                @Override
+                public boolean hasNextPage(final P page) {
+                    return HubSpotPaginatedCollection.this.hasNextPage(page);
+                }
+
+                @Override
+                public P nextPage(final P page) throws Exception {
+                    return requestNextPage(page);
+                }
+            });
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (page == null || !hasNextPage(page)) {
+                    close();
+                    return false;
+                }
+                try {
+                    page = readAhead.next(page);
+                } catch (final Throwable e) {
+                    // Calling hasNext again requests the failed page synchronously
+                    close();
+                    throw new PageRequestException(e);
+                }
+                current = pageIterator(page);
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Cancels the pages read ahead. The iterator can still be used, requesting the following pages synchronously
+         */
+        @Override
+        public void close() {
+            readAhead.cancel();
+        }
+    }
+
+    // This methods are added because the Debbuger in MuleStudio tries to convert to an array to show the data, ending in a UnsupportedOperationException
+    @Override
+    public Object[] toArray() {
+        return null;
+    }
+
+    @Override
+    public <Type> Type[] toArray(final Type[] a) {
+        return null;
+    }
+}
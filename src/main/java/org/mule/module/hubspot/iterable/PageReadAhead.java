@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.iterable;
+
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Requests the following pages of a paginated operation in the background while the current one is being consumed.
+ * <p>
+ * The next page can only be requested once the offsets of the previous one are known, so the requests are chained: when a page arrives, the request of the following one is
+ * submitted, as long as there are less than <i>depth</i> pages requested and not yet consumed. This keeps the memory bounded by the read-ahead depth, and no thread is ever
+ * blocked waiting for the consumer. If a request fails the chain stops there, and the error is thrown to the consumer when it reaches that page.
+ * <p>
+ * If the depth is zero or there is no executor the pages are requested synchronously, as they are consumed. The same happens with a page whose request is rejected by the
+ * executor because it is busy, and with every page once the read-ahead is cancelled.
+ */
+public class PageReadAhead<P> {
+
+    /**
+     * Knows how to request the page that follows another one
+     */
+    public interface PageSource<P> {
+
+        boolean hasNextPage(P page);
+
+        P nextPage(P page) throws Exception;
+    }
+
+    private final ExecutorService executor;
+    private final int depth;
+    private final PageSource<P> source;
+
+    // Pages requested and not yet consumed, in order. Guarded by this
+    private final LinkedList<Future<P>> pending = new LinkedList<Future<P>>();
+    // Last page received whose following page was not requested because the window was full or the executor was busy. Guarded by this
+    private P stalled;
+    private boolean cancelled;
+
+    /**
+     * @param executor
+     *            The executor where the pages are requested
+     * @param depth
+     *            The maximum number of pages requested ahead of the consumer
+     * @param firstPage
+     *            The page that the consumer is going to read first. The following one is requested immediately
+     * @param source
+     *            The operation that requests the pages
+     */
+    public PageReadAhead(final ExecutorService executor, final int depth, final P firstPage, final PageSource<P> source) {
+        this.executor = depth > 0 ? executor : null;
+        this.depth = depth;
+        this.source = source;
+
+        if (this.executor != null && firstPage != null && source.hasNextPage(firstPage)) {
+            synchronized (this) {
+                request(firstPage);
+            }
+        }
+    }
+
+    /**
+     * @param current
+     *            The last page returned to the consumer
+     * @return The page that follows the current one, waiting for it if it has not arrived yet
+     */
+    public P next(final P current) throws Exception {
+        if (executor == null) {
+            return source.nextPage(current);
+        }
+
+        Future<P> future = null;
+        synchronized (this) {
+            if (pending.isEmpty() && !cancelled) {
+                // Nothing was requested after the current page, the window was full or the executor was busy when it arrived
+                stalled = null;
+                request(current);
+            }
+            if (!pending.isEmpty()) {
+                future = pending.removeFirst();
+                if (stalled != null && pending.size() < depth && request(stalled)) {
+                    stalled = null;
+                }
+            }
+        }
+
+        if (future == null) {
+            return source.nextPage(current);
+        }
+        try {
+            return future.get();
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Cancels the pages requested and not yet consumed. The following pages are requested synchronously, when they are needed
+     */
+    public synchronized void cancel() {
+        for (final Future<P> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+        stalled = null;
+        cancelled = true;
+    }
+
+    /**
+     * Must be called holding the lock
+     * 
+     * @return False if the executor rejected the request
+     */
+    private boolean request(final P previous) {
+        try {
+            pending.addLast(executor.submit(new Callable<P>() {
+                @Override
+                public P call() throws Exception {
+                    final P page = source.nextPage(previous);
+                    received(page);
+                    return page;
+                }
+            }));
+            return true;
+        } catch (final RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private synchronized void received(final P page) {
+        if (cancelled || page == null || !source.hasNextPage(page)) {
+            return;
+        }
+
+        if (pending.size() >= depth || !request(page)) {
+            // Requested when the consumer takes the next page
+            stalled = page;
+        }
+    }
+}
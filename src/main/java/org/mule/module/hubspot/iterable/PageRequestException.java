@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.iterable;
+
+import org.mule.module.hubspot.exception.HubSpotConnectorAccessTokenExpiredException;
+import org.mule.module.hubspot.exception.HubSpotConnectorException;
+import org.mule.module.hubspot.exception.HubSpotConnectorNoAccessTokenException;
+
+/**
+ * Thrown by the iterators of a {@link HubSpotPaginatedCollection} when the request of a page fails, as an {@link java.util.Iterator} cannot throw checked exceptions. The
+ * cause is the error of the request.
+ */
+public class PageRequestException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PageRequestException(final Throwable causedBy) {
+        super(causedBy);
+    }
+
+    /**
+     * Throws the error of the request as the operations of the connector do, so the callers that iterate the whole collection fail like the request of the first page would
+     */
+    public void rethrow() throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+        final Throwable cause = getCause();
+        if (cause instanceof HubSpotConnectorException) {
+            throw (HubSpotConnectorException) cause;
+        }
+        if (cause instanceof HubSpotConnectorNoAccessTokenException) {
+            throw (HubSpotConnectorNoAccessTokenException) cause;
+        }
+        if (cause instanceof HubSpotConnectorAccessTokenExpiredException) {
+            throw (HubSpotConnectorAccessTokenExpiredException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new HubSpotConnectorException(cause);
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and latency histograms of the requests sent by the connector.
+ * <p>
+ * Recording does not take locks nor allocate memory, except the first time an operation or a tenant is seen. The number of tenants with their own histogram is bounded; the
+ * rest share the {@value #OTHER_TENANTS} one.
+ */
+public class HubSpotMetrics implements HubSpotMetricsMXBean {
+
+    static final public String OTHER_TENANTS = "other";
+
+    static final private int MAX_STATUS_CODE = 599;
+
+    private final int maxTenants;
+
+    private final ConcurrentMap<String, LatencyHistogram> operations = new ConcurrentHashMap<String, LatencyHistogram>();
+    private final ConcurrentMap<String, LatencyHistogram> tenants = new ConcurrentHashMap<String, LatencyHistogram>();
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+
+    private final AtomicLongArray statusCodes = new AtomicLongArray(MAX_STATUS_CODE + 1);
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong tokenRefreshes = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    /**
+     * @param maxTenants
+     *            Maximum number of tenants with their own latency histogram
+     */
+    public HubSpotMetrics(final int maxTenants) {
+        this.maxTenants = maxTenants;
+    }
+
+    /**
+     * Records an HTTP request
+     * 
+     * @param statusCode
+     *            The status code of the response, or 0 if there was no response
+     * @param bodyLength
+     *            The bytes read from the body of the response, or a negative number if there was no response
+     */
+    public void recordRequest(final long durationNanos, final int statusCode, final long bodyLength) {
+        requests.incrementAndGet();
+        requestLatency.record(durationNanos);
+        statusCodes.incrementAndGet(statusCode > 0 && statusCode <= MAX_STATUS_CODE ? statusCode : 0);
+        if (bodyLength > 0) {
+            bytesReceived.addAndGet(bodyLength);
+        }
+    }
+
+    /**
+     * Records an operation of a tenant, from the first attempt until it succeeds or fails for good
+     */
+    public void recordOperation(final String operation, final String tenant, final long durationNanos) {
+        histogram(operations, operation, Integer.MAX_VALUE).record(durationNanos);
+        histogram(tenants, tenant != null ? tenant : OTHER_TENANTS, maxTenants).record(durationNanos);
+    }
+
+    public void recordRetry() {
+        retries.incrementAndGet();
+    }
+
+    public void recordTokenRefresh() {
+        tokenRefreshes.incrementAndGet();
+    }
+
+    static private LatencyHistogram histogram(final ConcurrentMap<String, LatencyHistogram> histograms, final String key, final int maxSize) {
+        LatencyHistogram histogram = histograms.get(key);
+        if (histogram == null) {
+            // The size is checked without a lock, so it can be slightly exceeded when several tenants arrive at the same time
+            final String finalKey = histograms.size() < maxSize ? key : OTHER_TENANTS;
+            histogram = histograms.get(finalKey);
+            if (histogram == null) {
+                final LatencyHistogram newHistogram = new LatencyHistogram();
+                histogram = histograms.putIfAbsent(finalKey, newHistogram);
+                if (histogram == null) {
+                    histogram = newHistogram;
+                }
+            }
+        }
+        return histogram;
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.get();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.get();
+    }
+
+    @Override
+    public long getTokenRefreshes() {
+        return tokenRefreshes.get();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    @Override
+    public Map<Integer, Long> getStatusCodes() {
+        final Map<Integer, Long> codes = new TreeMap<Integer, Long>();
+        for (int x = 0; x <= MAX_STATUS_CODE; x++) {
+            final long count = statusCodes.get(x);
+            if (count > 0) {
+                codes.put(x, count);
+            }
+        }
+        return codes;
+    }
+
+    @Override
+    public LatencySnapshot getRequestLatency() {
+        return requestLatency.snapshot();
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getOperationLatencies() {
+        return snapshots(operations);
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getTenantLatencies() {
+        return snapshots(tenants);
+    }
+
+    static private Map<String, LatencySnapshot> snapshots(final Map<String, LatencyHistogram> histograms) {
+        final Map<String, LatencySnapshot> snapshots = new TreeMap<String, LatencySnapshot>();
+        for (final Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            snapshots.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * Clears every counter and histogram, e.g. to measure a new period
+     */
+    @Override
+    public void reset() {
+        operations.clear();
+        tenants.clear();
+        requestLatency.reset();
+        for (int x = 0; x <= MAX_STATUS_CODE; x++) {
+            statusCodes.set(x, 0);
+        }
+        requests.set(0);
+        retries.set(0);
+        tokenRefreshes.set(0);
+        bytesReceived.set(0);
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link HubSpotMetrics} of a connector. The latencies are in microseconds
+ */
+public interface HubSpotMetricsMXBean {
+
+    /**
+     * @return The HTTP requests sent, including the retries
+     */
+    long getRequests();
+
+    long getRetries();
+
+    long getTokenRefreshes();
+
+    /**
+     * @return The bytes read from the bodies of the responses, including the chunked ones that have no Content-Length
+     */
+    long getBytesReceived();
+
+    /**
+     * @return The number of responses by HTTP status code. The requests that got no response are counted with the code 0
+     */
+    Map<Integer, Long> getStatusCodes();
+
+    /**
+     * @return The latency of each HTTP request
+     */
+    LatencySnapshot getRequestLatency();
+
+    /**
+     * @return The latency of each operation, including its retries and the time waiting for the rate limiter, by operation
+     */
+    Map<String, LatencySnapshot> getOperationLatencies();
+
+    /**
+     * @return The latency of the operations of each tenant
+     */
+    Map<String, LatencySnapshot> getTenantLatencies();
+
+    void reset();
+}
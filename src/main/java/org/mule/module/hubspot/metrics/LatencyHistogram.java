@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies, in microseconds, that can be recorded from many threads without locks or allocations.
+ * <p>
+ * The values are counted in log-linear buckets: each power of two is split in {@value #SUB_BUCKETS} buckets, so a percentile is reported with an error of at most 12.5%. Values
+ * up to about 12 days fit in {@value #BUCKETS} counters; larger ones are counted in the last bucket.
+ */
+public class LatencyHistogram {
+
+    static final private int SUB_BUCKET_BITS = 3;
+    static final private int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // The values below this are counted one by one
+    static final private int LINEAR_LIMIT = SUB_BUCKETS * 2;
+    static final private int MAX_EXPONENT = 40;
+    static final private int BUCKETS = LINEAR_LIMIT + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(final long durationNanos) {
+        final long micros = Math.max(TimeUnit.NANOSECONDS.toMicros(durationNanos), 0);
+        counts.incrementAndGet(bucketOf(micros));
+        count.incrementAndGet();
+        sum.addAndGet(micros);
+
+        long current = max.get();
+        while (micros > current && !max.compareAndSet(current, micros)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * @return The percentiles of the values recorded so far. Values recorded while it is taken may be partially included
+     */
+    public LatencySnapshot snapshot() {
+        final long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int x = 0; x < BUCKETS; x++) {
+            snapshot[x] = counts.get(x);
+            total += snapshot[x];
+        }
+
+        final long maxValue = max.get();
+        return new LatencySnapshot(total, total > 0 ? sum.get() / total : 0, percentile(snapshot, total, 0.5, maxValue), percentile(snapshot, total, 0.99, maxValue),
+                percentile(snapshot, total, 0.999, maxValue), maxValue);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public void reset() {
+        for (int x = 0; x < BUCKETS; x++) {
+            counts.set(x, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * @return The upper bound of the bucket that contains the percentile, never greater than the maximum value recorded. The last bucket has no upper bound, so the maximum
+     *         is returned
+     */
+    static private long percentile(final long[] snapshot, final long total, final double percentile, final long maxValue) {
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        for (int x = 0; x < snapshot.length; x++) {
+            seen += snapshot[x];
+            if (seen >= rank) {
+                return x < BUCKETS - 1 ? Math.min(upperBoundOf(x), maxValue) : maxValue;
+            }
+        }
+        return maxValue;
+    }
+
+    static int bucketOf(final long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        // The bits that follow the highest one select the sub bucket
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(final int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        final int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        final int subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -20,6 +20,7 @@ public class OAuthCredentials implements Serializable {
     private String expiresAt;
     private String refreshToken;
     private Boolean offlineScope;
+    private Long expirationTime;
 
     public OAuthCredentials() {
         super();
@@ -80,4 +81,15 @@ public class OAuthCredentials implements Serializable {
     public void setOfflineScope(final Boolean offlineScope) {
         this.offlineScope = offlineScope;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return The time (in milliseconds since the epoch) when the access token expires, or null if it is unknown
+     */
+    public Long getExpirationTime() {
+        return expirationTime;
+    }
+
+    public void setExpirationTime(final Long expirationTime) {
+        this.expirationTime = expirationTime;
+    }
+}
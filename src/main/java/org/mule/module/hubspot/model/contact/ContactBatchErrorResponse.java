@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.model.contact;
+
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.jackson.annotate.JsonIgnoreProperties;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+/**
+ * Body of the error response of the batch of contacts, with the position in the request of each contact that was rejected
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ContactBatchErrorResponse {
+
+    private String status;
+    private String message;
+    private List<String> invalidEmails;
+    private List<FailureMessage> failureMessages;
+
+    @JsonProperty
+    public String getStatus() {
+        return status;
+    }
+
+    @JsonProperty
+    public void setStatus(final String status) {
+        this.status = status;
+    }
+
+    @JsonProperty
+    public String getMessage() {
+        return message;
+    }
+
+    @JsonProperty
+    public void setMessage(final String message) {
+        this.message = message;
+    }
+
+    @JsonProperty
+    public List<String> getInvalidEmails() {
+        return invalidEmails;
+    }
+
+    @JsonProperty
+    public void setInvalidEmails(final List<String> invalidEmails) {
+        this.invalidEmails = invalidEmails;
+    }
+
+    @JsonProperty
+    public List<FailureMessage> getFailureMessages() {
+        return failureMessages;
+    }
+
+    @JsonProperty
+    public void setFailureMessages(final List<FailureMessage> failureMessages) {
+        this.failureMessages = failureMessages;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static public class FailureMessage {
+
+        private Integer index;
+        private Map<String, Object> error;
+
+        @JsonProperty
+        public Integer getIndex() {
+            return index;
+        }
+
+        @JsonProperty
+        public void setIndex(final Integer index) {
+            this.index = index;
+        }
+
+        @JsonProperty
+        public Map<String, Object> getError() {
+            return error;
+        }
+
+        @JsonProperty
+        public void setError(final Map<String, Object> error) {
+            this.error = error;
+        }
+    }
+
+}
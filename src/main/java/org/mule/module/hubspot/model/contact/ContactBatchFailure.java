@@ -0,0 +1,42 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.model.contact;
+
+/**
+ * A contact of a batch that HubSpot did not accept, with the reason
+ */
+public class ContactBatchFailure {
+
+    private ContactBatchItem item;
+    private String message;
+
+    public ContactBatchFailure() {
+    }
+
+    public ContactBatchFailure(final ContactBatchItem item, final String message) {
+        this.item = item;
+        this.message = message;
+    }
+
+    public ContactBatchItem getItem() {
+        return item;
+    }
+
+    public void setItem(final ContactBatchItem item) {
+        this.item = item;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(final String message) {
+        this.message = message;
+    }
+
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.model.contact;
+
+import org.codehaus.jackson.annotate.JsonIgnoreProperties;
+import org.codehaus.jackson.annotate.JsonProperty;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
+import org.codehaus.jackson.map.annotate.JsonSerialize.Inclusion;
+import org.mule.module.hubspot.serialization.ContactJacksonSerializer;
+
+/**
+ * A contact to create or update in a batch. The contact is identified by its vid or, if it is not set, by its email; if there is no contact with that email it is created.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonSerialize(include = Inclusion.NON_NULL)
+public class ContactBatchItem {
+
+    private Long vid;
+    private String email;
+    private ContactProperties contactProperties;
+
+    public ContactBatchItem() {
+    }
+
+    public ContactBatchItem(final Long vid, final String email, final ContactProperties contactProperties) {
+        this.vid = vid;
+        this.email = email;
+        this.contactProperties = contactProperties;
+    }
+
+    @JsonProperty
+    public Long getVid() {
+        return vid;
+    }
+
+    @JsonProperty
+    public void setVid(final Long vid) {
+        this.vid = vid;
+    }
+
+    @JsonProperty
+    public String getEmail() {
+        return email;
+    }
+
+    @JsonProperty
+    public void setEmail(final String email) {
+        this.email = email;
+    }
+
+    @JsonProperty("properties")
+    @JsonSerialize(using = ContactJacksonSerializer.class)
+    public ContactProperties getContactProperties() {
+        return contactProperties;
+    }
+
+    @JsonProperty("properties")
+    public void setContactProperties(final ContactProperties contactProperties) {
+        this.contactProperties = contactProperties;
+    }
+
+}
@@ -0,0 +1,19 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.model.contact;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Response of the batch lookups of contacts: the contacts found, by vid (or by user token when they are looked up by user token). The keys that were not found are not in it
+ */
+public class ContactBatchResponse extends LinkedHashMap<String, Contact> {
+
+    private static final long serialVersionUID = 1L;
+
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.model.contact;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of a batch create or update of contacts. The chunks of the batch are sent concurrently, so the contacts are added from several threads
+ */
+public class ContactBatchResult {
+
+    private final List<ContactBatchItem> succeeded = new ArrayList<ContactBatchItem>();
+    private final List<ContactBatchFailure> failed = new ArrayList<ContactBatchFailure>();
+
+    public synchronized List<ContactBatchItem> getSucceeded() {
+        return new ArrayList<ContactBatchItem>(succeeded);
+    }
+
+    public synchronized List<ContactBatchFailure> getFailed() {
+        return new ArrayList<ContactBatchFailure>(failed);
+    }
+
+    public synchronized void addSucceeded(final List<ContactBatchItem> items) {
+        succeeded.addAll(items);
+    }
+
+    public synchronized void addFailed(final ContactBatchItem item, final String message) {
+        failed.add(new ContactBatchFailure(item, message));
+    }
+
+    public synchronized boolean hasFailures() {
+        return !failed.isEmpty();
+    }
+
+}
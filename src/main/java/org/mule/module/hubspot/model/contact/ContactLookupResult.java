@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.model.contact;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of looking up many contacts at once: the contacts found by the key used to look them up, and the keys that did not match any contact
+ */
+public class ContactLookupResult {
+
+    private final Map<String, Contact> contacts = new LinkedHashMap<String, Contact>();
+    private final List<String> missing = new ArrayList<String>();
+
+    /**
+     * @return The contacts found, by the vid, email or user token used to look them up
+     */
+    public Map<String, Contact> getContacts() {
+        return contacts;
+    }
+
+    /**
+     * @return The keys that did not match any contact
+     */
+    public List<String> getMissing() {
+        return missing;
+    }
+
+    public Contact getContact(final String key) {
+        return contacts.get(key);
+    }
+
+    public boolean isMissing(final String key) {
+        return missing.contains(key);
+    }
+
+}
@@ -7,6 +7,10 @@
  */
 package org.mule.module.hubspot.model.contact;
 
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
 import org.codehaus.jackson.annotate.JsonCreator;
 import org.codehaus.jackson.annotate.JsonValue;
 
@@ -20,6 +24,15 @@ public enum ContactPropertiesLifecycleStage {
     EVANGELIST("evangelist"),
     OTHER("other");
 
+    // Case insensitive lookup table by value
+    static final private Map<String, ContactPropertiesLifecycleStage> BY_VALUE = new HashMap<String, ContactPropertiesLifecycleStage>();
+
+    static {
+        for (final ContactPropertiesLifecycleStage obj : ContactPropertiesLifecycleStage.values()) {
+            BY_VALUE.put(obj.getValue().toLowerCase(Locale.ENGLISH), obj);
+        }
+    }
+
     private String value;
 
     private ContactPropertiesLifecycleStage(final String value) {
@@ -33,11 +46,6 @@ public enum ContactPropertiesLifecycleStage {
 
     @JsonCreator
     static public ContactPropertiesLifecycleStage getFromString(final String value) {
-        for (final ContactPropertiesLifecycleStage obj : ContactPropertiesLifecycleStage.values()) {
-            if (obj.getValue().equalsIgnoreCase(value)) {
-                return obj;
-            }
-        }
-        return null;
+        return value != null ? BY_VALUE.get(value.toLowerCase(Locale.ENGLISH)) : null;
     }
 }
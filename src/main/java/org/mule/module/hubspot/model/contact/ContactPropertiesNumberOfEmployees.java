@@ -7,6 +7,10 @@
  */
 package org.mule.module.hubspot.model.contact;
 
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
 import org.codehaus.jackson.annotate.JsonCreator;
 import org.codehaus.jackson.annotate.JsonValue;
 
@@ -19,6 +23,15 @@ public enum ContactPropertiesNumberOfEmployees {
     _500_1000("500-1000"),
     _1000plus("1000+");
 
+    // Case insensitive lookup table by value
+    static final private Map<String, ContactPropertiesNumberOfEmployees> BY_VALUE = new HashMap<String, ContactPropertiesNumberOfEmployees>();
+
+    static {
+        for (final ContactPropertiesNumberOfEmployees obj : ContactPropertiesNumberOfEmployees.values()) {
+            BY_VALUE.put(obj.getValue().toLowerCase(Locale.ENGLISH), obj);
+        }
+    }
+
     private String value;
 
     private ContactPropertiesNumberOfEmployees(final String value) {
@@ -59,11 +72,6 @@ public enum ContactPropertiesNumberOfEmployees {
 
     @JsonCreator
     static public ContactPropertiesNumberOfEmployees getFromString(final String value) {
-        for (final ContactPropertiesNumberOfEmployees obj : ContactPropertiesNumberOfEmployees.values()) {
-            if (obj.getValue().equalsIgnoreCase(value)) {
-                return obj;
-            }
-        }
-        return null;
+        return value != null ? BY_VALUE.get(value.toLowerCase(Locale.ENGLISH)) : null;
     }
 }
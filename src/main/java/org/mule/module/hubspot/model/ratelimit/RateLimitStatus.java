@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.model.ratelimit;
+
+import org.codehaus.jackson.annotate.JsonIgnoreProperties;
+import org.codehaus.jackson.annotate.JsonProperty;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
+import org.codehaus.jackson.map.annotate.JsonSerialize.Inclusion;
+
+/**
+ * The request budget of a portal, as reported by HubSpot in the rate limit headers of its last response. The values that HubSpot has not reported are null
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonSerialize(include = Inclusion.NON_NULL)
+public class RateLimitStatus {
+
+    private String portal;
+    private Long secondlyLimit;
+    private Long secondlyRemaining;
+    private Long dailyLimit;
+    private Long dailyRemaining;
+    private Long updatedAt;
+    private Long throttleDelay;
+
+    @JsonProperty
+    public String getPortal() {
+        return portal;
+    }
+
+    @JsonProperty
+    public void setPortal(final String portal) {
+        this.portal = portal;
+    }
+
+    /**
+     * @return Maximum number of requests in the short window (usually a second)
+     */
+    @JsonProperty
+    public Long getSecondlyLimit() {
+        return secondlyLimit;
+    }
+
+    @JsonProperty
+    public void setSecondlyLimit(final Long secondlyLimit) {
+        this.secondlyLimit = secondlyLimit;
+    }
+
+    /**
+     * @return Requests left in the current short window, minus the ones sent since it was reported
+     */
+    @JsonProperty
+    public Long getSecondlyRemaining() {
+        return secondlyRemaining;
+    }
+
+    @JsonProperty
+    public void setSecondlyRemaining(final Long secondlyRemaining) {
+        this.secondlyRemaining = secondlyRemaining;
+    }
+
+    @JsonProperty
+    public Long getDailyLimit() {
+        return dailyLimit;
+    }
+
+    @JsonProperty
+    public void setDailyLimit(final Long dailyLimit) {
+        this.dailyLimit = dailyLimit;
+    }
+
+    /**
+     * @return Requests left today, minus the ones sent since it was reported
+     */
+    @JsonProperty
+    public Long getDailyRemaining() {
+        return dailyRemaining;
+    }
+
+    @JsonProperty
+    public void setDailyRemaining(final Long dailyRemaining) {
+        this.dailyRemaining = dailyRemaining;
+    }
+
+    /**
+     * @return When the headers were received, in milliseconds since the epoch
+     */
+    @JsonProperty
+    public Long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    @JsonProperty
+    public void setUpdatedAt(final Long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * @return Milliseconds that the next request of the portal would be delayed to stretch the remaining budget
+     */
+    @JsonProperty
+    public Long getThrottleDelay() {
+        return throttleDelay;
+    }
+
+    @JsonProperty
+    public void setThrottleDelay(final Long throttleDelay) {
+        this.throttleDelay = throttleDelay;
+    }
+}
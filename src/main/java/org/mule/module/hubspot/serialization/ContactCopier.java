@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.serialization;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.mule.module.hubspot.model.contact.Contact;
+import org.mule.module.hubspot.model.contact.ContactIdentity;
+import org.mule.module.hubspot.model.contact.ContactIdentityProfiles;
+import org.mule.module.hubspot.model.contact.ContactListMembership;
+import org.mule.module.hubspot.model.contact.ContactProperties;
+
+/**
+ * Deep copies of contacts, for the contacts that are kept and handed out more than once (e.g. by a cache), so the changes that a flow makes to its copy are not seen by the
+ * others. The fixed fields of {@link ContactProperties} are copied through the same precompiled accessors as the serializer.
+ */
+public class ContactCopier {
+
+    private ContactCopier() {
+    }
+
+    /**
+     * @return A copy of the contact that does not share any mutable object with it, or null if the contact is null
+     */
+    static public Contact copy(final Contact contact) {
+        if (contact == null) {
+            return null;
+        }
+
+        final Contact copy = new Contact();
+        copy.setVid(contact.getVid());
+        copy.setAddedAt(contact.getAddedAt());
+        copy.setPortalId(contact.getPortalId());
+        copy.setProfileToken(contact.getProfileToken());
+        copy.setProfileUrl(contact.getProfileUrl());
+        copy.setContactProperties(copy(contact.getContactProperties()));
+
+        if (contact.getListMemberships() != null) {
+            final List<ContactListMembership> memberships = new ArrayList<ContactListMembership>(contact.getListMemberships().size());
+            for (final ContactListMembership membership : contact.getListMemberships()) {
+                memberships.add(copy(membership));
+            }
+            copy.setListMemberships(memberships);
+        }
+        if (contact.getIdentityProfiles() != null) {
+            final List<ContactIdentityProfiles> profiles = new ArrayList<ContactIdentityProfiles>(contact.getIdentityProfiles().size());
+            for (final ContactIdentityProfiles profile : contact.getIdentityProfiles()) {
+                profiles.add(copy(profile));
+            }
+            copy.setIdentityProfiles(profiles);
+        }
+        return copy;
+    }
+
+    static private ContactProperties copy(final ContactProperties cp) {
+        if (cp == null) {
+            return null;
+        }
+
+        final ContactProperties copy = new ContactProperties();
+        for (final ContactPropertyAccessor accessor : ContactPropertyAccessor.all()) {
+            accessor.copy(cp, copy);
+        }
+        if (cp.getCustomProperties() != null) {
+            copy.setCustomProperties(new HashMap<String, String>(cp.getCustomProperties()));
+        }
+        return copy;
+    }
+
+    static private ContactListMembership copy(final ContactListMembership membership) {
+        if (membership == null) {
+            return null;
+        }
+
+        final ContactListMembership copy = new ContactListMembership();
+        copy.setInternalListId(membership.getInternalListId());
+        copy.setTimestamp(membership.getTimestamp());
+        copy.setVid(membership.getVid());
+        return copy;
+    }
+
+    static private ContactIdentityProfiles copy(final ContactIdentityProfiles profile) {
+        if (profile == null) {
+            return null;
+        }
+
+        final ContactIdentityProfiles copy = new ContactIdentityProfiles();
+        copy.setVid(profile.getVid());
+        if (profile.getIdentities() != null) {
+            final List<ContactIdentity> identities = new ArrayList<ContactIdentity>(profile.getIdentities().size());
+            for (final ContactIdentity identity : profile.getIdentities()) {
+                if (identity == null) {
+                    identities.add(null);
+                    continue;
+                }
+                final ContactIdentity identityCopy = new ContactIdentity();
+                identityCopy.setType(identity.getType());
+                identityCopy.setValue(identity.getValue());
+                identityCopy.setTimestamp(identity.getTimestamp());
+                identities.add(identityCopy);
+            }
+            copy.setIdentities(identities);
+        }
+        return copy;
+    }
+}
@@ -7,18 +7,14 @@
  */
 package org.mule.module.hubspot.serialization;
 
-import java.beans.IntrospectionException;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
 import java.io.IOException;
+import java.util.Map;
 
 import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.JsonProcessingException;
 import org.codehaus.jackson.map.JsonSerializer;
 import org.codehaus.jackson.map.SerializerProvider;
 import org.mule.module.hubspot.model.contact.ContactProperties;
-import org.mule.module.hubspot.model.contact.ContactPropertiesLifecycleStage;
-import org.mule.module.hubspot.model.contact.ContactPropertiesNumberOfEmployees;
 
 public class ContactJacksonSerializer extends JsonSerializer<ContactProperties> {
 
@@ -29,59 +25,23 @@ public class ContactJacksonSerializer extends JsonSerializer<ContactProperties>
             return;
         }
 
-        PropertyDescriptor[] propertyDescriptor;
-        try {
-            propertyDescriptor = Introspector.getBeanInfo(ContactProperties.class).getPropertyDescriptors();
-        } catch (final IntrospectionException e) {
-            throw new IOException(e);
-        }
-
-        Object propVal;
-
         jgen.writeStartArray();
 
-        for (final PropertyDescriptor pd : propertyDescriptor) {
-            // Check that has a read method for properties
-            if (pd.getReadMethod() != null && !"class".equals(pd.getName())) {
-
-                // For custom properties
-                if ("customProperties".equals(pd.getName())) {
-                    if (value.getCustomProperties() != null) {
-                        for (final String key : value.getCustomProperties().keySet()) {
-                            jgen.writeStartObject();
-                            jgen.writeStringField("property", key);
-                            jgen.writeStringField("value", value.getCustomProperties().get(key));
-                            jgen.writeEndObject();
-                        }
-                    }
-                } else {
-                    try {
-                        propVal = pd.getReadMethod().invoke(value);
-                    } catch (final Exception e) {
-                        throw new IOException(e);
-                    }
-
-                    if (propVal != null) {
-                        jgen.writeStartObject();
-                        jgen.writeStringField("property", pd.getName());
-
-                        if (propVal instanceof Long) {
-                            jgen.writeNumberField("value", (Long) propVal);
-                        } else if (propVal instanceof String) {
-                            jgen.writeStringField("value", (String) propVal);
-                        } else if (propVal instanceof ContactPropertiesLifecycleStage) {
-                            jgen.writeStringField("value", ((ContactPropertiesLifecycleStage) propVal).getValue());
-                        } else if (propVal instanceof ContactPropertiesNumberOfEmployees) {
-                            jgen.writeStringField("value", ((ContactPropertiesNumberOfEmployees) propVal).getValue());
-                        }
+        for (final ContactPropertyAccessor accessor : ContactPropertyAccessor.all()) {
+            accessor.write(value, jgen);
+        }
 
-                        jgen.writeEndObject();
-                    }
-                }
+        // For custom properties
+        final Map<String, String> customProperties = value.getCustomProperties();
+        if (customProperties != null) {
+            for (final Map.Entry<String, String> entry : customProperties.entrySet()) {
+                jgen.writeStartObject();
+                jgen.writeStringField("property", entry.getKey());
+                jgen.writeStringField("value", entry.getValue());
+                jgen.writeEndObject();
             }
         }
 
         jgen.writeEndArray();
     }
-
-}
\ No newline at end of file
+}
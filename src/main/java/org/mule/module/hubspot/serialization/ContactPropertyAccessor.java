@@ -0,0 +1,395 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.serialization;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.mule.module.hubspot.model.contact.ContactProperties;
+import org.mule.module.hubspot.model.contact.ContactPropertiesLifecycleStage;
+import org.mule.module.hubspot.model.contact.ContactPropertiesNumberOfEmployees;
+
+/**
+ * Precompiled accessor for one of the fixed fields of {@link ContactProperties}. The table of accessors is built once, and it is looked up by the HubSpot property name
+ * (case insensitive), so the serializer and the deserializer do not need to introspect the bean or use reflection for every contact.
+ * <p>
+ * <b>Important:</b> when a field is added to {@link ContactProperties} it must be registered here too.
+ */
+abstract class ContactPropertyAccessor {
+
+    static final private Map<String, ContactPropertyAccessor> ACCESSORS;
+    static final private ContactPropertyAccessor[] ALL;
+
+    static {
+        // Registered in alphabetical order, which is the order in which the properties were written when the bean was introspected
+        final Map<String, ContactPropertyAccessor> accessors = new LinkedHashMap<String, ContactPropertyAccessor>();
+
+        register(accessors, new StringAccessor("address") {
+            @Override
+            String getString(final ContactProperties cp) {
+                return cp.getAddress();
+            }
+
+            @Override
+            void setString(final ContactProperties cp, final String value) {
+                cp.setAddress(value);
+            }
+        });
+        register(accessors, new LongAccessor("annualrevenue") {
+            @Override
+            Long getLong(final ContactProperties cp) {
+                return cp.getAnnualrevenue();
+            }
+
+            @Override
+            void setLong(final ContactProperties cp, final Long value) {
+                cp.setAnnualrevenue(value);
+            }
+        });
+        register(accessors, new StringAccessor("city") {
+            @Override
+            String getString(final ContactProperties cp) {
+                return cp.getCity();
+            }
+
+            @Override
+            void setString(final ContactProperties cp, final String value) {
+                cp.setCity(value);
+            }
+        });
+        register(accessors, new LongAccessor("closedate") {
+            @Override
+            Long getLong(final ContactProperties cp) {
+                return cp.getClosedate();
+            }
+
+            @Override
+            void setLong(final ContactProperties cp, final Long value) {
+                cp.setClosedate(value);
+            }
+        });
+        register(accessors, new StringAccessor("company") {
+            @Override
+            String getString(final ContactProperties cp) {
+                return cp.getCompany();
+            }
+
+            @Override
+            void setString(final ContactProperties cp, final String value) {
+                cp.setCompany(value);
+            }
+        });
+        register(accessors, new StringAccessor("country") {
+            @Override
+            String getString(final ContactProperties cp) {
+                return cp.getCountry();
+            }
+
+            @Override
+            void setString(final ContactProperties cp, final String value) {
+                cp.setCountry(value);
+            }
+        });
+        register(accessors, new StringAccessor("email") {
+            @Override
+            String getString(final ContactProperties cp) {
+                return cp.getEmail();
+            }
+
+            @Override
+            void setString(final ContactProperties cp, final String value) {
+                cp.setEmail(value);
+            }
+        });
+        register(accessors, new StringAccessor("fax") {
+            @Override
+            String getString(final ContactProperties cp) {
+                return cp.getFax();
+            }
+
+            @Override
+            void setString(final ContactProperties cp, final String value) {
+                cp.setFax(value);
+            }
+        });
+        register(accessors, new StringAccessor("firstname") {
+            @Override
+            String getString(final ContactProperties cp) {
+                return cp.getFirstname();
+            }
+
+            @Override
+            void setString(final ContactProperties cp, final String value) {
+                cp.setFirstname(value);
+            }
+        });
+        register(accessors, new StringAccessor("industry") {
+            @Override
+            String getString(final ContactProperties cp) {
+                return cp.getIndustry();
+            }
+
+            @Override
+            void setString(final ContactProperties cp, final String value) {
+                cp.setIndustry(value);
+            }
+        });
+        register(accessors, new StringAccessor("jobtitle") {
+            @Override
+            String getString(final ContactProperties cp) {
+                return cp.getJobtitle();
+            }
+
+            @Override
+            void setString(final ContactProperties cp, final String value) {
+                cp.setJobtitle(value);
+            }
+        });
+        register(accessors, new StringAccessor("lastname") {
+            @Override
+            String getString(final ContactProperties cp) {
+                return cp.getLastname();
+            }
+
+            @Override
+            void setString(final ContactProperties cp, final String value) {
+                cp.setLastname(value);
+            }
+        });
+        register(accessors, new StringAccessor("lifecyclestage") {
+            @Override
+            String getString(final ContactProperties cp) {
+                return cp.getLifecyclestage() != null ? cp.getLifecyclestage().getValue() : null;
+            }
+
+            @Override
+            void setString(final ContactProperties cp, final String value) {
+                cp.setLifecyclestage(ContactPropertiesLifecycleStage.getFromString(value));
+            }
+        });
+        register(accessors, new StringAccessor("message") {
+            @Override
+            String getString(final ContactProperties cp) {
+                return cp.getMessage();
+            }
+
+            @Override
+            void setString(final ContactProperties cp, final String value) {
+                cp.setMessage(value);
+            }
+        });
+        register(accessors, new StringAccessor("numemployees") {
+            @Override
+            String getString(final ContactProperties cp) {
+                return cp.getNumemployees() != null ? cp.getNumemployees().getValue() : null;
+            }
+
+            @Override
+            void setString(final ContactProperties cp, final String value) {
+                cp.setNumemployees(ContactPropertiesNumberOfEmployees.getFromString(value));
+            }
+        });
+        register(accessors, new StringAccessor("phone") {
+            @Override
+            String getString(final ContactProperties cp) {
+                return cp.getPhone();
+            }
+
+            @Override
+            void setString(final ContactProperties cp, final String value) {
+                cp.setPhone(value);
+            }
+        });
+        register(accessors, new StringAccessor("salutation") {
+            @Override
+            String getString(final ContactProperties cp) {
+                return cp.getSalutation();
+            }
+
+            @Override
+            void setString(final ContactProperties cp, final String value) {
+                cp.setSalutation(value);
+            }
+        });
+        register(accessors, new StringAccessor("state") {
+            @Override
+            String getString(final ContactProperties cp) {
+                return cp.getState();
+            }
+
+            @Override
+            void setString(final ContactProperties cp, final String value) {
+                cp.setState(value);
+            }
+        });
+        register(accessors, new StringAccessor("twitterhandle") {
+            @Override
+            String getString(final ContactProperties cp) {
+                return cp.getTwitterhandle();
+            }
+
+            @Override
+            void setString(final ContactProperties cp, final String value) {
+                cp.setTwitterhandle(value);
+            }
+        });
+        register(accessors, new StringAccessor("twitterprofilephoto") {
+            @Override
+            String getString(final ContactProperties cp) {
+                return cp.getTwitterprofilephoto();
+            }
+
+            @Override
+            void setString(final ContactProperties cp, final String value) {
+                cp.setTwitterprofilephoto(value);
+            }
+        });
+        register(accessors, new StringAccessor("website") {
+            @Override
+            String getString(final ContactProperties cp) {
+                return cp.getWebsite();
+            }
+
+            @Override
+            void setString(final ContactProperties cp, final String value) {
+                cp.setWebsite(value);
+            }
+        });
+        register(accessors, new StringAccessor("zip") {
+            @Override
+            String getString(final ContactProperties cp) {
+                return cp.getZip();
+            }
+
+            @Override
+            void setString(final ContactProperties cp, final String value) {
+                cp.setZip(value);
+            }
+        });
+
+        ACCESSORS = Collections.unmodifiableMap(accessors);
+        ALL = accessors.values().toArray(new ContactPropertyAccessor[accessors.size()]);
+    }
+
+    static private void register(final Map<String, ContactPropertyAccessor> accessors, final ContactPropertyAccessor accessor) {
+        accessors.put(accessor.getName(), accessor);
+    }
+
+    /**
+     * @param propertyName
+     *            The name of the property in HubSpot. It is case insensitive
+     * @return The accessor of the field, or null if the property is not a fixed field of {@link ContactProperties} (a custom property)
+     */
+    static ContactPropertyAccessor forName(final String propertyName) {
+        return propertyName != null ? ACCESSORS.get(propertyName.toLowerCase(Locale.ENGLISH)) : null;
+    }
+
+    /**
+     * @return All the accessors, in the order in which the properties are written. The array is shared and must not be modified
+     */
+    static ContactPropertyAccessor[] all() {
+        return ALL;
+    }
+
+    private final String name;
+
+    ContactPropertyAccessor(final String name) {
+        this.name = name;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Sets the field from the textual value received from HubSpot
+     */
+    abstract void set(ContactProperties cp, String value) throws IOException;
+
+    /**
+     * Writes the field as a { "property" : NAME, "value" : VALUE } object. Nothing is written if the field is null
+     */
+    abstract void write(ContactProperties cp, JsonGenerator jgen) throws IOException;
+
+    /**
+     * Sets the field of the target to the value it has in the source
+     */
+    abstract void copy(ContactProperties from, ContactProperties to);
+
+    static abstract private class StringAccessor extends ContactPropertyAccessor {
+
+        StringAccessor(final String name) {
+            super(name);
+        }
+
+        @Override
+        void set(final ContactProperties cp, final String value) {
+            setString(cp, value);
+        }
+
+        @Override
+        void write(final ContactProperties cp, final JsonGenerator jgen) throws IOException {
+            final String value = getString(cp);
+            if (value != null) {
+                jgen.writeStartObject();
+                jgen.writeStringField("property", getName());
+                jgen.writeStringField("value", value);
+                jgen.writeEndObject();
+            }
+        }
+
+        @Override
+        void copy(final ContactProperties from, final ContactProperties to) {
+            setString(to, getString(from));
+        }
+
+        abstract String getString(ContactProperties cp);
+
+        abstract void setString(ContactProperties cp, String value);
+    }
+
+    static abstract private class LongAccessor extends ContactPropertyAccessor {
+
+        LongAccessor(final String name) {
+            super(name);
+        }
+
+        @Override
+        void set(final ContactProperties cp, final String value) throws IOException {
+            try {
+                setLong(cp, Long.valueOf(value));
+            } catch (final NumberFormatException e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        void write(final ContactProperties cp, final JsonGenerator jgen) throws IOException {
+            final Long value = getLong(cp);
+            if (value != null) {
+                jgen.writeStartObject();
+                jgen.writeStringField("property", getName());
+                jgen.writeNumberField("value", value.longValue());
+                jgen.writeEndObject();
+            }
+        }
+
+        @Override
+        void copy(final ContactProperties from, final ContactProperties to) {
+            setLong(to, getLong(from));
+        }
+
+        abstract Long getLong(ContactProperties cp);
+
+        abstract void setLong(ContactProperties cp, Long value);
+    }
+}
@@ -127,7 +127,7 @@ public class HubSpotConnectorIT {
         createRetrieveDeleteContact();
 
         // Refresh token only suppose to call one time
-        Mockito.verify(hc, Mockito.times(1)).refreshToken(Matchers.any(HubSpotCredentialsManager.class), Matchers.anyString());
+        Mockito.verify(hc, Mockito.times(1)).refreshToken(Matchers.any(HubSpotCredentialsManager.class), Matchers.anyString(), Matchers.anyString());
     }
 
     /*
@@ -248,7 +248,7 @@ public class HubSpotConnectorIT {
         Assert.assertFalse(StringUtils.isEmpty(cl.getContacts().get(0).getContactProperties().getFirstname()));
 
         final String q = "mule";
-        final ContactQuery cq = connector.getContactsByQuery(USER_ID, q, null);
+        final ContactQuery cq = connector.getContactsByQuery(USER_ID, q, null, null);
 
         Assert.assertNotNull(cq);
         Assert.assertEquals(cq.getQuery(), q);
@@ -379,7 +379,7 @@ public class HubSpotConnectorIT {
      */
     @Test
     public void simulateShutdownApplication() throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
-        connector.setClientsManager(new HubSpotClientsManager());
+        connector.setClientsManager(new HubSpotClientsManager(connector.getTransport()));
         getContacts();
     }
 
@@ -7,9 +7,15 @@
  */
 package org.mule.module.hubspot.unit;
 
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 import junit.framework.Assert;
@@ -26,6 +32,8 @@ import org.mule.module.hubspot.model.contact.ContactIdentityProfiles;
 import org.mule.module.hubspot.model.contact.ContactList;
 import org.mule.module.hubspot.model.contact.ContactListMembership;
 import org.mule.module.hubspot.model.contact.ContactProperties;
+import org.mule.module.hubspot.model.contact.ContactPropertiesLifecycleStage;
+import org.mule.module.hubspot.model.contact.ContactPropertiesNumberOfEmployees;
 import org.mule.module.hubspot.model.contact.ContactStatistics;
 import org.mule.module.hubspot.model.contactproperty.CustomContactProperty;
 import org.mule.module.hubspot.model.list.HubSpotList;
@@ -132,6 +140,117 @@ public class ContactsApiJacksonParsingTest {
         Assert.assertEquals("valueOfCustomTwo", customProperties.get("customTwo"));
     }
 
+    @Test
+    public void allContactPropertiesAreMapped() throws Exception {
+        final PropertyDescriptor[] pds = Introspector.getBeanInfo(ContactProperties.class).getPropertyDescriptors();
+
+        // Build a contact that has a value for every field of ContactProperties
+        final StringBuilder json = new StringBuilder("{\"vid\":1,\"properties\":{");
+        for (final PropertyDescriptor pd : pds) {
+            if (pd.getWriteMethod() == null || "customProperties".equals(pd.getName())) {
+                continue;
+            }
+
+            String value = "value";
+            if (pd.getPropertyType().equals(Long.class)) {
+                value = "1360095861638";
+            } else if (pd.getPropertyType().equals(ContactPropertiesLifecycleStage.class)) {
+                value = "Customer";
+            } else if (pd.getPropertyType().equals(ContactPropertiesNumberOfEmployees.class)) {
+                value = "25-50";
+            }
+            json.append(String.format("\"%s\":{\"value\":\"%s\",\"versions\":[{\"value\":\"old\",\"timestamp\":1}]},", pd.getName().toUpperCase(), value));
+        }
+        json.append("\"mycustom\":{\"value\":\"custom\"}}}");
+
+        final Contact c = objMapper.readValue(json.toString(), Contact.class);
+        final ContactProperties cp = c.getContactProperties();
+
+        for (final PropertyDescriptor pd : pds) {
+            if (pd.getWriteMethod() != null && !"customProperties".equals(pd.getName())) {
+                Assert.assertNotNull("Property not mapped: " + pd.getName(), pd.getReadMethod().invoke(cp));
+            }
+        }
+
+        Assert.assertEquals(ContactPropertiesLifecycleStage.CUSTOMER, cp.getLifecyclestage());
+        Assert.assertEquals(ContactPropertiesNumberOfEmployees._25_50, cp.getNumemployees());
+        Assert.assertEquals(1, cp.getCustomProperties().size());
+        Assert.assertEquals("custom", cp.getCustomProperties().get("mycustom"));
+    }
+
+    @Test
+    public void allContactPropertiesAreWrittenAndReadBack() throws Exception {
+        final PropertyDescriptor[] pds = Introspector.getBeanInfo(ContactProperties.class).getPropertyDescriptors();
+
+        // A contact that has a value for every field of ContactProperties
+        final ContactProperties cp = new ContactProperties();
+        int fields = 0;
+        for (final PropertyDescriptor pd : pds) {
+            if (pd.getWriteMethod() == null || "customProperties".equals(pd.getName())) {
+                continue;
+            }
+
+            if (pd.getPropertyType().equals(Long.class)) {
+                pd.getWriteMethod().invoke(cp, Long.valueOf(1360095861638l));
+            } else if (pd.getPropertyType().equals(ContactPropertiesLifecycleStage.class)) {
+                pd.getWriteMethod().invoke(cp, ContactPropertiesLifecycleStage.CUSTOMER);
+            } else if (pd.getPropertyType().equals(ContactPropertiesNumberOfEmployees.class)) {
+                pd.getWriteMethod().invoke(cp, ContactPropertiesNumberOfEmployees._25_50);
+            } else {
+                Assert.assertEquals("Type not covered by the test: " + pd.getName(), String.class, pd.getPropertyType());
+                pd.getWriteMethod().invoke(cp, "value of " + pd.getName());
+            }
+            fields++;
+        }
+        final Map<String, String> customProperties = new HashMap<String, String>();
+        customProperties.put("mycustom", "custom");
+        cp.setCustomProperties(customProperties);
+
+        final Contact c = new Contact();
+        c.setContactProperties(cp);
+        final Map<?, ?> json = objMapper.readValue(objMapper.writeValueAsString(c), Map.class);
+
+        final List<?> properties = (List<?>) json.get("properties");
+        final Map<String, Object> written = new LinkedHashMap<String, Object>();
+        for (final Object property : properties) {
+            written.put((String) ((Map<?, ?>) property).get("property"), ((Map<?, ?>) property).get("value"));
+        }
+        Assert.assertEquals(fields + 1, properties.size());
+
+        for (final PropertyDescriptor pd : pds) {
+            if (pd.getWriteMethod() == null || "customProperties".equals(pd.getName())) {
+                continue;
+            }
+
+            final Object value = written.get(pd.getName().toLowerCase(Locale.ENGLISH));
+            Assert.assertNotNull("Property not written: " + pd.getName(), value);
+            if (pd.getPropertyType().equals(Long.class)) {
+                // The numbers are written as numbers, not as strings
+                Assert.assertTrue("Property not written as a number: " + pd.getName(), value instanceof Number);
+                Assert.assertEquals(1360095861638l, ((Number) value).longValue());
+            }
+        }
+        // The enums are written by their HubSpot value, not by their name
+        Assert.assertEquals("customer", written.get("lifecyclestage"));
+        Assert.assertEquals("25-50", written.get("numemployees"));
+        Assert.assertEquals("custom", written.get("mycustom"));
+
+        // What is written is read back the same, through the format in which HubSpot returns the contacts
+        final StringBuilder read = new StringBuilder("{\"vid\":1,\"properties\":{");
+        for (final Map.Entry<String, Object> entry : written.entrySet()) {
+            read.append(String.format("\"%s\":{\"value\":\"%s\"},", entry.getKey(), entry.getValue()));
+        }
+        read.setCharAt(read.length() - 1, '}');
+        read.append('}');
+
+        final ContactProperties readBack = objMapper.readValue(read.toString(), Contact.class).getContactProperties();
+        for (final PropertyDescriptor pd : pds) {
+            if (pd.getWriteMethod() != null) {
+                Assert.assertEquals("Property not read back: " + pd.getName(), pd.getReadMethod().invoke(cp), pd.getReadMethod().invoke(readBack));
+            }
+        }
+    }
+
     @Test
     public void getContactStatisticsOutput() throws JsonParseException, JsonMappingException, IOException {
         final InputStream input = Thread.currentThread().getContextClassLoader().getResourceAsStream(getContatPathFor("getContactstatisticsOutput.json"));
@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.unit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.mule.module.hubspot.cache.ExpiringLruCache;
+
+public class ExpiringLruCacheTest {
+
+    @Test
+    public void leastRecentlyUsedEntriesAreEvicted() {
+        // A single segment, so the order of the evictions is deterministic
+        final ExpiringLruCache<String, String> cache = new ExpiringLruCache<String, String>(1, 0);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals("2", cache.get("b"));
+        Assert.assertEquals(1, cache.getEvictions());
+
+        final ExpiringLruCache<Integer, Integer> bounded = new ExpiringLruCache<Integer, Integer>(100, 0);
+        for (int x = 0; x < 1000; x++) {
+            bounded.put(x, x);
+        }
+        Assert.assertTrue(bounded.size() <= 100);
+        Assert.assertEquals(1000 - bounded.size(), bounded.getEvictions());
+    }
+
+    @Test
+    public void entriesExpireAfterTheirTimeToLive() {
+        final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(1));
+        final ExpiringLruCache<String, String> cache = new ExpiringLruCache<String, String>(10, 100) {
+            @Override
+            protected long nanoTime() {
+                return clock.get();
+            }
+        };
+        cache.put("a", "1");
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(99));
+        Assert.assertEquals("1", cache.get("a"));
+        Assert.assertEquals(1, cache.snapshot().size());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        Assert.assertTrue(cache.snapshot().isEmpty());
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+}
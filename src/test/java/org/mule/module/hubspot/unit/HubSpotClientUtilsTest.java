@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.unit;
+
+import java.io.ByteArrayInputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.mule.module.hubspot.client.HubSpotClientUtils;
+import org.mule.module.hubspot.exception.HubSpotConnectorAccessTokenExpiredException;
+import org.mule.module.hubspot.exception.HubSpotConnectorResponseException;
+import org.mule.module.hubspot.metrics.HubSpotMetrics;
+import org.mule.module.hubspot.model.HubSpotWebResourceMethods;
+import org.mule.module.hubspot.model.contact.Contact;
+import org.mule.module.hubspot.model.contact.ContactBatchResponse;
+import org.mule.module.hubspot.model.contact.ContactIdentity;
+import org.mule.module.hubspot.model.contact.ContactIdentityProfiles;
+import org.mule.module.hubspot.model.contact.ContactLookupResult;
+import org.mule.module.hubspot.model.contact.ContactProperties;
+import org.mule.module.hubspot.model.list.HubSpotListAddContactToListResponse;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandler;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+import com.sun.jersey.core.header.InBoundHeaders;
+
+public class HubSpotClientUtilsTest {
+
+    @Test
+    public void noContentIsReturnedAsNull() throws Exception {
+        Assert.assertNull(HubSpotClientUtils.webResourceGet(String.class, resource(response(204, null, null)), "user", HubSpotWebResourceMethods.DELETE));
+    }
+
+    @Test
+    public void unauthorizedMeansThatTheTokenExpired() throws Exception {
+        try {
+            HubSpotClientUtils.webResourceGet(String.class, resource(response(401, "{\"message\":\"expired\"}", null)), "user", HubSpotWebResourceMethods.GET);
+            Assert.fail("A 401 should be an expired token");
+        } catch (final HubSpotConnectorAccessTokenExpiredException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void errorsCarryTheStatusCodeAndTheBody() throws Exception {
+        final String body = "{\"status\":\"error\",\"message\":\"Property values were not valid\"}";
+        try {
+            HubSpotClientUtils.webResourceGet(String.class, resource(response(400, body, null)), "user", HubSpotWebResourceMethods.POST, "{}");
+            Assert.fail("A 400 should be an error");
+        } catch (final HubSpotConnectorResponseException e) {
+            Assert.assertEquals(400, e.getStatusCode());
+            Assert.assertEquals(body, e.getResponseBody());
+            Assert.assertTrue(e.getMessage().contains("Property values were not valid"));
+            Assert.assertNull(e.getRetryAfterMillis());
+        }
+
+        try {
+            HubSpotClientUtils.webResourceGet(String.class, resource(response(503, "", "2")), "user", HubSpotWebResourceMethods.GET);
+            Assert.fail("A 503 should be an error");
+        } catch (final HubSpotConnectorResponseException e) {
+            Assert.assertEquals(503, e.getStatusCode());
+            Assert.assertEquals(Long.valueOf(2000), e.getRetryAfterMillis());
+        }
+    }
+
+    @Test
+    public void theBytesReceivedAreCountedWithoutAContentLength() throws Exception {
+        // Without a Content-Length header, as a chunked response
+        final String body = "{\"updated\":[1,2],\"discarded\":[]}";
+        final HubSpotMetrics metrics = new HubSpotMetrics(10);
+
+        final HubSpotListAddContactToListResponse result = HubSpotClientUtils.webResourceGet(HubSpotListAddContactToListResponse.class,
+                resource(response(200, body, null)), "user", HubSpotWebResourceMethods.GET, null, metrics, null);
+
+        Assert.assertEquals(Arrays.asList(1, 2), result.getUpdated());
+        Assert.assertEquals(1, metrics.getRequests());
+        Assert.assertEquals(body.getBytes().length, metrics.getBytesReceived());
+    }
+
+    @Test
+    public void retryAfterIsReadAsSecondsOrAsAnHttpDate() {
+        Assert.assertEquals(Long.valueOf(120000), HubSpotClientUtils.getRetryAfterMillis(response(429, null, "120")));
+        Assert.assertEquals(Long.valueOf(0), HubSpotClientUtils.getRetryAfterMillis(response(429, null, "-5")));
+
+        final SimpleDateFormat httpDate = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        httpDate.setTimeZone(TimeZone.getTimeZone("GMT"));
+        final Long untilDate = HubSpotClientUtils.getRetryAfterMillis(response(429, null, httpDate.format(new Date(System.currentTimeMillis() + 60000))));
+        // The date has a precision of seconds
+        Assert.assertTrue("Retry after " + untilDate, untilDate != null && untilDate > 58000 && untilDate <= 60000);
+        Assert.assertEquals(Long.valueOf(0), HubSpotClientUtils.getRetryAfterMillis(response(429, null, httpDate.format(new Date(System.currentTimeMillis() - 60000)))));
+
+        Assert.assertNull(HubSpotClientUtils.getRetryAfterMillis(response(429, null, "tomorrow")));
+        Assert.assertNull(HubSpotClientUtils.getRetryAfterMillis(response(429, null, null)));
+    }
+
+    @Test
+    public void contactsLookedUpByEmailAreMatchedByAnyOfTheirEmailsInAnyCase() {
+        final ContactBatchResponse response = new ContactBatchResponse();
+        response.put("1", contact("1", "Ann@Example.com"));
+        response.put("2", contact("2", "bob@example.com", "Bob.Alt@Example.com"));
+
+        final Map<String, Contact> byEmail = HubSpotClientUtils.indexContactsByEmail(response);
+        Assert.assertEquals("1", byEmail.get("ann@example.com").getVid());
+        Assert.assertEquals("2", byEmail.get("bob@example.com").getVid());
+        Assert.assertEquals("2", byEmail.get("bob.alt@example.com").getVid());
+
+        final ContactLookupResult result = new ContactLookupResult();
+        HubSpotClientUtils.addLookedUpContacts(Arrays.asList("ANN@example.com", "bob.alt@EXAMPLE.com", "missing@example.com"), byEmail, true, result);
+        // The contacts are returned by the keys as they were given
+        Assert.assertEquals("1", result.getContact("ANN@example.com").getVid());
+        Assert.assertEquals("2", result.getContact("bob.alt@EXAMPLE.com").getVid());
+        Assert.assertEquals(Arrays.asList("missing@example.com"), result.getMissing());
+    }
+
+    @Test
+    public void contactsLookedUpByIdAreMatchedExactly() {
+        final ContactBatchResponse response = new ContactBatchResponse();
+        response.put("1", contact("1", "ann@example.com"));
+
+        final ContactLookupResult result = new ContactLookupResult();
+        HubSpotClientUtils.addLookedUpContacts(Arrays.asList("1", "2"), response, false, result);
+        Assert.assertEquals("1", result.getContact("1").getVid());
+        Assert.assertEquals(Arrays.asList("2"), result.getMissing());
+    }
+
+    @Test
+    public void emailsAreFoldedRegardlessOfTheDefaultLocale() {
+        final Locale defaultLocale = Locale.getDefault();
+        try {
+            // In Turkish the lower case of "I" is a dotless "i"
+            Locale.setDefault(new Locale("tr", "TR"));
+            Assert.assertEquals("info@example.com", HubSpotClientUtils.emailKey("INFO@EXAMPLE.COM"));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    /**
+     * @return A contact with the email and, in its identity profile, the secondary emails
+     */
+    static private Contact contact(final String vid, final String email, final String... secondaryEmails) {
+        final ContactProperties properties = new ContactProperties();
+        properties.setEmail(email);
+        final Contact contact = new Contact();
+        contact.setVid(vid);
+        contact.setContactProperties(properties);
+
+        final List<ContactIdentity> identities = new ArrayList<ContactIdentity>();
+        for (final String secondaryEmail : secondaryEmails) {
+            final ContactIdentity identity = new ContactIdentity();
+            identity.setType("EMAIL");
+            identity.setValue(secondaryEmail);
+            identities.add(identity);
+        }
+        final ContactIdentityProfiles profile = new ContactIdentityProfiles();
+        profile.setVid(Long.valueOf(vid));
+        profile.setIdentities(identities);
+        contact.setIdentityProfiles(Arrays.asList(profile));
+        return contact;
+    }
+
+    /**
+     * @return A response with the status, the body and, if not null, the Retry-After header
+     */
+    static private ClientResponse response(final int status, final String body, final String retryAfter) {
+        final InBoundHeaders headers = new InBoundHeaders();
+        if (retryAfter != null) {
+            headers.add("Retry-After", retryAfter);
+        }
+        return new ClientResponse(status, headers, new ByteArrayInputStream(body != null ? body.getBytes() : new byte[0]), null) {
+            @Override
+            public <T> T getEntity(final Class<T> c) {
+                return c.cast(body);
+            }
+        };
+    }
+
+    /**
+     * @return A resource that answers every request with the response, without connecting to HubSpot
+     */
+    static private WebResource resource(final ClientResponse response) {
+        return new Client(new ClientHandler() {
+            @Override
+            public ClientResponse handle(final ClientRequest request) {
+                return response;
+            }
+        }).resource("https://api.hubapi.com/contacts/v1/contact");
+    }
+}
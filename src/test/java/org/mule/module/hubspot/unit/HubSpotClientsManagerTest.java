@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.unit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.mule.module.hubspot.client.HubSpotClient;
+import org.mule.module.hubspot.client.HubSpotClientsManager;
+import org.mule.module.hubspot.client.HubSpotHttpTransport;
+import org.mule.module.hubspot.model.OAuthCredentials;
+
+public class HubSpotClientsManagerTest {
+
+    @Test
+    public void concurrentFirstRequestsCreateOneClient() throws Exception {
+        final HubSpotClientsManager manager = new HubSpotClientsManager(new HubSpotHttpTransport(null, null, null, null, null), 10, 0);
+        final OAuthCredentials credentials = new OAuthCredentials();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final Future<?>[] futures = new Future<?>[8];
+            for (int x = 0; x < futures.length; x++) {
+                futures[x] = executor.submit(new Callable<HubSpotClient>() {
+                    @Override
+                    public HubSpotClient call() throws Exception {
+                        start.await();
+                        return manager.getOrCreateClient("1", credentials);
+                    }
+                });
+            }
+            start.countDown();
+
+            final Object client = futures[0].get();
+            for (final Future<?> future : futures) {
+                Assert.assertSame(client, future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(1, manager.getMisses());
+        Assert.assertEquals(7, manager.getHits());
+    }
+
+    @Test
+    public void concurrentRequestsOverTheMaximumEvictOneClientEach() throws Exception {
+        final HubSpotClientsManager manager = new HubSpotClientsManager(new HubSpotHttpTransport(null, null, null, null, null), 50, 0);
+        final OAuthCredentials credentials = new OAuthCredentials();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final Future<?>[] futures = new Future<?>[8];
+            for (int x = 0; x < futures.length; x++) {
+                final int thread = x;
+                futures[x] = executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        for (int y = 0; y < 500; y++) {
+                            manager.getOrCreateClient(thread + "-" + y, credentials);
+                        }
+                        return null;
+                    }
+                });
+            }
+            start.countDown();
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Neither more nor fewer clients than the maximum are kept
+        Assert.assertEquals(50, manager.size());
+        Assert.assertEquals(4000, manager.getMisses());
+        Assert.assertEquals(4000 - 50, manager.getEvictions());
+    }
+
+    @Test
+    public void leastRecentlyUsedAndIdleClientsAreEvicted() throws Exception {
+        final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(1));
+        final HubSpotClientsManager manager = manager(2, 100, clock);
+        final OAuthCredentials credentials = new OAuthCredentials();
+
+        manager.getOrCreateClient("1", credentials);
+        manager.getOrCreateClient("2", credentials);
+        manager.getOrCreateClient("1", credentials);
+        manager.getOrCreateClient("3", credentials);
+
+        Assert.assertTrue(manager.hasClient("1"));
+        Assert.assertFalse(manager.hasClient("2"));
+        Assert.assertTrue(manager.hasClient("3"));
+        Assert.assertEquals(1, manager.getEvictions());
+
+        // Only the clients idle for longer than the timeout are evicted
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+        manager.getOrCreateClient("3", credentials);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(51));
+        manager.evictIdleClients();
+        Assert.assertFalse(manager.hasClient("1"));
+        Assert.assertTrue(manager.hasClient("3"));
+        Assert.assertEquals(2, manager.getEvictions());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+        manager.evictIdleClients();
+        Assert.assertEquals(0, manager.size());
+        Assert.assertEquals(3, manager.getEvictions());
+    }
+
+    @Test
+    public void theListenerIsToldAboutTheEvictedClients() throws Exception {
+        final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(1));
+        final HubSpotClientsManager manager = manager(1, 100, clock);
+        final List<String> evicted = new ArrayList<String>();
+        manager.setEvictionListener(new HubSpotClientsManager.EvictionListener() {
+            @Override
+            public void evicted(final String userId) {
+                evicted.add(userId);
+            }
+        });
+        final OAuthCredentials credentials = new OAuthCredentials();
+
+        manager.getOrCreateClient("1", credentials);
+        manager.getOrCreateClient("2", credentials);
+        Assert.assertEquals(Arrays.asList("1"), evicted);
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(101));
+        manager.evictIdleClients();
+        Assert.assertEquals(Arrays.asList("1", "2"), evicted);
+    }
+
+    /**
+     * @return A manager whose idle clients are measured with the clock
+     */
+    static private HubSpotClientsManager manager(final int maxClients, final long idleTimeoutMillis, final AtomicLong clock) {
+        return new HubSpotClientsManager(new HubSpotHttpTransport(null, null, null, null, null), maxClients, idleTimeoutMillis) {
+            @Override
+            protected long nanoTime() {
+                return clock.get();
+            }
+        };
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.unit;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.mule.module.hubspot.client.policy.HubSpotConcurrencyLimiter;
+import org.mule.module.hubspot.exception.HubSpotConnectorException;
+import org.mule.module.hubspot.exception.HubSpotConnectorRateLimitException;
+import org.mule.module.hubspot.exception.HubSpotConnectorResponseException;
+
+public class HubSpotConcurrencyLimiterTest {
+
+    @Test
+    public void limitGrowsWhileFastAndIsHalvedOnOverload() throws Exception {
+        final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(1));
+        final HubSpotConcurrencyLimiter limiter = limiter(4, 20, clock);
+        final HubSpotConcurrencyLimiter.PortalLimit portal = limiter.getPortal("62515");
+        Assert.assertEquals(4, portal.getLimit());
+
+        // Rounds of requests that use the whole limit and take the same time
+        for (int round = 0; round < 30; round++) {
+            final int slots = portal.getLimit();
+            final long[] starts = new long[slots];
+            for (int x = 0; x < slots; x++) {
+                starts[x] = portal.acquire();
+            }
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(2));
+            for (int x = 0; x < slots; x++) {
+                portal.release(starts[x], false);
+            }
+        }
+        final int grown = portal.getLimit();
+        Assert.assertEquals(19, grown);
+        Assert.assertEquals(0, portal.getInFlight());
+
+        portal.release(portal.acquire(), true);
+        Assert.assertEquals(grown / 2, portal.getLimit());
+        Assert.assertEquals(Integer.valueOf(grown / 2), limiter.getLimits().get("62515"));
+    }
+
+    @Test
+    public void limitIsReducedOncePerRoundTrip() throws Exception {
+        final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(1));
+        final HubSpotConcurrencyLimiter.PortalLimit portal = limiter(16, 16, clock).getPortal("62515");
+
+        // A round trip of 10 ms
+        final long start = portal.acquire();
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+        portal.release(start, false);
+
+        // The responses of the requests that were already in flight do not punish the same congestion again
+        portal.release(portal.acquire(), true);
+        Assert.assertEquals(8, portal.getLimit());
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(9));
+        portal.release(portal.acquire(), true);
+        Assert.assertEquals(8, portal.getLimit());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        portal.release(portal.acquire(), true);
+        Assert.assertEquals(4, portal.getLimit());
+    }
+
+    @Test
+    public void requestsOverTheLimitWaitOrAreRejected() throws Exception {
+        final HubSpotConcurrencyLimiter limiter = new HubSpotConcurrencyLimiter(1, 1, 1, 50);
+        final HubSpotConcurrencyLimiter.PortalLimit portal = limiter.getPortal("62515");
+        final long start = portal.acquire();
+
+        final long before = System.nanoTime();
+        try {
+            portal.acquire();
+            Assert.fail("The second request should have been rejected");
+        } catch (final HubSpotConnectorRateLimitException e) {
+            Assert.assertTrue(System.nanoTime() - before >= TimeUnit.MILLISECONDS.toNanos(40));
+        }
+        Assert.assertEquals(1, limiter.getRejected());
+
+        // Another portal has its own limit
+        limiter.getPortal("other").release(limiter.getPortal("other").acquire(), false);
+
+        // A waiting request gets the slot as soon as it is released
+        final HubSpotConcurrencyLimiter waitingLimiter = new HubSpotConcurrencyLimiter(1, 1, 1, 5000);
+        final HubSpotConcurrencyLimiter.PortalLimit waitingPortal = waitingLimiter.getPortal("62515");
+        final long held = waitingPortal.acquire();
+        final CountDownLatch acquired = new CountDownLatch(1);
+        final AtomicLong waited = new AtomicLong();
+        final Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    waitingPortal.release(waitingPortal.acquire(), false);
+                    acquired.countDown();
+                } catch (final HubSpotConnectorException e) {
+                    waited.set(-1);
+                }
+            }
+        });
+        waiter.start();
+        Assert.assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+        waitingPortal.release(held, false);
+        Assert.assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, waited.get());
+
+        portal.release(start, false);
+    }
+
+    @Test
+    public void onlyThrottlingAndServerErrorsAreOverload() {
+        Assert.assertTrue(HubSpotConcurrencyLimiter.isOverload(new HubSpotConnectorResponseException("429", 429, null)));
+        Assert.assertTrue(HubSpotConcurrencyLimiter.isOverload(new HubSpotConnectorResponseException("503", 503, null)));
+        Assert.assertFalse(HubSpotConcurrencyLimiter.isOverload(new HubSpotConnectorResponseException("404", 404, null)));
+        Assert.assertFalse(HubSpotConcurrencyLimiter.isOverload(new HubSpotConnectorException("other")));
+    }
+
+    @Test
+    public void theLimitsOfIdlePortalsAreReleasedWhenNothingIsInFlight() throws Exception {
+        final AtomicLong clock = new AtomicLong(1);
+        final HubSpotConcurrencyLimiter limiter = new HubSpotConcurrencyLimiter(4, 1, 20, 0, 100, 1000) {
+            @Override
+            protected long nanoTime() {
+                return clock.get();
+            }
+        };
+
+        final HubSpotConcurrencyLimiter.PortalLimit user1 = limiter.getPortal("user1");
+        user1.release(user1.acquire(), false);
+        final HubSpotConcurrencyLimiter.PortalLimit user2 = limiter.getPortal("user2");
+        final long start = user2.acquire();
+        Assert.assertEquals(2, limiter.size());
+
+        // user2 still has a request in flight
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500));
+        limiter.getPortal("62515");
+        Assert.assertEquals(2, limiter.size());
+        Assert.assertNull(limiter.getLimits().get("user1"));
+
+        user2.release(start, false);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500));
+        limiter.getPortal("62515");
+        Assert.assertEquals(1, limiter.size());
+        Assert.assertEquals(Integer.valueOf(0), limiter.getInFlight().get("62515"));
+    }
+
+    /**
+     * @return A limiter whose round trips are measured with the clock, without a maximum wait
+     */
+    static private HubSpotConcurrencyLimiter limiter(final int initialLimit, final int maxLimit, final AtomicLong clock) {
+        return new HubSpotConcurrencyLimiter(initialLimit, 1, maxLimit, 0) {
+            @Override
+            protected long nanoTime() {
+                return clock.get();
+            }
+        };
+    }
+}
@@ -0,0 +1,287 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.unit;
+
+import java.io.Closeable;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.mule.module.hubspot.HubSpotConnector;
+import org.mule.module.hubspot.client.HubSpotClient;
+import org.mule.module.hubspot.client.HubSpotClientsManager;
+import org.mule.module.hubspot.client.HubSpotHttpTransport;
+import org.mule.module.hubspot.credential.HubSpotCredentialsManager;
+import org.mule.module.hubspot.exception.HubSpotConnectorException;
+import org.mule.module.hubspot.exception.HubSpotConnectorResponseException;
+import org.mule.module.hubspot.iterable.GetAllContactsCollection;
+import org.mule.module.hubspot.model.OAuthCredentials;
+import org.mule.module.hubspot.model.contact.Contact;
+import org.mule.module.hubspot.model.contact.ContactList;
+import org.mule.module.hubspot.model.contact.ContactQuery;
+import org.mule.util.store.SimpleMemoryObjectStore;
+
+public class HubSpotConnectorPaginationTest {
+
+    @Test
+    public void theContactsUpdatedAfterStopAtTheFirstOlderContact() throws Exception {
+        final List<String> requested = new ArrayList<String>();
+        final HubSpotConnector connector = connector(client("getRecentContacts", 3, requested, contactList(1L, added(100), added(90)),
+                contactList(2L, added(80), added(40), added(30)), contactList(null, added(20))));
+
+        final List<Contact> contacts = connector.getAllContactsUpdatedAfter("user", null, 50L);
+
+        Assert.assertEquals(Arrays.asList(100L, 90L, 80L), addedAt(contacts));
+        // The third page is never requested, the second one already reached the waterMark
+        Assert.assertEquals(Arrays.asList("", "1"), requested);
+    }
+
+    @Test
+    public void theContactsUpdatedAfterInChunksAreThePagesUpToTheWaterMark() throws Exception {
+        final List<String> requested = new ArrayList<String>();
+        final HubSpotConnector connector = connector(client("getRecentContacts", 3, requested, contactList(1L, added(100), added(90)),
+                contactList(2L, added(80), added(70)), contactList(3L, added(60), added(40)), contactList(null, added(20))));
+
+        final Iterator<List<Contact>> chunks = connector.getAllContactsUpdatedAfterInChunks("user", null, 50L).iterator();
+
+        Assert.assertEquals(Arrays.asList(100L, 90L), addedAt(chunks.next()));
+        Assert.assertEquals(Arrays.asList(80L, 70L), addedAt(chunks.next()));
+        // The last chunk only has the contacts newer than the waterMark
+        Assert.assertEquals(Arrays.asList(60L), addedAt(chunks.next()));
+        Assert.assertFalse(chunks.hasNext());
+        Assert.assertEquals(Arrays.asList("", "1", "2"), requested);
+    }
+
+    @Test
+    public void aFailedFollowingPageOfTheContactsUpdatedAfterThrowsTheErrorOfTheRequest() throws Exception {
+        final List<String> requested = new ArrayList<String>();
+        final HubSpotConnector connector = connector(client("getRecentContacts", 3, requested, contactList(1L, added(100), added(90)), null));
+
+        try {
+            connector.getAllContactsUpdatedAfter("user", null, 50L);
+            Assert.fail("The second page should fail");
+        } catch (final HubSpotConnectorResponseException e) {
+            Assert.assertEquals(500, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void allTheContactsArePagedWithTheVidOffset() throws Exception {
+        final List<String> requested = new ArrayList<String>();
+        final HubSpotConnector connector = connector(client("getAllContacts", 3, requested, contactList(1L, vid("a"), vid("b")), contactList(2L, vid("c")),
+                contactList(null, vid("d"))));
+
+        Assert.assertEquals(Arrays.asList("a", "b", "c", "d"), vids(connector.getAllContactsPaginated("user", null)));
+        Assert.assertEquals(Arrays.asList("", "1", "2"), requested);
+    }
+
+    @Test
+    public void theRecentContactsArePagedWhileThereAreMore() throws Exception {
+        final List<String> requested = new ArrayList<String>();
+        final HubSpotConnector connector = connector(client("getRecentContacts", 3, requested, contactList(1L, vid("a")), contactList(2L, vid("b")),
+                contactList(null, vid("c"))));
+
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), vids(connector.getRecentContactsPaginated("user", null)));
+        Assert.assertEquals(Arrays.asList("", "1", "2"), requested);
+    }
+
+    @Test
+    public void theContactsByQueryArePagedWithTheOffset() throws Exception {
+        final List<String> requested = new ArrayList<String>();
+        final HubSpotConnector connector = connector(client("getContactsByQuery", 4, requested, contactQuery(1L, vid("a"), vid("b")), contactQuery(2L, vid("c")),
+                contactQuery(null)));
+
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), vids(connector.getContactsByQueryPaginated("user", "query", null)));
+        Assert.assertEquals(Arrays.asList("", "1", "2"), requested);
+    }
+
+    @Test
+    public void theOffsetOfTheContactsByQueryIsSentToHubSpot() throws Exception {
+        final List<String> requested = new ArrayList<String>();
+        final HubSpotConnector connector = connector(client("getContactsByQuery", 4, requested, contactQuery(1L, vid("a")), contactQuery(null, vid("b"))));
+
+        Assert.assertEquals("b", connector.getContactsByQuery("user", "query", null, "1").getContacts().get(0).getVid());
+        Assert.assertEquals(Arrays.asList("1"), requested);
+    }
+
+    @Test
+    public void eachIteratorReadsAheadItsOwnPages() throws Exception {
+        final List<String> requested = new ArrayList<String>();
+        final HubSpotConnector connector = connector(client("getAllContacts", 3, requested, contactList(1L, vid("a")), contactList(2L, vid("b")),
+                contactList(3L, vid("c")), contactList(null, vid("d"))));
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Collection<Contact> contacts = new GetAllContactsCollection(connector, connector.getAllContacts("user", null, null), "user", null, executor, 2);
+
+            // The second iterator starts while the first one is in the middle of the pages
+            final Iterator<Contact> first = contacts.iterator();
+            Assert.assertEquals("a", first.next().getVid());
+            Assert.assertEquals("b", first.next().getVid());
+            Assert.assertEquals(Arrays.asList("a", "b", "c", "d"), vids(contacts));
+            Assert.assertEquals("c", first.next().getVid());
+            Assert.assertEquals("d", first.next().getVid());
+            Assert.assertFalse(first.hasNext());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void aPaginatedCollectionIsEmptyOnlyIfNoPageHasContacts() throws Exception {
+        final List<String> requested = new ArrayList<String>();
+        Assert.assertFalse(connector(client("getAllContacts", 3, requested, contactList(1L, vid("a")), contactList(null, vid("b")))).getAllContactsPaginated("user", null)
+                .isEmpty());
+        // The first page is enough
+        Assert.assertEquals(Arrays.asList(""), requested);
+
+        requested.clear();
+        Assert.assertFalse(connector(client("getAllContacts", 3, requested, contactList(1L), contactList(null, vid("b")))).getAllContactsPaginated("user", null).isEmpty());
+        Assert.assertEquals(Arrays.asList("", "1"), requested);
+
+        Assert.assertTrue(connector(client("getAllContacts", 3, requested, contactList(null))).getAllContactsPaginated("user", null).isEmpty());
+    }
+
+    @Test
+    public void closingAnIteratorCancelsThePagesReadAhead() throws Exception {
+        final List<String> requested = new ArrayList<String>();
+        final HubSpotConnector connector = connector(client("getAllContacts", 3, requested, contactList(1L, vid("a")), contactList(2L, vid("b")),
+                contactList(null, vid("c"))));
+        final ManualScheduledExecutor executor = new ManualScheduledExecutor();
+        final Collection<Contact> contacts = new GetAllContactsCollection(connector, connector.getAllContacts("user", null, null), "user", null, executor, 2);
+
+        final Iterator<Contact> iterator = contacts.iterator();
+        Assert.assertEquals("a", iterator.next().getVid());
+        ((Closeable) iterator).close();
+        executor.runDueTasks();
+        Assert.assertEquals(Arrays.asList(""), requested);
+
+        // It can still be used, requesting each page when it is needed
+        Assert.assertEquals("b", iterator.next().getVid());
+        Assert.assertEquals(Arrays.asList("", "1"), requested);
+    }
+
+    /**
+     * @return A connector whose only user is answered by the given client
+     */
+    static private HubSpotConnector connector(final HubSpotClient client) throws HubSpotConnectorException {
+        final HubSpotCredentialsManager credentialsManager = new HubSpotCredentialsManager(new SimpleMemoryObjectStore<Serializable>());
+        final OAuthCredentials credentials = new OAuthCredentials();
+        credentials.setUserId("user");
+        credentials.setAccessToken("token");
+        credentialsManager.setCredentias(credentials);
+
+        final HubSpotClientsManager clientsManager = new HubSpotClientsManager(new HubSpotHttpTransport(null, null, null, null, null), 10, 0);
+        clientsManager.addClient("user", client);
+
+        final HubSpotConnector connector = new HubSpotConnector();
+        connector.setCredentialsManager(credentialsManager);
+        connector.setClientsManager(clientsManager);
+        return connector;
+    }
+
+    /**
+     * @return A client that answers the given operation with the pages, where the offset of each page is its position. The offsets requested are added to the list. A null
+     *         page fails
+     */
+    static private HubSpotClient client(final String operation, final int offsetArgument, final List<String> requested, final Object... pages) throws Exception {
+        final Answer<Object> answer = new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                final Object[] args = invocation.getArguments();
+                final String offset = args[offsetArgument] != null ? (String) args[offsetArgument] : "";
+                synchronized (requested) {
+                    requested.add(offset);
+                }
+                final Object page = pages[offset.isEmpty() ? 0 : Integer.parseInt(offset)];
+                if (page == null) {
+                    throw new HubSpotConnectorResponseException("Internal Server Error", 500, null, "");
+                }
+                return page;
+            }
+        };
+
+        final HubSpotClient client = Mockito.mock(HubSpotClient.class);
+        if (operation.equals("getAllContacts")) {
+            Mockito.when(client.getAllContacts(Matchers.anyString(), Matchers.anyString(), Matchers.anyString(), Matchers.anyString())).thenAnswer(answer);
+        } else if (operation.equals("getRecentContacts")) {
+            Mockito.when(client.getRecentContacts(Matchers.anyString(), Matchers.anyString(), Matchers.anyString(), Matchers.anyString(), Matchers.anyString())).thenAnswer(
+                    answer);
+        } else if (operation.equals("getContactsByQuery")) {
+            Mockito.when(client.getContactsByQuery(Matchers.anyString(), Matchers.anyString(), Matchers.anyString(), Matchers.anyString(), Matchers.anyString()))
+                    .thenAnswer(answer);
+        } else {
+            throw new IllegalArgumentException(operation);
+        }
+        return client;
+    }
+
+    /**
+     * @param next
+     *            The offset of the following page, or null if it is the last one
+     */
+    static private ContactList contactList(final Long next, final Contact... contacts) {
+        final ContactList page = new ContactList();
+        page.setContacts(Arrays.asList(contacts));
+        page.setHasMore(next != null);
+        page.setTimeOffset(next);
+        page.setVidOffset(next);
+        return page;
+    }
+
+    /**
+     * @param next
+     *            The offset of the following page, or null if it is the last one
+     */
+    static private ContactQuery contactQuery(final Long next, final Contact... contacts) {
+        final ContactQuery page = new ContactQuery();
+        page.setContacts(Arrays.asList(contacts));
+        page.setHasMore(next != null);
+        page.setOffset(next);
+        return page;
+    }
+
+    static private Contact added(final long addedAt) {
+        final Contact contact = new Contact();
+        contact.setAddedAt(addedAt);
+        return contact;
+    }
+
+    static private Contact vid(final String vid) {
+        final Contact contact = new Contact();
+        contact.setVid(vid);
+        return contact;
+    }
+
+    static private List<Long> addedAt(final List<Contact> contacts) {
+        final List<Long> addedAt = new ArrayList<Long>();
+        for (final Contact contact : contacts) {
+            addedAt.add(contact.getAddedAt());
+        }
+        return addedAt;
+    }
+
+    static private List<String> vids(final Collection<Contact> contacts) {
+        final List<String> vids = new ArrayList<String>();
+        for (final Contact contact : contacts) {
+            vids.add(contact.getVid());
+        }
+        return vids;
+    }
+}
@@ -8,15 +8,36 @@
 package org.mule.module.hubspot.unit;
 
 import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import junit.framework.Assert;
 
 import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.mule.api.store.ObjectStoreException;
 import org.mule.api.transformer.TransformerException;
 import org.mule.module.hubspot.HubSpotConnector;
+import org.mule.module.hubspot.client.HubSpotClient;
+import org.mule.module.hubspot.client.HubSpotFuture;
 import org.mule.module.hubspot.exception.HubSpotConnectorException;
 import org.mule.module.hubspot.exception.HubSpotConnectorNoAccessTokenException;
+import org.mule.module.hubspot.model.OAuthCredentials;
+import org.mule.module.hubspot.model.contact.Contact;
+import org.mule.module.hubspot.model.contact.ContactProperties;
 import org.mule.module.hubspot.model.contact.ContactPropertiesNumberOfEmployees;
 import org.mule.transformer.simple.SerializableToByteArray;
 import org.mule.util.store.SimpleMemoryObjectStore;
@@ -63,4 +84,156 @@ public class HubSpotConnectorTest {
 
         Assert.assertNotNull(result);
     }
+
+    @Test
+    public void authenticatingAgainDoesNotChangeTheCredentialsInUse() throws Exception {
+        final HubSpotConnector connector = new HubSpotConnector();
+        connector.setObjectStore(new SimpleMemoryObjectStore<Serializable>());
+        connector.initialize();
+        try {
+            final OAuthCredentials credentials = new OAuthCredentials();
+            credentials.setUserId("user");
+            credentials.setClientId("client");
+            credentials.setHubId("62515");
+            credentials.setAccessToken("token");
+            credentials.setRefreshToken("refresh");
+            credentials.setOfflineScope(false);
+            connector.getCredentialsManager().setCredentias(credentials);
+            final OAuthCredentials inUse = connector.getCredentialsManager().getCredentials("user");
+
+            connector.authenticate("user", "http://localhost:8090/authresponse", "other client", "62516", "contacts-rw offline", new HashMap<String, Object>());
+
+            // Another thread may be using the credentials it got before
+            Assert.assertEquals("client", inUse.getClientId());
+            Assert.assertEquals("62515", inUse.getHubId());
+            Assert.assertEquals(Boolean.FALSE, inUse.getOfflineScope());
+
+            final OAuthCredentials stored = connector.getCredentialsManager().getCredentials("user");
+            Assert.assertNotSame(inUse, stored);
+            Assert.assertEquals("other client", stored.getClientId());
+            Assert.assertEquals("62516", stored.getHubId());
+            Assert.assertEquals(Boolean.TRUE, stored.getOfflineScope());
+            // The tokens are kept until the user authorizes again
+            Assert.assertEquals("token", stored.getAccessToken());
+            Assert.assertEquals("refresh", stored.getRefreshToken());
+        } finally {
+            connector.dispose();
+        }
+    }
+
+    @Test
+    public void theCountsOfTheRefreshesClientsAndCachesArePublishedThroughJmx() throws Exception {
+        final HubSpotConnector connector = new HubSpotConnector();
+        connector.setObjectStore(new SimpleMemoryObjectStore<Serializable>());
+        connector.setMetricsJmxName("counts-test");
+        connector.setCollapseContactReads(true);
+        connector.setContactCacheSize(10);
+        connector.setPropertySchemaCacheTtl(60000L);
+        connector.initialize();
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final String[][] beans = { { "HubSpotTokenRefreshScheduler", "EarlyRefreshes", "LateRefreshes", "FailedRefreshes" },
+                { "HubSpotClientsManager", "Clients", "Hits", "Misses", "Evictions" }, { "HubSpotContactReadCollapser", "Lookups", "Batches" },
+                { "HubSpotContactCache", "Hits", "Misses", "Evictions" }, { "HubSpotPropertySchemaCache", "Hits", "Misses", "Portals" } };
+        try {
+            for (final String[] bean : beans) {
+                final ObjectName name = new ObjectName("org.mule.module.hubspot:type=" + bean[0] + ",name=" + ObjectName.quote("counts-test"));
+                for (int x = 1; x < bean.length; x++) {
+                    Assert.assertEquals(bean[0] + "." + bean[x], 0, ((Number) server.getAttribute(name, bean[x])).longValue());
+                }
+            }
+        } finally {
+            connector.dispose();
+        }
+
+        for (final String[] bean : beans) {
+            Assert.assertFalse(server.isRegistered(new ObjectName("org.mule.module.hubspot:type=" + bean[0] + ",name=" + ObjectName.quote("counts-test"))));
+        }
+    }
+
+    @Test
+    public void theUsersOfAPortalShareItsCachedContacts() throws Exception {
+        final HubSpotConnector connector = new HubSpotConnector();
+        connector.setObjectStore(new SimpleMemoryObjectStore<Serializable>());
+        connector.setContactCacheSize(10);
+        connector.initialize();
+        try {
+            final AtomicInteger versions = new AtomicInteger();
+            final HubSpotClient client = Mockito.mock(HubSpotClient.class);
+            Mockito.when(client.getContactById(Matchers.anyString(), Matchers.anyString(), Matchers.eq("1"))).thenAnswer(new Answer<Contact>() {
+                @Override
+                public Contact answer(final InvocationOnMock invocation) {
+                    final Contact contact = new Contact();
+                    contact.setVid("1");
+                    contact.setProfileUrl("v" + versions.incrementAndGet());
+                    return contact;
+                }
+            });
+            for (final String userId : new String[] { "first", "second" }) {
+                final OAuthCredentials credentials = new OAuthCredentials();
+                credentials.setUserId(userId);
+                credentials.setHubId("62515");
+                credentials.setAccessToken("token");
+                connector.getCredentialsManager().setCredentias(credentials);
+                connector.getClientsManager().addClient(userId, client);
+            }
+
+            Assert.assertEquals("v1", connector.getContactById("first", "1").getProfileUrl());
+            Assert.assertEquals("v1", connector.getContactById("second", "1").getProfileUrl());
+
+            // A change made by one user of the portal is seen by the others
+            connector.updateContact("second", "1", new ContactProperties());
+            Assert.assertEquals("v2", connector.getContactById("first", "1").getProfileUrl());
+        } finally {
+            connector.dispose();
+        }
+    }
+
+    @Test
+    public void disposeFailsTheRequestsQueuedInTheAsynchronousClient() throws Exception {
+        final HubSpotConnector connector = new HubSpotConnector();
+        connector.setObjectStore(new SimpleMemoryObjectStore<Serializable>());
+        connector.setAsyncThreads(1);
+        connector.setAsyncQueueSize(10);
+        connector.initialize();
+
+        final OAuthCredentials credentials = new OAuthCredentials();
+        credentials.setUserId("user");
+        credentials.setAccessToken("token");
+        connector.getCredentialsManager().setCredentias(credentials);
+        // A client that does not answer until it is interrupted
+        final CountDownLatch sent = new CountDownLatch(1);
+        final HubSpotClient client = Mockito.mock(HubSpotClient.class);
+        Mockito.when(client.getContactById(Matchers.anyString(), Matchers.eq("user"), Matchers.anyString())).thenAnswer(new Answer<Contact>() {
+            @Override
+            public Contact answer(final InvocationOnMock invocation) throws Throwable {
+                sent.countDown();
+                new CountDownLatch(1).await();
+                return null;
+            }
+        });
+        connector.getClientsManager().addClient("user", client);
+
+        final List<HubSpotFuture<Contact>> futures = new ArrayList<HubSpotFuture<Contact>>();
+        for (int x = 0; x < 3; x++) {
+            futures.add(connector.getAsyncClient().getContactById("user", String.valueOf(x)));
+        }
+        Assert.assertTrue(sent.await(5, TimeUnit.SECONDS));
+
+        connector.dispose();
+
+        // Neither the request in progress nor the queued ones are left waiting
+        for (final HubSpotFuture<Contact> future : futures) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                Assert.fail("The request should have failed");
+            } catch (final CancellationException e) {
+                // The queued ones
+            } catch (final ExecutionException e) {
+                // The one in progress, interrupted
+            }
+        }
+        Assert.assertTrue(futures.get(1).isCancelled());
+        Assert.assertTrue(futures.get(2).isCancelled());
+    }
 }
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.unit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.mule.module.hubspot.client.HubSpotAsyncClient;
+import org.mule.module.hubspot.client.HubSpotContactBatchLookup;
+import org.mule.module.hubspot.client.HubSpotFuture;
+import org.mule.module.hubspot.exception.HubSpotConnectorAccessTokenExpiredException;
+import org.mule.module.hubspot.model.contact.Contact;
+import org.mule.module.hubspot.model.contact.ContactBatchResponse;
+import org.mule.module.hubspot.model.contact.ContactLookupResult;
+
+public class HubSpotContactBatchLookupTest {
+
+    @Test
+    public void moreChunksThanTheAsynchronousClientCanQueueAreAllLookedUp() throws Exception {
+        // One thread and a queue of four, like an asynchronous client whose queue is much smaller than the lookup
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(4));
+        final AtomicInteger inProgress = new AtomicInteger();
+        final AtomicInteger maxInProgress = new AtomicInteger();
+        final HubSpotAsyncClient asyncClient = Mockito.mock(HubSpotAsyncClient.class);
+        Mockito.when(asyncClient.getContactsByIds(Matchers.eq("user"), Matchers.anyListOf(String.class))).thenAnswer(new Answer<HubSpotFuture<ContactBatchResponse>>() {
+            @Override
+            public HubSpotFuture<ContactBatchResponse> answer(final InvocationOnMock invocation) {
+                final int sent = inProgress.incrementAndGet();
+                if (sent > maxInProgress.get()) {
+                    maxInProgress.set(sent);
+                }
+                @SuppressWarnings("unchecked")
+                final List<String> vids = (List<String>) invocation.getArguments()[1];
+                return HubSpotFutures.sent(executor, new Callable<ContactBatchResponse>() {
+                    @Override
+                    public ContactBatchResponse call() throws Exception {
+                        Thread.sleep(1);
+                        inProgress.decrementAndGet();
+                        // The odd vids do not exist
+                        final ContactBatchResponse response = new ContactBatchResponse();
+                        for (final String vid : vids) {
+                            if (Integer.parseInt(vid) % 2 == 0) {
+                                response.put(vid, contact(vid));
+                            }
+                        }
+                        return response;
+                    }
+                });
+            }
+        });
+
+        final List<List<String>> chunks = new ArrayList<List<String>>();
+        for (int x = 0; x < 50; x++) {
+            chunks.add(Arrays.asList(String.valueOf(x * 2), String.valueOf(x * 2 + 1)));
+        }
+        try {
+            final ContactLookupResult result = new HubSpotContactBatchLookup(asyncClient).lookup("user", chunks, HubSpotContactBatchLookup.Key.VID, 3);
+            Assert.assertEquals(50, result.getContacts().size());
+            Assert.assertEquals(50, result.getMissing().size());
+            Assert.assertEquals("98", result.getContact("98").getVid());
+            Assert.assertTrue(result.isMissing("99"));
+            Assert.assertTrue("In progress " + maxInProgress.get(), maxInProgress.get() <= 3);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void aFailedChunkCancelsTheChunksNotCollectedYet() throws Exception {
+        final List<List<String>> chunks = new ArrayList<List<String>>();
+        chunks.add(Arrays.asList("a@test.com"));
+        chunks.add(Arrays.asList("b@test.com"));
+        chunks.add(Arrays.asList("c@test.com"));
+        // Only the first chunk is answered, the others are still waiting
+        final HubSpotFuture<ContactBatchResponse> pending = HubSpotFutures.pending();
+        final HubSpotAsyncClient asyncClient = Mockito.mock(HubSpotAsyncClient.class);
+        Mockito.when(asyncClient.getContactsByEmails("user", chunks.get(0))).thenReturn(
+                HubSpotFutures.<ContactBatchResponse> failed(new HubSpotConnectorAccessTokenExpiredException()));
+        Mockito.when(asyncClient.getContactsByEmails("user", chunks.get(1))).thenReturn(pending);
+
+        try {
+            new HubSpotContactBatchLookup(asyncClient).lookup("user", chunks, HubSpotContactBatchLookup.Key.EMAIL, 2);
+            Assert.fail("The token error should fail the whole lookup");
+        } catch (final HubSpotConnectorAccessTokenExpiredException e) {
+            // Expected
+        }
+
+        // The third chunk was never sent, the second one was cancelled
+        Mockito.verify(asyncClient, Mockito.never()).getContactsByEmails("user", chunks.get(2));
+        Assert.assertTrue(pending.isCancelled());
+    }
+
+    static private Contact contact(final String vid) {
+        final Contact contact = new Contact();
+        contact.setVid(vid);
+        return contact;
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.unit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.mule.module.hubspot.client.HubSpotAsyncClient;
+import org.mule.module.hubspot.client.HubSpotContactBatchUpserter;
+import org.mule.module.hubspot.client.HubSpotFuture;
+import org.mule.module.hubspot.exception.HubSpotConnectorAccessTokenExpiredException;
+import org.mule.module.hubspot.exception.HubSpotConnectorResponseException;
+import org.mule.module.hubspot.model.contact.ContactBatchItem;
+import org.mule.module.hubspot.model.contact.ContactBatchResult;
+
+public class HubSpotContactBatchUpserterTest {
+
+    static final private String BATCH_ERROR = "{\"status\":\"error\",\"message\":\"Errors found processing batch update\",\"invalidEmails\":[\"c@test.com\",\"d@test.com\"],"
+            + "\"failureMessages\":[{\"index\":0,\"error\":{\"message\":\"Property foo does not exist\"}},{\"index\":2,\"error\":{\"message\":\"Email c@test.com is invalid\"}},"
+            + "{\"index\":9,\"error\":{\"message\":\"Out of the chunk\"}}]}";
+
+    @Test
+    public void rejectedContactsAreMappedByTheirPositionInTheChunk() {
+        final List<ContactBatchItem> chunk = items("a@test.com", "b@test.com", "c@test.com", "d@test.com");
+
+        final Map<Integer, String> rejected = HubSpotContactBatchUpserter.getRejectedContacts(chunk, new HubSpotConnectorResponseException("Bad Request", 400, null,
+                BATCH_ERROR));
+        Assert.assertEquals(3, rejected.size());
+        Assert.assertEquals("Property foo does not exist", rejected.get(0));
+        // The failure message of the position wins over the list of invalid emails
+        Assert.assertEquals("Email c@test.com is invalid", rejected.get(2));
+        Assert.assertEquals("Invalid email d@test.com", rejected.get(3));
+
+        // Only the errors of the request say which contacts were rejected
+        Assert.assertTrue(HubSpotContactBatchUpserter.getRejectedContacts(chunk, new HubSpotConnectorResponseException("Error", 500, null, BATCH_ERROR)).isEmpty());
+        Assert.assertTrue(HubSpotContactBatchUpserter.getRejectedContacts(chunk, new HubSpotConnectorResponseException("Bad Request", 400, null, "not json")).isEmpty());
+    }
+
+    @Test
+    public void theContactsThatWereNotRejectedAreSentAgain() throws Exception {
+        final List<ContactBatchItem> chunk = items("a@test.com", "b@test.com", "c@test.com", "d@test.com");
+        final List<List<ContactBatchItem>> requests = new ArrayList<List<ContactBatchItem>>();
+        final HubSpotAsyncClient asyncClient = Mockito.mock(HubSpotAsyncClient.class);
+        Mockito.when(asyncClient.updateContactsBatch(Matchers.eq("user"), Matchers.anyListOf(ContactBatchItem.class))).thenAnswer(new Answer<HubSpotFuture<Void>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public HubSpotFuture<Void> answer(final InvocationOnMock invocation) {
+                requests.add(new ArrayList<ContactBatchItem>((List<ContactBatchItem>) invocation.getArguments()[1]));
+                if (requests.size() == 1) {
+                    return HubSpotFutures.failed(new HubSpotConnectorResponseException("Bad Request", 400, null, BATCH_ERROR));
+                }
+                return HubSpotFutures.completed(null);
+            }
+        });
+
+        final List<List<ContactBatchItem>> chunks = new ArrayList<List<ContactBatchItem>>();
+        chunks.add(chunk);
+        final ContactBatchResult result = new HubSpotContactBatchUpserter(asyncClient).upsert("user", chunks, 4);
+
+        Assert.assertEquals(2, requests.size());
+        Assert.assertEquals(Arrays.asList(chunk.get(1)), requests.get(1));
+        Assert.assertEquals(Arrays.asList(chunk.get(1)), result.getSucceeded());
+        Assert.assertEquals(3, result.getFailed().size());
+        Assert.assertEquals(chunk.get(0), result.getFailed().get(0).getItem());
+        Assert.assertEquals("Property foo does not exist", result.getFailed().get(0).getMessage());
+    }
+
+    @Test
+    public void aTokenErrorCancelsTheChunksNotCollectedYet() throws Exception {
+        final List<List<ContactBatchItem>> chunks = new ArrayList<List<ContactBatchItem>>();
+        chunks.add(items("a@test.com"));
+        chunks.add(items("b@test.com"));
+        // Only the first chunk is answered, the other one is still waiting
+        final HubSpotFuture<Void> pending = HubSpotFutures.pending();
+        final HubSpotAsyncClient asyncClient = Mockito.mock(HubSpotAsyncClient.class);
+        Mockito.when(asyncClient.updateContactsBatch("user", chunks.get(0))).thenReturn(HubSpotFutures.<Void> failed(new HubSpotConnectorAccessTokenExpiredException()));
+        Mockito.when(asyncClient.updateContactsBatch("user", chunks.get(1))).thenReturn(pending);
+
+        try {
+            new HubSpotContactBatchUpserter(asyncClient).upsert("user", chunks, 4);
+            Assert.fail("The token error should fail the whole batch");
+        } catch (final HubSpotConnectorAccessTokenExpiredException e) {
+            // Expected
+        }
+
+        Assert.assertTrue(pending.isCancelled());
+    }
+
+    @Test
+    public void moreChunksThanTheAsynchronousClientCanQueueAreAllSent() throws Exception {
+        // One thread and a queue of four, like an asynchronous client whose queue is much smaller than the import
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(4));
+        final AtomicInteger inProgress = new AtomicInteger();
+        final AtomicInteger maxInProgress = new AtomicInteger();
+        final HubSpotAsyncClient asyncClient = Mockito.mock(HubSpotAsyncClient.class);
+        Mockito.when(asyncClient.updateContactsBatch(Matchers.eq("user"), Matchers.anyListOf(ContactBatchItem.class))).thenAnswer(new Answer<HubSpotFuture<Void>>() {
+            @Override
+            public HubSpotFuture<Void> answer(final InvocationOnMock invocation) {
+                final int sent = inProgress.incrementAndGet();
+                if (sent > maxInProgress.get()) {
+                    maxInProgress.set(sent);
+                }
+                return HubSpotFutures.sent(executor, new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        Thread.sleep(1);
+                        inProgress.decrementAndGet();
+                        return null;
+                    }
+                });
+            }
+        });
+
+        final List<List<ContactBatchItem>> chunks = new ArrayList<List<ContactBatchItem>>();
+        for (int x = 0; x < 50; x++) {
+            chunks.add(items(x + "@test.com"));
+        }
+        try {
+            final ContactBatchResult result = new HubSpotContactBatchUpserter(asyncClient).upsert("user", chunks, 3);
+            Assert.assertEquals(50, result.getSucceeded().size());
+            Assert.assertTrue(result.getFailed().isEmpty());
+            Assert.assertTrue("In progress " + maxInProgress.get(), maxInProgress.get() <= 3);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    static private List<ContactBatchItem> items(final String... emails) {
+        final List<ContactBatchItem> items = new ArrayList<ContactBatchItem>();
+        for (final String email : emails) {
+            final ContactBatchItem item = new ContactBatchItem();
+            item.setEmail(email);
+            items.add(item);
+        }
+        return items;
+    }
+}
@@ -0,0 +1,282 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.unit;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.mule.module.hubspot.cache.HubSpotContactCache;
+import org.mule.module.hubspot.client.HubSpotAsyncClient;
+import org.mule.module.hubspot.client.HubSpotContactReadCollapser;
+import org.mule.module.hubspot.client.HubSpotFuture;
+import org.mule.module.hubspot.exception.HubSpotConnectorAccessTokenExpiredException;
+import org.mule.module.hubspot.exception.HubSpotConnectorException;
+import org.mule.module.hubspot.exception.HubSpotConnectorNoAccessTokenException;
+import org.mule.module.hubspot.model.contact.Contact;
+import org.mule.module.hubspot.model.contact.ContactBatchResponse;
+import org.mule.module.hubspot.model.contact.ContactProperties;
+
+public class HubSpotContactCacheTest {
+
+    @Test
+    public void contactsAreCachedByVidAndEmailUntilInvalidated() throws Exception {
+        final HubSpotContactCache cache = new HubSpotContactCache(10, 60000, 0, null);
+        final CountingLoader loader = new CountingLoader();
+
+        Assert.assertEquals("1", cache.getByEmail("user", "Agent@Example.com", loader).getVid());
+        Assert.assertEquals("1", cache.getById("user", "1", loader).getVid());
+        Assert.assertEquals("1", cache.getByEmail("user", "agent@example.com", loader).getVid());
+        Assert.assertEquals(1, loader.loads.get());
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+
+        // Other portals do not share the cached contacts
+        cache.getById("other", "1", loader);
+        Assert.assertEquals(2, loader.loads.get());
+
+        cache.invalidate("user", "1");
+        cache.getByEmail("user", "agent@example.com", loader);
+        Assert.assertEquals(3, loader.loads.get());
+    }
+
+    @Test
+    public void changesToAReturnedContactDoNotChangeTheCachedOne() throws Exception {
+        final HubSpotContactCache cache = new HubSpotContactCache(10, 60000, 0, null);
+        final CountingLoader loader = new CountingLoader();
+
+        // The contact returned by the load, as the one returned by a hit, belongs to the caller
+        final Contact loaded = cache.getById("user", "1", loader);
+        loaded.getContactProperties().setFirstname("changed by the first flow");
+        loaded.getContactProperties().getCustomProperties().put("mycustom", "changed");
+        loaded.setProfileUrl("changed");
+
+        final Contact hit = cache.getById("user", "1", loader);
+        Assert.assertEquals(1, loader.loads.get());
+        Assert.assertEquals("v1", hit.getProfileUrl());
+        Assert.assertNull(hit.getContactProperties().getFirstname());
+        Assert.assertEquals("custom", hit.getContactProperties().getCustomProperties().get("mycustom"));
+        Assert.assertEquals("agent@example.com", hit.getContactProperties().getEmail());
+
+        hit.getContactProperties().setEmail("changed@example.com");
+        Assert.assertEquals("agent@example.com", cache.getByEmail("user", "agent@example.com", loader).getContactProperties().getEmail());
+        Assert.assertEquals(1, loader.loads.get());
+    }
+
+    @Test
+    public void staleContactsAreReturnedWhileTheyAreLoadedAgain() throws Exception {
+        final ManualScheduledExecutor executor = new ManualScheduledExecutor();
+        final HubSpotContactCache cache = new HubSpotContactCache(10, 50, 60000, executor) {
+            @Override
+            protected long nanoTime() {
+                return executor.nanoTime();
+            }
+        };
+        final CountingLoader loader = new CountingLoader();
+
+        Assert.assertEquals("v1", cache.getById("user", "1", loader).getProfileUrl());
+        executor.advance(49, TimeUnit.MILLISECONDS);
+        Assert.assertEquals("v1", cache.getById("user", "1", loader).getProfileUrl());
+        Assert.assertEquals(0, cache.getStaleHits());
+
+        // Stale, so the old version is returned and it is loaded in the background only once
+        executor.advance(1, TimeUnit.MILLISECONDS);
+        Assert.assertEquals("v1", cache.getById("user", "1", loader).getProfileUrl());
+        Assert.assertEquals("v1", cache.getById("user", "1", loader).getProfileUrl());
+        Assert.assertEquals(1, loader.loads.get());
+
+        executor.runDueTasks();
+        Assert.assertEquals(2, loader.loads.get());
+        Assert.assertEquals("v2", cache.getById("user", "1", loader).getProfileUrl());
+        Assert.assertEquals(2, cache.getStaleHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void aRefreshDiscardedByAnInvalidationIsStartedAgainByTheNextStaleHit() throws Exception {
+        final ManualScheduledExecutor executor = new ManualScheduledExecutor();
+        final HubSpotContactCache cache = new HubSpotContactCache(10, 50, 60000, executor) {
+            @Override
+            protected long nanoTime() {
+                return executor.nanoTime();
+            }
+        };
+        final CountingLoader loader = new CountingLoader();
+        cache.getById("user", "1", loader);
+        executor.advance(50, TimeUnit.MILLISECONDS);
+
+        // Another contact of the portal is changed while the stale one is loaded, so the loaded one is not cached
+        Assert.assertEquals("v1", cache.getById("user", "1", new HubSpotContactCache.ContactLoader() {
+            @Override
+            public Contact load() {
+                cache.invalidate("user", "2");
+                return loader.load();
+            }
+        }).getProfileUrl());
+        executor.runDueTasks();
+        Assert.assertEquals(2, loader.loads.get());
+
+        Assert.assertEquals("v1", cache.getById("user", "1", loader).getProfileUrl());
+        executor.runDueTasks();
+        Assert.assertEquals(3, loader.loads.get());
+        Assert.assertEquals("v3", cache.getById("user", "1", loader).getProfileUrl());
+    }
+
+    @Test
+    public void contactLoadedBeforeAnInvalidationIsNotCached() throws Exception {
+        final HubSpotContactCache cache = new HubSpotContactCache(10, 60000, 0, null);
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch written = new CountDownLatch(1);
+        final CountingLoader loader = new CountingLoader();
+
+        final Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    cache.getById("user", "1", new HubSpotContactCache.ContactLoader() {
+                        @Override
+                        public Contact load() {
+                            // Reads the contact before the write, and returns it after the write has invalidated it
+                            final Contact contact = loader.load();
+                            loading.countDown();
+                            try {
+                                written.await(5, TimeUnit.SECONDS);
+                            } catch (final InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            return contact;
+                        }
+                    });
+                } catch (final Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        reader.start();
+
+        Assert.assertTrue(loading.await(5, TimeUnit.SECONDS));
+        cache.invalidate("user", "1");
+        written.countDown();
+        reader.join(5000);
+
+        // The version read before the write is not served
+        Assert.assertEquals("v2", cache.getById("user", "1", loader).getProfileUrl());
+        Assert.assertEquals("v2", cache.getByEmail("user", "agent@example.com", loader).getProfileUrl());
+        Assert.assertEquals(2, loader.loads.get());
+    }
+
+    @Test
+    public void staleContactsLoadedThroughTheCollapserDoNotHoldTheRequestThreads() throws Exception {
+        // Fewer request threads than stale contacts, as when many stale contacts are loaded again at the same time
+        final ExecutorService requestExecutor = Executors.newFixedThreadPool(2);
+        final ExecutorService refreshExecutor = Executors.newFixedThreadPool(2);
+        final AtomicInteger versions = new AtomicInteger();
+        final HubSpotContactReadCollapser collapser = new HubSpotContactReadCollapser(batchClient(requestExecutor, versions), 5, 100);
+        final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(1));
+        try {
+            final HubSpotContactCache cache = new HubSpotContactCache(100, 20, 60000, refreshExecutor) {
+                @Override
+                protected long nanoTime() {
+                    return clock.get();
+                }
+            };
+            for (int x = 0; x < 10; x++) {
+                cache.getById("user", String.valueOf(x), collapsedLoader(collapser, String.valueOf(x)));
+            }
+            final int loadedVersions = versions.get();
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(20));
+
+            // Every stale contact is loaded again in the background through the collapser, whose batches are sent by the request threads
+            for (int x = 0; x < 10; x++) {
+                cache.getById("user", String.valueOf(x), collapsedLoader(collapser, String.valueOf(x)));
+            }
+            refreshExecutor.shutdown();
+            Assert.assertTrue("The background loads are blocked", refreshExecutor.awaitTermination(5, TimeUnit.SECONDS));
+            for (int x = 0; x < 10; x++) {
+                final Contact contact = cache.getById("user", String.valueOf(x), collapsedLoader(collapser, String.valueOf(x)));
+                Assert.assertTrue("The contact " + x + " was not loaded again", Integer.parseInt(contact.getProfileUrl()) > loadedVersions);
+            }
+            Assert.assertEquals(10, cache.getStaleHits());
+        } finally {
+            collapser.stop();
+            refreshExecutor.shutdownNow();
+            requestExecutor.shutdownNow();
+        }
+    }
+
+    static private HubSpotContactCache.ContactLoader collapsedLoader(final HubSpotContactReadCollapser collapser, final String vid) {
+        return new HubSpotContactCache.ContactLoader() {
+            @Override
+            public Contact load() throws HubSpotConnectorException, HubSpotConnectorNoAccessTokenException, HubSpotConnectorAccessTokenExpiredException {
+                return collapser.getContactById("user", vid);
+            }
+        };
+    }
+
+    /**
+     * @return An asynchronous client that sends the batch lookups by id on the executor, and finds every vid with a new version each time
+     */
+    static private HubSpotAsyncClient batchClient(final ExecutorService requestExecutor, final AtomicInteger versions) {
+        final HubSpotAsyncClient asyncClient = Mockito.mock(HubSpotAsyncClient.class);
+        Mockito.when(asyncClient.getContactsByIds(Matchers.eq("user"), Matchers.anyListOf(String.class))).thenAnswer(new Answer<HubSpotFuture<ContactBatchResponse>>() {
+            @Override
+            public HubSpotFuture<ContactBatchResponse> answer(final InvocationOnMock invocation) {
+                @SuppressWarnings("unchecked")
+                final List<String> vids = (List<String>) invocation.getArguments()[1];
+                return HubSpotFutures.sent(requestExecutor, new Callable<ContactBatchResponse>() {
+                    @Override
+                    public ContactBatchResponse call() {
+                        final ContactBatchResponse response = new ContactBatchResponse();
+                        for (final String vid : vids) {
+                            final Contact contact = new Contact();
+                            contact.setVid(vid);
+                            contact.setProfileUrl(String.valueOf(versions.incrementAndGet()));
+                            response.put(vid, contact);
+                        }
+                        return response;
+                    }
+                });
+            }
+        });
+        return asyncClient;
+    }
+
+    static private class CountingLoader implements HubSpotContactCache.ContactLoader {
+
+        private final AtomicInteger loads = new AtomicInteger();
+
+        @Override
+        public Contact load() {
+            final Contact contact = new Contact();
+            contact.setVid("1");
+            // The version of the contact
+            contact.setProfileUrl("v" + loads.incrementAndGet());
+            final ContactProperties properties = new ContactProperties();
+            properties.setEmail("agent@example.com");
+            final Map<String, String> customProperties = new HashMap<String, String>();
+            customProperties.put("mycustom", "custom");
+            properties.setCustomProperties(customProperties);
+            contact.setContactProperties(properties);
+            return contact;
+        }
+    }
+}
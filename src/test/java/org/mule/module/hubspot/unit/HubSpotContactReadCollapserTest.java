@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.unit;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.mule.module.hubspot.client.HubSpotAsyncClient;
+import org.mule.module.hubspot.client.HubSpotContactReadCollapser;
+import org.mule.module.hubspot.client.HubSpotFuture;
+import org.mule.module.hubspot.exception.HubSpotConnectorException;
+import org.mule.module.hubspot.exception.HubSpotConnectorResponseException;
+import org.mule.module.hubspot.model.contact.Contact;
+import org.mule.module.hubspot.model.contact.ContactBatchResponse;
+
+public class HubSpotContactReadCollapserTest {
+
+    static final private String MISSING_VID = "404";
+
+    @Test
+    public void concurrentLookupsAreMergedInOneBatch() throws Exception {
+        final HubSpotAsyncClient asyncClient = asyncClient();
+        // The window is so long that the batch is only sent when it has the 20 lookups, however late their threads are scheduled
+        final HubSpotContactReadCollapser collapser = new HubSpotContactReadCollapser(asyncClient, 60000, 20);
+        final CountDownLatch start = new CountDownLatch(1);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(20);
+        try {
+            final Future<?>[] futures = new Future<?>[20];
+            for (int x = 0; x < futures.length; x++) {
+                final String vid = String.valueOf(x);
+                futures[x] = executor.submit(new Callable<Contact>() {
+                    @Override
+                    public Contact call() throws Exception {
+                        start.await();
+                        return collapser.getContactById("user", vid);
+                    }
+                });
+            }
+            start.countDown();
+
+            for (int x = 0; x < futures.length; x++) {
+                Assert.assertEquals(String.valueOf(x), ((Contact) futures[x].get()).getVid());
+            }
+        } finally {
+            executor.shutdownNow();
+            collapser.stop();
+        }
+
+        Mockito.verify(asyncClient, Mockito.times(1)).getContactsByIds(Matchers.eq("user"), Matchers.anyListOf(String.class));
+        Assert.assertEquals(20, collapser.getLookups());
+    }
+
+    @Test
+    public void fullBatchesAreSentWithoutWaitingAndMissesFail() throws Exception {
+        final HubSpotAsyncClient asyncClient = asyncClient();
+        // The window is so long that the lookups only end if the batches are sent when they are full
+        final HubSpotContactReadCollapser collapser = new HubSpotContactReadCollapser(asyncClient, 60000, 2);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final Future<?>[] futures = new Future<?>[4];
+            for (int x = 0; x < futures.length; x++) {
+                final String vid = x == 3 ? MISSING_VID : String.valueOf(x);
+                futures[x] = executor.submit(new Callable<Contact>() {
+                    @Override
+                    public Contact call() throws Exception {
+                        return collapser.getContactById("user", vid);
+                    }
+                });
+            }
+
+            int misses = 0;
+            for (final Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (final ExecutionException e) {
+                    Assert.assertTrue(e.getCause() instanceof HubSpotConnectorResponseException);
+                    Assert.assertEquals(404, ((HubSpotConnectorResponseException) e.getCause()).getStatusCode());
+                    misses++;
+                }
+            }
+            Assert.assertEquals(1, misses);
+        } finally {
+            executor.shutdownNow();
+            collapser.stop();
+        }
+
+        Mockito.verify(asyncClient, Mockito.times(2)).getContactsByIds(Matchers.eq("user"), Matchers.anyListOf(String.class));
+    }
+
+    @Test
+    public void invalidIdsFailWithoutJoiningABatch() throws Exception {
+        final HubSpotAsyncClient asyncClient = asyncClient();
+        // The window is so long that the lookups would not end if they joined a batch
+        final HubSpotContactReadCollapser collapser = new HubSpotContactReadCollapser(asyncClient, 60000, 2);
+        try {
+            for (final String vid : new String[] { "", "abc", "12a", null }) {
+                try {
+                    collapser.getContactById("user", vid);
+                    Assert.fail("The lookup of '" + vid + "' should fail");
+                } catch (final HubSpotConnectorException e) {
+                    Assert.assertFalse(e instanceof HubSpotConnectorResponseException);
+                }
+            }
+            try {
+                collapser.getContactByEmail("user", " ");
+                Assert.fail("The lookup of a blank email should fail");
+            } catch (final HubSpotConnectorException e) {
+                // Expected
+            }
+            Mockito.verify(asyncClient, Mockito.never()).getContactsByIds(Matchers.anyString(), Matchers.anyListOf(String.class));
+            Assert.assertEquals(0, collapser.getLookups());
+        } finally {
+            collapser.stop();
+        }
+    }
+
+    @Test
+    public void eachCallerGetsItsOwnCopyOfTheContact() throws Exception {
+        final HubSpotAsyncClient asyncClient = asyncClient();
+        // The window is long enough for both lookups to join the same batch
+        final HubSpotContactReadCollapser collapser = new HubSpotContactReadCollapser(asyncClient, 200, 100);
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<Contact> first = submit(executor, collapser, start);
+            final Future<Contact> second = submit(executor, collapser, start);
+            start.countDown();
+
+            final Contact firstContact = first.get();
+            final Contact secondContact = second.get();
+            Assert.assertEquals("1", firstContact.getVid());
+            Assert.assertEquals("1", secondContact.getVid());
+            Assert.assertNotSame(firstContact, secondContact);
+            firstContact.setVid("changed");
+            Assert.assertEquals("1", secondContact.getVid());
+        } finally {
+            executor.shutdownNow();
+            collapser.stop();
+        }
+
+        Mockito.verify(asyncClient, Mockito.times(1)).getContactsByIds(Matchers.eq("user"), Matchers.anyListOf(String.class));
+    }
+
+    static private Future<Contact> submit(final ExecutorService executor, final HubSpotContactReadCollapser collapser, final CountDownLatch start) {
+        return executor.submit(new Callable<Contact>() {
+            @Override
+            public Contact call() throws Exception {
+                start.await();
+                return collapser.getContactById("user", "1");
+            }
+        });
+    }
+
+    /**
+     * @return An asynchronous client whose batch lookup by id finds every vid but {@link #MISSING_VID}, with a new contact each time
+     */
+    static private HubSpotAsyncClient asyncClient() {
+        final HubSpotAsyncClient asyncClient = Mockito.mock(HubSpotAsyncClient.class);
+        Mockito.when(asyncClient.getContactsByIds(Matchers.eq("user"), Matchers.anyListOf(String.class))).thenAnswer(new Answer<HubSpotFuture<ContactBatchResponse>>() {
+            @Override
+            public HubSpotFuture<ContactBatchResponse> answer(final InvocationOnMock invocation) {
+                @SuppressWarnings("unchecked")
+                final List<String> vids = (List<String>) invocation.getArguments()[1];
+                final ContactBatchResponse response = new ContactBatchResponse();
+                for (final String vid : vids) {
+                    if (!MISSING_VID.equals(vid)) {
+                        final Contact contact = new Contact();
+                        contact.setVid(vid);
+                        response.put(vid, contact);
+                    }
+                }
+                return HubSpotFutures.completed(response);
+            }
+        });
+        return asyncClient;
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.unit;
+
+import java.io.Serializable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.mule.module.hubspot.credential.HubSpotCredentialsManager;
+import org.mule.module.hubspot.credential.HubSpotTokenRefreshScheduler;
+import org.mule.module.hubspot.model.OAuthCredentials;
+import org.mule.util.store.SimpleMemoryObjectStore;
+
+public class HubSpotCredentialsManagerTest {
+
+    @Test
+    public void concurrentRefreshesOfAUserAreCollapsed() throws Exception {
+        final HubSpotCredentialsManager manager = new HubSpotCredentialsManager(new SimpleMemoryObjectStore<Serializable>());
+        manager.setCredentias(credentials("1", "expired"));
+
+        final AtomicInteger refreshes = new AtomicInteger();
+        final CountDownLatch refreshing = new CountDownLatch(1);
+        final CountDownLatch callers = new CountDownLatch(8);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<OAuthCredentials> refresher = new Callable<OAuthCredentials>() {
+            @Override
+            public OAuthCredentials call() throws Exception {
+                refreshes.incrementAndGet();
+                refreshing.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                final OAuthCredentials refreshed = credentials("1", "refreshed");
+                manager.setCredentias(refreshed);
+                return refreshed;
+            }
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final Future<?>[] futures = new Future<?>[8];
+            for (int x = 0; x < futures.length; x++) {
+                futures[x] = executor.submit(new Callable<OAuthCredentials>() {
+                    @Override
+                    public OAuthCredentials call() throws Exception {
+                        callers.countDown();
+                        return manager.refreshCredentials("1", "expired", refresher);
+                    }
+                });
+            }
+            // A caller that only gets to the manager after the refresh has finished finds the refreshed credentials, so it does not refresh again either
+            Assert.assertTrue(refreshing.await(5, TimeUnit.SECONDS));
+            Assert.assertTrue(callers.await(5, TimeUnit.SECONDS));
+            release.countDown();
+
+            for (final Future<?> future : futures) {
+                Assert.assertEquals("refreshed", ((OAuthCredentials) future.get()).getAccessToken());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(1, refreshes.get());
+
+        // A caller that failed with the old token after the refresh finished does not refresh again
+        manager.refreshCredentials("1", "expired", refresher);
+        Assert.assertEquals(1, refreshes.get());
+    }
+
+    @Test
+    public void cachedCredentialsAreRevalidatedAgainstTheObjectStore() throws Exception {
+        final SimpleMemoryObjectStore<Serializable> store = new SimpleMemoryObjectStore<Serializable>();
+        final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(1));
+        final HubSpotCredentialsManager manager = new HubSpotCredentialsManager(store, 10, 100) {
+            @Override
+            protected long nanoTime() {
+                return clock.get();
+            }
+        };
+        manager.setCredentias(credentials("1", "first"));
+        Assert.assertTrue(manager.hasUserAccessToken("1"));
+        Assert.assertFalse(manager.hasUserAccessToken("2"));
+
+        // Another node of the cluster replaces the credentials
+        store.remove("1");
+        store.store("1", credentials("1", "second"));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(99));
+        Assert.assertEquals("first", manager.getCredentialsAccessToken("1"));
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        Assert.assertEquals("second", manager.getCredentialsAccessToken("1"));
+
+        // A rejected token is checked against the Object Store before refreshing, even if the cached one has not expired
+        store.remove("1");
+        store.store("1", credentials("1", "third"));
+        final OAuthCredentials current = manager.refreshCredentials("1", "second", new Callable<OAuthCredentials>() {
+            @Override
+            public OAuthCredentials call() throws Exception {
+                throw new IllegalStateException("The token was already refreshed by another node");
+            }
+        });
+        Assert.assertEquals("third", current.getAccessToken());
+        Assert.assertEquals("third", manager.getCredentialsAccessToken("1"));
+    }
+
+    @Test
+    public void theRefreshOfTheUsersEvictedFromTheCacheIsCancelled() throws Exception {
+        final HubSpotCredentialsManager manager = new HubSpotCredentialsManager(new SimpleMemoryObjectStore<Serializable>(), 1, 0);
+        final HubSpotTokenRefreshScheduler scheduler = new HubSpotTokenRefreshScheduler(null, 0, 0);
+        manager.setRefreshScheduler(scheduler);
+        try {
+            manager.setCredentias(offlineCredentials("1"));
+            Assert.assertEquals(1, scheduler.getScheduledRefreshes());
+
+            // The cache only has room for one user
+            manager.setCredentias(offlineCredentials("2"));
+            Assert.assertEquals(1, scheduler.getScheduledRefreshes());
+
+            // Used again, so it is scheduled again, and the user that it evicts from the cache is cancelled
+            manager.getCredentials("1");
+            Assert.assertEquals(1, scheduler.getScheduledRefreshes());
+            manager.cancelRefresh("1");
+            Assert.assertEquals(0, scheduler.getScheduledRefreshes());
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    static private OAuthCredentials offlineCredentials(final String userId) {
+        final OAuthCredentials credentials = credentials(userId, "token" + userId);
+        credentials.setOfflineScope(true);
+        credentials.setExpirationTime(System.currentTimeMillis() + 60000);
+        return credentials;
+    }
+
+    static private OAuthCredentials credentials(final String userId, final String accessToken) {
+        final OAuthCredentials credentials = new OAuthCredentials();
+        credentials.setUserId(userId);
+        credentials.setAccessToken(accessToken);
+        return credentials;
+    }
+}
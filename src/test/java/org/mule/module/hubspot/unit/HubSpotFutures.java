@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.unit;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.mule.module.hubspot.client.HubSpotFuture;
+import org.mule.module.hubspot.exception.HubSpotConnectorRateLimitException;
+
+/**
+ * Futures returned by the mocks of the {@link org.mule.module.hubspot.client.HubSpotAsyncClient}
+ */
+final class HubSpotFutures {
+
+    private HubSpotFutures() {
+    }
+
+    /**
+     * @return A future already answered with the value
+     */
+    static <T> HubSpotFuture<T> completed(final T value) {
+        final HubSpotFuture<T> future = new HubSpotFuture<T>(new Callable<T>() {
+            @Override
+            public T call() {
+                return value;
+            }
+        });
+        future.run();
+        return future;
+    }
+
+    /**
+     * @return A future already failed with the exception
+     */
+    static <T> HubSpotFuture<T> failed(final Exception exception) {
+        final HubSpotFuture<T> future = new HubSpotFuture<T>(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                throw exception;
+            }
+        });
+        future.run();
+        return future;
+    }
+
+    /**
+     * @return A future that is never answered
+     */
+    static <T> HubSpotFuture<T> pending() {
+        return new HubSpotFuture<T>(new Callable<T>() {
+            @Override
+            public T call() {
+                return null;
+            }
+        });
+    }
+
+    /**
+     * @return A future answered by the executor. If the executor rejects it, it fails without being sent, as in HubSpotThreadPoolClient when its queue is full
+     */
+    static <T> HubSpotFuture<T> sent(final Executor executor, final Callable<T> callable) {
+        final HubSpotFuture<T> future = new HubSpotFuture<T>(callable);
+        try {
+            executor.execute(future);
+            return future;
+        } catch (final RejectedExecutionException e) {
+            return failed(new HubSpotConnectorRateLimitException("Queue full"));
+        }
+    }
+}
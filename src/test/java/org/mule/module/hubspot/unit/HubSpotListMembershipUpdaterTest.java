@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.unit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.mule.module.hubspot.client.HubSpotAsyncClient;
+import org.mule.module.hubspot.client.HubSpotFuture;
+import org.mule.module.hubspot.client.HubSpotListMembershipUpdater;
+import org.mule.module.hubspot.exception.HubSpotConnectorException;
+import org.mule.module.hubspot.exception.HubSpotConnectorResponseException;
+import org.mule.module.hubspot.model.list.HubSpotListAddContactToListResponse;
+
+public class HubSpotListMembershipUpdaterTest {
+
+    @Test
+    public void repeatedContactsAreSentOnceInChunksOfAtMostFiveHundred() throws Exception {
+        final List<List<Integer>> requests = new ArrayList<List<Integer>>();
+        final HubSpotAsyncClient asyncClient = Mockito.mock(HubSpotAsyncClient.class);
+        Mockito.when(asyncClient.addContactsToList(Matchers.eq("user"), Matchers.eq("12"), Matchers.anyListOf(Integer.class))).thenAnswer(
+                new Answer<HubSpotFuture<HubSpotListAddContactToListResponse>>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public HubSpotFuture<HubSpotListAddContactToListResponse> answer(final InvocationOnMock invocation) {
+                        final List<Integer> chunk = (List<Integer>) invocation.getArguments()[2];
+                        requests.add(chunk);
+                        return HubSpotFutures.completed(response(chunk, new ArrayList<Integer>()));
+                    }
+                });
+
+        final List<String> contactIds = new ArrayList<String>();
+        for (int x = 0; x < 1200; x++) {
+            contactIds.add(String.valueOf(x));
+            // Every contact twice
+            contactIds.add(String.valueOf(x));
+        }
+        // More than HubSpot accepts in a request
+        final HubSpotListAddContactToListResponse result = new HubSpotListMembershipUpdater(asyncClient).update("user", "12", contactIds, 1000, 2, true);
+
+        Assert.assertEquals(3, requests.size());
+        Assert.assertEquals(500, requests.get(0).size());
+        Assert.assertEquals(500, requests.get(1).size());
+        Assert.assertEquals(200, requests.get(2).size());
+        Assert.assertEquals(Integer.valueOf(0), requests.get(0).get(0));
+        Assert.assertEquals(Integer.valueOf(500), requests.get(1).get(0));
+        Assert.assertEquals(1200, result.getUpdated().size());
+        Mockito.verify(asyncClient, Mockito.never()).removeContactsFromList(Matchers.anyString(), Matchers.anyString(), Matchers.anyListOf(Integer.class));
+    }
+
+    @Test
+    public void theUpdatedAndDiscardedContactsOfEveryChunkAreMerged() throws Exception {
+        final HubSpotAsyncClient asyncClient = Mockito.mock(HubSpotAsyncClient.class);
+        Mockito.when(asyncClient.removeContactsFromList("user", "12", Arrays.asList(1, 2))).thenReturn(HubSpotFutures.completed(response(Arrays.asList(1), Arrays.asList(2))));
+        Mockito.when(asyncClient.removeContactsFromList("user", "12", Arrays.asList(3, 4))).thenReturn(HubSpotFutures.completed(response(Arrays.asList(3, 4), null)));
+        Mockito.when(asyncClient.removeContactsFromList("user", "12", Arrays.asList(5))).thenReturn(HubSpotFutures.completed(response(null, Arrays.asList(5))));
+
+        final HubSpotListAddContactToListResponse result = new HubSpotListMembershipUpdater(asyncClient).update("user", "12", Arrays.asList("1", "2", "3", "4", "5"), 2, 4,
+                false);
+
+        Assert.assertEquals(Arrays.asList(1, 3, 4), result.getUpdated());
+        Assert.assertEquals(Arrays.asList(2, 5), result.getDiscarded());
+    }
+
+    @Test
+    public void aContactIdThatIsNotANumberFailsBeforeSendingAnything() throws Exception {
+        final HubSpotAsyncClient asyncClient = Mockito.mock(HubSpotAsyncClient.class);
+        try {
+            new HubSpotListMembershipUpdater(asyncClient).update("user", "12", Arrays.asList("1", "abc"), 500, 4, true);
+            Assert.fail("A contact ID that is not a number should fail");
+        } catch (final HubSpotConnectorException e) {
+            Assert.assertTrue(e.getMessage().contains("abc"));
+        }
+        Mockito.verifyZeroInteractions(asyncClient);
+    }
+
+    @Test
+    public void aFailedChunkCancelsTheChunksInProgress() throws Exception {
+        final HubSpotFuture<HubSpotListAddContactToListResponse> failed = HubSpotFutures.failed(new HubSpotConnectorResponseException("Not Found", 404, null, null));
+        // Never answered
+        final HubSpotFuture<HubSpotListAddContactToListResponse> pending = HubSpotFutures.pending();
+        final HubSpotAsyncClient asyncClient = Mockito.mock(HubSpotAsyncClient.class);
+        Mockito.when(asyncClient.addContactsToList("user", "12", Arrays.asList(1))).thenReturn(failed);
+        Mockito.when(asyncClient.addContactsToList("user", "12", Arrays.asList(2))).thenReturn(pending);
+
+        try {
+            new HubSpotListMembershipUpdater(asyncClient).update("user", "12", Arrays.asList("1", "2", "3"), 1, 2, true);
+            Assert.fail("The failed chunk should fail the whole operation");
+        } catch (final HubSpotConnectorResponseException e) {
+            Assert.assertEquals(404, e.getStatusCode());
+        }
+
+        Assert.assertTrue(pending.isCancelled());
+        // The third chunk was never sent, since only two can be in progress
+        Mockito.verify(asyncClient, Mockito.never()).addContactsToList("user", "12", Arrays.asList(3));
+    }
+
+    static private HubSpotListAddContactToListResponse response(final List<Integer> updated, final List<Integer> discarded) {
+        final HubSpotListAddContactToListResponse response = new HubSpotListAddContactToListResponse();
+        response.setUpdated(updated);
+        response.setDiscarded(discarded);
+        return response;
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.unit;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.mule.module.hubspot.metrics.HubSpotMetrics;
+import org.mule.module.hubspot.metrics.LatencyHistogram;
+import org.mule.module.hubspot.metrics.LatencySnapshot;
+
+public class HubSpotMetricsTest {
+
+    @Test
+    public void percentilesAreWithinTheErrorOfTheBuckets() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        // 1 to 1000 ms
+        for (int x = 1; x <= 1000; x++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(x));
+        }
+
+        final LatencySnapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(1000, snapshot.getCount());
+        Assert.assertEquals(500500, snapshot.getMean());
+        Assert.assertEquals(1000000, snapshot.getMax());
+        assertWithin(500000, snapshot.getP50());
+        assertWithin(990000, snapshot.getP99());
+        assertWithin(999000, snapshot.getP999());
+
+        histogram.reset();
+        Assert.assertEquals(0, histogram.snapshot().getCount());
+        Assert.assertEquals(0, histogram.snapshot().getP99());
+    }
+
+    @Test
+    public void smallAndHugeValuesAreCounted() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(3));
+        histogram.record(TimeUnit.DAYS.toNanos(365));
+
+        final LatencySnapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(3, snapshot.getCount());
+        Assert.assertEquals(3, snapshot.getP50());
+        Assert.assertEquals(TimeUnit.DAYS.toMicros(365), snapshot.getMax());
+        Assert.assertEquals(TimeUnit.DAYS.toMicros(365), snapshot.getP999());
+    }
+
+    @Test
+    public void concurrentRecordsAreNotLost() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final int threads = 8;
+        final int records = 10000;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            for (int x = 0; x < records; x++) {
+                                histogram.record(TimeUnit.MICROSECONDS.toNanos(x));
+                            }
+                        } catch (final InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                });
+            }
+            start.countDown();
+            Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(threads * records, histogram.getCount());
+        Assert.assertEquals(threads * records, histogram.snapshot().getCount());
+        Assert.assertEquals(records - 1, histogram.snapshot().getMax());
+    }
+
+    @Test
+    public void tenantsOverTheLimitShareAHistogram() {
+        final HubSpotMetrics metrics = new HubSpotMetrics(2);
+        metrics.recordOperation("getContactById", "portal1", 1000);
+        metrics.recordOperation("getContactById", "portal2", 1000);
+        metrics.recordOperation("getContactByEmail", "portal3", 1000);
+        metrics.recordOperation("getContactByEmail", "portal4", 1000);
+
+        Assert.assertEquals(2, metrics.getOperationLatencies().size());
+        Assert.assertEquals(2, metrics.getOperationLatencies().get("getContactByEmail").getCount());
+        Assert.assertEquals(3, metrics.getTenantLatencies().size());
+        Assert.assertEquals(2, metrics.getTenantLatencies().get(HubSpotMetrics.OTHER_TENANTS).getCount());
+
+        metrics.recordRequest(1000, 200, 512);
+        metrics.recordRequest(1000, 429, -1);
+        metrics.recordRequest(1000, 0, -1);
+        Assert.assertEquals(3, metrics.getRequests());
+        Assert.assertEquals(512, metrics.getBytesReceived());
+        Assert.assertEquals(Long.valueOf(1), metrics.getStatusCodes().get(429));
+        Assert.assertEquals(Long.valueOf(1), metrics.getStatusCodes().get(0));
+
+        metrics.reset();
+        Assert.assertEquals(0, metrics.getRequests());
+        Assert.assertTrue(metrics.getTenantLatencies().isEmpty());
+    }
+
+    /**
+     * The reported value is the upper bound of its bucket, at most 12.5% over the real one
+     */
+    private static void assertWithin(final long expected, final long actual) {
+        Assert.assertTrue("Expected about " + expected + " but was " + actual, actual >= expected && actual <= expected * 1.125);
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.unit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.mule.module.hubspot.cache.HubSpotPropertySchemaCache;
+import org.mule.module.hubspot.model.contactproperty.CustomContactProperty;
+import org.mule.module.hubspot.model.contactproperty.CustomContactPropertyGroup;
+
+public class HubSpotPropertySchemaCacheTest {
+
+    @Test
+    public void definitionsAreCachedPerPortalUntilInvalidated() throws Exception {
+        final HubSpotPropertySchemaCache cache = new HubSpotPropertySchemaCache(10, 60000, 0, null);
+        final PropertiesLoader loader = new PropertiesLoader();
+        final GroupLoader groupLoader = new GroupLoader();
+
+        Assert.assertEquals("v1", cache.getAllCustomProperties("62515", loader).get(0).getName());
+        Assert.assertEquals("v1", cache.getAllCustomProperties("62515", loader).get(0).getName());
+        Assert.assertEquals("v1", cache.getCustomPropertyGroup("62515", "info", groupLoader).getDisplayName());
+        Assert.assertEquals("v1", cache.getCustomPropertyGroup("62515", "info", groupLoader).getDisplayName());
+        Assert.assertEquals(1, loader.loads.get());
+        Assert.assertEquals(1, groupLoader.loads.get());
+
+        // Other portals do not share the cached definitions
+        cache.getAllCustomProperties("62516", loader);
+        Assert.assertEquals(2, loader.loads.get());
+
+        // Changing a property discards the groups too, since they include their properties
+        cache.invalidate("62515");
+        Assert.assertEquals("v3", cache.getAllCustomProperties("62515", loader).get(0).getName());
+        Assert.assertEquals("v2", cache.getCustomPropertyGroup("62515", "info", groupLoader).getDisplayName());
+    }
+
+    @Test
+    public void changesToTheReturnedDefinitionsDoNotChangeTheCachedOnes() throws Exception {
+        final HubSpotPropertySchemaCache cache = new HubSpotPropertySchemaCache(10, 60000, 0, null);
+        final PropertiesLoader loader = new PropertiesLoader();
+        final GroupLoader groupLoader = new GroupLoader();
+
+        final List<CustomContactProperty> loaded = cache.getAllCustomProperties("62515", loader);
+        loaded.get(0).setLabel("changed");
+        loaded.add(new CustomContactProperty());
+        final List<CustomContactProperty> hit = cache.getAllCustomProperties("62515", loader);
+        hit.get(0).setName("changed");
+
+        final List<CustomContactProperty> next = cache.getAllCustomProperties("62515", loader);
+        Assert.assertEquals(1, next.size());
+        Assert.assertEquals("v1", next.get(0).getName());
+        Assert.assertNull(next.get(0).getLabel());
+
+        cache.getCustomPropertyGroup("62515", "info", groupLoader).setDisplayName("changed");
+        cache.getCustomPropertyGroup("62515", "info", groupLoader).setDisplayName("changed");
+        Assert.assertEquals("v1", cache.getCustomPropertyGroup("62515", "info", groupLoader).getDisplayName());
+        Assert.assertEquals(1, loader.loads.get());
+        Assert.assertEquals(1, groupLoader.loads.get());
+    }
+
+    @Test
+    public void aRefreshThatFinishesAfterAnInvalidationIsNotCached() throws Exception {
+        final ManualScheduledExecutor executor = new ManualScheduledExecutor();
+        final HubSpotPropertySchemaCache cache = new HubSpotPropertySchemaCache(10, 50, 60000, executor) {
+            @Override
+            protected long nanoTime() {
+                return executor.nanoTime();
+            }
+        };
+        final PropertiesLoader loader = new PropertiesLoader() {
+            @Override
+            public List<CustomContactProperty> load() {
+                if (loads.get() == 1) {
+                    // The background load reads the definitions from before a change made while it is in progress
+                    cache.invalidate("62515");
+                }
+                return super.load();
+            }
+        };
+
+        cache.getAllCustomProperties("62515", loader);
+        executor.advance(50, TimeUnit.MILLISECONDS);
+
+        // Stale, so the old definitions are returned while they are loaded in the background
+        Assert.assertEquals("v1", cache.getAllCustomProperties("62515", loader).get(0).getName());
+        Assert.assertEquals(1, loader.loads.get());
+        executor.runDueTasks();
+        Assert.assertEquals(2, loader.loads.get());
+
+        Assert.assertEquals("v3", cache.getAllCustomProperties("62515", loader).get(0).getName());
+        Assert.assertEquals(1, cache.getStaleHits());
+    }
+
+    static private class PropertiesLoader implements HubSpotPropertySchemaCache.SchemaLoader<List<CustomContactProperty>> {
+
+        protected final AtomicInteger loads = new AtomicInteger();
+
+        @Override
+        public List<CustomContactProperty> load() {
+            final CustomContactProperty property = new CustomContactProperty();
+            // The version of the definitions
+            property.setName("v" + loads.incrementAndGet());
+            final List<CustomContactProperty> properties = new ArrayList<CustomContactProperty>();
+            properties.add(property);
+            return properties;
+        }
+    }
+
+    static private class GroupLoader implements HubSpotPropertySchemaCache.SchemaLoader<CustomContactPropertyGroup> {
+
+        private final AtomicInteger loads = new AtomicInteger();
+
+        @Override
+        public CustomContactPropertyGroup load() {
+            final CustomContactPropertyGroup group = new CustomContactPropertyGroup();
+            group.setDisplayName("v" + loads.incrementAndGet());
+            return group;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.unit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.mule.module.hubspot.client.policy.HubSpotRateLimitBudget;
+import org.mule.module.hubspot.model.ratelimit.RateLimitStatus;
+
+import com.sun.jersey.core.util.MultivaluedMapImpl;
+
+public class HubSpotRateLimitBudgetTest {
+
+    @Test
+    public void budgetIsTakenFromTheHeadersAndCountedDown() throws Exception {
+        final HubSpotRateLimitBudget budget = new HubSpotRateLimitBudget(1000);
+        final HubSpotRateLimitBudget.PortalBudget portal = budget.getPortal("62515");
+
+        Assert.assertNull(budget.getStatus("62515").getSecondlyLimit());
+        Assert.assertTrue(budget.getStatuses().isEmpty());
+
+        portal.update(headers("10", "8", "40000", "39000"), 200);
+        RateLimitStatus status = budget.getStatus("62515");
+        Assert.assertEquals(Long.valueOf(10), status.getSecondlyLimit());
+        Assert.assertEquals(Long.valueOf(8), status.getSecondlyRemaining());
+        Assert.assertEquals(Long.valueOf(40000), status.getDailyLimit());
+        Assert.assertEquals(Long.valueOf(39000), status.getDailyRemaining());
+        Assert.assertEquals(Long.valueOf(0), status.getThrottleDelay());
+
+        // Well above the thresholds the requests are not delayed, but they are counted
+        final long start = System.nanoTime();
+        portal.acquire();
+        portal.acquire();
+        Assert.assertTrue(System.nanoTime() - start < 50000000L);
+        Assert.assertEquals(0, budget.getThrottledRequests());
+        status = budget.getStatus("62515");
+        Assert.assertEquals(Long.valueOf(6), status.getSecondlyRemaining());
+        Assert.assertEquals(Long.valueOf(38998), status.getDailyRemaining());
+        Assert.assertEquals(1, budget.getStatuses().size());
+
+        // Headers with invalid values are ignored
+        portal.update(headers("x", null, null, "-"), 200);
+        Assert.assertEquals(Long.valueOf(6), budget.getStatus("62515").getSecondlyRemaining());
+    }
+
+    @Test
+    public void delayGrowsSmoothlyAsTheBudgetShrinks() throws Exception {
+        final HubSpotRateLimitBudget budget = new HubSpotRateLimitBudget(10000);
+        final HubSpotRateLimitBudget.PortalBudget portal = budget.getPortal("62515");
+
+        portal.update(headers("10", "5", null, null), 200);
+        Assert.assertEquals(Long.valueOf(0), budget.getStatus("62515").getThrottleDelay());
+
+        long previous = 0;
+        for (int remaining = 4; remaining >= 0; remaining--) {
+            portal.update(headers("10", String.valueOf(remaining), null, null), 200);
+            final long delay = budget.getStatus("62515").getThrottleDelay();
+            Assert.assertTrue("Delay " + delay + " with " + remaining + " left", delay > previous && delay <= 1000);
+            previous = delay;
+        }
+        // Once the budget is spent the rest of the window is waited
+        Assert.assertTrue(previous > 900);
+    }
+
+    @Test
+    public void spentBudgetDelaysUpToTheMaximum() throws Exception {
+        final HubSpotRateLimitBudget budget = new HubSpotRateLimitBudget(50);
+        final HubSpotRateLimitBudget.PortalBudget portal = budget.getPortal("62515");
+
+        portal.update(headers("10", "0", null, null), 200);
+        Assert.assertEquals(Long.valueOf(50), budget.getStatus("62515").getThrottleDelay());
+
+        final long start = System.nanoTime();
+        portal.acquire();
+        Assert.assertTrue(System.nanoTime() - start >= 40000000L);
+        Assert.assertEquals(1, budget.getThrottledRequests());
+
+        // A 429 without headers spends the budget of the window
+        portal.update(headers("10", "9", null, null), 200);
+        portal.update(new MultivaluedMapImpl(), 429);
+        Assert.assertEquals(Long.valueOf(0), budget.getStatus("62515").getSecondlyRemaining());
+    }
+
+    @Test
+    public void theBudgetsOfIdlePortalsAreReleased() throws Exception {
+        final AtomicLong clock = new AtomicLong(1);
+        final HubSpotRateLimitBudget budget = new HubSpotRateLimitBudget(1000, 100, 1000) {
+            @Override
+            protected long nanoTime() {
+                return clock.get();
+            }
+        };
+
+        budget.getPortal("user1").update(headers("10", "8", null, null), 200);
+        Assert.assertEquals(1, budget.getStatuses().size());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        budget.getPortal("62515").acquire();
+        Assert.assertEquals(2, budget.size());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        budget.getPortal("62515").acquire();
+        Assert.assertEquals(1, budget.size());
+        Assert.assertTrue(budget.getStatuses().isEmpty());
+        Assert.assertNull(budget.getStatus("user1").getSecondlyLimit());
+    }
+
+    private static MultivaluedMapImpl headers(final String secondly, final String secondlyRemaining, final String daily, final String dailyRemaining) {
+        final MultivaluedMapImpl headers = new MultivaluedMapImpl();
+        put(headers, HubSpotRateLimitBudget.HEADER_SECONDLY_LIMIT, secondly);
+        put(headers, HubSpotRateLimitBudget.HEADER_SECONDLY_REMAINING, secondlyRemaining);
+        put(headers, HubSpotRateLimitBudget.HEADER_DAILY_LIMIT, daily);
+        put(headers, HubSpotRateLimitBudget.HEADER_DAILY_REMAINING, dailyRemaining);
+        return headers;
+    }
+
+    private static void put(final MultivaluedMapImpl headers, final String name, final String value) {
+        if (value != null) {
+            headers.putSingle(name, value);
+        }
+    }
+}
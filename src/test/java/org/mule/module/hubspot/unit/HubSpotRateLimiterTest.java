@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.unit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.mule.module.hubspot.client.policy.HubSpotRateLimiter;
+import org.mule.module.hubspot.exception.HubSpotConnectorException;
+import org.mule.module.hubspot.exception.HubSpotConnectorRateLimitException;
+
+public class HubSpotRateLimiterTest {
+
+    @Test
+    public void failsFastWhenTheBurstIsExhausted() throws HubSpotConnectorException {
+        final HubSpotRateLimiter limiter = new HubSpotRateLimiter(0.5, 2, 0, 0);
+
+        limiter.acquire("portal1");
+        limiter.acquire("portal1");
+        try {
+            limiter.acquire("portal1");
+            Assert.fail("The third request should exceed the rate limit");
+        } catch (final HubSpotConnectorRateLimitException e) {
+            // Expected
+        }
+
+        // Other portals have their own tokens
+        limiter.acquire("portal2");
+    }
+
+    @Test
+    public void waitsForTheNextToken() throws HubSpotConnectorException {
+        final HubSpotRateLimiter limiter = new HubSpotRateLimiter(10, 1, 0, 1000);
+
+        final long start = System.nanoTime();
+        limiter.acquire("portal");
+        limiter.acquire("portal");
+        limiter.acquire("portal");
+        final long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        // One token every 100 ms after the first one
+        Assert.assertTrue("Elapsed " + elapsedMillis, elapsedMillis >= 180);
+    }
+
+    @Test
+    public void dailyLimitIsApplied() throws HubSpotConnectorException {
+        final HubSpotRateLimiter limiter = new HubSpotRateLimiter(1000, 1000, 3, 0);
+
+        limiter.acquire("portal");
+        limiter.acquire("portal");
+        limiter.acquire("portal");
+        try {
+            limiter.acquire("portal");
+            Assert.fail("The fourth request should exceed the daily limit");
+        } catch (final HubSpotConnectorRateLimitException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void theBucketsOfIdlePortalsAreReleasedOnceFull() throws HubSpotConnectorException {
+        final AtomicLong clock = new AtomicLong(1);
+        final HubSpotRateLimiter limiter = new HubSpotRateLimiter(1, 2, 0, 0, 100, 1000) {
+            @Override
+            protected long nanoTime() {
+                return clock.get();
+            }
+        };
+
+        limiter.acquire("user1");
+        limiter.acquire("user2");
+        limiter.acquire("user2");
+        Assert.assertEquals(2, limiter.size());
+
+        // The buckets of user1 are full again, so they are released, but user2 is still one token short
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500));
+        limiter.acquire("portal");
+        Assert.assertEquals(2, limiter.size());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500));
+        limiter.acquire("portal");
+        Assert.assertEquals(1, limiter.size());
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.unit;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.mule.module.hubspot.client.policy.HubSpotRetryPolicy;
+import org.mule.module.hubspot.exception.HubSpotConnectorException;
+import org.mule.module.hubspot.exception.HubSpotConnectorResponseException;
+
+public class HubSpotRetryPolicyTest {
+
+    @Test
+    public void retriesTransientErrorsWithinTheBudget() {
+        final HubSpotRetryPolicy policy = new HubSpotRetryPolicy(3, 100, 1000, 60000);
+        final HubSpotRetryPolicy.Attempts attempts = policy.newAttempts();
+        final HubSpotConnectorException e = new HubSpotConnectorResponseException("503", 503, null);
+
+        for (int x = 0; x < 3; x++) {
+            final long delay = attempts.nextDelay(true, e);
+            Assert.assertTrue("Delay " + delay, delay >= 100 && delay <= 1000);
+        }
+        Assert.assertEquals(-1, attempts.nextDelay(true, e));
+    }
+
+    @Test
+    public void doesNotRetryNonIdempotentOrPermanentErrors() {
+        final HubSpotRetryPolicy policy = new HubSpotRetryPolicy(3, 100, 1000, 60000);
+
+        Assert.assertEquals(-1, policy.newAttempts().nextDelay(false, new HubSpotConnectorResponseException("429", 429, null)));
+        Assert.assertEquals(-1, policy.newAttempts().nextDelay(true, new HubSpotConnectorResponseException("400", 400, null)));
+        Assert.assertEquals(-1, policy.newAttempts().nextDelay(true, new HubSpotConnectorException("other")));
+    }
+
+    @Test
+    public void honorsRetryAfter() {
+        final HubSpotRetryPolicy policy = new HubSpotRetryPolicy(3, 100, 1000, 60000);
+
+        Assert.assertEquals(5000, policy.newAttempts().nextDelay(true, new HubSpotConnectorResponseException("429", 429, 5000L)));
+        // A Retry-After longer than the time budget is not waited
+        Assert.assertEquals(-1, policy.newAttempts().nextDelay(true, new HubSpotConnectorResponseException("429", 429, 120000L)));
+    }
+}
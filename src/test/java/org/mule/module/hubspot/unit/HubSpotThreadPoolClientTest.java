@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.unit;
+
+import java.io.Serializable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.mule.module.hubspot.client.HubSpotClient;
+import org.mule.module.hubspot.client.HubSpotClientsManager;
+import org.mule.module.hubspot.client.HubSpotFuture;
+import org.mule.module.hubspot.client.HubSpotHttpTransport;
+import org.mule.module.hubspot.client.impl.HubSpotThreadPoolClient;
+import org.mule.module.hubspot.credential.HubSpotCredentialsManager;
+import org.mule.module.hubspot.exception.HubSpotConnectorAccessTokenExpiredException;
+import org.mule.module.hubspot.exception.HubSpotConnectorException;
+import org.mule.module.hubspot.exception.HubSpotConnectorNoAccessTokenException;
+import org.mule.module.hubspot.exception.HubSpotConnectorRateLimitException;
+import org.mule.module.hubspot.exception.HubSpotConnectorResponseException;
+import org.mule.module.hubspot.model.OAuthCredentials;
+import org.mule.module.hubspot.model.contact.Contact;
+import org.mule.util.store.SimpleMemoryObjectStore;
+
+public class HubSpotThreadPoolClientTest {
+
+    @Test
+    public void requestsBeyondTheQueueFailWithoutWaiting() throws Exception {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1));
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            // The only thread is busy and the queue is full
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+
+            // Rejected before it needs the credentials or the client of the user
+            final HubSpotFuture<Contact> future = new HubSpotThreadPoolClient(null, null, executor).getContactById("user", "1");
+            Assert.assertTrue(future.isDone());
+            try {
+                future.getResult();
+                Assert.fail("The request should have been rejected");
+            } catch (final HubSpotConnectorRateLimitException e) {
+                // Expected
+            }
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void aRejectedTokenIsRefreshedAndTheRequestSentAgain() throws Exception {
+        final HubSpotCredentialsManager credentialsManager = credentialsManager("old");
+        final HubSpotClient client = Mockito.mock(HubSpotClient.class);
+        final Contact contact = new Contact();
+        Mockito.when(client.getContactById("old", "user", "1")).thenThrow(new HubSpotConnectorAccessTokenExpiredException("expired"));
+        Mockito.when(client.getContactById("new", "user", "1")).thenReturn(contact);
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                credentialsManager.setCredentias(credentials("new"));
+                return null;
+            }
+        }).when(client).refreshToken(credentialsManager, "user", "old");
+
+        final ManualScheduledExecutor executor = new ManualScheduledExecutor();
+        final HubSpotFuture<Contact> future = new HubSpotThreadPoolClient(credentialsManager, clientsManager(client), executor).getContactById("user", "1");
+        executor.runDueTasks();
+
+        Assert.assertSame(contact, future.getResult());
+        Mockito.verify(client).refreshToken(credentialsManager, "user", "old");
+        Mockito.verify(client).getContactById("new", "user", "1");
+    }
+
+    @Test
+    public void aTokenRejectedAgainAfterTheRefreshFailsWithoutRefreshingAgain() throws Exception {
+        final HubSpotCredentialsManager credentialsManager = credentialsManager("old");
+        final HubSpotClient client = Mockito.mock(HubSpotClient.class);
+        Mockito.when(client.getContactById(Matchers.anyString(), Matchers.eq("user"), Matchers.eq("1"))).thenThrow(
+                new HubSpotConnectorAccessTokenExpiredException("expired"));
+
+        final ManualScheduledExecutor executor = new ManualScheduledExecutor();
+        final HubSpotFuture<Contact> future = new HubSpotThreadPoolClient(credentialsManager, clientsManager(client), executor).getContactById("user", "1");
+        executor.runDueTasks();
+
+        try {
+            future.getResult();
+            Assert.fail("The second rejection should fail the request");
+        } catch (final HubSpotConnectorAccessTokenExpiredException e) {
+            // Expected
+        }
+        Mockito.verify(client).refreshToken(credentialsManager, "user", "old");
+        Mockito.verify(client, Mockito.times(2)).getContactById(Matchers.anyString(), Matchers.eq("user"), Matchers.eq("1"));
+    }
+
+    @Test
+    public void theResultThrowsTheExceptionsOfTheBlockingClient() throws Exception {
+        final HubSpotConnectorResponseException response = new HubSpotConnectorResponseException("Not Found", 404, null);
+        Assert.assertSame(response, failure(HubSpotFutures.<Contact> failed(response)));
+        final HubSpotConnectorNoAccessTokenException noAccessToken = new HubSpotConnectorNoAccessTokenException("no token");
+        Assert.assertSame(noAccessToken, failure(HubSpotFutures.<Contact> failed(noAccessToken)));
+        final HubSpotConnectorAccessTokenExpiredException expired = new HubSpotConnectorAccessTokenExpiredException("expired");
+        Assert.assertSame(expired, failure(HubSpotFutures.<Contact> failed(expired)));
+
+        // Any other error is wrapped
+        final IllegalStateException other = new IllegalStateException("other");
+        final Exception wrapped = failure(HubSpotFutures.<Contact> failed(other));
+        Assert.assertEquals(HubSpotConnectorException.class, wrapped.getClass());
+        Assert.assertSame(other, wrapped.getCause());
+
+        final HubSpotFuture<Contact> cancelled = HubSpotFutures.pending();
+        cancelled.cancel(false);
+        final Exception cancellation = failure(cancelled);
+        Assert.assertEquals(HubSpotConnectorException.class, cancellation.getClass());
+        Assert.assertTrue(cancellation.getCause() instanceof CancellationException);
+
+        // Never run, so it is waiting when the thread is interrupted
+        Thread.currentThread().interrupt();
+        final Exception interrupted = failure(HubSpotFutures.<Contact> pending());
+        Assert.assertTrue("The interruption is kept", Thread.interrupted());
+        Assert.assertEquals(HubSpotConnectorException.class, interrupted.getClass());
+        Assert.assertTrue(interrupted.getCause() instanceof InterruptedException);
+    }
+
+    /**
+     * @return The exception thrown by the result of the future
+     */
+    static private Exception failure(final HubSpotFuture<Contact> future) {
+        try {
+            future.getResult();
+        } catch (final Exception e) {
+            return e;
+        }
+        Assert.fail("The result should have failed");
+        return null;
+    }
+
+    static private HubSpotCredentialsManager credentialsManager(final String accessToken) throws HubSpotConnectorException {
+        final HubSpotCredentialsManager credentialsManager = new HubSpotCredentialsManager(new SimpleMemoryObjectStore<Serializable>());
+        credentialsManager.setCredentias(credentials(accessToken));
+        return credentialsManager;
+    }
+
+    static private HubSpotClientsManager clientsManager(final HubSpotClient client) {
+        final HubSpotClientsManager clientsManager = new HubSpotClientsManager(new HubSpotHttpTransport(null, null, null, null, null), 10, 0);
+        clientsManager.addClient("user", client);
+        return clientsManager;
+    }
+
+    static private OAuthCredentials credentials(final String accessToken) {
+        final OAuthCredentials credentials = new OAuthCredentials();
+        credentials.setUserId("user");
+        credentials.setAccessToken(accessToken);
+        return credentials;
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.unit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.mule.module.hubspot.client.HubSpotClientUtils;
+import org.mule.module.hubspot.credential.HubSpotTokenRefreshScheduler;
+import org.mule.module.hubspot.model.OAuthCredentials;
+import org.mule.module.hubspot.model.token.RefreshTokenResponse;
+
+public class HubSpotTokenRefreshSchedulerTest {
+
+    @Test
+    public void refreshesBeforeTheExpiration() {
+        final ManualScheduledExecutor executor = new ManualScheduledExecutor();
+        final AtomicInteger refreshes = new AtomicInteger();
+        final HubSpotTokenRefreshScheduler scheduler = scheduler(new HubSpotTokenRefreshScheduler.TokenRefresher() {
+            @Override
+            public void refresh(final String userId, final String expiringAccessToken) throws Exception {
+                Assert.assertEquals("1", userId);
+                Assert.assertEquals("token", expiringAccessToken);
+                refreshes.incrementAndGet();
+            }
+        }, 500, 0, executor);
+
+        try {
+            scheduler.schedule(credentials(true, executor.currentTimeMillis() + 700));
+            Assert.assertEquals(1, scheduler.getScheduledRefreshes());
+
+            executor.advance(199, TimeUnit.MILLISECONDS);
+            Assert.assertEquals(0, refreshes.get());
+
+            executor.advance(1, TimeUnit.MILLISECONDS);
+            Assert.assertEquals(1, refreshes.get());
+            Assert.assertEquals(1, scheduler.getEarlyRefreshes());
+            Assert.assertEquals(0, scheduler.getLateRefreshes());
+            Assert.assertEquals(0, scheduler.getScheduledRefreshes());
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void failedRefreshesAreRetriedWithBackoffUntilTheTokenExpires() {
+        final ManualScheduledExecutor executor = new ManualScheduledExecutor();
+        final AtomicInteger attempts = new AtomicInteger();
+        final OAuthCredentials credentials = credentials(true, executor.currentTimeMillis() + 1500);
+        final HubSpotTokenRefreshScheduler[] holder = new HubSpotTokenRefreshScheduler[1];
+        final HubSpotTokenRefreshScheduler scheduler = scheduler(new HubSpotTokenRefreshScheduler.TokenRefresher() {
+            @Override
+            public void refresh(final String userId, final String expiringAccessToken) throws Exception {
+                attempts.incrementAndGet();
+                // Like the credentials manager, which schedules the credentials every time it reads them from the Object Store
+                holder[0].schedule(credentials);
+                throw new Exception("invalid refresh token");
+            }
+        }, 1400, 0, executor);
+        holder[0] = scheduler;
+
+        try {
+            scheduler.schedule(credentials);
+            executor.advance(100, TimeUnit.MILLISECONDS);
+            Assert.assertEquals(1, attempts.get());
+
+            // Retried one second later. The next retry would be after the expiration, so it is given up
+            executor.advance(999, TimeUnit.MILLISECONDS);
+            Assert.assertEquals(1, attempts.get());
+            executor.advance(1, TimeUnit.MILLISECONDS);
+            Assert.assertEquals(2, attempts.get());
+            Assert.assertEquals(2, scheduler.getFailedRefreshes());
+            Assert.assertEquals(0, scheduler.getScheduledRefreshes());
+
+            scheduler.schedule(credentials);
+            executor.advance(1000, TimeUnit.MILLISECONDS);
+            Assert.assertEquals(2, attempts.get());
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void aTokenRefreshedWithoutAnExpirationIsNotRefreshedAheadOfTime() {
+        final ManualScheduledExecutor executor = new ManualScheduledExecutor();
+        final AtomicInteger refreshes = new AtomicInteger();
+        final AtomicReference<OAuthCredentials> refreshed = new AtomicReference<OAuthCredentials>();
+        final OAuthCredentials credentials = credentials(true, executor.currentTimeMillis() + 700);
+        credentials.setExpiresAt("1");
+        final HubSpotTokenRefreshScheduler[] holder = new HubSpotTokenRefreshScheduler[1];
+        final HubSpotTokenRefreshScheduler scheduler = scheduler(new HubSpotTokenRefreshScheduler.TokenRefresher() {
+            @Override
+            public void refresh(final String userId, final String expiringAccessToken) throws Exception {
+                refreshes.incrementAndGet();
+                // A refresh response without expires_in
+                final RefreshTokenResponse response = new RefreshTokenResponse();
+                response.setAccessToken("new token");
+                response.setRefreshToken("new refresh token");
+                refreshed.set(HubSpotClientUtils.refreshedCredentials(credentials, response));
+                holder[0].schedule(refreshed.get());
+            }
+        }, 500, 0, executor);
+        holder[0] = scheduler;
+
+        try {
+            scheduler.schedule(credentials);
+            executor.advance(200, TimeUnit.MILLISECONDS);
+            Assert.assertEquals(1, refreshes.get());
+
+            // The new token does not take the expiration of the old one, so it is refreshed when a request is rejected
+            Assert.assertEquals("new token", refreshed.get().getAccessToken());
+            Assert.assertNull(refreshed.get().getExpiresAt());
+            Assert.assertNull(refreshed.get().getExpirationTime());
+            Assert.assertEquals(0, scheduler.getScheduledRefreshes());
+            executor.advance(60000, TimeUnit.MILLISECONDS);
+            Assert.assertEquals(1, refreshes.get());
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void ignoresUsersWithoutOfflineScope() {
+        final HubSpotTokenRefreshScheduler scheduler = new HubSpotTokenRefreshScheduler(null, 0, 0);
+        try {
+            scheduler.schedule(credentials(false, System.currentTimeMillis() + 1000));
+            Assert.assertEquals(0, scheduler.getScheduledRefreshes());
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void onlyTheUsersActiveWithinTheIdleTimeoutAreRefreshed() {
+        final ManualScheduledExecutor executor = new ManualScheduledExecutor();
+        final AtomicInteger refreshes = new AtomicInteger();
+        final HubSpotTokenRefreshScheduler scheduler = scheduler(new HubSpotTokenRefreshScheduler.TokenRefresher() {
+            @Override
+            public void refresh(final String userId, final String expiringAccessToken) throws Exception {
+                refreshes.incrementAndGet();
+            }
+        }, 500, 200, executor);
+
+        try {
+            // Refreshed 400 ms from now, but not used after being scheduled
+            scheduler.schedule(credentials(true, executor.currentTimeMillis() + 900));
+            executor.advance(600, TimeUnit.MILLISECONDS);
+            Assert.assertEquals(0, refreshes.get());
+            Assert.assertEquals(0, scheduler.getScheduledRefreshes());
+
+            // Used until its refresh, like the credentials manager does every time it returns them
+            final OAuthCredentials credentials = credentials(true, executor.currentTimeMillis() + 900);
+            for (int x = 0; x < 12; x++) {
+                scheduler.schedule(credentials);
+                executor.advance(50, TimeUnit.MILLISECONDS);
+            }
+            Assert.assertEquals(1, refreshes.get());
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void theUsersThatAreNotUsedAreRemoved() {
+        final ManualScheduledExecutor executor = new ManualScheduledExecutor();
+        final HubSpotTokenRefreshScheduler scheduler = scheduler(null, 0, 100, executor);
+        try {
+            // The refresh is far away, so only the idle timeout removes it
+            scheduler.schedule(credentials(true, executor.currentTimeMillis() + 60000));
+            Assert.assertEquals(1, scheduler.getScheduledRefreshes());
+
+            // Idle for exactly the timeout at the first sweep, and for longer at the second one
+            executor.advance(100, TimeUnit.MILLISECONDS);
+            Assert.assertEquals(1, scheduler.getScheduledRefreshes());
+            executor.advance(100, TimeUnit.MILLISECONDS);
+            Assert.assertEquals(0, scheduler.getScheduledRefreshes());
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    /**
+     * @return A scheduler without jitter whose refreshes run on the executor, with its clock
+     */
+    static private HubSpotTokenRefreshScheduler scheduler(final HubSpotTokenRefreshScheduler.TokenRefresher refresher, final long marginMillis,
+            final long idleTimeoutMillis, final ManualScheduledExecutor executor) {
+        return new HubSpotTokenRefreshScheduler(refresher, marginMillis, 0, idleTimeoutMillis, executor) {
+            @Override
+            protected long currentTimeMillis() {
+                return executor.currentTimeMillis();
+            }
+        };
+    }
+
+    static private OAuthCredentials credentials(final boolean offlineScope, final long expirationTime) {
+        final OAuthCredentials credentials = new OAuthCredentials();
+        credentials.setUserId("1");
+        credentials.setAccessToken("token");
+        credentials.setOfflineScope(offlineScope);
+        credentials.setExpirationTime(expirationTime);
+        return credentials;
+    }
+}
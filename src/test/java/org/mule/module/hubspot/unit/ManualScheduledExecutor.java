@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.unit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduled executor with its own clock, whose tasks run on the thread of the test when it advances the time. The tests of the components that schedule work use it, together
+ * with its clock, instead of waiting for the real time.
+ */
+class ManualScheduledExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+
+    private final PriorityQueue<ManualTask<?>> tasks = new PriorityQueue<ManualTask<?>>();
+    // Any starting point, as System.nanoTime()
+    private long nanos = TimeUnit.SECONDS.toNanos(1000);
+    private long sequence;
+    private boolean shutdown;
+
+    public synchronized long nanoTime() {
+        return nanos;
+    }
+
+    public synchronized long currentTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * Moves the clock forward, running in order the tasks that are due, including the ones that they schedule
+     */
+    public synchronized void advance(final long time, final TimeUnit unit) {
+        final long target = nanos + unit.toNanos(time);
+        while (!tasks.isEmpty() && tasks.peek().time - target <= 0) {
+            final ManualTask<?> task = tasks.poll();
+            nanos = Math.max(nanos, task.time);
+            task.run();
+        }
+        nanos = target;
+    }
+
+    /**
+     * Runs the tasks that are due without moving the clock
+     */
+    public void runDueTasks() {
+        advance(0, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        schedule(command, 0, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public synchronized ScheduledFuture<?> schedule(final Runnable command, final long delay, final TimeUnit unit) {
+        return enqueue(new ManualTask<Object>(Executors.callable(command), unit.toNanos(delay), 0));
+    }
+
+    @Override
+    public synchronized <V> ScheduledFuture<V> schedule(final Callable<V> callable, final long delay, final TimeUnit unit) {
+        return enqueue(new ManualTask<V>(callable, unit.toNanos(delay), 0));
+    }
+
+    @Override
+    public synchronized ScheduledFuture<?> scheduleAtFixedRate(final Runnable command, final long initialDelay, final long period, final TimeUnit unit) {
+        return enqueue(new ManualTask<Object>(Executors.callable(command), unit.toNanos(initialDelay), unit.toNanos(period)));
+    }
+
+    @Override
+    public synchronized ScheduledFuture<?> scheduleWithFixedDelay(final Runnable command, final long initialDelay, final long delay, final TimeUnit unit) {
+        // A negative period is a delay after each run, as in ScheduledThreadPoolExecutor. Both are the same here, since the tasks take no time
+        return enqueue(new ManualTask<Object>(Executors.callable(command), unit.toNanos(initialDelay), -unit.toNanos(delay)));
+    }
+
+    private synchronized <V> ManualTask<V> enqueue(final ManualTask<V> task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("The executor is shut down");
+        }
+        tasks.add(task);
+        return task;
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        shutdown = true;
+        tasks.clear();
+    }
+
+    @Override
+    public synchronized List<Runnable> shutdownNow() {
+        final List<Runnable> pending = new ArrayList<Runnable>(tasks);
+        shutdown();
+        return pending;
+    }
+
+    @Override
+    public synchronized boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public synchronized boolean isTerminated() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) {
+        return isTerminated();
+    }
+
+    private class ManualTask<V> extends FutureTask<V> implements ScheduledFuture<V> {
+
+        private long time;
+        private final long period;
+        private final long order = sequence++;
+
+        ManualTask(final Callable<V> callable, final long delay, final long period) {
+            super(callable);
+            this.time = nanos + delay;
+            this.period = period;
+        }
+
+        @Override
+        public void run() {
+            if (period == 0) {
+                super.run();
+            } else if (runAndReset()) {
+                time = period > 0 ? time + period : nanos - period;
+                if (!shutdown) {
+                    tasks.add(this);
+                }
+            }
+        }
+
+        @Override
+        public long getDelay(final TimeUnit unit) {
+            return unit.convert(time - nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(final Delayed other) {
+            final ManualTask<?> task = (ManualTask<?>) other;
+            if (time != task.time) {
+                return time - task.time < 0 ? -1 : 1;
+            }
+            return order < task.order ? -1 : order > task.order ? 1 : 0;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) MuleSoft, Inc. All rights reserved. http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.md file.
+ */
+package org.mule.module.hubspot.unit;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.mule.module.hubspot.iterable.PageReadAhead;
+
+public class PageReadAheadTest {
+
+    static private final int LAST_PAGE = 10;
+
+    private static class CountingSource implements PageReadAhead.PageSource<Integer> {
+
+        private final AtomicInteger requested = new AtomicInteger();
+        private final int failingPage;
+
+        CountingSource(final int failingPage) {
+            this.failingPage = failingPage;
+        }
+
+        @Override
+        public boolean hasNextPage(final Integer page) {
+            return page < LAST_PAGE;
+        }
+
+        @Override
+        public Integer nextPage(final Integer page) throws Exception {
+            requested.incrementAndGet();
+            if (page + 1 == failingPage) {
+                throw new IllegalStateException("page " + failingPage);
+            }
+            return page + 1;
+        }
+    }
+
+    @Test
+    public void pagesAreReturnedInOrder() throws Exception {
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            for (int depth = 0; depth <= 3; depth++) {
+                final CountingSource source = new CountingSource(-1);
+                final PageReadAhead<Integer> readAhead = new PageReadAhead<Integer>(executor, depth, 0, source);
+
+                Integer page = 0;
+                while (source.hasNextPage(page)) {
+                    final Integer next = readAhead.next(page);
+                    Assert.assertEquals(Integer.valueOf(page + 1), next);
+                    page = next;
+                }
+
+                Assert.assertEquals(LAST_PAGE, source.requested.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void readAheadIsBoundedByDepth() throws Exception {
+        // The requests run when the test says, so the pages that are not requested are known
+        final ManualScheduledExecutor executor = new ManualScheduledExecutor();
+        final CountingSource source = new CountingSource(-1);
+        final PageReadAhead<Integer> readAhead = new PageReadAhead<Integer>(executor, 2, 0, source);
+
+        executor.runDueTasks();
+        Assert.assertEquals(2, source.requested.get());
+
+        // Page 1 was consumed, so only pages 2 and 3 are requested ahead
+        Assert.assertEquals(Integer.valueOf(1), readAhead.next(0));
+        executor.runDueTasks();
+        Assert.assertEquals(3, source.requested.get());
+        Assert.assertEquals(Integer.valueOf(2), readAhead.next(1));
+        executor.runDueTasks();
+        Assert.assertEquals(4, source.requested.get());
+    }
+
+    @Test
+    public void cancelledPagesAreNotRequested() throws Exception {
+        final ManualScheduledExecutor executor = new ManualScheduledExecutor();
+        final CountingSource source = new CountingSource(-1);
+        final PageReadAhead<Integer> readAhead = new PageReadAhead<Integer>(executor, 2, 0, source);
+
+        readAhead.cancel();
+        executor.runDueTasks();
+        Assert.assertEquals(0, source.requested.get());
+
+        // From then on each page is requested when it is needed
+        Assert.assertEquals(Integer.valueOf(1), readAhead.next(0));
+        executor.runDueTasks();
+        Assert.assertEquals(1, source.requested.get());
+    }
+
+    @Test
+    public void pagesRejectedByTheExecutorAreRequestedByTheConsumer() throws Exception {
+        final ManualScheduledExecutor executor = new ManualScheduledExecutor();
+        executor.shutdown();
+        final CountingSource source = new CountingSource(-1);
+        final PageReadAhead<Integer> readAhead = new PageReadAhead<Integer>(executor, 2, 0, source);
+
+        Assert.assertEquals(0, source.requested.get());
+        Assert.assertEquals(Integer.valueOf(1), readAhead.next(0));
+        Assert.assertEquals(Integer.valueOf(2), readAhead.next(1));
+        Assert.assertEquals(2, source.requested.get());
+    }
+
+    @Test
+    public void errorIsThrownAtItsPage() throws Exception {
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            final CountingSource source = new CountingSource(3);
+            final PageReadAhead<Integer> readAhead = new PageReadAhead<Integer>(executor, 2, 0, source);
+
+            Assert.assertEquals(Integer.valueOf(1), readAhead.next(0));
+            Assert.assertEquals(Integer.valueOf(2), readAhead.next(1));
+            try {
+                readAhead.next(2);
+                Assert.fail("The error of the third page was expected");
+            } catch (final IllegalStateException e) {
+                Assert.assertEquals("page 3", e.getMessage());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}